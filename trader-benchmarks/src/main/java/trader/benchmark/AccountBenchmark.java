@@ -0,0 +1,197 @@
+package trader.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.FileUtil;
+import trader.common.util.PriceUtil;
+import trader.common.util.TraderHomeUtil;
+import trader.service.data.KVStoreService;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.trade.Account;
+import trader.service.trade.AccountImpl;
+import trader.service.trade.MarketTimeService;
+import trader.service.trade.OrderBuilder;
+import trader.service.trade.OrderRefGen;
+import trader.service.trade.OrderRefGenImpl;
+import trader.service.trade.TradeConstants;
+import trader.service.trade.TradeService;
+import trader.service.trade.TxnSession;
+import trader.service.trade.TxnSessionFactory;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimKVStoreService;
+import trader.simulator.SimMarketDataService;
+import trader.simulator.SimMarketTimeService;
+import trader.simulator.SimScheduledExecutorService;
+import trader.simulator.trade.SimTxnSession;
+import trader.simulator.trade.SimTxnSessionFactory;
+
+/**
+ * 行情变化时账户持仓盈亏的重新计算: AccountImpl.onMarketData -> PositionImpl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class AccountBenchmark implements TradeConstants {
+
+    /**
+     * 行情数据来自合成TICK而不是行情目录
+     */
+    static class FixtureMarketDataService extends SimMarketDataService {
+        private Map<Exchangeable, MarketData> lastData = new HashMap<>();
+
+        @Override
+        public MarketData getLastData(Exchangeable e) {
+            return lastData.get(e);
+        }
+
+        @Override
+        public void onTimeChanged(LocalDate tradingDay, LocalDateTime actionTime) {
+        }
+
+        void setLastData(MarketData md) {
+            lastData.put(md.instrumentId, md);
+        }
+    }
+
+    static class FixtureTradeService implements TradeService {
+        private OrderRefGen orderRefGen;
+        private Map<String, TxnSessionFactory> txnSessionFactories = new TreeMap<>();
+
+        FixtureTradeService(BeansContainer beansContainer){
+            orderRefGen = new OrderRefGenImpl(beansContainer);
+            txnSessionFactories.put(TxnSession.PROVIDER_SIM, new SimTxnSessionFactory());
+        }
+
+        @Override
+        public void init(BeansContainer beansContainer) throws Exception {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public OrderRefGen getOrderRefGen() {
+            return orderRefGen;
+        }
+
+        @Override
+        public Account getPrimaryAccount() {
+            return null;
+        }
+
+        @Override
+        public Account getAccount(String id) {
+            return null;
+        }
+
+        @Override
+        public Collection<Account> getAccounts() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<String, TxnSessionFactory> getTxnSessionFactories() {
+            return txnSessionFactories;
+        }
+    }
+
+    private static final String COMMISSIONS_JSON = "{\"feeInfos\": {\"ru1901.shfe\": {"
+            +"\"priceTick\": \"5.00\", \"volumeMultiple\": 10, "
+            +"\"marginRatios\": [0.09, 0.0, 0.09, 0.0], "
+            +"\"commissionRatios\": [4.506E-5, 0.01, 4.506E-5, 0.01, 4.506E-5, 0.01]}}, "
+            +"\"brokerMarginRatio\": {}}";
+
+    private AccountImpl account;
+    private MarketData[] ticks;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        File traderHome = Files.createTempDirectory("trader-benchmark").toFile();
+        System.setProperty(TraderHomeUtil.PROP_TRADER_HOME, traderHome.getAbsolutePath());
+        System.setProperty(TraderHomeUtil.PROP_REPOSITORY_DIR, new File(traderHome, "data").getAbsolutePath());
+        File commissionsFile = new File(traderHome, "bench-account.commissions.json");
+        FileUtil.save(commissionsFile, COMMISSIONS_JSON);
+
+        Exchangeable e = TickFixtures.RU1901;
+        ticks = TickFixtures.createTicks(e, TickFixtures.TRADING_DAY, 1024).toArray(new MarketData[1024]);
+
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        FixtureMarketDataService mdService = new FixtureMarketDataService();
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(KVStoreService.class, new SimKVStoreService());
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        scheduledExecutorService.init(beansContainer);
+        LocalDateTime beginTime = ticks[0].updateTime.minusMinutes(1);
+        mtService.setTimeRanges(TickFixtures.TRADING_DAY, new LocalDateTime[] {beginTime, beginTime.plusHours(1)});
+        mdService.addSubscriptions(Arrays.asList(new Exchangeable[] {e}));
+        mdService.init(beansContainer);
+
+        Map config = new HashMap<>();
+        config.put("id", "bench-account");
+        config.put("provider", TxnSession.PROVIDER_SIM);
+        config.put("text", "[connectionProps]\ninitMoney=5000000.00\ncommissionsFile="+commissionsFile.getAbsolutePath());
+        account = new AccountImpl(new FixtureTradeService(beansContainer), beansContainer, config);
+        SimTxnSession txnSession = (SimTxnSession)account.getSession();
+        txnSession.connect(account.getConnectionProps());
+        mtService.nextTimePiece();
+        account.init();
+        //建立多空持仓
+        for(int i=0;i<4;i++) {
+            MarketData md = ticks[i];
+            mdService.setLastData(md);
+            OrderBuilder odrBuilder = new OrderBuilder()
+                    .setDirection(i%2==0?OrderDirection.Buy:OrderDirection.Sell)
+                    .setExchagneable(e)
+                    .setLimitPrice(i%2==0?md.lastPrice+PriceUtil.price2long(50):md.lastPrice-PriceUtil.price2long(50))
+                    .setPriceType(OrderPriceType.LimitPrice)
+                    .setOffsetFlag(OrderOffsetFlag.OPEN)
+                    .setVolume(1+i);
+            account.createOrder(odrBuilder);
+            txnSession.onMarketData(md);
+        }
+        if ( account.getPosition(e)==null || account.getPosition(e).getVolume(PosVolume_Position)==0 ) {
+            throw new IllegalStateException("Benchmark account has no position");
+        }
+    }
+
+    @Benchmark
+    public Account onMarketData() {
+        account.onMarketData(ticks[(index++)&(ticks.length-1)]);
+        return account;
+    }
+
+}
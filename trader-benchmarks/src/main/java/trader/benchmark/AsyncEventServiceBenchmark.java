@@ -0,0 +1,107 @@
+package trader.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.config.AbstractConfigService;
+import trader.common.config.ConfigUtil;
+import trader.common.exchangeable.Exchangeable;
+import trader.service.event.AsyncEvent;
+import trader.service.event.AsyncEventService;
+import trader.service.event.AsyncEventServiceImpl;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketDataProducer;
+
+/**
+ * AsyncEventService 在不同WaitStrategy和分片数下的发布吞吐量
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncEventServiceBenchmark {
+    private static final String[] INSTRUMENTS = {"ru1901", "au1906", "cu1901", "rb1905", "m1905", "SR905", "IF1812", "ag1906"};
+
+    @Param({"Blocking", "LiteBlocking", "Sleeping", "Yielding", "BusySpin"})
+    public String waitStrategy;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    private AsyncEventServiceImpl asyncEventService;
+    private CtpMarketDataProducer producer;
+    private MarketData[] ticks;
+    private CThostFtdcDepthMarketDataField[] fields;
+    private final AtomicLong consumed = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        AbstractConfigService.staticRegisterProvider("BENCHMARK", new MapConfigProvider()
+                .set(AsyncEventServiceImpl.ITEM_DISRUPTOR_WAIT_STRATEGY, waitStrategy)
+                .set(AsyncEventServiceImpl.ITEM_DISRUPTOR_RINGBUFFER_SIZE, "4096")
+                .set(AsyncEventServiceImpl.ITEM_DISRUPTOR_SHARDS, ""+shards)
+                );
+        asyncEventService = new AsyncEventServiceImpl();
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MAIN, (AsyncEvent event)->{
+            consumed.incrementAndGet();
+            return true;
+        }, AsyncEvent.EVENT_TYPE_MARKETDATA_MASK);
+        asyncEventService.init(null);
+        asyncEventService.start();
+
+        producer = new CtpMarketDataProducer(null, null);
+        ticks = new MarketData[1024];
+        fields = new CThostFtdcDepthMarketDataField[ticks.length];
+        for(int i=0;i<INSTRUMENTS.length;i++) {
+            Exchangeable e = Exchangeable.fromString(INSTRUMENTS[i]);
+            List<MarketData> instrumentTicks = TickFixtures.createTicks(e, TickFixtures.TRADING_DAY, ticks.length/INSTRUMENTS.length);
+            CThostFtdcDepthMarketDataField[] instrumentFields = TickFixtures.createFields(e, TickFixtures.TRADING_DAY, instrumentTicks.size());
+            for(int j=0;j<instrumentTicks.size();j++) {
+                ticks[j*INSTRUMENTS.length+i] = instrumentTicks.get(j);
+                fields[j*INSTRUMENTS.length+i] = instrumentFields[j];
+            }
+        }
+        if ( ConfigUtil.getInt(AsyncEventServiceImpl.ITEM_DISRUPTOR_SHARDS, 1)!=shards ) {
+            throw new IllegalStateException("Benchmark config is not registered");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        asyncEventService.destroy();
+    }
+
+    @Benchmark
+    public void publishMarketData(Cursor cursor) {
+        asyncEventService.publishMarketData(ticks[(cursor.index++)&(ticks.length-1)]);
+    }
+
+    @Benchmark
+    public void publishRawMarketData(Cursor cursor) {
+        asyncEventService.publishMarketData(producer, fields[(cursor.index++)&(fields.length-1)], TickFixtures.TRADING_DAY, 0);
+    }
+
+}
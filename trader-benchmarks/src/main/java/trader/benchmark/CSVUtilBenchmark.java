@@ -0,0 +1,45 @@
+package trader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.common.util.CSVUtil;
+import trader.service.md.MarketData;
+
+/**
+ * 解析一行CTP TICK的CSV数据
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CSVUtilBenchmark {
+
+    private String line;
+
+    @Setup
+    public void setup() {
+        MarketData tick = TickFixtures.createTicks(TickFixtures.RU1901, TickFixtures.TRADING_DAY, 1).get(0);
+        StringBuilder row = new StringBuilder(512);
+        tick.toCsvRow(row);
+        line = row.toString();
+    }
+
+    @Benchmark
+    public String[] parseLine() {
+        return CSVUtil.parseLine(line, ',');
+    }
+
+}
@@ -0,0 +1,64 @@
+package trader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.common.util.PriceUtil;
+import trader.service.ta.column.BarColumns;
+import trader.service.ta.column.MACDColumn;
+
+/**
+ * 50个品种 x 4个级别, 每个新Bar增量计算MACD的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnIndicatorBenchmark {
+    private static final int SERIES_COUNT = 50*4;
+    private static final int BAR_COUNT = 1000;
+
+    private BarColumns[] bars;
+    private MACDColumn[] macds;
+    private int index;
+
+    @Setup
+    public void setup() {
+        bars = new BarColumns[SERIES_COUNT];
+        macds = new MACDColumn[SERIES_COUNT];
+        for(int i=0;i<SERIES_COUNT;i++) {
+            bars[i] = new BarColumns();
+            macds[i] = new MACDColumn(bars[i].getClose());
+        }
+        for(int i=0;i<BAR_COUNT;i++) {
+            newBar();
+        }
+    }
+
+    @Benchmark
+    public double newBar() {
+        double result = 0;
+        long price = PriceUtil.price2long(11000+((index*7919)%11-5)*5);
+        for(int i=0;i<SERIES_COUNT;i++) {
+            bars[i].set(index, index*60000L, price, price, price, price, 1, price, 0, price, price);
+            MACDColumn macd = macds[i];
+            macd.update();
+            result += macd.getValue(index);
+        }
+        index++;
+        return result;
+    }
+
+}
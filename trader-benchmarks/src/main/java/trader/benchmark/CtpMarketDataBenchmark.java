@@ -0,0 +1,62 @@
+package trader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketData;
+
+/**
+ * CTP行情对象创建, 原地更新和复制
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CtpMarketDataBenchmark {
+
+    private CThostFtdcDepthMarketDataField[] fields;
+    private CtpMarketData reuse;
+    private int index;
+
+    @Setup
+    public void setup() {
+        fields = TickFixtures.createFields(TickFixtures.RU1901, TickFixtures.TRADING_DAY, 1024);
+        reuse = new CtpMarketData();
+    }
+
+    private CThostFtdcDepthMarketDataField nextField() {
+        return fields[(index++)&(fields.length-1)];
+    }
+
+    @Benchmark
+    public MarketData create() {
+        return new CtpMarketData("ctp", TickFixtures.RU1901, nextField(), TickFixtures.TRADING_DAY);
+    }
+
+    @Benchmark
+    public MarketData update() {
+        reuse.update("ctp", TickFixtures.RU1901, nextField(), TickFixtures.TRADING_DAY);
+        return reuse;
+    }
+
+    @Benchmark
+    public MarketData updateAndClone() {
+        reuse.update("ctp", TickFixtures.RU1901, nextField(), TickFixtures.TRADING_DAY);
+        return reuse.clone();
+    }
+
+}
@@ -0,0 +1,70 @@
+package trader.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.service.md.MarketData;
+import trader.service.ta.bar.FutureBarBuilder;
+
+/**
+ * 从TICK构建一个交易日上午的KBar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FutureBarBuilderBenchmark {
+    private static final int TICK_COUNT = 4000;
+
+    @Param({"MIN1", "MIN5", "VOL1K"})
+    public String level;
+
+    private List<MarketData> ticks;
+    private ExchangeableTradingTimes tradingTimes;
+    private FutureBarBuilder builder;
+
+    @Setup
+    public void setup() {
+        ticks = TickFixtures.createTicks(TickFixtures.RU1901, TickFixtures.TRADING_DAY, TICK_COUNT);
+        tradingTimes = TickFixtures.RU1901.exchange().getTradingTimes(TickFixtures.RU1901, TickFixtures.TRADING_DAY);
+        for(MarketData tick:ticks) {
+            tick.postProcess(tradingTimes);
+        }
+    }
+
+    /**
+     * FutureBarBuilder 有状态, 每次调用使用新的对象, 构造开销不计入
+     */
+    @Setup(Level.Invocation)
+    public void createBuilder() {
+        builder = new FutureBarBuilder(tradingTimes, PriceLevel.valueOf(level.toLowerCase()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICK_COUNT)
+    public FutureBarBuilder update() {
+        for(int i=0;i<ticks.size();i++) {
+            builder.update(ticks.get(i));
+        }
+        return builder;
+    }
+
+}
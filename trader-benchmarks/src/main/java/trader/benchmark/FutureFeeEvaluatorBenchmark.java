@@ -0,0 +1,65 @@
+package trader.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+import trader.service.trade.FutureFeeEvaluator;
+import trader.service.trade.FutureFeeEvaluator.FutureFeeInfo;
+import trader.service.trade.TradeConstants;
+
+/**
+ * 保证金和手续费计算
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FutureFeeEvaluatorBenchmark implements TradeConstants {
+
+    private FutureFeeEvaluator feeEvaluator;
+    private long price;
+
+    @Setup
+    public void setup() {
+        Map<Exchangeable, FutureFeeInfo> feeInfos = new HashMap<>();
+        FutureFeeInfo feeInfo = new FutureFeeInfo();
+        feeInfo.setPriceTick(PriceUtil.price2long(5));
+        feeInfo.setVolumeMultiple(10);
+        feeInfo.setMarginRatio(MarginRatio_LongByMoney, 0.09);
+        feeInfo.setMarginRatio(MarginRatio_ShortByMoney, 0.09);
+        feeInfo.setCommissionRatio(CommissionRatio_OpenByMoney, 0.000045);
+        feeInfo.setCommissionRatio(CommissionRatio_CloseByMoney, 0.000045);
+        feeInfo.setCommissionRatio(CommissionRatio_CloseTodayByMoney, 0.000045);
+        feeInfos.put(TickFixtures.RU1901, feeInfo);
+        feeEvaluator = new FutureFeeEvaluator(new Properties(), feeInfos);
+        price = PriceUtil.price2long(11005);
+    }
+
+    @Benchmark
+    public long[] computeOrder() {
+        return feeEvaluator.compute(TickFixtures.RU1901, 2, price, OrderDirection.Buy, OrderOffsetFlag.OPEN);
+    }
+
+    @Benchmark
+    public long[] computePosition() {
+        return feeEvaluator.compute(TickFixtures.RU1901, 2, price, PosDirection.Long);
+    }
+
+}
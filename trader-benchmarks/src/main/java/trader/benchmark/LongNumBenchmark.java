@@ -0,0 +1,99 @@
+package trader.benchmark;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.MACDIndicator;
+import org.ta4j.core.indicators.SMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+import org.ta4j.core.num.PrecisionNum;
+
+import trader.service.ta.LongNum;
+
+/**
+ * LongNum 与 ta4j 内置Num实现在常用指标中的计算开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LongNumBenchmark {
+    private static final int BAR_COUNT = 1000;
+
+    @Param({"LongNum", "DoubleNum", "PrecisionNum"})
+    public String numType;
+
+    private TimeSeries series;
+    private Num a;
+    private Num b;
+
+    @Setup
+    public void setup() {
+        Function<Number, Num> numFunction = null;
+        switch(numType) {
+        case "DoubleNum":
+            numFunction = DoubleNum::valueOf;
+            break;
+        case "PrecisionNum":
+            numFunction = PrecisionNum::valueOf;
+            break;
+        default:
+            numFunction = LongNum::valueOf;
+            break;
+        }
+        series = new BaseTimeSeries("bench", numFunction);
+        ZonedDateTime time = ZonedDateTime.of(2018, 12, 3, 9, 0, 0, 0, ZoneId.systemDefault());
+        double price = 11000;
+        for(int i=0;i<BAR_COUNT;i++) {
+            double open = price;
+            price += ((i*7919)%11-5)*5;
+            series.addBar(time.plusMinutes(i), numFunction.apply(open), numFunction.apply(Math.max(open, price)+5), numFunction.apply(Math.min(open, price)-5), numFunction.apply(price), numFunction.apply(100+i));
+        }
+        a = numFunction.apply(11005.5);
+        b = numFunction.apply(3.25);
+    }
+
+    @Benchmark
+    public Num arithmetic() {
+        return a.plus(b).multipliedBy(b).minus(a).dividedBy(b);
+    }
+
+    @Benchmark
+    public Num sma() {
+        SMAIndicator indicator = new SMAIndicator(new ClosePriceIndicator(series), 20);
+        return indicator.getValue(series.getEndIndex());
+    }
+
+    @Benchmark
+    public Num ema() {
+        EMAIndicator indicator = new EMAIndicator(new ClosePriceIndicator(series), 20);
+        return indicator.getValue(series.getEndIndex());
+    }
+
+    @Benchmark
+    public Num macd() {
+        MACDIndicator indicator = new MACDIndicator(new ClosePriceIndicator(series), 12, 26);
+        return indicator.getValue(series.getEndIndex());
+    }
+
+}
@@ -0,0 +1,41 @@
+package trader.benchmark;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import trader.common.config.ConfigProvider;
+
+/**
+ * 内存中的配置项, 供benchmark设置服务参数
+ */
+public class MapConfigProvider implements ConfigProvider {
+
+    private Map<String, String> items = new HashMap<>();
+
+    public MapConfigProvider set(String configPath, String value) {
+        items.put(configPath, value);
+        return this;
+    }
+
+    @Override
+    public Object getItem(String configPath) {
+        return items.get(configPath);
+    }
+
+    @Override
+    public String getURL() throws IOException {
+        return "mem:benchmark";
+    }
+
+    @Override
+    public boolean reload() throws Exception {
+        return false;
+    }
+
+    @Override
+    public Map<String, String> getItems() {
+        return new HashMap<>(items);
+    }
+
+}
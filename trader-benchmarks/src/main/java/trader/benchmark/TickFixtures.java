@@ -0,0 +1,74 @@
+package trader.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketData;
+
+/**
+ * 合成的TICK数据, benchmark 不依赖本地行情数据目录
+ */
+public class TickFixtures {
+
+    public static final Exchangeable RU1901 = Exchangeable.fromString("ru1901");
+    public static final LocalDate TRADING_DAY = DateUtil.str2localdate("20181203");
+
+    /**
+     * 从09:00:00开始, 每500毫秒一个TICK, 价格随机游走
+     */
+    public static CThostFtdcDepthMarketDataField[] createFields(Exchangeable e, LocalDate tradingDay, int count) {
+        CThostFtdcDepthMarketDataField[] result = new CThostFtdcDepthMarketDataField[count];
+        double price = 11000;
+        int volume = 100;
+        long seed = 1;
+        for(int i=0;i<count;i++) {
+            seed = seed*6364136223846793005L+1442695040888963407L;
+            price += ((seed>>>33)%3-1)*5;
+            volume += (seed>>>40)%10+1;
+            int seconds = 9*3600+i/2;
+            String time = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+            result[i] = createField(e, tradingDay, time, (i%2)*500, price, volume);
+        }
+        return result;
+    }
+
+    public static List<MarketData> createTicks(Exchangeable e, LocalDate tradingDay, int count) {
+        List<MarketData> result = new ArrayList<>(count);
+        for(CThostFtdcDepthMarketDataField field:createFields(e, tradingDay, count)) {
+            result.add(new CtpMarketData("ctp", e, field, tradingDay));
+        }
+        return result;
+    }
+
+    public static CThostFtdcDepthMarketDataField createField(Exchangeable e, LocalDate tradingDay, String time, int millisec, double price, int volume) {
+        CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+        field.TradingDay = DateUtil.date2str(tradingDay);
+        field.ActionDay = field.TradingDay;
+        field.InstrumentID = e.id();
+        field.ExchangeID = e.exchange().name();
+        field.UpdateTime = time;
+        field.UpdateMillisec = millisec;
+        field.LastPrice = price;
+        field.OpenPrice = 11000;
+        field.HighestPrice = Math.max(price, 11000);
+        field.LowestPrice = Math.min(price, 11000);
+        field.PreClosePrice = 11000;
+        field.UpperLimitPrice = 12000;
+        field.LowerLimitPrice = 10000;
+        field.Volume = volume;
+        field.Turnover = volume*price*10;
+        field.OpenInterest = 300000;
+        field.AveragePrice = price*10;
+        field.BidPrice1 = price-5; field.BidPrice2 = price-10; field.BidPrice3 = price-15; field.BidPrice4 = price-20; field.BidPrice5 = price-25;
+        field.AskPrice1 = price+5; field.AskPrice2 = price+10; field.AskPrice3 = price+15; field.AskPrice4 = price+20; field.AskPrice5 = price+25;
+        field.BidVolume1 = 1; field.BidVolume2 = 2; field.BidVolume3 = 3; field.BidVolume4 = 4; field.BidVolume5 = 5;
+        field.AskVolume1 = 6; field.AskVolume2 = 7; field.AskVolume3 = 8; field.AskVolume4 = 9; field.AskVolume5 = 10;
+        return field;
+    }
+
+}
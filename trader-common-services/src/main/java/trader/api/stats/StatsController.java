@@ -23,6 +23,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import trader.api.ControllerConstants;
 import trader.common.util.JsonUtil;
+import trader.service.stats.LatencyHistogram;
 import trader.service.stats.StatsAggregator;
 import trader.service.stats.StatsCollector;
 import trader.service.stats.StatsItemAggregation;
@@ -175,6 +176,30 @@ public class StatsController {
         return JsonUtil.object2json(result).toString();
     }
 
+    /**
+     * 返回所有延迟直方图的百分位值, 单位纳秒
+     */
+    @RequestMapping(path=URI_PREFIX+"/latency",
+            method=RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public String getLatencies()
+    {
+        Map<String, Object> result = new TreeMap<>();
+        for(LatencyHistogram histogram:LatencyHistogram.getAll()) {
+            result.put(histogram.getName(), histogram.toJson());
+        }
+        return JsonUtil.object2json(result).toString();
+    }
+
+    @RequestMapping(path=URI_PREFIX+"/latency/reset",
+            method=RequestMethod.POST)
+    public void resetLatencies()
+    {
+        for(LatencyHistogram histogram:LatencyHistogram.getAll()) {
+            histogram.reset();
+        }
+    }
+
     private static String number2str(Object num) {
         if ( num instanceof Double ) {
             double dv = ((Double)num).doubleValue();
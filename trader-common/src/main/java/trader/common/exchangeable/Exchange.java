@@ -12,6 +12,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import trader.common.exchangeable.ExchangeContract.MarketTimeRecord;
 import trader.common.exchangeable.ExchangeContract.MarketTimeSegment;
@@ -27,6 +28,10 @@ public class Exchange {
     private boolean future;
     private Map<String, ExchangeContract> contracts;
     private LocalTime[] marketTimes;
+    /**
+     * 交易时间定义 -> 交易日 -> 交易时间信息, 同一交易时间定义的品种共享
+     */
+    private Map<MarketTimeRecord, Map<LocalDate, ExchangeableTradingTimes>> tradingTimesCache = new ConcurrentHashMap<>();
 
     public String name() {
         return name;
@@ -98,6 +103,9 @@ public class Exchange {
         return result;
     }
 
+    /**
+     * 返回品种在交易日的交易时间信息, 相同交易时间定义的品种共享缓存的交易时间数据
+     */
     public ExchangeableTradingTimes getTradingTimes(String instrumentId, LocalDate tradingDay) {
         if ( !MarketDayUtil.isMarketDay(this, tradingDay)) {
             return null;
@@ -106,9 +114,23 @@ public class Exchange {
         if( contract==null ) {
             return null;
         }
+        MarketTimeRecord timeRecord = contract.matchMarketTimeRecords(tradingDay);
+        Exchangeable exchangeable = Exchangeable.fromString(name(), instrumentId);
+        Map<LocalDate, ExchangeableTradingTimes> dayTradingTimes = tradingTimesCache.computeIfAbsent(timeRecord, (k)->new ConcurrentHashMap<>());
+        ExchangeableTradingTimes result = dayTradingTimes.get(tradingDay);
+        if ( result==null ) {
+            result = createTradingTimes(exchangeable, timeRecord, tradingDay);
+            ExchangeableTradingTimes result0 = dayTradingTimes.putIfAbsent(tradingDay, result);
+            if ( result0!=null ) {
+                result = result0;
+            }
+        }
+        return result.forExchangeable(exchangeable);
+    }
+
+    private ExchangeableTradingTimes createTradingTimes(Exchangeable exchangeable, MarketTimeRecord timeRecord, LocalDate tradingDay) {
         LinkedList<LocalDateTime> marketTimes = new LinkedList<>();
         List<MarketTimeSegmentInfo> segmentInfos = new ArrayList<>();
-        MarketTimeRecord timeRecord = contract.matchMarketTimeRecords(tradingDay);
         for(MarketTimeSegment segment:timeRecord.getTimeStages()) {
             LocalDate stageTradingDay = tradingDay;
             if ( segment.lastTradingDay ) {
@@ -128,7 +150,7 @@ public class Exchange {
             }
         }
 
-        return new ExchangeableTradingTimes(Exchangeable.fromString(name(), instrumentId), tradingDay
+        return new ExchangeableTradingTimes(exchangeable, tradingDay
                 ,marketTimes.toArray(new LocalDateTime[marketTimes.size()])
                 , segmentInfos );
     }
@@ -3,17 +3,26 @@ package trader.common.exchangeable;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
 
 import trader.common.tick.PriceLevel;
 import trader.common.util.CSVDataSet;
@@ -42,12 +51,18 @@ public class ExchangeableData {
         private String[] columns;
         private PriceLevel priceLevel;
         private String provider;
+        private boolean binary;
 
         public DataInfo(String name, PriceLevel priceLevel, String[] columns, String provider){
+            this(name, priceLevel, columns, provider, false);
+        }
+
+        public DataInfo(String name, PriceLevel priceLevel, String[] columns, String provider, boolean binary){
             this.name = name.toLowerCase().replaceAll("_", "-");
             this.priceLevel = priceLevel;
             this.columns = columns;
             this.provider = provider;
+            this.binary = binary;
             register(this);
         }
 
@@ -71,6 +86,13 @@ public class ExchangeableData {
 			return columns;
 		};
 
+		/**
+		 * 是否为二进制格式, 二进制数据需要使用loadBinary/saveBinary访问
+		 */
+		public boolean isBinary() {
+		    return binary;
+		}
+
         @Override
         public String toString(){ return name; }
 
@@ -205,6 +227,10 @@ public class ExchangeableData {
      * 期货CTP的TICK数据
      */
     public static final DataInfo TICK_CTP = new DataInfo("TICK_CTP", PriceLevel.TICKET, null, "ctp");
+    /**
+     * 期货CTP的TICK数据, 列存储的二进制格式, 参见 trader.service.md.TickColumns
+     */
+    public static final DataInfo TICK_CTP_BIN = new DataInfo("TICK_CTP_BIN", PriceLevel.TICKET, null, "ctp", true);
 
     public static final DataInfo MIN1 = new DataInfo("MIN1", PriceLevel.MIN1, FUTURE_MIN_COLUMNS, null);
     public static final DataInfo MIN3 = new DataInfo("MIN3", PriceLevel.MIN3, FUTURE_MIN_COLUMNS, null);
@@ -218,6 +244,16 @@ public class ExchangeableData {
 
     public static final DataInfo DAYSTATS = new DataInfo("DAY-STATS", PriceLevel.DAY, DAYSTATS_COLUMNS, null);
 
+    private static final Map<PriceLevel, DataInfo> barCaches = new ConcurrentHashMap<>();
+
+    /**
+     * 派生Bar缓存的数据分类, 每个级别一个, 格式同MIN1.
+     * <BR>由MIN1或TICK数据计算得到, 文件修改时间与源数据相同, 源数据修改后失效
+     */
+    public static DataInfo getBarCache(PriceLevel level) {
+        return barCaches.computeIfAbsent(level, (l)->new DataInfo("BAR-"+l.name(), l, FUTURE_MIN_COLUMNS, null));
+    }
+
     public static class TradingData{
         public LocalDate tradingDay;
         public String content;
@@ -231,7 +267,10 @@ public class ExchangeableData {
     private static interface DataProvider{
         public boolean exists(File exchangeableDir, String file) throws IOException;
         public String read(File exchangeableDir, String file) throws IOException;
+        public ByteBuffer readBytes(File exchangeableDir, String file) throws IOException;
+        public byte[] readAllBytes(File exchangeableDir, String file) throws IOException;
         public void save(File exchangeableDir, String file, String content) throws IOException;
+        public void saveBytes(File exchangeableDir, String file, byte[] content) throws IOException;
         public boolean delete(File exchangeableDir, String file) throws IOException;
         public void saveAll(File exchangeableDir, String files[], DataProvider source) throws IOException;
     }
@@ -245,12 +284,35 @@ public class ExchangeableData {
         public String read(File exchangeableDir, String file) throws IOException {
             return FileUtil.load(new File(exchangeableDir, file));
         }
+        /**
+         * 以只读方式内存映射文件
+         */
+        @Override
+        public ByteBuffer readBytes(File exchangeableDir, String file) throws IOException {
+            try(RandomAccessFile raf = new RandomAccessFile(new File(exchangeableDir, file), "r");
+                    FileChannel channel = raf.getChannel();)
+            {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        /**
+         * 不做内存映射读取文件, 归档后文件需要立即删除
+         */
+        @Override
+        public byte[] readAllBytes(File exchangeableDir, String file) throws IOException {
+            return Files.readAllBytes((new File(exchangeableDir, file)).toPath());
+        }
         @Override
         public void save(File exchangeableDir, String file, String content) throws IOException{
             exchangeableDir.mkdirs();
             FileUtil.save(new File(exchangeableDir, file), content);
         }
         @Override
+        public void saveBytes(File exchangeableDir, String file, byte[] content) throws IOException{
+            exchangeableDir.mkdirs();
+            Files.write((new File(exchangeableDir, file)).toPath(), content);
+        }
+        @Override
         public boolean delete(File exchangeableDir, String file) throws IOException{
             return (new File(exchangeableDir, file)).delete();
         }
@@ -335,12 +397,31 @@ public class ExchangeableData {
             return ZipFileUtil.archiveRead(zip, file);
         }
 
+        @Override
+        public ByteBuffer readBytes(File exchangeableDir, String file) throws IOException
+        {
+            return ByteBuffer.wrap(readAllBytes(exchangeableDir, file));
+        }
+
+        @Override
+        public byte[] readAllBytes(File exchangeableDir, String file) throws IOException
+        {
+            File zip = new File(exchangeableDir, getZipFileName(file));
+            return ZipFileUtil.archiveReadBytes(zip, file);
+        }
+
         @Override
         public void save(File exchangeableDir, String file, String content) throws IOException
+        {
+            saveBytes(exchangeableDir, file, content.getBytes(CHARSET));
+        }
+
+        @Override
+        public void saveBytes(File exchangeableDir, String file, byte[] content) throws IOException
         {
             File zip = new File(exchangeableDir, getZipFileName(file));
             exchangeableDir.mkdirs();
-            ZipFileUtil.archiveAdd(zip, content.getBytes(CHARSET), file);
+            ZipFileUtil.archiveAdd(zip, content, file);
         }
 
         @Override
@@ -367,7 +448,7 @@ public class ExchangeableData {
                 }
                 lastZipFileName = currZipFileName;
                 toSaveFiles.add(f);
-                datas.add(source.read(exchangeableDir, f).getBytes(CHARSET));
+                datas.add(source.readAllBytes(exchangeableDir, f));
             }
             if ( toSaveFiles.size()>0 ){
                 ZipFileUtil.archiveAddAll(new File(exchangeableDir, lastZipFileName), toSaveFiles, datas);
@@ -377,6 +458,7 @@ public class ExchangeableData {
 
 
     private static final String EXT_NAME = ".csv";
+    private static final String EXT_NAME_BINARY = ".dat";
     private static final String CHARSET = "UTF-8";
 
     private boolean readOnly;
@@ -396,6 +478,10 @@ public class ExchangeableData {
         this.readOnly = readOnly;
     }
 
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     public File getDataDir(){
         return dataDir;
     }
@@ -543,6 +629,48 @@ public class ExchangeableData {
         }
     }
 
+    /**
+     * 保存数据并设置文件修改时间, 用于标记派生数据对应的源数据版本
+     */
+    public void save(Exchangeable exchangeable, DataInfo dataInfo, LocalDate tradingDay, String text, long lastModified)
+            throws IOException
+    {
+        checkReadOnly();
+        try(FileLocker fileLocker = getFileLock(exchangeable);
+                LockWrapper lockWrapper = getInternalLock(exchangeable); )
+        {
+            File edir = getExchangeableDir(exchangeable);
+            String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+            regularProvider.save(edir, dataFiles[0], text);
+            FileUtil.setLastModifiedTime(new File(edir, dataFiles[0]), Instant.ofEpochMilli(lastModified));
+            cachedDatas.remove(edir+"/"+dataFiles[0]);
+        }
+    }
+
+    /**
+     * 返回数据的修改时间, ZIP文件中的数据返回ZIP文件的修改时间.
+     *
+     * @return 0 如果数据不存在
+     */
+    public long getLastModified(Exchangeable exchangeable, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        try(FileLocker fileLocker = getFileLock(exchangeable);
+                LockWrapper lockWrapper = getInternalLock(exchangeable); )
+        {
+            File edir = getExchangeableDir(exchangeable);
+            for(String dataFile: getDataFileName(dataInfo, tradingDay)){
+                if ( regularProvider.exists(edir, dataFile)){
+                    return (new File(edir, dataFile)).lastModified();
+                }
+                if ( zipProvider.exists(edir, dataFile)){
+                    return (new File(edir, ((ZipDataProvider)zipProvider).getZipFileName(dataFile))).lastModified();
+                }
+            }
+            return 0;
+        }
+    }
+
     public synchronized LocalDate[] getTradingDays(Exchangeable exchangeable, LocalDate tradingDay, int count)
             throws IOException
     {
@@ -596,6 +724,82 @@ public class ExchangeableData {
         }
     }
 
+    /**
+     * 保存二进制数据
+     */
+    public void saveBinary(Exchangeable exchangeable, DataInfo dataInfo, LocalDate tradingDay, byte[] content)
+            throws IOException
+    {
+        checkReadOnly();
+        try(FileLocker fileLocker = getFileLock(exchangeable);
+                LockWrapper lockWrapper = getInternalLock(exchangeable); )
+        {
+            File edir = getExchangeableDir(exchangeable);
+            String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+            regularProvider.saveBytes(edir, dataFiles[0], content);
+        }
+    }
+
+    /**
+     * 加载二进制数据.
+     * <BR>普通文件以只读内存映射方式返回, ZIP文件中的数据会读入内存
+     */
+    public ByteBuffer loadBinary(Exchangeable exchangeable, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        try(FileLocker fileLocker = getFileLock(exchangeable);
+                LockWrapper lockWrapper = getInternalLock(exchangeable); )
+        {
+            File edir = getExchangeableDir(exchangeable);
+            for(String dataFile: getDataFileName(dataInfo, tradingDay)){
+                if ( regularProvider.exists(edir, dataFile)){
+                    return regularProvider.readBytes(edir, dataFile);
+                }
+                if ( zipProvider.exists(edir, dataFile)){
+                    return zipProvider.readBytes(edir, dataFile);
+                }
+            }
+            throw new IOException("Data not exists: "+edir+"/"+getDataFileName(dataInfo, tradingDay)[0]);
+        }
+    }
+
+    /**
+     * 列出某个数据分类的全部交易日, 包含普通文件和ZIP文件中的数据
+     */
+    public List<LocalDate> getDataTradingDays(Exchangeable exchangeable, DataInfo dataInfo)
+            throws IOException
+    {
+        try(FileLocker fileLocker = getFileLock(exchangeable);
+                LockWrapper lockWrapper = getInternalLock(exchangeable); )
+        {
+            File edir = getExchangeableDir(exchangeable);
+            TreeSet<LocalDate> result = new TreeSet<>();
+            String suffix = "."+dataInfo.name()+getExtName(dataInfo);
+            String[] files = edir.list();
+            if ( files!=null ) {
+                for(String f:files) {
+                    if ( f.endsWith(suffix) ) {
+                        addTradingDay(result, f);
+                    } else if ( f.endsWith(".zip") && (f.indexOf("."+dataInfo.name()+".")>0 || f.equals(dataInfo.name()+".zip")) ) {
+                        for(ZipEntry entry:ZipFileUtil.listEntries(new File(edir, f), suffix)) {
+                            if ( entry.getName().endsWith(suffix) ) {
+                                addTradingDay(result, entry.getName());
+                            }
+                        }
+                    }
+                }
+            }
+            return new ArrayList<>(result);
+        }
+    }
+
+    private static void addTradingDay(Collection<LocalDate> tradingDays, String dataFile) {
+        LocalDate tradingDay = DateUtil.str2localdate(dataFile.substring(0, dataFile.indexOf('.')));
+        if ( tradingDay!=null ) {
+            tradingDays.add(tradingDay);
+        }
+    }
+
     private boolean exists0(File edir, String dataFile) throws IOException
     {
         return  regularProvider.exists(edir, dataFile)
@@ -734,7 +938,7 @@ public class ExchangeableData {
         String[] files = subDir.list();
         List<String> filesToArchive = new LinkedList<>();
         for(String f:files){
-            if (f.endsWith(".csv")){
+            if (f.endsWith(EXT_NAME) || f.endsWith(EXT_NAME_BINARY)){
                 filesToArchive.add(f);
             }
         }
@@ -751,7 +955,7 @@ public class ExchangeableData {
         String[] files = edir.list();
         List<String> filesToArchive = new LinkedList<>();
         for(String f:files){
-            if (f.endsWith(".csv")){
+            if (f.endsWith(EXT_NAME) || f.endsWith(EXT_NAME_BINARY)){
                 filesToArchive.add(f);
             }
         }
@@ -841,10 +1045,14 @@ public class ExchangeableData {
     	if ( level!=PriceLevel.DAY && tradingDay!=null ){
             pathPrefix = DateUtil.date2str(tradingDay)+".";
     	}
-        result[0] = pathPrefix+dataInfo.name()+EXT_NAME;
+        result[0] = pathPrefix+dataInfo.name()+getExtName(dataInfo);
         return result;
     }
 
+    private static String getExtName(DataInfo dataInfo) {
+        return dataInfo.isBinary()?EXT_NAME_BINARY:EXT_NAME;
+    }
+
     private void checkReadOnly() throws IOException
     {
         if ( readOnly ){
@@ -3,6 +3,7 @@ package trader.common.exchangeable;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 import trader.common.exchangeable.ExchangeContract.MarketTimeSegment;
@@ -10,6 +11,7 @@ import trader.common.util.DateUtil;
 
 /**
  * 某个交易品种在某个具体交易日的交易时间信息
+ * <BR>创建后不再修改, 同一交易时间定义的品种在同一交易日共享交易时间数组, 由 Exchange 缓存
  */
 public class ExchangeableTradingTimes {
     static class MarketTimeSegmentInfo{
@@ -32,16 +34,26 @@ public class ExchangeableTradingTimes {
         }
     }
 
-    private Exchangeable exchangeable;
-    private LocalDate tradingDay;
-    private int totalTradingMillis;
-    private LocalDateTime[] marketTimes;
+    private final Exchangeable exchangeable;
+    private final LocalDate tradingDay;
+    private final int totalTradingMillis;
+    private final LocalDateTime[] marketTimes;
 
     /**
      * 不同市场分段的开始时间
      */
-    private List<MarketTimeSegmentInfo> segmentInfos;
-    private int[] marketTimeMillis;
+    private final List<MarketTimeSegmentInfo> segmentInfos;
+    private final int[] marketTimeMillis;
+    /**
+     * 每个交易时间小段的开始/结束时间(epoch毫秒), 以及开始时已经过的交易时间(毫秒)
+     */
+    private final long[] stageBeginEpochMillis;
+    private final long[] stageEndEpochMillis;
+    private final int[] stageTradingMillis;
+    /**
+     * 交易时间小段是否为市场分段(日市/夜市)的开始, 之前有集合竞价
+     */
+    private final boolean[] stageSegmentBegin;
 
     ExchangeableTradingTimes(Exchangeable exchangeable, LocalDate tradingDay, LocalDateTime[] marketTimes, List<MarketTimeSegmentInfo> segmentInfos){
         this.exchangeable = exchangeable;
@@ -49,14 +61,50 @@ public class ExchangeableTradingTimes {
         this.segmentInfos = segmentInfos;
         this.marketTimes = marketTimes;
         this.marketTimeMillis = new int[marketTimes.length/2];
-        totalTradingMillis = 0;
+        stageBeginEpochMillis = new long[marketTimes.length/2];
+        stageEndEpochMillis = new long[marketTimes.length/2];
+        stageTradingMillis = new int[marketTimes.length/2];
+        stageSegmentBegin = new boolean[marketTimes.length/2];
+        ZoneId zoneId = exchangeable.exchange().getZoneId();
+        int totalTradingMillis = 0;
         for(int i=0;i<marketTimes.length;i+=2) {
             LocalDateTime marketTimeStageBegin = marketTimes[i];
             LocalDateTime marketTimeStageEnd = marketTimes[i+1];
             Duration d = DateUtil.between(marketTimeStageBegin, marketTimeStageEnd);
             marketTimeMillis[i/2] = (int)d.getSeconds()*1000;
+            stageBeginEpochMillis[i/2] = DateUtil.localdatetime2long(zoneId, marketTimeStageBegin);
+            stageEndEpochMillis[i/2] = DateUtil.localdatetime2long(zoneId, marketTimeStageEnd);
+            stageTradingMillis[i/2] = totalTradingMillis;
+            stageSegmentBegin[i/2] = isSegmentBeginTime(marketTimeStageBegin);
             totalTradingMillis += (int)d.getSeconds()*1000;
         }
+        this.totalTradingMillis = totalTradingMillis;
+    }
+
+    /**
+     * 共享交易时间数据, 只替换品种
+     */
+    private ExchangeableTradingTimes(Exchangeable exchangeable, ExchangeableTradingTimes tradingTimes) {
+        this.exchangeable = exchangeable;
+        this.tradingDay = tradingTimes.tradingDay;
+        this.totalTradingMillis = tradingTimes.totalTradingMillis;
+        this.marketTimes = tradingTimes.marketTimes;
+        this.segmentInfos = tradingTimes.segmentInfos;
+        this.marketTimeMillis = tradingTimes.marketTimeMillis;
+        this.stageBeginEpochMillis = tradingTimes.stageBeginEpochMillis;
+        this.stageEndEpochMillis = tradingTimes.stageEndEpochMillis;
+        this.stageTradingMillis = tradingTimes.stageTradingMillis;
+        this.stageSegmentBegin = tradingTimes.stageSegmentBegin;
+    }
+
+    /**
+     * 返回同样交易时间的另一个品种的交易时间信息
+     */
+    ExchangeableTradingTimes forExchangeable(Exchangeable exchangeable) {
+        if ( exchangeable.equals(this.exchangeable) ) {
+            return this;
+        }
+        return new ExchangeableTradingTimes(exchangeable, this);
     }
 
     public Exchangeable getExchangeable() {
@@ -91,7 +139,7 @@ public class ExchangeableTradingTimes {
     }
 
     /**
-     * 交易时间段
+     * 交易时间段, 多个品种共享, 调用者不能修改
      */
     public LocalDateTime[] getMarketTimes() {
         return marketTimes;
@@ -147,6 +195,60 @@ public class ExchangeableTradingTimes {
         return result;
     }
 
+    /**
+     * 返回开市以来的时间(毫秒), 与 getTradingTime(LocalDateTime) 相同, 但是只做整数比较
+     */
+    public int getTradingTime(long epochMillis) {
+        int stageCount = stageBeginEpochMillis.length;
+        if ( epochMillis<stageBeginEpochMillis[0] || epochMillis>=stageEndEpochMillis[stageCount-1]+1000 ) {
+            return -1;
+        }
+        for(int i=0;i<stageCount;i++) {
+            if ( epochMillis<stageBeginEpochMillis[i]+1000 ) {
+                //休市期间, 以及时间段开始的第一秒
+                return stageTradingMillis[i];
+            }
+            if ( epochMillis<stageEndEpochMillis[i]+1000 ) {
+                return stageTradingMillis[i]+(int)(epochMillis-stageBeginEpochMillis[i]);
+            }
+        }
+        return totalTradingMillis;
+    }
+
+    /**
+     * 时间级别KBar的位置, 与 TimeSeriesLoader.getBarIndex 一致: 时间段结束时刻和之后的休市期间算在前一个KBar.
+     * <BR>只需要比较几个交易时间小段的边界, 所有级别和品种都可以共用.
+     *
+     * @return -1 如果未开市, 收市后返回最后一个KBar
+     */
+    public int getBarIndex(long epochMillis, int barMillis) {
+        if ( epochMillis<stageBeginEpochMillis[0] ) {
+            return -1;
+        }
+        for(int i=0;i<stageBeginEpochMillis.length;i++) {
+            if ( epochMillis<stageBeginEpochMillis[i] ) {
+                return (stageTradingMillis[i]-1)/barMillis;
+            }
+            if ( epochMillis<stageEndEpochMillis[i] ) {
+                return (stageTradingMillis[i]+(int)(epochMillis-stageBeginEpochMillis[i]))/barMillis;
+            }
+        }
+        return (totalTradingMillis-1)/barMillis;
+    }
+
+    /**
+     * 开市以来的交易时间对应的市场时间, 正好是时间段结束时返回下一个时间段的开始时间
+     */
+    public LocalDateTime getMarketTime(int tradingMillis) {
+        for(int i=0;i<stageTradingMillis.length;i++) {
+            int stageMillis = tradingMillis-stageTradingMillis[i];
+            if ( stageMillis<marketTimeMillis[i] ) {
+                return marketTimes[i*2].plusNanos(stageMillis*1000000L);
+            }
+        }
+        return getMarketCloseTime();
+    }
+
     /**
      * 返回当前的市场分段(日市/夜市)
      */
@@ -228,6 +330,32 @@ public class ExchangeableTradingTimes {
         return MarketTimeStage.MarketClose;
     }
 
+    /**
+     * 市场时间段, 与 getTimeStage(LocalDateTime) 相同, 但是只做整数比较, 用于行情TICK的快速处理
+     */
+    public MarketTimeStage getTimeStage(long epochMillis) {
+        for(int i=0;i<stageBeginEpochMillis.length;i++) {
+            long frameBegin = stageBeginEpochMillis[i];
+            if ( stageSegmentBegin[i] ) {
+                long auctionTime = frameBegin-5*60*1000;
+                long marketBeforeOpenTime = auctionTime-55*60*1000;
+                if ( epochMillis<marketBeforeOpenTime ) {
+                    return MarketTimeStage.MarketClose;
+                } else if ( epochMillis<auctionTime ) {
+                    return MarketTimeStage.BeforeMarketOpen;
+                } else if ( epochMillis<frameBegin ) {
+                    return MarketTimeStage.AggregateAuction;
+                }
+            } else if ( epochMillis<frameBegin ) {
+                return MarketTimeStage.MarketBreak;
+            }
+            if ( epochMillis<stageEndEpochMillis[i]+1000 ) {
+                return MarketTimeStage.MarketOpen;
+            }
+        }
+        return MarketTimeStage.MarketClose;
+    }
+
     private boolean isSegmentBeginTime(LocalDateTime time) {
         for(MarketTimeSegmentInfo info:segmentInfos) {
             if ( info.marketTimes[0].equals(time)) {
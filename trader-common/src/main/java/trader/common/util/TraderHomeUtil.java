@@ -3,12 +3,14 @@ package trader.common.util;
 import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.util.Map;
 
 import com.google.gson.JsonObject;
 
 import net.common.util.PlatformUtil;
 import trader.common.config.ConfigUtil;
 import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.concurrent.AffinityThreadFactory;
 
 public class TraderHomeUtil {
 
@@ -69,6 +71,10 @@ public class TraderHomeUtil {
         json.addProperty("configName", System.getProperty(PROP_TRADER_CONFIG_NAME));
         json.addProperty("configFile", System.getProperty(PROP_TRADER_CONFIG_FILE));
         json.addProperty("startTime", rtBean.getStartTime());
+        Map<String, String> threadPlacements = AffinityThreadFactory.getPlacements();
+        if ( !threadPlacements.isEmpty() ) {
+            json.add("threadAffinity", JsonUtil.object2json(threadPlacements));
+        }
         return json;
     }
 
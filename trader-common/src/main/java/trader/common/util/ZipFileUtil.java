@@ -115,6 +115,12 @@ public class ZipFileUtil {
 
     public static String archiveRead(File zip, String pathInZip)
             throws IOException
+    {
+        return new String(archiveReadBytes(zip, pathInZip),"UTF-8");
+    }
+
+    public static byte[] archiveReadBytes(File zip, String pathInZip)
+            throws IOException
     {
         try(ZipInputStream zis = new ZipInputStream(new FileInputStream(zip))){
             ZipEntry e=null;
@@ -132,7 +138,7 @@ public class ZipFileUtil {
             while( (len=zis.read(buffer))>0){
                 baos.write(buffer, 0, len);
             }
-            return new String(baos.toByteArray(),"UTF-8");
+            return baos.toByteArray();
         }
     }
 
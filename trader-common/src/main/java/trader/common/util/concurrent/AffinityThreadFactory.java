@@ -0,0 +1,134 @@
+package trader.common.util.concurrent;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.util.StringUtil;
+import trader.common.util.SystemUtil;
+
+/**
+ * 命名并绑定CPU的线程工厂, 用于Disruptor的消费线程.
+ * <BR>线程启动时从 /proc/thread-self 取得系统线程号, 调用 taskset 绑定到配置的CPU集合, 只支持Linux.
+ * <BR>CPU集合格式与taskset相同, 例如 2, 2,3 或 4-7; 为空时不绑定. BusySpin等待策略只有在绑定独占CPU时才有意义.
+ */
+public class AffinityThreadFactory implements ThreadFactory {
+    private static final Logger logger = LoggerFactory.getLogger(AffinityThreadFactory.class);
+
+    public static final String PLACEMENT_UNPINNED = "unpinned";
+
+    /**
+     * 线程名称 -> 绑定的CPU集合
+     */
+    private static final Map<String, String> placements = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final String cpuSet;
+    private final int priority;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    public AffinityThreadFactory(String name, String cpuSet) {
+        this(name, cpuSet, Thread.NORM_PRIORITY);
+    }
+
+    public AffinityThreadFactory(String name, String cpuSet, int priority) {
+        this.name = name;
+        this.cpuSet = cpuSet;
+        this.priority = priority;
+    }
+
+    public String getCpuSet() {
+        return cpuSet;
+    }
+
+    /**
+     * 第一个线程使用工厂名称, 之后的线程加序号
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+        int threadIndex = threadNumber.getAndIncrement();
+        String threadName = threadIndex==0?name:(name+"-"+threadIndex);
+        Thread thread = new Thread(()->{
+            pinCurrentThread(cpuSet);
+            r.run();
+        }, threadName);
+        thread.setDaemon(true);
+        thread.setPriority(priority);
+        return thread;
+    }
+
+    /**
+     * 线程结束后删除本工厂创建的线程的CPU位置记录
+     */
+    public void release() {
+        int count = threadNumber.get();
+        for(int i=0;i<count;i++) {
+            placements.remove(i==0?name:(name+"-"+i));
+        }
+    }
+
+    /**
+     * 绑定当前线程到CPU集合, 结果记录在placements中
+     *
+     * @return true 绑定成功
+     */
+    public static boolean pinCurrentThread(String cpuSet) {
+        String threadName = Thread.currentThread().getName();
+        if ( StringUtil.isEmpty(cpuSet) ) {
+            placements.put(threadName, PLACEMENT_UNPINNED);
+            return false;
+        }
+        try {
+            long tid = getCurrentTid();
+            AtomicInteger exitValue = new AtomicInteger();
+            List<String> output = SystemUtil.execute(new String[] {"taskset", "-p", "-c", cpuSet, ""+tid}, exitValue);
+            if ( exitValue.get()==0 ) {
+                placements.put(threadName, cpuSet);
+                logger.info("Thread "+threadName+" tid "+tid+" is pinned to CPU "+cpuSet);
+                return true;
+            }
+            logger.error("Pin thread "+threadName+" tid "+tid+" to CPU "+cpuSet+" failed: "+output);
+        }catch(Throwable t) {
+            logger.error("Pin thread "+threadName+" to CPU "+cpuSet+" failed: "+t);
+        }
+        placements.put(threadName, PLACEMENT_UNPINNED);
+        return false;
+    }
+
+    /**
+     * 当前线程的系统线程号, /proc/thread-self 指向 PID/task/TID
+     */
+    public static long getCurrentTid() throws Exception {
+        return Long.parseLong(Files.readSymbolicLink(Paths.get("/proc/thread-self")).getFileName().toString());
+    }
+
+    /**
+     * 按序号从分号分隔的CPU集合列表中选择, 例如 "2;3;4-5", 序号超出时循环使用
+     */
+    public static String selectCpuSet(String cpuSets, int index) {
+        if ( StringUtil.isEmpty(cpuSets) ) {
+            return null;
+        }
+        String[] parts = StringUtil.split(cpuSets, ";");
+        if ( parts.length==0 ) {
+            return null;
+        }
+        return parts[index%parts.length];
+    }
+
+    /**
+     * 所有由本类创建或者绑定的线程的CPU位置
+     */
+    public static Map<String, String> getPlacements(){
+        return new TreeMap<>(placements);
+    }
+
+}
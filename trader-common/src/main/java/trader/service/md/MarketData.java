@@ -140,6 +140,21 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
      */
     public int mktTime;
 
+    /**
+     * 本地接收时间, System.nanoTime(), 用于延迟统计. 0表示未知
+     */
+    public long recvNanos;
+
+    /**
+     * RingBuffer上预分配并原地更新的对象, 事件处理完成后会被覆盖
+     */
+    private boolean pooled;
+
+    /**
+     * 复用对象在当前事件中的副本, 由retain()创建, 所有持有者共享
+     */
+    private MarketData retained;
+
     public abstract String getCsvHead();
 
     public abstract void toCsvRow(StringBuilder rowBuf);
@@ -169,26 +184,91 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
         return FormatUtil.getDecimalFormat("###########0.0#").format(price);
     }
 
+    /**
+     * 标记为RingBuffer上复用的对象, 每次原地更新后调用, 丢弃上一个事件的副本
+     */
+    public void recycle() {
+        pooled = true;
+        retained = null;
+    }
+
+    /**
+     * 在onMarketData返回后还需要持有TICK时调用, 返回可以长期保留的对象.
+     * <BR>复用对象在每个事件中最多复制一次; 其它对象直接返回自身
+     */
+    public MarketData retain() {
+        if ( !pooled ) {
+            return this;
+        }
+        if ( retained==null ) {
+            retained = clone();
+        }
+        return retained;
+    }
+
+    /**
+     * 复制全部数据到已有对象, 行情深度数组长度相同时复用
+     */
+    public void copyTo(MarketData target) {
+        cloneImpl(target);
+    }
+
+    /**
+     * 复制全部数据到目标对象, 深度复制行情深度数组.
+     * <BR>行情对象可能是RingBuffer上预分配并原地更新的对象, 需要保留行情对象的调用方, 必须使用retain()或clone()得到的副本.
+     */
     protected void cloneImpl(MarketData marketDataToClone){
         marketDataToClone.producerId = producerId;
+        marketDataToClone.recvNanos = recvNanos;
+        marketDataToClone.tradingDay = tradingDay;
         marketDataToClone.instrumentId = instrumentId;
         marketDataToClone.volume = volume;
         marketDataToClone.turnover = turnover;
         marketDataToClone.openInterest = openInterest;
         marketDataToClone.lastPrice = lastPrice;
         marketDataToClone.updateTime = updateTime;
+        marketDataToClone.updateTimestamp = updateTimestamp;
         marketDataToClone.preClosePrice = preClosePrice;
         marketDataToClone.openPrice = openPrice;
         marketDataToClone.highestPrice = highestPrice;
         marketDataToClone.lowestPrice = lowestPrice;
         marketDataToClone.averagePrice = averagePrice;
+        marketDataToClone.upperLimitPrice = upperLimitPrice;
+        marketDataToClone.lowerLimitPrice = lowerLimitPrice;
         marketDataToClone.depth = depth;
-        marketDataToClone.bidPrices = bidPrices;
-        marketDataToClone.bidVolumes = bidVolumes;
-        marketDataToClone.bidCounts = bidCounts;
-        marketDataToClone.askPrices = askPrices;
-        marketDataToClone.askVolumes = askVolumes;
-        marketDataToClone.askCounts = askCounts;
+        marketDataToClone.bidPrices = copyOf(bidPrices, marketDataToClone.bidPrices);
+        marketDataToClone.bidVolumes = copyOf(bidVolumes, marketDataToClone.bidVolumes);
+        marketDataToClone.bidCounts = copyOf(bidCounts, marketDataToClone.bidCounts);
+        marketDataToClone.askPrices = copyOf(askPrices, marketDataToClone.askPrices);
+        marketDataToClone.askVolumes = copyOf(askVolumes, marketDataToClone.askVolumes);
+        marketDataToClone.askCounts = copyOf(askCounts, marketDataToClone.askCounts);
+        marketDataToClone.mktStage = mktStage;
+        marketDataToClone.mktTime = mktTime;
+    }
+
+    /**
+     * 复制数组, 如果长度相同则复用目标数组
+     */
+    protected static long[] copyOf(long[] src, long[] target) {
+        if ( src==null ) {
+            return null;
+        }
+        if ( target==null || target.length!=src.length ) {
+            return src.clone();
+        }
+        System.arraycopy(src, 0, target, 0, src.length);
+        return target;
+    }
+
+    protected static int[] copyOf(int[] src, int[] target) {
+        if ( src==null ) {
+            return null;
+        }
+        if ( target==null || target.length!=src.length ) {
+            return src.clone();
+        }
+        System.arraycopy(src, 0, target, 0, src.length);
+        return target;
     }
 
     @Override
@@ -256,9 +336,12 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
         return "MD["+instrumentId+" "+updateTime+" "+PriceUtil.long2str(lastPrice)+" v "+volume+"]";
     }
 
+    /**
+     * 根据updateTimestamp计算市场时间段和开市以来的时间, 只做整数比较
+     */
     public void postProcess(ExchangeableTradingTimes tradingTimes) {
-        mktStage = tradingTimes.getTimeStage(updateTime);
-        mktTime = tradingTimes.getTradingTime(updateTime);
+        mktStage = tradingTimes.getTimeStage(updateTimestamp);
+        mktTime = tradingTimes.getTradingTime(updateTimestamp);
     }
 
 }
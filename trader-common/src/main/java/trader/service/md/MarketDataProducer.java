@@ -67,4 +67,23 @@ public interface MarketDataProducer<T> extends JsonEnabled {
      * 从原始行情事件对象创建MarketData对象
      */
     public MarketData createMarketData(T rawMarketData, LocalDate actionDay);
+
+    /**
+     * 从原始行情事件对象返回合约, 用于在转换前确定事件分片.
+     * <BR>缺省实现为创建MarketData后取合约, 实现类应直接从合约字段返回, 避免创建MarketData
+     */
+    public default Exchangeable getExchangeable(T rawMarketData) {
+        return createMarketData(rawMarketData, null).instrumentId;
+    }
+
+    /**
+     * 从原始行情事件对象原地更新已有的MarketData对象, 用于RingBuffer上的预分配对象复用.
+     * <BR>缺省实现为重新创建
+     *
+     * @param reuse 可复用的对象, 可能为null或者类型不匹配
+     * @return 更新后的对象, 可能与reuse不同
+     */
+    public default MarketData updateMarketData(MarketData reuse, T rawMarketData, LocalDate actionDay) {
+        return createMarketData(rawMarketData, actionDay);
+    }
 }
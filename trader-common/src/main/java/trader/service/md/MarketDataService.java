@@ -55,6 +55,14 @@ public interface MarketDataService extends Lifecycle {
      */
     public MarketData getLastData(Exchangeable e);
 
+    /**
+     * 最后行情数据, 复制到reuse中, 避免热路径上每次创建副本.
+     * <BR>reuse为null或类型不匹配时返回新对象; 缺省实现调用getLastData(e)
+     */
+    public default MarketData getLastData(Exchangeable e, MarketData reuse) {
+        return getLastData(e);
+    }
+
     /**
      * 增加主动订阅品种
      */
@@ -0,0 +1,374 @@
+package trader.service.md;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+
+/**
+ * 列存储的二进制TICK数据, 每个交易日一个文件.
+ * <BR>文件结构: 定长文件头 + 分钟时间索引 + 按列连续存放的定长数据(价格为long, 数量为int, 时间为EpochMillis).
+ * <BR>可以直接在内存映射的ByteBuffer上按列扫描, 只有在调用createMarketData时才会创建MarketData对象.
+ */
+public class TickColumns {
+
+    public static final int MAGIC = 0x54434B31; //TCK1
+    public static final short VERSION = 1;
+    public static final int MAX_DEPTH = 5;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final long MINUTE_MILLIS = 60*1000;
+    private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
+
+    /**
+     * long列, 后面依次为 BidPrice[depth], AskPrice[depth]
+     */
+    private static final int COL_TIMESTAMP = 0;
+    private static final int COL_LAST_PRICE = 1;
+    private static final int COL_TURNOVER = 2;
+    private static final int COL_OPENINT = 3;
+    private static final int COL_AVERAGE_PRICE = 4;
+    private static final int COL_OPEN_PRICE = 5;
+    private static final int COL_HIGHEST_PRICE = 6;
+    private static final int COL_LOWEST_PRICE = 7;
+    private static final int COL_PRECLOSE_PRICE = 8;
+    private static final int COL_UPPERLIMIT_PRICE = 9;
+    private static final int COL_LOWERLIMIT_PRICE = 10;
+    private static final int LONG_COLUMNS = 11;
+
+    /**
+     * int列, 后面依次为 BidVolume[depth], AskVolume[depth]
+     */
+    private static final int COL_VOLUME = 0;
+    private static final int INT_COLUMNS = 1;
+
+    private final ByteBuffer buf;
+    private final int tickCount;
+    private final int depth;
+    private final LocalDate tradingDay;
+    private final String tradingDayStr;
+    private final int indexCount;
+    private final long indexBeginMillis;
+    private final int longColumnsOffset;
+    private final int intColumnsOffset;
+
+    private TickColumns(ByteBuffer buf) {
+        this.buf = buf;
+        if ( buf.getInt(0)!=MAGIC ) {
+            throw new IllegalArgumentException("Invalid tick columns magic: "+Integer.toHexString(buf.getInt(0)));
+        }
+        if ( buf.getShort(4)!=VERSION ) {
+            throw new IllegalArgumentException("Unsupported tick columns version: "+buf.getShort(4));
+        }
+        depth = buf.getShort(6);
+        tickCount = buf.getInt(8);
+        int day = buf.getInt(12);
+        tradingDay = LocalDate.of(day/10000, (day/100)%100, day%100);
+        tradingDayStr = DateUtil.date2str(tradingDay);
+        indexCount = buf.getInt(16);
+        indexBeginMillis = buf.getLong(24);
+        longColumnsOffset = columnsOffset(indexCount);
+        intColumnsOffset = longColumnsOffset + (LONG_COLUMNS+2*depth)*8*tickCount;
+    }
+
+    /**
+     * 从ByteBuffer加载, ByteBuffer可以是内存映射文件
+     */
+    public static TickColumns wrap(ByteBuffer buf) {
+        return new TickColumns(buf.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public int size() {
+        return tickCount;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public LocalDate getTradingDay() {
+        return tradingDay;
+    }
+
+    public long getTimestamp(int tickIdx) {
+        return getLong(COL_TIMESTAMP, tickIdx);
+    }
+
+    public long getLastPrice(int tickIdx) {
+        return getLong(COL_LAST_PRICE, tickIdx);
+    }
+
+    public long getTurnover(int tickIdx) {
+        return getLong(COL_TURNOVER, tickIdx);
+    }
+
+    public long getOpenInterest(int tickIdx) {
+        return getLong(COL_OPENINT, tickIdx);
+    }
+
+    public long getAveragePrice(int tickIdx) {
+        return getLong(COL_AVERAGE_PRICE, tickIdx);
+    }
+
+    public long getOpenPrice(int tickIdx) {
+        return getLong(COL_OPEN_PRICE, tickIdx);
+    }
+
+    public long getHighestPrice(int tickIdx) {
+        return getLong(COL_HIGHEST_PRICE, tickIdx);
+    }
+
+    public long getLowestPrice(int tickIdx) {
+        return getLong(COL_LOWEST_PRICE, tickIdx);
+    }
+
+    public long getPreClosePrice(int tickIdx) {
+        return getLong(COL_PRECLOSE_PRICE, tickIdx);
+    }
+
+    public long getUpperLimitPrice(int tickIdx) {
+        return getLong(COL_UPPERLIMIT_PRICE, tickIdx);
+    }
+
+    public long getLowerLimitPrice(int tickIdx) {
+        return getLong(COL_LOWERLIMIT_PRICE, tickIdx);
+    }
+
+    public long getBidPrice(int tickIdx, int level) {
+        return getLong(LONG_COLUMNS+level, tickIdx);
+    }
+
+    public long getAskPrice(int tickIdx, int level) {
+        return getLong(LONG_COLUMNS+depth+level, tickIdx);
+    }
+
+    public int getVolume(int tickIdx) {
+        return getInt(COL_VOLUME, tickIdx);
+    }
+
+    public int getBidVolume(int tickIdx, int level) {
+        return getInt(INT_COLUMNS+level, tickIdx);
+    }
+
+    public int getAskVolume(int tickIdx, int level) {
+        return getInt(INT_COLUMNS+depth+level, tickIdx);
+    }
+
+    /**
+     * 返回第一个时间>=epochMillis的TICK位置, 如果不存在返回size()
+     */
+    public int seek(long epochMillis) {
+        int begin = 0, end = tickCount;
+        if ( indexCount>0 ) {
+            long minute = (epochMillis-indexBeginMillis)/MINUTE_MILLIS;
+            if ( epochMillis<indexBeginMillis ) {
+                return 0;
+            }
+            if ( minute<indexCount-1 ) {
+                begin = getIndexEntry((int)minute);
+                end = getIndexEntry((int)minute+1);
+            } else {
+                begin = getIndexEntry(indexCount-1);
+            }
+        }
+        //在分钟范围内二分查找
+        int lo = begin, hi = end;
+        while(lo<hi) {
+            int mid = (lo+hi)>>>1;
+            if ( getTimestamp(mid)<epochMillis ) {
+                lo = mid+1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 创建第tickIdx个TICK的MarketData对象
+     */
+    public MarketData createMarketData(int tickIdx, Exchangeable instrument, String producerId) {
+        ColumnMarketData md = new ColumnMarketData();
+        md.producerId = producerId;
+        md.instrumentId = instrument;
+        md.tradingDay = tradingDayStr;
+        md.updateTimestamp = getTimestamp(tickIdx);
+        md.updateTime = DateUtil.long2datetime(CFFEX_ZONE_ID, md.updateTimestamp);
+        md.lastPrice = getLastPrice(tickIdx);
+        md.volume = getVolume(tickIdx);
+        md.turnover = getTurnover(tickIdx);
+        md.openInterest = getOpenInterest(tickIdx);
+        md.averagePrice = getAveragePrice(tickIdx);
+        md.openPrice = getOpenPrice(tickIdx);
+        md.highestPrice = getHighestPrice(tickIdx);
+        md.lowestPrice = getLowestPrice(tickIdx);
+        md.preClosePrice = getPreClosePrice(tickIdx);
+        md.upperLimitPrice = getUpperLimitPrice(tickIdx);
+        md.lowerLimitPrice = getLowerLimitPrice(tickIdx);
+        md.depth = depth;
+        md.bidPrices = new long[depth];
+        md.bidVolumes = new int[depth];
+        md.askPrices = new long[depth];
+        md.askVolumes = new int[depth];
+        for(int i=0;i<depth;i++) {
+            md.bidPrices[i] = getBidPrice(tickIdx, i);
+            md.bidVolumes[i] = getBidVolume(tickIdx, i);
+            md.askPrices[i] = getAskPrice(tickIdx, i);
+            md.askVolumes[i] = getAskVolume(tickIdx, i);
+        }
+        return md;
+    }
+
+    /**
+     * 转换全部TICK数据为MarketData列表
+     */
+    public List<MarketData> toMarketDatas(Exchangeable instrument, String producerId){
+        List<MarketData> result = new ArrayList<>(tickCount);
+        for(int i=0;i<tickCount;i++) {
+            result.add(createMarketData(i, instrument, producerId));
+        }
+        return result;
+    }
+
+    /**
+     * 将一个交易日的TICK数据编码为列存储格式, TICK数据需要按时间排序
+     */
+    public static byte[] encode(LocalDate tradingDay, List<MarketData> ticks) {
+        int tickCount = ticks.size();
+        int depth = 0;
+        for(MarketData md:ticks) {
+            depth = Math.max(depth, Math.min(MAX_DEPTH, md.depth));
+        }
+        long indexBeginMillis = 0;
+        int indexCount = 0;
+        if ( tickCount>0 ) {
+            long firstTimestamp = ticks.get(0).updateTimestamp;
+            long lastTimestamp = ticks.get(tickCount-1).updateTimestamp;
+            indexBeginMillis = firstTimestamp - firstTimestamp%MINUTE_MILLIS;
+            indexCount = (int)((lastTimestamp-indexBeginMillis)/MINUTE_MILLIS)+1;
+        }
+        int longColumnsOffset = columnsOffset(indexCount);
+        int longColumns = LONG_COLUMNS+2*depth;
+        int intColumns = INT_COLUMNS+2*depth;
+        int intColumnsOffset = longColumnsOffset + longColumns*8*tickCount;
+        byte[] result = new byte[intColumnsOffset + intColumns*4*tickCount];
+        ByteBuffer buf = ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.putInt(0, MAGIC);
+        buf.putShort(4, VERSION);
+        buf.putShort(6, (short)depth);
+        buf.putInt(8, tickCount);
+        buf.putInt(12, tradingDay.getYear()*10000+tradingDay.getMonthValue()*100+tradingDay.getDayOfMonth());
+        buf.putInt(16, indexCount);
+        buf.putLong(24, indexBeginMillis);
+        if ( tickCount>0 ) {
+            buf.putLong(32, ticks.get(tickCount-1).updateTimestamp);
+        }
+        //分钟索引: 每分钟第一个TICK的位置
+        int tickIdx = 0;
+        for(int i=0;i<indexCount;i++) {
+            long minuteBegin = indexBeginMillis+i*MINUTE_MILLIS;
+            while(tickIdx<tickCount && ticks.get(tickIdx).updateTimestamp<minuteBegin) {
+                tickIdx++;
+            }
+            int entryOffset = HEADER_SIZE+i*INDEX_ENTRY_SIZE;
+            buf.putLong(entryOffset, minuteBegin);
+            buf.putInt(entryOffset+8, tickIdx);
+        }
+        for(int i=0;i<tickCount;i++) {
+            MarketData md = ticks.get(i);
+            putLong(buf, longColumnsOffset, tickCount, COL_TIMESTAMP, i, md.updateTimestamp);
+            putLong(buf, longColumnsOffset, tickCount, COL_LAST_PRICE, i, md.lastPrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_TURNOVER, i, md.turnover);
+            putLong(buf, longColumnsOffset, tickCount, COL_OPENINT, i, md.openInterest);
+            putLong(buf, longColumnsOffset, tickCount, COL_AVERAGE_PRICE, i, md.averagePrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_OPEN_PRICE, i, md.openPrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_HIGHEST_PRICE, i, md.highestPrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_LOWEST_PRICE, i, md.lowestPrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_PRECLOSE_PRICE, i, md.preClosePrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_UPPERLIMIT_PRICE, i, md.upperLimitPrice);
+            putLong(buf, longColumnsOffset, tickCount, COL_LOWERLIMIT_PRICE, i, md.lowerLimitPrice);
+            buf.putInt(intColumnsOffset+(COL_VOLUME*tickCount+i)*4, (int)md.volume);
+            for(int j=0;j<depth && j<md.depth;j++) {
+                putLong(buf, longColumnsOffset, tickCount, LONG_COLUMNS+j, i, md.bidPrices[j]);
+                putLong(buf, longColumnsOffset, tickCount, LONG_COLUMNS+depth+j, i, md.askPrices[j]);
+                buf.putInt(intColumnsOffset+((INT_COLUMNS+j)*tickCount+i)*4, md.bidVolumes[j]);
+                buf.putInt(intColumnsOffset+((INT_COLUMNS+depth+j)*tickCount+i)*4, md.askVolumes[j]);
+            }
+        }
+        return result;
+    }
+
+    private long getLong(int column, int tickIdx) {
+        return buf.getLong(longColumnsOffset+(column*tickCount+tickIdx)*8);
+    }
+
+    private int getInt(int column, int tickIdx) {
+        return buf.getInt(intColumnsOffset+(column*tickCount+tickIdx)*4);
+    }
+
+    private int getIndexEntry(int minute) {
+        return buf.getInt(HEADER_SIZE+minute*INDEX_ENTRY_SIZE+8);
+    }
+
+    private static void putLong(ByteBuffer buf, int longColumnsOffset, int tickCount, int column, int tickIdx, long value) {
+        buf.putLong(longColumnsOffset+(column*tickCount+tickIdx)*8, value);
+    }
+
+    /**
+     * 数据列的起始位置, 按8字节对齐
+     */
+    private static int columnsOffset(int indexCount) {
+        int offset = HEADER_SIZE+indexCount*INDEX_ENTRY_SIZE;
+        return (offset+7)&~7;
+    }
+
+    /**
+     * 从列存储数据创建的行情对象
+     */
+    private static class ColumnMarketData extends MarketData {
+
+        private static final String CSV_HEAD = "UpdateTimestamp,LastPrice,Volume,Turnover,OpenInterest,AveragePrice,OpenPrice,HighestPrice,LowestPrice,PreClosePrice,UpperLimitPrice,LowerLimitPrice,BidPrice1,BidVolume1,AskPrice1,AskVolume1";
+
+        @Override
+        public String getCsvHead() {
+            return CSV_HEAD;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+            rowBuf.append(updateTimestamp)
+                .append(",").append(PriceUtil.long2str(lastPrice))
+                .append(",").append(volume)
+                .append(",").append(PriceUtil.long2str(turnover))
+                .append(",").append(openInterest)
+                .append(",").append(PriceUtil.long2str(averagePrice))
+                .append(",").append(PriceUtil.long2str(openPrice))
+                .append(",").append(PriceUtil.long2str(highestPrice))
+                .append(",").append(PriceUtil.long2str(lowestPrice))
+                .append(",").append(PriceUtil.long2str(preClosePrice))
+                .append(",").append(PriceUtil.long2str(upperLimitPrice))
+                .append(",").append(PriceUtil.long2str(lowerLimitPrice))
+                .append(",").append(PriceUtil.long2str(lastBidPrice()))
+                .append(",").append(depth>0?bidVolumes[0]:0)
+                .append(",").append(PriceUtil.long2str(lastAskPrice()))
+                .append(",").append(depth>0?askVolumes[0]:0);
+        }
+
+        @Override
+        public MarketData clone() {
+            ColumnMarketData obj = new ColumnMarketData();
+            cloneImpl(obj);
+            return obj;
+        }
+    }
+
+}
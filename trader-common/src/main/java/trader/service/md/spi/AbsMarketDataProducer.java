@@ -1,5 +1,6 @@
 package trader.service.md.spi;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -136,9 +137,22 @@ public abstract class AbsMarketDataProducer<T> implements AutoCloseable, MarketD
 
     protected void notifyData(MarketData md) {
         tickCount++;
+        if ( md.recvNanos==0 ) {
+            md.recvNanos = System.nanoTime();
+        }
         listener.onMarketData(md);
     }
 
+    /**
+     * 通知原始行情数据, 延迟到事件队列上原地转换, 避免每个TICK创建新对象
+     *
+     * @param recvNanos 实时行情回调的接收时间, 用于延迟统计
+     */
+    protected void notifyData(T rawMarketData, LocalDate tradingDay, long recvNanos) {
+        tickCount++;
+        listener.onMarketData(this, rawMarketData, tradingDay, recvNanos);
+    }
+
     protected static String decrypt(String str) {
         String result = str;
         if ( EncryptionUtil.isEncryptedData(str) ) {
@@ -1,11 +1,23 @@
 package trader.service.md.spi;
 
+import java.time.LocalDate;
+
 import trader.service.ServiceConstants.ConnState;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataProducer;
 
 public interface MarketDataProducerListener {
 
     public void onStateChanged(AbsMarketDataProducer producer, ConnState lastStatus);
 
     public void onMarketData(MarketData md);
+
+    /**
+     * 原始行情数据通知, 由监听者决定何时以及在哪个对象上转换为MarketData
+     */
+    public default <T> void onMarketData(MarketDataProducer<T> producer, T rawMarketData, LocalDate tradingDay, long recvNanos) {
+        MarketData md = producer.createMarketData(rawMarketData, tradingDay);
+        md.recvNanos = recvNanos;
+        onMarketData(md);
+    }
 }
@@ -0,0 +1,158 @@
+package trader.service.stats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.util.JsonEnabled;
+
+/**
+ * 对数-线性分桶的延迟直方图, 记录时无锁无分配.
+ * <BR>每个2的幂区间分为16个桶, 相对误差约6%, 单位为纳秒.
+ */
+public class LatencyHistogram implements JsonEnabled {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1<<SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT/2;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63-SUB_BUCKET_BITS)*SUB_BUCKET_HALF;
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 返回全局命名的直方图, 不存在则创建
+     */
+    public static LatencyHistogram getInstance(String name) {
+        return histograms.computeIfAbsent(name, (String n)->{ return new LatencyHistogram(n); });
+    }
+
+    public static Collection<LatencyHistogram> getAll() {
+        return new ArrayList<>(histograms.values());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 记录一个延迟值
+     */
+    public void record(long value) {
+        if ( value<0 ) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        long max = maxValue.get();
+        while( value>max && !maxValue.compareAndSet(max, value) ) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * 记录从startNanos(System.nanoTime())到现在的延迟, startNanos为0时忽略
+     */
+    public void recordSince(long startNanos) {
+        if ( startNanos!=0 ) {
+            record(System.nanoTime()-startNanos);
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public long getMean() {
+        long count = totalCount.get();
+        if ( count==0 ) {
+            return 0;
+        }
+        return totalValue.get()/count;
+    }
+
+    /**
+     * 返回百分位对应的值(桶的上限)
+     *
+     * @param percentile 0-100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            count += counts.get(i);
+        }
+        if ( count==0 ) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long)Math.ceil(count*Math.min(100, percentile)/100.0));
+        long accumulated = 0;
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            accumulated += counts.get(i);
+            if ( accumulated>=countAtPercentile ) {
+                return Math.min(bucketUpperValue(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public void reset() {
+        for(int i=0;i<BUCKET_COUNT;i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", name);
+        json.addProperty("count", getCount());
+        json.addProperty("mean", getMean());
+        json.addProperty("p50", getValueAtPercentile(50));
+        json.addProperty("p90", getValueAtPercentile(90));
+        json.addProperty("p99", getValueAtPercentile(99));
+        json.addProperty("p999", getValueAtPercentile(99.9));
+        json.addProperty("max", getMax());
+        return json;
+    }
+
+    static int bucketIndex(long value) {
+        if ( value<SUB_BUCKET_COUNT ) {
+            return (int)value;
+        }
+        int shift = (63-Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS-1);
+        return SUB_BUCKET_COUNT + (shift-1)*SUB_BUCKET_HALF + (int)((value>>>shift)-SUB_BUCKET_HALF);
+    }
+
+    static long bucketUpperValue(int index) {
+        if ( index<SUB_BUCKET_COUNT ) {
+            return index;
+        }
+        int shift = (index-SUB_BUCKET_COUNT)/SUB_BUCKET_HALF + 1;
+        long subBucket = (index-SUB_BUCKET_COUNT)%SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket+1)<<shift)-1;
+    }
+
+}
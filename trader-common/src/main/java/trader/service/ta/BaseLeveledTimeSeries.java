@@ -1,25 +1,54 @@
 package trader.service.ta;
 
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 
-import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
 import org.ta4j.core.TimeSeries;
 import org.ta4j.core.num.Num;
 
 import trader.common.exchangeable.Exchangeable;
 import trader.common.tick.PriceLevel;
 
-public class BaseLeveledTimeSeries extends BaseTimeSeries implements LeveledTimeSeries {
+/**
+ * 环形缓冲区实现的TimeSeries, 下标语义与ta4j的BaseTimeSeries相同:
+ * 超过 maximumBarCount 时移除最早的Bar, getBeginIndex() 随之增加, 已有Bar的下标不变.
+ * <BR>缺省不限制数量, 缓冲区按需倍增; 被移除的Bar只是不再被序列引用, 由GC回收.
+ */
+public class BaseLeveledTimeSeries implements LeveledTimeSeries {
 
     private static final long serialVersionUID = 2904300939512922674L;
 
+    private static final int INITIAL_CAPACITY = 64;
+
     private Exchangeable e;
 
     private PriceLevel level;
 
+    private final String name;
+
+    protected final Function<Number, Num> numFunction;
+
+    private final Class<?> numClass;
+
+    private Bar[] bars = new Bar[INITIAL_CAPACITY];
+    /**
+     * 第一个Bar在bars中的位置
+     */
+    private int head;
+    private int count;
+    private int removedBarsCount;
+    private int maximumBarCount = Integer.MAX_VALUE;
+
     public BaseLeveledTimeSeries(Exchangeable e, String name, PriceLevel level, Function<Number, Num> numFunction) {
-        super(name, numFunction);
+        this.name = name;
+        this.numFunction = numFunction;
+        this.numClass = numFunction.apply(0).getClass();
         this.level = level;
         this.e = e;
     }
@@ -34,6 +63,143 @@ public class BaseLeveledTimeSeries extends BaseTimeSeries implements LeveledTime
         return level;
     }
 
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 与BaseTimeSeries相同, 访问已经移除的下标时返回第一个Bar
+     */
+    @Override
+    public Bar getBar(int i) {
+        int innerIndex = i-removedBarsCount;
+        if ( innerIndex<0 ) {
+            if ( i<0 || count==0 ) {
+                throw new IndexOutOfBoundsException("Index "+i+" is out of range ["+getBeginIndex()+", "+getEndIndex()+"]");
+            }
+            innerIndex = 0;
+        } else if ( innerIndex>=count ) {
+            throw new IndexOutOfBoundsException("Index "+i+" is out of range ["+getBeginIndex()+", "+getEndIndex()+"]");
+        }
+        return bars[(head+innerIndex)%bars.length];
+    }
+
+    @Override
+    public int getBarCount() {
+        return count;
+    }
+
+    /**
+     * 返回当前Bar的副本
+     */
+    @Override
+    public List<Bar> getBarData() {
+        List<Bar> result = new ArrayList<>(count);
+        for(int i=0;i<count;i++) {
+            result.add(bars[(head+i)%bars.length]);
+        }
+        return result;
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return count==0?-1:removedBarsCount;
+    }
+
+    @Override
+    public int getEndIndex() {
+        return count==0?-1:(removedBarsCount+count-1);
+    }
+
+    @Override
+    public void setMaximumBarCount(int maximumBarCount) {
+        if ( maximumBarCount<=0 ) {
+            throw new IllegalArgumentException("Maximum bar count must be strictly positive");
+        }
+        this.maximumBarCount = maximumBarCount;
+        while( count>maximumBarCount ) {
+            removeFirstBar();
+        }
+        if ( bars.length>maximumBarCount ) {
+            resize(maximumBarCount);
+        }
+    }
+
+    @Override
+    public int getMaximumBarCount() {
+        return maximumBarCount;
+    }
+
+    @Override
+    public int getRemovedBarsCount() {
+        return removedBarsCount;
+    }
+
+    @Override
+    public void addBar(Bar bar, boolean replace) {
+        if ( bar.getClosePrice()!=null && bar.getClosePrice().getClass()!=numClass ) {
+            throw new IllegalArgumentException("Cannot add Bar with data type: "+bar.getClosePrice().getClass()+" to series with data type: "+numClass);
+        }
+        if ( count>0 ) {
+            int lastSlot = (head+count-1)%bars.length;
+            if ( replace ) {
+                bars[lastSlot] = bar;
+                return;
+            }
+            if ( !bar.getEndTime().isAfter(bars[lastSlot].getEndTime()) ) {
+                throw new IllegalArgumentException("Cannot add a bar with end time <= to series end time");
+            }
+        }
+        if ( count==maximumBarCount ) {
+            removeFirstBar();
+        } else if ( count==bars.length ) {
+            resize((int)Math.min(maximumBarCount, bars.length*2L));
+        }
+        bars[(head+count)%bars.length] = bar;
+        count++;
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime) {
+        addBar(new BaseBar(timePeriod, endTime, numFunction));
+    }
+
+    @Override
+    public void addBar(ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        addBar(new BaseBar(endTime, openPrice, highPrice, lowPrice, closePrice, volume, amount));
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume) {
+        addBar(new BaseBar(timePeriod, endTime, openPrice, highPrice, lowPrice, closePrice, volume, numOf(0)));
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        addBar(new BaseBar(timePeriod, endTime, openPrice, highPrice, lowPrice, closePrice, volume, amount));
+    }
+
+    @Override
+    public void addTrade(Num tradeVolume, Num tradePrice) {
+        getLastBar().addTrade(tradeVolume, tradePrice);
+    }
+
+    @Override
+    public void addPrice(Num price) {
+        getLastBar().addPrice(price);
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return numFunction.apply(number);
+    }
+
+    @Override
+    public Function<Number, Num> function() {
+        return numFunction;
+    }
+
     @Override
     public TimeSeries getSubSeries(int startIndex, int endIndex){
         if(startIndex > endIndex){
@@ -53,4 +219,23 @@ public class BaseLeveledTimeSeries extends BaseTimeSeries implements LeveledTime
         return result;
     }
 
+    /**
+     * 移除最早的Bar, 只释放序列的引用. Bar可能仍被子序列或笔/线段引用, 不修改Bar本身
+     */
+    private void removeFirstBar() {
+        bars[head] = null;
+        head = (head+1)%bars.length;
+        count--;
+        removedBarsCount++;
+    }
+
+    private void resize(int capacity) {
+        Bar[] newBars = new Bar[capacity];
+        for(int i=0;i<count;i++) {
+            newBars[i] = bars[(head+i)%bars.length];
+        }
+        bars = newBars;
+        head = 0;
+    }
+
 }
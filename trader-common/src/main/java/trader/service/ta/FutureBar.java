@@ -181,6 +181,23 @@ public class FutureBar implements Bar2, JsonEnabled {
         return minTick;
     }
 
+    /**
+     * 合并低级别Bar: 最高/最低价取极值, 用低级别Bar的结束TICK更新收盘价和成交量.
+     * <BR>成交量按TICK累计值计算, 同一个低级别Bar重复合并结果不变
+     */
+    public void updateFromBar(FutureBar bar) {
+        if ( bar.closeTick==null ) {
+            return;
+        }
+        if ( bar.maxPrice.rawValue()>maxPrice.rawValue() ) {
+            maxPrice = bar.maxPrice;
+        }
+        if ( bar.minPrice.rawValue()<minPrice.rawValue() ) {
+            minPrice = bar.minPrice;
+        }
+        update(bar.closeTick, bar.closeTick.updateTime);
+    }
+
     public void update(MarketData tick, LocalDateTime endTime) {
         long priceTick = tick.instrumentId.getPriceTick(), volMultiplier = tick.instrumentId.getVolumeMutiplier();
         MarketData lastTick = this.closeTick;
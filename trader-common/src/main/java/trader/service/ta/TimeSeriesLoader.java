@@ -1,17 +1,20 @@
 package trader.service.ta;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 import org.ta4j.core.Bar;
 import org.ta4j.core.num.Num;
@@ -28,12 +31,14 @@ import trader.common.tick.PriceLevel;
 import trader.common.util.CSVDataSet;
 import trader.common.util.CSVMarshallHelper;
 import trader.common.util.CSVUtil;
+import trader.common.util.CSVWriter;
 import trader.common.util.DateUtil;
 import trader.common.util.PriceUtil;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
+import trader.service.md.TickColumns;
 
 /**
  * 行情数据加载和转换为分钟级别数据
@@ -52,6 +57,10 @@ public class TimeSeriesLoader {
      * 每天的KBar数量为 volume/(openInt/multiplier)
      */
     private int volDaliyMultiplier = 500;
+    /**
+     * 是否使用派生Bar缓存
+     */
+    private boolean barCache;
     /**
      * 起始交易日
      */
@@ -65,8 +74,6 @@ public class TimeSeriesLoader {
      */
     private LocalDateTime endTime;
 
-    private Map<LocalDate, List<FutureBar>> min1BarsByDay = new HashMap<>();
-
     private List<LocalDate> loadedDates = new ArrayList<>();
 
     private Map<LocalDate, ExchangeableTradingTimes> tradingDays = new HashMap<>();
@@ -125,33 +132,93 @@ public class TimeSeriesLoader {
         this.volDaliyMultiplier = multiplier;
     }
 
+    /**
+     * 启用派生Bar缓存: MIN1以外级别的Bar按 合约+级别+交易日 保存, 源数据(MIN1或TICK)修改后重新计算.
+     * <BR>缓存加载的Bar不包含起止TICK, 时间精度为秒
+     */
+    public TimeSeriesLoader setBarCache(boolean barCache) {
+        this.barCache = barCache;
+        return this;
+    }
+
     /**
      * 直接加载行情切片原始数据
      */
     public List<MarketData> loadMarketDataTicks(LocalDate tradingDay, DataInfo tickDataInfo) throws IOException
+    {
+        List<MarketData> result = new ArrayList<>();
+        forEachTick(tradingDay, tickDataInfo, (MarketData tick)->{
+            result.add(tick);
+        });
+        return result;
+    }
+
+    /**
+     * 逐个解析行情切片并交给consumer处理, 不保留完整的TICK列表
+     *
+     * @return 处理的TICK数量
+     */
+    public int forEachTick(LocalDate tradingDay, DataInfo tickDataInfo, Consumer<MarketData> consumer) throws IOException
     {
         if ( !data.exists(exchangeable, tickDataInfo, tradingDay) ) {
-            return Collections.emptyList();
+            return 0;
+        }
+        if ( tickDataInfo.isBinary() ) {
+            return forEachTickColumns(tradingDay, tickDataInfo, consumer);
         }
-        List<MarketData> result = new ArrayList<>();
         MarketDataService mdService = this.beansContainer.getBean(MarketDataService.class);
         MarketDataProducerFactory ctpFactory = mdService.getProducerFactories().get(tickDataInfo.provider());
         MarketDataProducer mdProducer = ctpFactory.create(beansContainer, null);
         CSVMarshallHelper csvMarshallHelper = ctpFactory.createCSVMarshallHelper();
         String csv = data.load(exchangeable, tickDataInfo, tradingDay);
         CSVDataSet csvDataSet = CSVUtil.parse(csv);
-        ExchangeableTradingTimes tradingTimes = exchangeable.exchange().getTradingTimes(exchangeable, tradingDay);
+        ExchangeableTradingTimes tradingTimes = getTradingTimes(tradingDay);
+        int result = 0;
         while(csvDataSet.next()) {
             MarketData marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
             if ( this.endTime!=null && this.endTime.isBefore(marketData.updateTime)) {
                 continue;
             }
             marketData.postProcess(tradingTimes);
-            result.add(marketData);
+            consumer.accept(marketData);
+            result++;
         }
         return result;
     }
 
+    /**
+     * 从列存储的二进制数据加载行情切片, 不需要解析CSV文本
+     */
+    private int forEachTickColumns(LocalDate tradingDay, DataInfo tickDataInfo, Consumer<MarketData> consumer) throws IOException
+    {
+        TickColumns columns = TickColumns.wrap(data.loadBinary(exchangeable, tickDataInfo, tradingDay));
+        ExchangeableTradingTimes tradingTimes = getTradingTimes(tradingDay);
+        int tickCount = columns.size();
+        if ( this.endTime!=null ) {
+            tickCount = columns.seek(DateUtil.localdatetime2long(exchangeable.exchange().getZoneId(), endTime)+1);
+        }
+        for(int i=0;i<tickCount;i++) {
+            MarketData marketData = columns.createMarketData(i, exchangeable, tickDataInfo.provider());
+            marketData.postProcess(tradingTimes);
+            consumer.accept(marketData);
+        }
+        return tickCount;
+    }
+
+    /**
+     * 逐个解析某交易日的TICK, 优先使用二进制列存储格式
+     */
+    private int forEachTick(LocalDate tradingDay, Consumer<MarketData> consumer) throws IOException {
+        if ( exchangeable.getType()!=ExchangeableType.FUTURE ) {
+            return 0;
+        }
+        if ( data.exists(exchangeable, ExchangeableData.TICK_CTP_BIN, tradingDay) ) {
+            return forEachTick(tradingDay, ExchangeableData.TICK_CTP_BIN, consumer);
+        } else {
+            return forEachTick(tradingDay, ExchangeableData.TICK_CTP, consumer);
+        }
+    }
+
     /**
      * 加载数据
      */
@@ -170,16 +237,7 @@ public class TimeSeriesLoader {
             LocalDate tradingDay = endTradingDay;
             //从后向前
             while(tradingDay.compareTo(startTradingDay)>=0) {
-                if (data.exists(exchangeable, ExchangeableData.MIN1, tradingDay)) {
-                    List<FutureBar> dayMin1Bars = loadMin1Bars(tradingDay);
-                    min1BarsByDay.put(tradingDay, dayMin1Bars);
-                }
-                List<FutureBar> dayBars = new ArrayList<>();
-                if ( min1BarsByDay.containsKey(tradingDay)) {
-                    dayBars = timedBarsFromMin1(tradingDay, min1BarsByDay.get(tradingDay));
-                } else {
-                    dayBars = loadMinFromTicks(tradingDay);
-                }
+                List<FutureBar> dayBars = loadDayBars(tradingDay);
                 //最后一个交易日可以没有数据...因为有可能是某天晚上加载数据.
                 if ( dayBars.isEmpty() && !tradingDay.equals(endTradingDay) ) {
                     break;
@@ -195,7 +253,11 @@ public class TimeSeriesLoader {
             LocalDate tradingDay = endTradingDay;
             //从后向前
             while(tradingDay.compareTo(startTradingDay)>=0) {
-                bars.addAll(loadVolBars(tradingDay, level));
+                List<FutureBar> dayBars = loadDayBars(tradingDay);
+                if ( !dayBars.isEmpty() ) {
+                    bars.addAll(0, dayBars);
+                    loadedDates.add(tradingDay);
+                }
                 tradingDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), tradingDay);
             }
         }
@@ -208,6 +270,122 @@ public class TimeSeriesLoader {
         return result;
     }
 
+    /**
+     * 从起始交易日开始逐日加载Bar, 内存中只保留一个交易日的Bar, 适用于多个月的数据
+     */
+    public Iterator<FutureBar> barIterator() {
+        if ( endTradingDay==null ) {
+            endTradingDay = LocalDate.now();
+        }
+        loadedDates.clear();
+        resolvedLevel = level;
+        return new Iterator<FutureBar>() {
+            private LocalDate tradingDay = MarketDayUtil.thisOrNextMarketDay(exchangeable.exchange(), startTradingDay, false);
+            private Iterator<FutureBar> dayBars = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while( !dayBars.hasNext() && tradingDay!=null && tradingDay.compareTo(endTradingDay)<=0 ) {
+                    try{
+                        List<FutureBar> bars = loadDayBars(tradingDay);
+                        if ( !bars.isEmpty() ) {
+                            loadedDates.add(tradingDay);
+                        }
+                        dayBars = bars.iterator();
+                    }catch(IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                    tradingDay = MarketDayUtil.nextMarketDay(exchangeable.exchange(), tradingDay);
+                }
+                return dayBars.hasNext();
+            }
+
+            @Override
+            public FutureBar next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                return dayBars.next();
+            }
+        };
+    }
+
+    /**
+     * 加载某个交易日的目标级别Bar, 优先使用派生Bar缓存
+     */
+    private List<FutureBar> loadDayBars(LocalDate tradingDay) throws IOException {
+        if ( !isBarCacheable(tradingDay) ) {
+            return computeDayBars(tradingDay);
+        }
+        long sourceModified = data.getLastModified(exchangeable, getSourceData(tradingDay), tradingDay);
+        if ( sourceModified==0 ) {
+            return computeDayBars(tradingDay);
+        }
+        DataInfo cacheInfo = ExchangeableData.getBarCache(level);
+        if ( data.getLastModified(exchangeable, cacheInfo, tradingDay)==sourceModified ) {
+            List<FutureBar> result = new ArrayList<>();
+            CSVDataSet csvDataSet = CSVUtil.parse(data.load(exchangeable, cacheInfo, tradingDay));
+            while(csvDataSet.next()) {
+                result.add(FutureBar.fromCSV(csvDataSet, exchangeable));
+            }
+            return result;
+        }
+        List<FutureBar> result = computeDayBars(tradingDay);
+        if ( !data.isReadOnly() ) {
+            CSVWriter csvWriter = new CSVWriter(cacheInfo.getColumns());
+            for(FutureBar bar:result) {
+                csvWriter.next();
+                bar.save(csvWriter);
+            }
+            data.save(exchangeable, cacheInfo, tradingDay, csvWriter.toString(), sourceModified);
+        }
+        return result;
+    }
+
+    /**
+     * 只缓存完整交易日的MIN3-MIN60 Bar. 缓存的Bar没有TICK, VOL Bar实时更新时依赖开始TICK, 不缓存
+     */
+    private boolean isBarCacheable(LocalDate tradingDay) {
+        if ( !barCache || level==PriceLevel.MIN1 || !level.name().startsWith(PriceLevel.LEVEL_MIN) ) {
+            return false;
+        }
+        if ( this.endTime!=null ) {
+            ExchangeableTradingTimes tradingTimes = getTradingTimes(tradingDay);
+            if ( tradingTimes==null || this.endTime.isBefore(tradingTimes.getMarketCloseTime()) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算目标级别Bar使用的源数据
+     */
+    private DataInfo getSourceData(LocalDate tradingDay) throws IOException {
+        if ( level.name().startsWith(PriceLevel.LEVEL_MIN) && data.exists(exchangeable, ExchangeableData.MIN1, tradingDay) ) {
+            return ExchangeableData.MIN1;
+        }
+        if ( data.exists(exchangeable, ExchangeableData.TICK_CTP_BIN, tradingDay) ) {
+            return ExchangeableData.TICK_CTP_BIN;
+        }
+        return ExchangeableData.TICK_CTP;
+    }
+
+    /**
+     * 从MIN1或TICK计算某个交易日的目标级别Bar
+     */
+    private List<FutureBar> computeDayBars(LocalDate tradingDay) throws IOException {
+        if ( level.name().startsWith(PriceLevel.LEVEL_MIN) ) {
+            if (data.exists(exchangeable, ExchangeableData.MIN1, tradingDay)) {
+                return timedBarsFromMin1(tradingDay, loadMin1Bars(tradingDay));
+            }
+            return loadMinFromTicks(tradingDay);
+        } else if ( level.name().startsWith(PriceLevel.LEVEL_VOL) ) {
+            return loadVolBars(tradingDay, level);
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * 将1分钟K线合并为多分钟K线
      */
@@ -285,65 +463,56 @@ public class TimeSeriesLoader {
     }
 
     /**
-     * 加载某日的TICK数据, 转换为MIN1数据
+     * 加载某日的TICK数据, 直接转换为目标级别的Bar
      */
     private List<FutureBar> loadMinFromTicks(LocalDate tradingDay) throws IOException {
-        List<MarketData> marketDatas = loadMarketData(tradingDay);
-        List<FutureBar> minBars = marketDatas2bars(exchangeable, level, marketDatas);
-        if (level==PriceLevel.MIN1) {
-            min1BarsByDay.put(tradingDay, minBars);
-        }
-        return minBars;
+        TimedBarCollector collector = new TimedBarCollector(exchangeable, level);
+        forEachTick(tradingDay, collector);
+        return collector.finish();
     }
 
     /**
      * 将TICK数据转换为 VOL10K Bar这种数据, 如果TICK之间的volume不能被整除, 不会再次切分TICK.因为这是最小单位.
      */
-    private Collection<FutureBar> loadVolBars(LocalDate tradingDay, PriceLevel level) throws IOException
+    private List<FutureBar> loadVolBars(LocalDate tradingDay, PriceLevel level) throws IOException
     {
         resolvedLevel = level;
-        boolean resolveVolDaily = false;
-        if ( level.value()<0 ) {
-            resolveVolDaily=true;
-        }
         List<FutureBar> result = new ArrayList<>();
-        List<MarketData> marketDatas = loadMarketData(tradingDay);
-        int currIndex =0;
-        FutureBar currBar = null;
-        ExchangeableTradingTimes tradingTimes = exchangeable.exchange().getTradingTimes(exchangeable, tradingDay);
-        for(int i=0;i<marketDatas.size();i++) {
-            MarketData md = marketDatas.get(i);
-            if ( tradingTimes.getTimeStage(md.updateTime)!=MarketTimeStage.MarketOpen ) {
-                continue;
-            }
-            if ( resolveVolDaily ) { //如果有必要, 每天动态修正volDaily为实际的值
-                int volLevel = (int)md.openInterest/volDaliyMultiplier;
-                level = PriceLevel.valueOf(PriceLevel.LEVEL_VOL+volLevel);
-                resolveVolDaily = false;
-                resolvedLevel = level;
-            }
-            if ( currBar!=null && currBar.getVolume().doubleValue()<level.value() ) {
-                currBar.update(md, md.updateTime);
-                continue;
-            }
-            MarketData mdBegin = md;
-            if (i>0) {
-                mdBegin = marketDatas.get(i-1);
+        ExchangeableTradingTimes tradingTimes = getTradingTimes(tradingDay);
+        forEachTick(tradingDay, new Consumer<MarketData>() {
+            boolean resolveVolDaily = level.value()<0;
+            PriceLevel volLevel = level;
+            int currIndex = 0;
+            FutureBar currBar = null;
+            MarketData lastTick = null;
+
+            @Override
+            public void accept(MarketData md) {
+                MarketData prevTick = lastTick;
+                lastTick = md;
+                if ( tradingTimes.getTimeStage(md.updateTime)!=MarketTimeStage.MarketOpen ) {
+                    return;
+                }
+                if ( resolveVolDaily ) { //如果有必要, 每天动态修正volDaily为实际的值
+                    volLevel = PriceLevel.valueOf(PriceLevel.LEVEL_VOL+(int)md.openInterest/volDaliyMultiplier);
+                    resolveVolDaily = false;
+                    resolvedLevel = volLevel;
+                }
+                if ( currBar!=null && currBar.getVolume().doubleValue()<volLevel.value() ) {
+                    currBar.update(md, md.updateTime);
+                    return;
+                }
+                MarketData mdBegin = md;
+                if ( prevTick!=null ) {
+                    mdBegin = prevTick;
+                }
+                currBar = FutureBar.create(currIndex++, tradingTimes, DateUtil.round(mdBegin.updateTime), mdBegin, md, md.lastPrice, md.lastPrice);
+                result.add(currBar);
             }
-            currBar = FutureBar.create(currIndex++, tradingTimes, DateUtil.round(mdBegin.updateTime), mdBegin, md, md.lastPrice, md.lastPrice);
-            result.add(currBar);
-        }
+        });
         return result;
     }
 
-    private List<MarketData> loadMarketData(LocalDate tradingDay) throws IOException {
-        List<MarketData> marketDatas = new ArrayList<>();
-        if ( exchangeable.getType()==ExchangeableType.FUTURE ) {
-            marketDatas = loadMarketDataTicks(tradingDay, ExchangeableData.TICK_CTP);
-        }
-        return marketDatas;
-    }
-
     /**
      * 加载日线数据
      */
@@ -359,79 +528,100 @@ public class TimeSeriesLoader {
         if ( marketDatas.isEmpty() ) {
             return Collections.emptyList();
         }
-        List<FutureBar> result = new ArrayList<>();
+        TimedBarCollector collector = new TimedBarCollector(exchangeable, level);
+        for(int i=0;i<marketDatas.size();i++) {
+            collector.accept(marketDatas.get(i));
+        }
+        return collector.finish();
+    }
 
-        int barIndex = 0;
-        List<MarketData> barTicks = new ArrayList<>();
-        ExchangeableTradingTimes tradingTimes = null;
+    /**
+     * 逐个接收TICK并按时间切分Bar, 只保留当前Bar的起止TICK和最高最低价, 不保留TICK列表
+     */
+    private static class TimedBarCollector implements Consumer<MarketData> {
+        private Exchangeable exchangeable;
+        private PriceLevel level;
+        private List<FutureBar> result = new ArrayList<>();
+        private ExchangeableTradingTimes tradingTimes;
+        private int barIndex;
+        private int barTickCount;
+        private MarketData beginTick;
+        private MarketData endTick;
+        private long high;
+        private long low;
+
+        TimedBarCollector(Exchangeable exchangeable, PriceLevel level){
+            this.exchangeable = exchangeable;
+            this.level = level;
+        }
 
-        for(int i=0;i<marketDatas.size();i++) {
-            MarketData currTick = marketDatas.get(i);
+        @Override
+        public void accept(MarketData currTick) {
             LocalDate currDay = DateUtil.str2localdate(currTick.tradingDay);
             if ( tradingTimes==null || !currDay.equals(tradingTimes.getTradingDay()) ){
-                if ( tradingTimes!=null && barTicks.size()>0 ) {
-                    //为上一个交易日的剩余TICK创建BAR
-                    LocalDateTime[] barTimes = getBarTimes(tradingTimes, level, barIndex, barTicks.get(0).updateTime);
-                    result.add( createBarFromTicks(tradingTimes, barTimes, barTicks, barIndex) );
-                }
+                //为上一个交易日的剩余TICK创建BAR
+                flush();
                 //换了交易日
                 tradingTimes = exchangeable.exchange().getTradingTimes(exchangeable, currDay);
-                barTicks.clear();
                 barIndex = 0;
             }
             if ( tradingTimes.getTimeStage(currTick.updateTime)!=MarketTimeStage.MarketOpen ) {
-                continue;
+                return;
             }
             int currTickIndex = getBarIndex(tradingTimes, level, currTick.updateTime);
             if ( currTickIndex<0 ) {
-                continue;
+                return;
             }
             if ( currTickIndex!=barIndex ) {
-                if ( barTicks.size()>0 ) {
-                    LocalDateTime[] barTimes = getBarTimes(tradingTimes, level, barIndex, barTicks.get(0).updateTime);
+                if ( barTickCount>0 ) {
+                    LocalDateTime[] barTimes = getBarTimes(tradingTimes, level, barIndex, beginTick.updateTime);
                     if ( currTick.updateTime.equals(barTimes[1])) {
-                        barTicks.add(currTick);
+                        addTick(currTick);
                     }
                     //创建新的Bar
-                    result.add( createBarFromTicks(tradingTimes, barTimes, barTicks, barIndex) );
+                    result.add( FutureBar.create(barIndex, tradingTimes, barTimes[0], beginTick, endTick, high, low) );
                 }
-                barTicks.clear();
+                barTickCount = 0;
                 barIndex = currTickIndex;
             }
-            barTicks.add(currTick);
+            addTick(currTick);
         }
-        if ( barTicks.size()>0 ) {
-            LocalDateTime[] barTimes = getBarTimes(tradingTimes, level, barIndex, barTicks.get(0).updateTime);
-            result.add( createBarFromTicks(tradingTimes, barTimes, barTicks, barIndex) );
-        }
-        return result;
-    }
 
-    private static FutureBar createBarFromTicks(ExchangeableTradingTimes tradingTimes, LocalDateTime[] barTimes, List<MarketData> barTicks, int barIndex) {
-        MarketData beginTick = barTicks.get(0);
-        MarketData endTick = barTicks.get(barTicks.size()-1);
-        long high = beginTick.lastPrice, low = beginTick.lastPrice;
+        public List<FutureBar> finish(){
+            flush();
+            return result;
+        }
 
-        MarketData lastTick=beginTick, tick = null;
-        for(int i=1;i<barTicks.size();i++) {
-            tick = barTicks.get(i);
-            if ( lastTick.highestPrice!=tick.highestPrice && PriceUtil.isValidPrice(tick.highestPrice) ) {
-                high = tick.highestPrice;
-            }
-            if ( high<tick.lastPrice ) {
+        private void addTick(MarketData tick) {
+            if ( barTickCount==0 ) {
+                beginTick = tick;
                 high = tick.lastPrice;
-            }
-
-            if ( lastTick.lowestPrice!=tick.lowestPrice && PriceUtil.isValidPrice(tick.lowestPrice) ) {
-                low = tick.lowestPrice;
-            }
-            if ( low>tick.lastPrice) {
                 low = tick.lastPrice;
+            } else {
+                if ( beginTick.highestPrice!=tick.highestPrice && PriceUtil.isValidPrice(tick.highestPrice) ) {
+                    high = tick.highestPrice;
+                }
+                if ( high<tick.lastPrice ) {
+                    high = tick.lastPrice;
+                }
+                if ( beginTick.lowestPrice!=tick.lowestPrice && PriceUtil.isValidPrice(tick.lowestPrice) ) {
+                    low = tick.lowestPrice;
+                }
+                if ( low>tick.lastPrice) {
+                    low = tick.lastPrice;
+                }
             }
+            endTick = tick;
+            barTickCount++;
         }
-        FutureBar bar = FutureBar.create(barIndex, tradingTimes, barTimes[0], beginTick, endTick, high, low);
 
-        return bar;
+        private void flush() {
+            if ( tradingTimes!=null && barTickCount>0 ) {
+                LocalDateTime[] barTimes = getBarTimes(tradingTimes, level, barIndex, beginTick.updateTime);
+                result.add( FutureBar.create(barIndex, tradingTimes, barTimes[0], beginTick, endTick, high, low) );
+            }
+            barTickCount = 0;
+        }
     }
 
     /**
@@ -442,14 +632,7 @@ public class TimeSeriesLoader {
         if ( barIndex<0 ) {
             barIndex = getBarIndex(tradingTimes, level, barBeginTime);
         }
-        LocalDateTime marketCloseTime = tradingTimes.getMarketCloseTime();
-        LocalDateTime beginTime = tradingTimes.getMarketTimes()[0], endTime = null;
-        while(beginTime.compareTo(marketCloseTime)<=0) {
-            if ( getBarIndex(tradingTimes, level, beginTime)==barIndex && tradingTimes.getTimeStage(beginTime)==MarketTimeStage.MarketOpen) {
-                break;
-            }
-            beginTime = beginTime.plusMinutes(1);
-        }
+        LocalDateTime beginTime = tradingTimes.getMarketTime(barIndex*level.value()*60*1000), endTime = null;
         endTime = beginTime.plusMinutes(level.value());
         LocalDateTime[] result = new LocalDateTime[] {beginTime, endTime};
         return result;
@@ -479,38 +662,8 @@ public class TimeSeriesLoader {
             return -1;
         }
 
-        int tradingMillis = tradingTimes.getTradingTime(marketTime);
-        int tradeMinutes = tradingMillis / (1000*60);
-        int tickIndex=0;
-
-        LocalDateTime[] marketTimes = tradingTimes.getMarketTimes();
-        for(int i=0;i<marketTimes.length;i+=2) {
-            LocalDateTime stageBegin = marketTimes[i];
-            LocalDateTime stageEnd = marketTimes[i+1];
-            LocalDateTime stageBegin2 = null;
-            if ( i<marketTimes.length-2) {
-                stageBegin2 = marketTimes[i+2];
-            }
-            //如果已经是下一个时间段, 直接跳过当前时间段
-            if ( stageBegin2!=null && marketTime.compareTo(stageBegin2)>=0 ) {
-                continue;
-            }
-            if ( marketTime.compareTo(stageBegin)<0 ) {
-                break;
-            }
-            int compareResult = marketTime.compareTo(stageEnd);
-            tickIndex = tradeMinutes/level.value();
-            int tickBeginMillis = tickIndex*level.value()*60*1000;
-            if ( compareResult>=0 ) {
-                //超过当前时间段, 但是没有到下一个时间段, 算在最后一个KBar
-                if ( tradingMillis-tickBeginMillis<5*1000 ) {
-                    tickIndex -= 1;
-                }
-            }
-            break;
-        }
-
-        return tickIndex;
+        long epochMillis = DateUtil.localdatetime2long(tradingTimes.getExchangeable().exchange().getZoneId(), marketTime);
+        return tradingTimes.getBarIndex(epochMillis, level.value()*60*1000);
     }
 
     ExchangeableTradingTimes getTradingTimes(LocalDate day) {
@@ -29,39 +29,32 @@ public class FutureBarBuilder implements BarBuilder {
     private ExchangeableTradingTimes tradingTimes;
     private LeveledTimeSeries series;
     private PriceLevel level;
-
     /**
-     * 预先计算好时间到KBar的位置, 后续会非常快速的定位.
+     * 序列保留的最多Bar数量, 0表示不限制
      */
-    long[] barBeginMillis;
+    private int maximumBarCount;
+
     /**
-     * 预先计算好的KBar结束时间
+     * 时间级别KBar的毫秒数和数量, KBar位置由tradingTimes直接计算, 不需要逐个比较KBar时间
      */
-    long[] barEndMillis;
-    LocalDateTime barBeginTimes[];
-    LocalDateTime barEndTimes[];
+    int barMillis;
+    int barCount;
     int barIndex = -1;
     MarketData lastTick;
     boolean newBar = false;
+    /**
+     * 最后一个Bar的结束时间(epoch millis), 只在最后一个Bar变化时计算, 每个TICK直接比较updateTimestamp
+     */
+    private FutureBar endTimeBar;
+    private long lastBarEndMillis;
     private List<LocalDate> historicalDates = Collections.emptyList();
 
     public FutureBarBuilder(ExchangeableTradingTimes tradingTimes, PriceLevel level) {
         this.tradingTimes = tradingTimes;
         this.level = level;
         if ( level.name().toLowerCase().startsWith("min")) {
-            Exchangeable exchangeable = tradingTimes.getExchangeable();
-            int barCount = tradingTimes.getTotalTradingMillis()/(1000*60*level.value());
-            barBeginMillis = new long[barCount];
-            barEndMillis = new long[barCount];
-            barBeginTimes = new LocalDateTime[barCount];
-            barEndTimes = new LocalDateTime[barCount];
-            for(int i=0;i<barCount;i++) {
-                LocalDateTime[] barTimes = TimeSeriesLoader.getBarTimes(tradingTimes, level, i, null);
-                barBeginTimes[i] = barTimes[0];
-                barBeginMillis[i] = DateUtil.localdatetime2long(exchangeable.exchange().getZoneId(), barTimes[0]);
-                barEndTimes[i] = barTimes[1];
-                barEndMillis[i] = DateUtil.localdatetime2long(exchangeable.exchange().getZoneId(), barTimes[1]);
-            }
+            barMillis = 1000*60*level.value();
+            barCount = tradingTimes.getTotalTradingMillis()/barMillis;
         }
         series = new BaseLeveledTimeSeries(tradingTimes.getExchangeable(), tradingTimes.getExchangeable()+"-"+level.toString(), level, LongNum::valueOf);
     }
@@ -70,6 +63,24 @@ public class FutureBarBuilder implements BarBuilder {
         return level;
     }
 
+    public ExchangeableTradingTimes getTradingTimes() {
+        return tradingTimes;
+    }
+
+    /**
+     * 时间级别第N个Bar的开始时间
+     */
+    public LocalDateTime getBarBeginTime(int barIndex) {
+        return tradingTimes.getMarketTime(barIndex*barMillis);
+    }
+
+    /**
+     * 时间级别第N个Bar的结束时间, 与 TimeSeriesLoader.getBarTimes 相同
+     */
+    public LocalDateTime getBarEndTime(int barIndex) {
+        return getBarBeginTime(barIndex).plusMinutes(level.value());
+    }
+
     public List<LocalDate> getHistoricalDates(){
         return historicalDates;
     }
@@ -83,6 +94,20 @@ public class FutureBarBuilder implements BarBuilder {
         }
     }
 
+    public int getMaximumBarCount() {
+        return maximumBarCount;
+    }
+
+    /**
+     * 设置序列最多保留的Bar数量, 超出后移除最早的Bar
+     */
+    public void setMaximumBarCount(int maximumBarCount) {
+        this.maximumBarCount = maximumBarCount;
+        if ( maximumBarCount>0 ) {
+            series.setMaximumBarCount(maximumBarCount);
+        }
+    }
+
     public FutureBar getLastBar() {
         return (FutureBar)series.getLastBar();
     }
@@ -94,6 +119,9 @@ public class FutureBarBuilder implements BarBuilder {
     public void loadHistoryData(TimeSeriesLoader seriesLoader) throws IOException
     {
         this.series = seriesLoader.setLevel(level).load();
+        if ( maximumBarCount>0 ) {
+            series.setMaximumBarCount(maximumBarCount);
+        }
         historicalDates = seriesLoader.getLoadedDates();
     }
 
@@ -101,6 +129,8 @@ public class FutureBarBuilder implements BarBuilder {
     public boolean update(MarketData tick) {
         boolean result =false;
         if ( tick.mktStage==MarketTimeStage.MarketOpen ) {
+            //KBar会持有TICK
+            tick = tick.retain();
             switch(level.prefix()) {
             case PriceLevel.LEVEL_MIN:
                 int tickBarIndex = getTimeBarIndex(tick);
@@ -113,7 +143,8 @@ public class FutureBarBuilder implements BarBuilder {
                 if ( series.getBarCount()>0) {
                     lastBar = getLastBar();
                 }
-                if ( lastBar!=null && lastBar.getVolume().doubleValue()<level.value()) {
+                //历史数据中的Bar(barIndex<0)或者没有TICK的Bar不能继续更新, 开始新的Bar
+                if ( lastBar!=null && barIndex>=0 && lastBar.getOpenTick()!=null && lastBar.getVolume().doubleValue()<level.value()) {
                     lastBar.update(tick, tick.updateTime);
                 } else {
                     FutureBar bar = FutureBar.create(++barIndex, tradingTimes, DateUtil.round(tick.updateTime), tick, tick, tick.lastPrice, tick.lastPrice);
@@ -131,24 +162,19 @@ public class FutureBarBuilder implements BarBuilder {
     }
 
     private int getTimeBarIndex(MarketData tick) {
-        int result = -1;
-        long marketBeginMillis = barBeginMillis[0];
-        if ( tick.updateTimestamp>=marketBeginMillis ) {
-            int currBarIndex = barIndex;
-            if ( currBarIndex<0 ) {
-                currBarIndex = 0;
-            }
-            for(int i=currBarIndex;i<barBeginMillis.length;i++) {
-                if ( tick.updateTimestamp < barBeginMillis[i] ) {
-                    break;
-                }
-                result = i;
-            }
-            //TimeSeriesLoader.getBarIndex(exchangeable, levelSeries.level, tick.updateTime);
-        }else {
+        int result = tradingTimes.getBarIndex(tick.updateTimestamp, barMillis);
+        if ( result<0 ) {
             if ( logger.isDebugEnabled() ) {
                 logger.debug(tradingTimes.getExchangeable()+" 忽略非市场时间数据 "+tick);
             }
+            return -1;
+        }
+        if ( result>=barCount ) {
+            result = barCount-1;
+        }
+        //不回退到已经结束的KBar
+        if ( result<barIndex ) {
+            result = -1;
         }
         return result;
     }
@@ -157,26 +183,25 @@ public class FutureBarBuilder implements BarBuilder {
         Exchangeable exchangeable = tradingTimes.getExchangeable();
         boolean result = false;
         FutureBar lastBar = null;
-        LocalDateTime lastBarEndTime = null;
         if ( series.getBarCount()>0 ) {
             lastBar = (FutureBar)series.getLastBar();
+            if ( lastBar!=endTimeBar ) {
+                cacheBarEndTime(lastBar);
+            }
             //需要忽略上一个交易日的Bar
-            if ( lastBar.getEndTime().toLocalDateTime().isBefore(tradingTimes.getMarketOpenTime())) {
+            if ( lastBarEndMillis==0 ) {
                 lastBar = null;
-                lastBarEndTime = null;
-            } else {
-                lastBarEndTime = barEndTimes[lastBar.getIndex()];
             }
         }
-        if ( tickBarIndex==this.barIndex || tick.updateTime.equals(lastBarEndTime) ) {
+        if ( tickBarIndex==this.barIndex || (lastBar!=null && tick.updateTimestamp==lastBarEndMillis) ) {
             lastBar.update(tick, tick.updateTime);
         } else { //创建新的BAR
             MarketData edgeTick = lastTick;
             if ( lastBar!=null ){
-                lastBar.updateEndTime(lastBarEndTime.atZone(exchangeable.exchange().getZoneId()));
+                lastBar.updateEndTime(getBarEndTime(lastBar.getIndex()).atZone(exchangeable.exchange().getZoneId()));
             }
             result=true;
-            FutureBar bar = FutureBar.create(tickBarIndex, tradingTimes, barBeginTimes[tickBarIndex], edgeTick, tick, tick.lastPrice, tick.lastPrice);
+            FutureBar bar = FutureBar.create(tickBarIndex, tradingTimes, getBarBeginTime(tickBarIndex), edgeTick, tick, tick.lastPrice, tick.lastPrice);
             if ( logger.isDebugEnabled() ) {
                 logger.debug(exchangeable+" "+level+" NEW Kbar #"+tickBarIndex+" old #"+this.barIndex+" : "+bar);
             }
@@ -190,4 +215,16 @@ public class FutureBarBuilder implements BarBuilder {
         return result;
     }
 
+    /**
+     * 最后一个Bar变化时计算它的结束时间, 上一个交易日的Bar为0
+     */
+    private void cacheBarEndTime(FutureBar bar) {
+        endTimeBar = bar;
+        if ( bar.getEndTime().toLocalDateTime().isBefore(tradingTimes.getMarketOpenTime()) ) {
+            lastBarEndMillis = 0;
+        } else {
+            lastBarEndMillis = DateUtil.localdatetime2long(tradingTimes.getExchangeable().exchange().getZoneId(), getBarEndTime(bar.getIndex()));
+        }
+    }
+
 }
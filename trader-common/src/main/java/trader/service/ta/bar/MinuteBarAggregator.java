@@ -0,0 +1,152 @@
+package trader.service.ta.bar;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.service.md.MarketData;
+import trader.service.ta.BaseLeveledTimeSeries;
+import trader.service.ta.FutureBar;
+import trader.service.ta.LeveledTimeSeries;
+import trader.service.ta.LongNum;
+import trader.service.ta.TimeSeriesLoader;
+
+/**
+ * 由MIN1 Bar合并得到 MIN3-MIN60 Bar, 合并方式与 TimeSeriesLoader 离线合并相同.
+ * <BR>不直接处理TICK: 只有MIN1出现新Bar时才合并, 正在变化的Bar在访问序列时按最新的MIN1 Bar刷新.
+ * <BR>MIN-N Bar序号 = MIN1 Bar序号/N, 都是从开市开始的交易分钟数.
+ */
+public class MinuteBarAggregator implements BarBuilder {
+    private final static Logger logger = LoggerFactory.getLogger(MinuteBarAggregator.class);
+
+    private FutureBarBuilder min1Builder;
+    private ExchangeableTradingTimes tradingTimes;
+    private PriceLevel level;
+    private LeveledTimeSeries series;
+    private int maximumBarCount;
+    private FutureBar currBar;
+    private int barIndex = -1;
+    private LocalDateTime barEndTime;
+    /**
+     * 下一个需要合并的MIN1序列下标, 最后一个MIN1 Bar还在变化, 下次会再次合并
+     */
+    private int nextMin1Index;
+
+    public MinuteBarAggregator(FutureBarBuilder min1Builder, PriceLevel level) {
+        this.min1Builder = min1Builder;
+        this.tradingTimes = min1Builder.getTradingTimes();
+        this.level = level;
+        Exchangeable e = tradingTimes.getExchangeable();
+        series = new BaseLeveledTimeSeries(e, e+"-"+level.toString(), level, LongNum::valueOf);
+    }
+
+    public PriceLevel getLevel() {
+        return level;
+    }
+
+    public ExchangeableTradingTimes getTradingTimes() {
+        return tradingTimes;
+    }
+
+    public void setMaximumBarCount(int maximumBarCount) {
+        this.maximumBarCount = maximumBarCount;
+        if ( maximumBarCount>0 ) {
+            series.setMaximumBarCount(maximumBarCount);
+        }
+    }
+
+    /**
+     * 加载之前交易日的Bar, 当前交易日的Bar之后由MIN1合并追加
+     */
+    public void loadHistoryData(TimeSeriesLoader seriesLoader) throws IOException
+    {
+        series = seriesLoader.setLevel(level).load();
+        if ( maximumBarCount>0 ) {
+            series.setMaximumBarCount(maximumBarCount);
+        }
+    }
+
+    /**
+     * 返回序列前, 用正在变化的MIN1 Bar刷新当前Bar
+     */
+    @Override
+    public LeveledTimeSeries getTimeSeries(PriceLevel level) {
+        if ( level!=this.level ) {
+            return null;
+        }
+        LeveledTimeSeries min1Series = min1Builder.getTimeSeries(PriceLevel.MIN1);
+        if ( currBar!=null && min1Series.getBarCount()>0 ) {
+            FutureBar min1Bar = (FutureBar)min1Series.getLastBar();
+            if ( min1Bar.getIndex()/this.level.value()==barIndex && isCurrentTradingDay(min1Bar) ) {
+                currBar.updateFromBar(min1Bar);
+            }
+        }
+        return series;
+    }
+
+    /**
+     * 需要在MIN1 Builder更新之后调用
+     */
+    @Override
+    public boolean update(MarketData tick) {
+        if ( !min1Builder.hasNewBar() ) {
+            return false;
+        }
+        boolean result = false;
+        LeveledTimeSeries min1Series = min1Builder.getTimeSeries(PriceLevel.MIN1);
+        int endIndex = min1Series.getEndIndex();
+        for(int i=Math.max(nextMin1Index, min1Series.getBeginIndex()); i<=endIndex; i++) {
+            FutureBar min1Bar = (FutureBar)min1Series.getBar(i);
+            if ( isCurrentTradingDay(min1Bar) ) {
+                result |= merge(min1Bar);
+            }
+        }
+        nextMin1Index = endIndex;
+        return result;
+    }
+
+    /**
+     * 合并一个MIN1 Bar
+     *
+     * @return true 如果创建了新的Bar
+     */
+    private boolean merge(FutureBar min1Bar) {
+        int min1BarIndex = min1Bar.getIndex();
+        int levelBarIndex = min1BarIndex/level.value();
+        if ( currBar!=null && levelBarIndex==barIndex ) {
+            currBar.updateFromBar(min1Bar);
+            return false;
+        }
+        ZoneId zoneId = tradingTimes.getExchangeable().exchange().getZoneId();
+        if ( currBar!=null ) {
+            currBar.updateEndTime(barEndTime.atZone(zoneId));
+        }
+        LocalDateTime barBeginTime = min1Builder.getBarBeginTime(levelBarIndex*level.value());
+        FutureBar bar = FutureBar.create(levelBarIndex, tradingTimes, barBeginTime, min1Bar.getOpenTick(), min1Bar.getCloseTick(),
+                LongNum.fromNum(min1Bar.getMaxPrice()).rawValue(), LongNum.fromNum(min1Bar.getMinPrice()).rawValue());
+        try {
+            series.addBar(bar);
+            currBar = bar;
+            barIndex = levelBarIndex;
+            barEndTime = barBeginTime.plusMinutes(level.value());
+        }catch(Throwable t) {
+            logger.error(tradingTimes.getExchangeable()+" "+level+" failed to NEW Kbar #"+levelBarIndex+" old #"+barIndex+" : "+bar, t);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 忽略上一个交易日的MIN1 Bar
+     */
+    private boolean isCurrentTradingDay(FutureBar min1Bar) {
+        return min1Bar.getCloseTick()!=null && !min1Bar.getEndTime().toLocalDateTime().isBefore(tradingTimes.getMarketOpenTime());
+    }
+
+}
@@ -0,0 +1,224 @@
+package trader.service.ta.column;
+
+import java.time.ZonedDateTime;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.num.Num;
+
+import trader.common.util.PriceUtil;
+import trader.service.ta.Bar2;
+import trader.service.ta.LongNum;
+
+/**
+ * 列存储的K线数据, 每一列是一个long环形数组, 下标与TimeSeries的下标一致.
+ * <BR>价格/成交额按PriceUtil的long格式保存, 持仓量按原值保存.
+ * <BR>非线程安全, 由同一个线程更新和计算.
+ */
+public class BarColumns {
+    public static final int COL_OPEN = 0;
+    public static final int COL_HIGH = 1;
+    public static final int COL_LOW = 2;
+    public static final int COL_CLOSE = 3;
+    public static final int COL_VOLUME = 4;
+    public static final int COL_AMOUNT = 5;
+    public static final int COL_OPEN_INT = 6;
+    public static final int COL_MKT_AVG_PRICE = 7;
+    public static final int COL_AVG_PRICE = 8;
+    public static final int COL_COUNT = 9;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mask;
+    private final long[] beginTimes;
+    private final long[][] columns;
+    private final Column[] sources;
+    private int endIndex = -1;
+
+    public BarColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BarColumns(int capacity) {
+        int size = DoubleRing.ceilingPowerOf2(capacity);
+        mask = size-1;
+        beginTimes = new long[size];
+        columns = new long[COL_COUNT][size];
+        sources = new Column[COL_COUNT];
+        for(int i=0;i<COL_COUNT;i++) {
+            sources[i] = new Column(i);
+        }
+    }
+
+    public static BarColumns fromSeries(TimeSeries series) {
+        BarColumns result = new BarColumns(Math.max(DEFAULT_CAPACITY, series.getBarCount()));
+        result.sync(series);
+        return result;
+    }
+
+    public int getCapacity() {
+        return beginTimes.length;
+    }
+
+    public int getBeginIndex() {
+        return Math.max(0, endIndex-beginTimes.length+1);
+    }
+
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    public long getBeginTime(int index) {
+        return beginTimes[index&mask];
+    }
+
+    /**
+     * 原始long值
+     */
+    public long get(int column, int index) {
+        return columns[column][index&mask];
+    }
+
+    public ColumnSource getColumn(int column) {
+        return sources[column];
+    }
+
+    public ColumnSource getOpen() {
+        return sources[COL_OPEN];
+    }
+
+    public ColumnSource getHigh() {
+        return sources[COL_HIGH];
+    }
+
+    public ColumnSource getLow() {
+        return sources[COL_LOW];
+    }
+
+    public ColumnSource getClose() {
+        return sources[COL_CLOSE];
+    }
+
+    public ColumnSource getVolume() {
+        return sources[COL_VOLUME];
+    }
+
+    public ColumnSource getAmount() {
+        return sources[COL_AMOUNT];
+    }
+
+    public ColumnSource getMktAvgPrice() {
+        return sources[COL_MKT_AVG_PRICE];
+    }
+
+    public ColumnSource getAvgPrice() {
+        return sources[COL_AVG_PRICE];
+    }
+
+    /**
+     * 更新最后一个Bar或者追加一个新的Bar
+     */
+    public void set(int index, long beginTime, long open, long high, long low, long close, long volume, long amount, long openInt, long mktAvgPrice, long avgPrice) {
+        if ( index>endIndex+1 || index<endIndex ) {
+            throw new IllegalArgumentException("Index "+index+" is neither last nor next of end index "+endIndex);
+        }
+        int i = index&mask;
+        beginTimes[i] = beginTime;
+        columns[COL_OPEN][i] = open;
+        columns[COL_HIGH][i] = high;
+        columns[COL_LOW][i] = low;
+        columns[COL_CLOSE][i] = close;
+        columns[COL_VOLUME][i] = volume;
+        columns[COL_AMOUNT][i] = amount;
+        columns[COL_OPEN_INT][i] = openInt;
+        columns[COL_MKT_AVG_PRICE][i] = mktAvgPrice;
+        columns[COL_AVG_PRICE][i] = avgPrice;
+        endIndex = index;
+    }
+
+    public void set(int index, Bar bar) {
+        long openInt = 0, mktAvgPrice, avgPrice;
+        if ( bar instanceof Bar2 ) {
+            Bar2 bar2 = (Bar2)bar;
+            openInt = bar2.getOpenInterest();
+            mktAvgPrice = raw(bar2.getMktAvgPrice());
+            avgPrice = raw(bar2.getAvgPrice());
+        } else {
+            mktAvgPrice = avgPrice = raw(bar.getClosePrice());
+        }
+        ZonedDateTime beginTime = bar.getBeginTime();
+        set(index, beginTime.toEpochSecond()*1000+beginTime.getNano()/1000000,
+                raw(bar.getOpenPrice()), raw(bar.getMaxPrice()), raw(bar.getMinPrice()), raw(bar.getClosePrice()),
+                raw(bar.getVolume()), raw(bar.getAmount()), openInt, mktAvgPrice, avgPrice);
+    }
+
+    /**
+     * 从TimeSeries同步: 重新复制最后一个Bar, 追加新的Bar.
+     * <BR>如果落后太多, 只复制最近 getCapacity() 个Bar.
+     */
+    public void sync(TimeSeries series) {
+        int seriesEnd = series.getEndIndex();
+        if ( seriesEnd<0 || series.isEmpty() ) {
+            return;
+        }
+        int from = Math.max(endIndex, series.getBeginIndex());
+        if ( from<0 ) {
+            from = 0;
+        }
+        if ( from>endIndex+1 || seriesEnd-from>=beginTimes.length ) {
+            from = Math.max(from, seriesEnd-beginTimes.length+1);
+            endIndex = from-1;
+        }
+        for(int i=from; i<=seriesEnd; i++) {
+            set(i, series.getBar(i));
+        }
+    }
+
+    private static long raw(Num num) {
+        if ( num==null ) {
+            return 0;
+        }
+        if ( num instanceof LongNum ) {
+            return ((LongNum)num).rawValue();
+        }
+        return PriceUtil.price2long(num.doubleValue());
+    }
+
+    /**
+     * 某一列的double视图
+     */
+    private class Column implements ColumnSource {
+        private final long[] values;
+        private final boolean price;
+
+        Column(int column) {
+            this.values = columns[column];
+            this.price = column!=COL_OPEN_INT;
+        }
+
+        @Override
+        public int getBeginIndex() {
+            return BarColumns.this.getBeginIndex();
+        }
+
+        @Override
+        public int getEndIndex() {
+            return endIndex;
+        }
+
+        @Override
+        public int getCapacity() {
+            return beginTimes.length;
+        }
+
+        @Override
+        public double getValue(int index) {
+            long v = values[index&mask];
+            if ( price ) {
+                return PriceUtil.long2price(v);
+            }
+            return v;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package trader.service.ta.column;
+
+/**
+ * 列式指标基类, 计算结果保存在double环形缓冲区中.
+ * <BR>update() 先更新上游数据列, 然后从上次计算的最后一个下标开始计算:
+ * 最后一个Bar可能还在变化, 每次都重新计算; 之前的Bar不再重复计算.
+ * <BR>计算过程不分配对象, 非线程安全.
+ */
+public abstract class ColumnIndicator implements ColumnSource {
+
+    protected final ColumnSource[] sources;
+    protected final DoubleRing values;
+    /**
+     * 第一个计算的下标
+     */
+    protected int firstIndex = -1;
+    private int computedIndex = -1;
+
+    protected ColumnIndicator(ColumnSource ...sources) {
+        this.sources = sources;
+        int capacity = 0;
+        for(ColumnSource source:sources) {
+            capacity = Math.max(capacity, source.getCapacity());
+        }
+        values = new DoubleRing(capacity);
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return Math.max(firstIndex, values.getBeginIndex());
+    }
+
+    @Override
+    public int getEndIndex() {
+        return computedIndex;
+    }
+
+    @Override
+    public int getCapacity() {
+        return values.getCapacity();
+    }
+
+    @Override
+    public double getValue(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public void update() {
+        int beginIndex = 0, endIndex = Integer.MAX_VALUE;
+        for(ColumnSource source:sources) {
+            source.update();
+            beginIndex = Math.max(beginIndex, source.getBeginIndex());
+            endIndex = Math.min(endIndex, source.getEndIndex());
+        }
+        if ( endIndex<0 ) {
+            return;
+        }
+        int from = computedIndex;
+        if ( from<beginIndex ) {
+            //第一次计算, 或者落后太多上游数据已经被覆盖, 从头开始
+            from = beginIndex;
+            firstIndex = beginIndex;
+            values.reset(beginIndex);
+            reset();
+        }
+        for(int i=from; i<=endIndex; i++) {
+            values.set(i, compute(i));
+        }
+        computedIndex = endIndex;
+    }
+
+    /**
+     * 从 firstIndex 开始重新计算前清除内部状态
+     */
+    protected void reset() {
+    }
+
+    /**
+     * 计算下标index的值, index 之前的值已经计算好.
+     * <BR>同一个index可能因为最后一个Bar变化被计算多次.
+     */
+    protected abstract double compute(int index);
+
+}
@@ -0,0 +1,64 @@
+package trader.service.ta.column;
+
+import org.ta4j.core.Indicator;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.num.Num;
+
+import trader.common.util.PriceUtil;
+import trader.service.ta.LongNum;
+
+/**
+ * 把列式指标包装为ta4j的Indicator, 供现有代码使用.
+ * <BR>访问最后一个Bar或者更新的下标时, 先从TimeSeries同步数据再增量计算; 返回值为LongNum.
+ */
+public class ColumnIndicatorAdapter implements Indicator<Num> {
+    private static final long serialVersionUID = 6209046458290379134L;
+
+    private final TimeSeries series;
+    private final BarColumns bars;
+    private final ColumnSource source;
+
+    public ColumnIndicatorAdapter(TimeSeries series, BarColumns bars, ColumnSource source) {
+        this.series = series;
+        this.bars = bars;
+        this.source = source;
+    }
+
+    public ColumnSource getSource() {
+        return source;
+    }
+
+    public BarColumns getBarColumns() {
+        return bars;
+    }
+
+    /**
+     * 基于同一个TimeSeries和列数据, 包装另一个列式指标
+     */
+    public ColumnIndicatorAdapter derive(ColumnSource source) {
+        return new ColumnIndicatorAdapter(series, bars, source);
+    }
+
+    @Override
+    public Num getValue(int index) {
+        if ( index>=source.getEndIndex() ) {
+            bars.sync(series);
+            source.update();
+        }
+        if ( index<source.getBeginIndex() || index>source.getEndIndex() ) {
+            throw new IndexOutOfBoundsException("Index "+index+" is out of range ["+source.getBeginIndex()+", "+source.getEndIndex()+"]");
+        }
+        return LongNum.fromRawValue(PriceUtil.price2long(source.getValue(index)));
+    }
+
+    @Override
+    public TimeSeries getTimeSeries() {
+        return series;
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return series.numOf(number);
+    }
+
+}
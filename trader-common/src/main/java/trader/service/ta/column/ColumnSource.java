@@ -0,0 +1,32 @@
+package trader.service.ta.column;
+
+/**
+ * 按绝对下标访问的double数据列, 可以是K线的某一列, 也可以是指标结果.
+ * <BR>只保留最近 getCapacity() 个数据, getBeginIndex() 之前的数据已经被覆盖.
+ */
+public interface ColumnSource {
+
+    /**
+     * 最早可以访问的下标
+     */
+    public int getBeginIndex();
+
+    /**
+     * 最后一个数据的下标, -1 表示没有数据
+     */
+    public int getEndIndex();
+
+    /**
+     * 最多保留的数据个数
+     */
+    public int getCapacity();
+
+    public double getValue(int index);
+
+    /**
+     * 同步上游数据并计算到最新下标, 缺省什么都不做
+     */
+    public default void update() {
+    }
+
+}
@@ -0,0 +1,58 @@
+package trader.service.ta.column;
+
+/**
+ * 按绝对下标访问的double环形缓冲区, 容量为2的幂.
+ * <BR>只能更新最后一个下标或者追加下一个下标.
+ */
+public class DoubleRing {
+    private final double[] values;
+    private final int mask;
+    private int endIndex = -1;
+
+    public DoubleRing(int capacity) {
+        int size = ceilingPowerOf2(capacity);
+        values = new double[size];
+        mask = size-1;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    public int getBeginIndex() {
+        return Math.max(0, endIndex-values.length+1);
+    }
+
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    public double get(int index) {
+        return values[index&mask];
+    }
+
+    public void set(int index, double value) {
+        if ( index>endIndex+1 ) {
+            throw new IllegalArgumentException("Index "+index+" is not continuous to end index "+endIndex);
+        }
+        values[index&mask] = value;
+        if ( index>endIndex ) {
+            endIndex = index;
+        }
+    }
+
+    /**
+     * 清除数据, 下次从index开始写
+     */
+    public void reset(int index) {
+        endIndex = index-1;
+    }
+
+    static int ceilingPowerOf2(int capacity) {
+        if ( capacity<=1 ) {
+            return 1;
+        }
+        return Integer.highestOneBit(capacity-1)<<1;
+    }
+
+}
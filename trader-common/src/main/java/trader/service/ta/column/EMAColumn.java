@@ -0,0 +1,32 @@
+package trader.service.ta.column;
+
+/**
+ * 指数移动平均, 与ta4j的EMAIndicator一致: 第一个值等于原值, 乘数为 2/(N+1)
+ */
+public class EMAColumn extends ColumnIndicator {
+    private final ColumnSource source;
+    private final int barCount;
+    private final double multiplier;
+
+    public EMAColumn(ColumnSource source, int barCount) {
+        super(source);
+        this.source = source;
+        this.barCount = barCount;
+        this.multiplier = 2.0/(barCount+1);
+    }
+
+    public int getBarCount() {
+        return barCount;
+    }
+
+    @Override
+    protected double compute(int index) {
+        double v = source.getValue(index);
+        if ( index==firstIndex ) {
+            return v;
+        }
+        double prev = values.get(index-1);
+        return prev+(v-prev)*multiplier;
+    }
+
+}
@@ -0,0 +1,71 @@
+package trader.service.ta.column;
+
+/**
+ * 最近N个值的最小值, 与ta4j的LowestValueIndicator一致.
+ * <BR>使用单调队列保存已完成的下标, 最后一个下标可能还在变化, 不入队, 每次与队首比较. 每个下标均摊O(1).
+ */
+public class LLVColumn extends ColumnIndicator {
+    private final ColumnSource source;
+    private final int barCount;
+    private final int[] dequeIndexes;
+    private final double[] dequeValues;
+    private final int dequeMask;
+    private int head;
+    private int tail;
+    /**
+     * 已入队的最后一个下标
+     */
+    private int committedIndex;
+
+    public LLVColumn(ColumnSource source, int barCount) {
+        super(source);
+        this.source = source;
+        this.barCount = barCount;
+        int dequeSize = DoubleRing.ceilingPowerOf2(barCount+1);
+        dequeIndexes = new int[dequeSize];
+        dequeValues = new double[dequeSize];
+        dequeMask = dequeSize-1;
+    }
+
+    public int getBarCount() {
+        return barCount;
+    }
+
+    @Override
+    protected void reset() {
+        head = tail = 0;
+        committedIndex = firstIndex-1;
+    }
+
+    @Override
+    protected double compute(int index) {
+        for(int i=committedIndex+1; i<index; i++) {
+            push(i, source.getValue(i));
+            committedIndex = i;
+        }
+        int windowBegin = index-barCount+1;
+        while( head<tail && dequeIndexes[head&dequeMask]<windowBegin ) {
+            head++;
+        }
+        double result = source.getValue(index);
+        if ( head<tail ) {
+            result = Math.min(result, dequeValues[head&dequeMask]);
+        }
+        return result;
+    }
+
+    private void push(int index, double value) {
+        while( tail>head && dequeValues[(tail-1)&dequeMask]>=value ) {
+            tail--;
+        }
+        dequeIndexes[tail&dequeMask] = index;
+        dequeValues[tail&dequeMask] = value;
+        tail++;
+        //之后的下标的窗口从 index-barCount+2 开始
+        int windowBegin = index-barCount+2;
+        while( head<tail && dequeIndexes[head&dequeMask]<windowBegin ) {
+            head++;
+        }
+    }
+
+}
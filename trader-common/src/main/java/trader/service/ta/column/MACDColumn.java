@@ -0,0 +1,59 @@
+package trader.service.ta.column;
+
+/**
+ * MACD, 与 trader.service.ta.indicators.MACDIndicator 一致:
+ * DIFF=EMA(SHORT)-EMA(LONG), DEA=EMA(DIFF,M), MACD=2*(DIFF-DEA)
+ */
+public class MACDColumn extends ColumnIndicator {
+    private final DiffColumn diff;
+    private final EMAColumn dea;
+
+    public MACDColumn(ColumnSource source) {
+        this(source, 12, 26, 9);
+    }
+
+    public MACDColumn(ColumnSource source, int shortCount, int longCount, int deaCount) {
+        this(new DiffColumn(new EMAColumn(source, shortCount), new EMAColumn(source, longCount)), deaCount);
+    }
+
+    private MACDColumn(DiffColumn diff, int deaCount) {
+        this(diff, new EMAColumn(diff, deaCount));
+    }
+
+    private MACDColumn(DiffColumn diff, EMAColumn dea) {
+        //DEA 会先更新 DIFF, 避免重复更新
+        super(dea);
+        this.diff = diff;
+        this.dea = dea;
+    }
+
+    public ColumnSource getDIFF() {
+        return diff;
+    }
+
+    public ColumnSource getDEA() {
+        return dea;
+    }
+
+    @Override
+    protected double compute(int index) {
+        return 2*(diff.getValue(index)-dea.getValue(index));
+    }
+
+    private static class DiffColumn extends ColumnIndicator {
+        private final ColumnSource shortEma;
+        private final ColumnSource longEma;
+
+        DiffColumn(ColumnSource shortEma, ColumnSource longEma) {
+            super(shortEma, longEma);
+            this.shortEma = shortEma;
+            this.longEma = longEma;
+        }
+
+        @Override
+        protected double compute(int index) {
+            return shortEma.getValue(index)-longEma.getValue(index);
+        }
+    }
+
+}
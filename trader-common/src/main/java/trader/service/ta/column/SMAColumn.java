@@ -0,0 +1,41 @@
+package trader.service.ta.column;
+
+/**
+ * 简单移动平均, 用累计和计算, 与ta4j的SMAIndicator一致: 不足N个时按已有个数平均
+ */
+public class SMAColumn extends ColumnIndicator {
+    private final ColumnSource source;
+    private final int barCount;
+    private final DoubleRing sums;
+
+    public SMAColumn(ColumnSource source, int barCount) {
+        super(source);
+        this.source = source;
+        this.barCount = barCount;
+        sums = new DoubleRing(Math.max(values.getCapacity(), barCount+1));
+    }
+
+    public int getBarCount() {
+        return barCount;
+    }
+
+    @Override
+    protected void reset() {
+        sums.reset(firstIndex);
+    }
+
+    @Override
+    protected double compute(int index) {
+        double sum = source.getValue(index);
+        if ( index>firstIndex ) {
+            sum += sums.get(index-1);
+        }
+        sums.set(index, sum);
+        int from = index-barCount;
+        if ( from<firstIndex ) {
+            return sum/(index-firstIndex+1);
+        }
+        return (sum-sums.get(from))/barCount;
+    }
+
+}
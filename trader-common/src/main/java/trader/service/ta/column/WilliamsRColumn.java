@@ -0,0 +1,33 @@
+package trader.service.ta.column;
+
+/**
+ * W%R
+ * </p>
+ * 计算公式: (HHV(HIGH,N)-CLOSE)/(HHV(HIGH,N)-LLV(LOW,N))*100, 区间为0时返回0
+ */
+public class WilliamsRColumn extends ColumnIndicator {
+    private final ColumnSource close;
+    private final HHVColumn hhv;
+    private final LLVColumn llv;
+
+    public WilliamsRColumn(BarColumns bars, int barCount) {
+        this(bars.getClose(), new HHVColumn(bars.getHigh(), barCount), new LLVColumn(bars.getLow(), barCount));
+    }
+
+    private WilliamsRColumn(ColumnSource close, HHVColumn hhv, LLVColumn llv) {
+        super(close, hhv, llv);
+        this.close = close;
+        this.hhv = hhv;
+        this.llv = llv;
+    }
+
+    @Override
+    protected double compute(int index) {
+        double h = hhv.getValue(index), l = llv.getValue(index);
+        if ( h==l ) {
+            return 0;
+        }
+        return (h-close.getValue(index))/(h-l)*100;
+    }
+
+}
@@ -34,6 +34,13 @@ public interface Order extends TradeConstants {
 
     public String getRef();
 
+    /**
+     * long格式的OrderRef, 非数字格式的OrderRef返回-1
+     *
+     * @see OrderRefGen#ref2long(String)
+     */
+    public long getRefId();
+
     /**
      * 买卖方向
      */
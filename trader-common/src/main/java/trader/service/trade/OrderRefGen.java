@@ -7,4 +7,43 @@ public interface OrderRefGen {
 
     public String nextRefId(String accountId);
 
+    /**
+     * 返回long格式的OrderRef, 可以用long2ref转换为字符串
+     */
+    public long nextRef(String accountId);
+
+    /**
+     * 000xxx 格式的OrderRef
+     */
+    public static String long2ref(long ref) {
+        String refStr = Long.toString(ref);
+        if ( refStr.length()>=6 ) {
+            return refStr;
+        }
+        return "000000".substring(refStr.length())+refStr;
+    }
+
+    /**
+     * long2ref格式的OrderRef转换为long, 其它格式返回-1.
+     * <BR>只接受能原样转换回来的格式, 例如 "1" 或 "0000001" 返回-1, 避免与 "000001" 冲突
+     */
+    public static long ref2long(String orderRef) {
+        int len = orderRef!=null?orderRef.length():0;
+        if ( len<6 || len>18 ) {
+            return -1;
+        }
+        if ( len>6 && orderRef.charAt(0)=='0' ) {
+            return -1;
+        }
+        long result = 0;
+        for(int i=0;i<len;i++) {
+            char c = orderRef.charAt(i);
+            if ( c<'0' || c>'9' ) {
+                return -1;
+            }
+            result = result*10+(c-'0');
+        }
+        return result;
+    }
+
 }
@@ -1,15 +1,20 @@
 package trader.service.tradlet.script.func;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.ta4j.core.Indicator;
 import org.ta4j.core.indicators.EMAIndicator;
 import org.ta4j.core.num.Num;
 
 import trader.common.beans.Discoverable;
+import trader.service.ta.column.EMAColumn;
 import trader.service.tradlet.script.GroovyIndicatorValue;
 import trader.service.tradlet.script.TradletScriptFunction;
 
 @Discoverable(interfaceClass = TradletScriptFunction.class, purpose = "EMA")
 public class EMAFunc implements TradletScriptFunction {
+    private Map<Object, Indicator<Num>> columnIndicators = new HashMap<>();
 
     @Override
     public Object invoke(Object[] args) throws Exception {
@@ -17,7 +22,11 @@ public class EMAFunc implements TradletScriptFunction {
         Indicator<Num> indicator = groovyIndicator.getIndicator();
         int barCount = FuncHelper.obj2number(args[1]).intValue();
 
-        return new GroovyIndicatorValue(new EMAIndicator(indicator, barCount));
+        Indicator<Num> result = FuncHelper.getOrCreateColumnIndicator(columnIndicators, indicator, barCount, EMAColumn::new);
+        if ( result==null ) {
+            result = new EMAIndicator(indicator, barCount);
+        }
+        return new GroovyIndicatorValue(result);
     }
 
 }
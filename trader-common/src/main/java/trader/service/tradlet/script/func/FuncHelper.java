@@ -1,13 +1,18 @@
 package trader.service.tradlet.script.func;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.ta4j.core.Indicator;
 import org.ta4j.core.TimeSeries;
 import org.ta4j.core.num.Num;
 
 import trader.common.util.ConversionUtil;
+import trader.service.ta.column.ColumnIndicatorAdapter;
+import trader.service.ta.column.ColumnSource;
 import trader.service.tradlet.script.GroovyIndicatorValue;
 
 public class FuncHelper {
@@ -57,6 +62,19 @@ public class FuncHelper {
         return values;
     }
 
+    /**
+     * 参数为列式指标时, 按(参数, 周期)复用之前创建的列式指标, 新Bar只增量计算; 否则返回null
+     */
+    public static Indicator<Num> getOrCreateColumnIndicator(Map<Object, Indicator<Num>> cache, Indicator<Num> indicator, int barCount, BiFunction<ColumnSource, Integer, ColumnSource> creator) {
+        if ( !(indicator instanceof ColumnIndicatorAdapter) ) {
+            return null;
+        }
+        ColumnIndicatorAdapter adapter = (ColumnIndicatorAdapter)indicator;
+        return cache.computeIfAbsent(Arrays.asList(adapter.getSource(), barCount), (key)->{
+            return adapter.derive(creator.apply(adapter.getSource(), barCount));
+        });
+    }
+
     @FunctionalInterface
     public static interface IndicatorIterator {
         Num apply(Num n1, Num n2);
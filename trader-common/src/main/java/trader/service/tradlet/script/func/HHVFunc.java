@@ -1,19 +1,23 @@
 package trader.service.tradlet.script.func;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.ta4j.core.Indicator;
 import org.ta4j.core.indicators.helpers.HighestValueIndicator;
 import org.ta4j.core.num.Num;
 
 import trader.common.beans.Discoverable;
+import trader.service.ta.column.HHVColumn;
 import trader.service.ta.indicators.SimpleIndicator;
 import trader.service.tradlet.script.GroovyIndicatorValue;
 import trader.service.tradlet.script.TradletScriptFunction;
 
 @Discoverable(interfaceClass = TradletScriptFunction.class, purpose = "HHV")
 public class HHVFunc implements TradletScriptFunction {
+    private Map<Object, Indicator<Num>> columnIndicators = new HashMap<>();
 
     @Override
     public Object invoke(Object[] args) throws Exception {
@@ -38,7 +42,11 @@ public class HHVFunc implements TradletScriptFunction {
             return new GroovyIndicatorValue(new SimpleIndicator(indicator.getTimeSeries(), values));
         }else {
             //周期内最小值
-            return new GroovyIndicatorValue(new HighestValueIndicator(indicator, n));
+            Indicator<Num> result = FuncHelper.getOrCreateColumnIndicator(columnIndicators, indicator, n, HHVColumn::new);
+            if ( result==null ) {
+                result = new HighestValueIndicator(indicator, n);
+            }
+            return new GroovyIndicatorValue(result);
         }
     }
 
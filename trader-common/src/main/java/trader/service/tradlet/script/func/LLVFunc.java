@@ -1,19 +1,23 @@
 package trader.service.tradlet.script.func;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.ta4j.core.Indicator;
 import org.ta4j.core.indicators.helpers.LowestValueIndicator;
 import org.ta4j.core.num.Num;
 
 import trader.common.beans.Discoverable;
+import trader.service.ta.column.LLVColumn;
 import trader.service.ta.indicators.SimpleIndicator;
 import trader.service.tradlet.script.GroovyIndicatorValue;
 import trader.service.tradlet.script.TradletScriptFunction;
 
 @Discoverable(interfaceClass = TradletScriptFunction.class, purpose = "LLV")
 public class LLVFunc implements TradletScriptFunction {
+    private Map<Object, Indicator<Num>> columnIndicators = new HashMap<>();
 
     @Override
     public Object invoke(Object[] args) throws Exception {
@@ -39,7 +43,11 @@ public class LLVFunc implements TradletScriptFunction {
             return new GroovyIndicatorValue(new SimpleIndicator(indicator.getTimeSeries(), values));
         }else {
             //周期内最小值
-            return new GroovyIndicatorValue(new LowestValueIndicator(indicator, n));
+            Indicator<Num> result = FuncHelper.getOrCreateColumnIndicator(columnIndicators, indicator, n, LLVColumn::new);
+            if ( result==null ) {
+                result = new LowestValueIndicator(indicator, n);
+            }
+            return new GroovyIndicatorValue(result);
         }
     }
 
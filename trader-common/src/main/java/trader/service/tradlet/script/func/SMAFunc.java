@@ -1,15 +1,20 @@
 package trader.service.tradlet.script.func;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.ta4j.core.Indicator;
 import org.ta4j.core.indicators.SMAIndicator;
 import org.ta4j.core.num.Num;
 
 import trader.common.beans.Discoverable;
+import trader.service.ta.column.SMAColumn;
 import trader.service.tradlet.script.GroovyIndicatorValue;
 import trader.service.tradlet.script.TradletScriptFunction;
 
 @Discoverable(interfaceClass = TradletScriptFunction.class, purpose = "SMA")
 public class SMAFunc implements TradletScriptFunction {
+    private Map<Object, Indicator<Num>> columnIndicators = new HashMap<>();
 
     @Override
     public Object invoke(Object[] args) throws Exception {
@@ -17,7 +22,11 @@ public class SMAFunc implements TradletScriptFunction {
         Indicator<Num> indicator = groovyIndicator.getIndicator();
         int barCount = FuncHelper.obj2number(args[1]).intValue();
 
-        return new GroovyIndicatorValue(new SMAIndicator(indicator, barCount));
+        Indicator<Num> result = FuncHelper.getOrCreateColumnIndicator(columnIndicators, indicator, barCount, SMAColumn::new);
+        if ( result==null ) {
+            result = new SMAIndicator(indicator, barCount);
+        }
+        return new GroovyIndicatorValue(result);
     }
 
 }
@@ -63,6 +63,44 @@ public class TestExchangeableTradingTimes {
         assertTrue(tradingTime==tradingTime2);
     }
 
+    @Test
+    public void testEpochMillis() {
+        Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+        ExchangeableTradingTimes tradingTimes = ru1901.exchange().getTradingTimes(ru1901, DateUtil.str2localdate("20181203"));
+        LocalDateTime time = tradingTimes.getMarketOpenTime().minusMinutes(10);
+        while(time.isBefore(tradingTimes.getMarketCloseTime().plusMinutes(10))) {
+            long epochMillis = DateUtil.localdatetime2long(ru1901.exchange().getZoneId(), time);
+            int tradingTime = tradingTimes.getTradingTime(time);
+            assertTrue(tradingTimes.getTradingTime(epochMillis)==tradingTime);
+            assertTrue(tradingTimes.getTimeStage(epochMillis)==tradingTimes.getTimeStage(time));
+            time = time.plusNanos(15500*1000000L);
+        }
+
+        int min5 = 5*60*1000;
+        LocalDateTime time0 = DateUtil.str2localdatetime("20181130 21:01:01");
+        assertTrue(tradingTimes.getBarIndex(DateUtil.localdatetime2long(ru1901.exchange().getZoneId(), time0), min5)==0);
+        //10:15 休市算在前一个KBar
+        LocalDateTime time1 = DateUtil.str2localdatetime("20181203 10:20:00");
+        LocalDateTime time2 = DateUtil.str2localdatetime("20181203 10:14:59");
+        int barIndex1 = tradingTimes.getBarIndex(DateUtil.localdatetime2long(ru1901.exchange().getZoneId(), time1), min5);
+        int barIndex2 = tradingTimes.getBarIndex(DateUtil.localdatetime2long(ru1901.exchange().getZoneId(), time2), min5);
+        assertTrue(barIndex1==barIndex2);
+        assertTrue(tradingTimes.getMarketTime(barIndex2*min5).equals(DateUtil.str2localdatetime("20181203 10:10:00")));
+        assertTrue(tradingTimes.getMarketTime((barIndex2+1)*min5).equals(DateUtil.str2localdatetime("20181203 10:30:00")));
+    }
+
+    @Test
+    public void testSharedTradingTimes() {
+        Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+        Exchangeable ru1905 = Exchangeable.fromString("ru1905");
+        LocalDate tradingDay = DateUtil.str2localdate("20181203");
+        ExchangeableTradingTimes tradingTimes = ru1901.exchange().getTradingTimes(ru1901, tradingDay);
+        ExchangeableTradingTimes tradingTimes2 = ru1905.exchange().getTradingTimes(ru1905, tradingDay);
+        assertTrue(tradingTimes==ru1901.exchange().getTradingTimes(ru1901, tradingDay));
+        assertTrue(tradingTimes2.getExchangeable().equals(ru1905));
+        assertTrue(tradingTimes.getMarketTimes()==tradingTimes2.getMarketTimes());
+    }
+
     @Test
     public void testSC1809() {
         Exchangeable sc1809 = Exchangeable.fromString("sc1809");
@@ -0,0 +1,46 @@
+package trader.common.util.concurrent;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class TestAffinityThreadFactory {
+
+    @Test
+    public void testSelectCpuSet() {
+        assertTrue(AffinityThreadFactory.selectCpuSet(null, 0)==null);
+        assertTrue(AffinityThreadFactory.selectCpuSet("2", 3).equals("2"));
+        assertTrue(AffinityThreadFactory.selectCpuSet("2; 3;4-5", 1).equals("3"));
+        assertTrue(AffinityThreadFactory.selectCpuSet("2; 3;4-5", 5).equals("4-5"));
+    }
+
+    @Test
+    public void testPlacement() throws Exception {
+        AffinityThreadFactory unpinnedFactory = new AffinityThreadFactory("test-unpinned", null);
+        Thread unpinned = unpinnedFactory.newThread(()->{});
+        unpinned.start();
+        unpinned.join();
+        assertTrue(unpinned.isDaemon());
+        assertTrue(AffinityThreadFactory.PLACEMENT_UNPINNED.equals(AffinityThreadFactory.getPlacements().get("test-unpinned")));
+        unpinnedFactory.release();
+        assertTrue(!AffinityThreadFactory.getPlacements().containsKey("test-unpinned"));
+
+        if ( !(new File("/proc/thread-self")).exists() ) {
+            return;
+        }
+        long[] tid = new long[1];
+        Thread pinned = new AffinityThreadFactory("test-pinned", "0").newThread(()->{
+            try {
+                tid[0] = AffinityThreadFactory.getCurrentTid();
+            }catch(Exception e) {}
+        });
+        pinned.start();
+        pinned.join();
+        assertTrue(tid[0]>0);
+        String placement = AffinityThreadFactory.getPlacements().get("test-pinned");
+        assertTrue(placement.equals("0") || placement.equals(AffinityThreadFactory.PLACEMENT_UNPINNED));
+    }
+
+}
@@ -0,0 +1,40 @@
+package trader.service.stats;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketIndex() {
+        int lastIndex = -1;
+        for(long v=0;v<1000000;v++) {
+            int index = LatencyHistogram.bucketIndex(v);
+            assertTrue(index==lastIndex || index==lastIndex+1);
+            assertTrue(LatencyHistogram.bucketUpperValue(index)>=v);
+            lastIndex = index;
+        }
+        assertTrue(LatencyHistogram.bucketUpperValue(LatencyHistogram.bucketIndex(Long.MAX_VALUE))==Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for(int i=1;i<=10000;i++) {
+            histogram.record(i*1000);
+        }
+        assertTrue(histogram.getCount()==10000);
+        assertTrue(histogram.getMax()==10000*1000);
+        long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50>=5000*1000 && p50<=5000*1000*1.07);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99>=9900*1000 && p99<=9900*1000*1.07);
+        assertTrue(histogram.getValueAtPercentile(100)==histogram.getMax());
+
+        histogram.reset();
+        assertTrue(histogram.getCount()==0);
+        assertTrue(histogram.getValueAtPercentile(99)==0);
+    }
+
+}
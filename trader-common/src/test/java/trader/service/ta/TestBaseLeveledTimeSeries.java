@@ -0,0 +1,69 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.ZonedDateTime;
+
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.tick.PriceLevel;
+
+public class TestBaseLeveledTimeSeries {
+
+    private static BaseLeveledTimeSeries createSeries() {
+        return new BaseLeveledTimeSeries(Exchangeable.fromString("ru1901"), "ru1901-vol1k", PriceLevel.VOL1K, LongNum::valueOf);
+    }
+
+    @Test
+    public void testUnbounded() {
+        BaseLeveledTimeSeries series = createSeries();
+        assertTrue(series.getBeginIndex()==-1 && series.getEndIndex()==-1);
+        ZonedDateTime time = ZonedDateTime.now();
+        for(int i=0;i<1000;i++) {
+            series.addBar(time.plusMinutes(i), i, i+1, i-1, i, 10);
+        }
+        assertTrue(series.getBarCount()==1000);
+        assertTrue(series.getBeginIndex()==0 && series.getEndIndex()==999);
+        for(int i=0;i<1000;i++) {
+            assertTrue(series.getBar(i).getClosePrice().intValue()==i);
+        }
+        assertTrue(series.getBarData().size()==1000);
+    }
+
+    @Test
+    public void testMaximumBarCount() {
+        BaseLeveledTimeSeries series = createSeries();
+        series.setMaximumBarCount(100);
+        ZonedDateTime time = ZonedDateTime.now();
+        for(int i=0;i<1000;i++) {
+            series.addBar(time.plusMinutes(i), i, i+1, i-1, i, 10);
+            assertTrue(series.getEndIndex()==i);
+            assertTrue(series.getLastBar().getClosePrice().intValue()==i);
+        }
+        assertTrue(series.getBarCount()==100);
+        assertTrue(series.getRemovedBarsCount()==900);
+        assertTrue(series.getBeginIndex()==900 && series.getEndIndex()==999);
+        for(int i=900;i<1000;i++) {
+            assertTrue(series.getBar(i).getClosePrice().intValue()==i);
+        }
+        //已经移除的下标返回第一个Bar
+        assertTrue(series.getBar(10).getClosePrice().intValue()==900);
+
+        series.setMaximumBarCount(10);
+        assertTrue(series.getBarCount()==10);
+        assertTrue(series.getBeginIndex()==990 && series.getFirstBar().getClosePrice().intValue()==990);
+
+        TimeSeries subSeries = series.getSubSeries(995, 999);
+        assertTrue(subSeries.getBarCount()==4);
+        assertTrue(subSeries.getLastBar().getClosePrice().intValue()==998);
+
+        try {
+            series.addBar(time, 1, 1, 1, 1, 1);
+            fail("bar end time must be after series end time");
+        }catch(IllegalArgumentException e) {}
+    }
+
+}
@@ -0,0 +1,144 @@
+package trader.service.ta.column;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.junit.Test;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.SMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.indicators.helpers.HighestValueIndicator;
+import org.ta4j.core.indicators.helpers.LowestValueIndicator;
+import org.ta4j.core.indicators.helpers.MaxPriceIndicator;
+import org.ta4j.core.indicators.helpers.MinPriceIndicator;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+
+import trader.service.ta.indicators.MACDIndicator;
+import trader.service.ta.indicators.RSVIndicator;
+
+public class TestColumnIndicators {
+
+    /**
+     * 使用DoubleNum作为参照, LongNum的乘除每步舍入到4位小数, EMA会逐渐偏离
+     */
+    private static TimeSeries createSeries(int barCount) {
+        TimeSeries series = new BaseTimeSeries("test", DoubleNum::valueOf);
+        Random random = new Random(1);
+        ZonedDateTime time = ZonedDateTime.now().withNano(0);
+        double price = 3000;
+        for(int i=0;i<barCount;i++) {
+            double open = price;
+            price += random.nextInt(21)-10;
+            double high = Math.max(open, price)+random.nextInt(5);
+            double low = Math.min(open, price)-random.nextInt(5);
+            time = time.plusMinutes(1);
+            series.addBar(time, open, high, low, price, 100+random.nextInt(100));
+        }
+        return series;
+    }
+
+    private static void assertClose(Indicator<Num> expected, ColumnSource actual, int beginIndex, double delta) {
+        for(int i=beginIndex;i<=actual.getEndIndex();i++) {
+            assertEquals("index "+i, expected.getValue(i).doubleValue(), actual.getValue(i), delta);
+        }
+    }
+
+    @Test
+    public void testCompareWithTa4j() {
+        TimeSeries series = createSeries(300);
+        BarColumns bars = BarColumns.fromSeries(series);
+        assertTrue(bars.getEndIndex()==299);
+
+        ClosePriceIndicator close = new ClosePriceIndicator(series);
+        SMAColumn sma = new SMAColumn(bars.getClose(), 5);
+        EMAColumn ema = new EMAColumn(bars.getClose(), 12);
+        MACDColumn macd = new MACDColumn(bars.getClose());
+        HHVColumn hhv = new HHVColumn(bars.getHigh(), 9);
+        LLVColumn llv = new LLVColumn(bars.getLow(), 9);
+        RSVColumn rsv = new RSVColumn(bars, 9);
+        ColumnSource[] columns = new ColumnSource[] {sma, ema, macd, hhv, llv, rsv};
+        for(ColumnSource c:columns) {
+            c.update();
+            assertTrue(c.getEndIndex()==299);
+        }
+        assertClose(new SMAIndicator(close, 5), sma, 0, 0.001);
+        assertClose(new EMAIndicator(close, 12), ema, 0, 0.0001);
+        MACDIndicator macdIndicator = new MACDIndicator(close);
+        assertClose(macdIndicator, macd, 0, 0.0001);
+        assertClose(macdIndicator.getDEA(), macd.getDEA(), 0, 0.0001);
+        assertClose(new HighestValueIndicator(new MaxPriceIndicator(series), 9), hhv, 0, 0.0001);
+        assertClose(new LowestValueIndicator(new MinPriceIndicator(series), 9), llv, 0, 0.0001);
+        assertClose(new RSVIndicator(series, 9), rsv, 0, 0.0001);
+    }
+
+    /**
+     * 逐个追加Bar并反复修改最后一个Bar, 结果与一次性计算相同
+     */
+    @Test
+    public void testIncremental() {
+        TimeSeries series = createSeries(2000);
+        BarColumns full = BarColumns.fromSeries(series);
+        MACDColumn fullMacd = new MACDColumn(full.getClose());
+        SMAColumn fullSma = new SMAColumn(full.getClose(), 20);
+        HHVColumn fullHhv = new HHVColumn(full.getHigh(), 9);
+        LLVColumn fullLlv = new LLVColumn(full.getLow(), 1);
+        fullMacd.update();
+        fullSma.update();
+        fullHhv.update();
+        fullLlv.update();
+
+        BarColumns bars = new BarColumns(4096);
+        MACDColumn macd = new MACDColumn(bars.getClose());
+        SMAColumn sma = new SMAColumn(bars.getClose(), 20);
+        HHVColumn hhv = new HHVColumn(bars.getHigh(), 9);
+        LLVColumn llv = new LLVColumn(bars.getLow(), 1);
+        ColumnSource[] columns = new ColumnSource[] {macd, sma, hhv, llv};
+        for(int i=0;i<=series.getEndIndex();i++) {
+            //先写入一个错误的Bar, 再改正
+            long close = full.get(BarColumns.COL_CLOSE, i);
+            bars.set(i, 0, close, close+100000, close-100000, close+100000, 0, 0, 0, close, close);
+            for(ColumnSource c:columns) {
+                c.update();
+            }
+            bars.set(i, series.getBar(i));
+            for(ColumnSource c:columns) {
+                c.update();
+            }
+        }
+        for(int i=0;i<=series.getEndIndex();i++) {
+            assertEquals(fullMacd.getValue(i), macd.getValue(i), 0.000001);
+            assertEquals(fullSma.getValue(i), sma.getValue(i), 0.000001);
+            assertEquals(fullHhv.getValue(i), hhv.getValue(i), 0.000001);
+            assertEquals(fullLlv.getValue(i), llv.getValue(i), 0.000001);
+        }
+    }
+
+    @Test
+    public void testRingOverwrite() {
+        TimeSeries series = createSeries(3000);
+        BarColumns bars = new BarColumns(1000);
+        assertTrue(bars.getCapacity()==1024);
+        bars.sync(series);
+        assertTrue(bars.getEndIndex()==2999);
+        assertTrue(bars.getBeginIndex()==2999-1023);
+
+        HHVColumn hhv = new HHVColumn(bars.getHigh(), 9);
+        hhv.update();
+        assertTrue(hhv.getBeginIndex()==bars.getBeginIndex());
+        HighestValueIndicator expected = new HighestValueIndicator(new MaxPriceIndicator(series), 9);
+        assertClose(expected, hhv, hhv.getBeginIndex()+9, 0.0001);
+
+        ColumnIndicatorAdapter adapter = new ColumnIndicatorAdapter(series, bars, hhv);
+        series.addBar(series.getLastBar().getEndTime().plusMinutes(1), 3000, 9999, 2000, 3000, 100);
+        assertEquals(9999, adapter.getValue(3000).doubleValue(), 0.0001);
+        assertTrue(bars.getEndIndex()==3000);
+    }
+
+}
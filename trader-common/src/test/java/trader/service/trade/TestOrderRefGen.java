@@ -0,0 +1,25 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestOrderRefGen {
+
+    @Test
+    public void testRefConversion() {
+        assertTrue(OrderRefGen.long2ref(12).equals("000012"));
+        assertTrue(OrderRefGen.long2ref(1234567).equals("1234567"));
+        assertTrue(OrderRefGen.ref2long("000012")==12);
+        assertTrue(OrderRefGen.ref2long(OrderRefGen.long2ref(987654))==987654);
+        assertTrue(OrderRefGen.ref2long("ab12")==-1);
+        assertTrue(OrderRefGen.ref2long("")==-1);
+        assertTrue(OrderRefGen.ref2long(null)==-1);
+        //不能原样转换回来的格式
+        assertTrue(OrderRefGen.ref2long("1")==-1);
+        assertTrue(OrderRefGen.ref2long("0000001")==-1);
+        assertTrue(OrderRefGen.ref2long("000000")==0);
+        assertTrue(OrderRefGen.ref2long("1234567")==1234567);
+    }
+
+}
@@ -1,5 +1,7 @@
 package trader.service.event;
 
+import trader.service.md.MarketData;
+
 /**
  * 异步处理事件, 为RingBuffer服务
  */
@@ -32,6 +34,11 @@ public class AsyncEvent {
 
 	public Object data2;
 
+	/**
+	 * 预分配的行情数据对象, 在RingBuffer上循环复用, 不随clear清除
+	 */
+	public MarketData tick;
+
     public void setData(int eventType, AsyncEventProcessor processor, Object data, Object data2) {
         this.eventType = eventType;
         this.processor = processor;
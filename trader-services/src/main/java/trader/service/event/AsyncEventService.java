@@ -1,6 +1,9 @@
 package trader.service.event;
 
+import java.time.LocalDate;
+
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataProducer;
 
 public interface AsyncEventService {
 
@@ -9,6 +12,11 @@ public interface AsyncEventService {
      */
     public static final String FILTER_CHAIN_MAIN = "Main";
 
+    /**
+     * 交易事件处理线程, 有独立的RingBuffer, 只处理 publishProcessorEvent 发布的事件
+     */
+    public static final String FILTER_CHAIN_TRADE = "Trade";
+
     /**
      * 增加事件处理过滤器, 不同名称的过滤器会放在不同的EventHandler中执行
      *
@@ -19,5 +27,12 @@ public interface AsyncEventService {
 
     public void publishMarketData(MarketData md);
 
+    /**
+     * 发布原始行情数据, 在RingBuffer的预分配对象上原地转换, 事件处理完成后对象会被复用
+     *
+     * @param recvNanos 实时行情的接收时间, 为0时不统计延迟
+     */
+    public <T> void publishMarketData(MarketDataProducer<T> producer, T rawMarketData, LocalDate tradingDay, long recvNanos);
+
     public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2);
 }
@@ -1,10 +1,11 @@
 package trader.service.event;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,8 +18,16 @@ import com.lmax.disruptor.dsl.ProducerType;
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Lifecycle;
 import trader.common.config.ConfigUtil;
+import trader.common.exchangeable.Exchangeable;
 import trader.common.util.ConversionUtil;
+import trader.common.util.StringUtil;
+import trader.common.util.concurrent.AffinityThreadFactory;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataLatency;
+import trader.service.md.MarketDataProducer;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
+import trader.service.stats.StatsItemType;
 import trader.service.util.ConcurrentUtil;
 
 @Service
@@ -26,6 +35,24 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
 
     public static final String ITEM_DISRUPTOR_WAIT_STRATEGY = "/AsyncEventService/disruptor/waitStrategy";
     public static final String ITEM_DISRUPTOR_RINGBUFFER_SIZE = "/AsyncEventService/disruptor/ringBufferSize";
+    /**
+     * 分片数量, 每个分片有独立的RingBuffer和处理线程, 缺省为1.
+     * <BR>大于1时, 不同合约的行情会在不同线程上并行处理, 通用的MarketDataListener需要线程安全
+     */
+    public static final String ITEM_DISRUPTOR_SHARDS = "/AsyncEventService/disruptor/shards";
+    /**
+     * 交易事件RingBuffer的等待策略, 缺省与行情相同
+     */
+    public static final String ITEM_TRADE_DISRUPTOR_WAIT_STRATEGY = "/AsyncEventService/tradeDisruptor/waitStrategy";
+    public static final String ITEM_TRADE_DISRUPTOR_RINGBUFFER_SIZE = "/AsyncEventService/tradeDisruptor/ringBufferSize";
+    /**
+     * 分片消费线程绑定的CPU集合, 分号分隔按分片序号选择, 例如 "2;3"; 为空不绑定
+     */
+    public static final String ITEM_DISRUPTOR_AFFINITY = "/AsyncEventService/disruptor/affinity";
+    /**
+     * 交易事件消费线程绑定的CPU集合
+     */
+    public static final String ITEM_TRADE_DISRUPTOR_AFFINITY = "/AsyncEventService/tradeDisruptor/affinity";
 
     private static class AsyncEventHandler implements EventHandler<AsyncEvent>{
 
@@ -47,6 +74,10 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
             for(int i=0;i<filters.length;i++) {
                 int filterMask = filterMasks[i];
                 int eventType = event.eventType;
+                if ( eventType==0 ) {
+                    //数据填充失败的空事件
+                    break;
+                }
                 if ( (eventType&filterMask)==eventType ) {
                     if ( filters[i].onEvent(event) ) {
                         break;
@@ -57,38 +88,120 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
 
     }
 
-    @Autowired
-    private ExecutorService executorService;
+    /**
+     * 一个分片: 独立的RingBuffer和事件处理线程
+     */
+    private static class Shard {
+        final int index;
+        final Disruptor<AsyncEvent> disruptor;
+        RingBuffer<AsyncEvent> ringBuffer;
+        final AtomicLong publishCount = new AtomicLong();
 
-    private Disruptor<AsyncEvent> disruptor;
-    private RingBuffer<AsyncEvent> ringBuffer;
+        Shard(int index, Disruptor<AsyncEvent> disruptor) {
+            this.index = index;
+            this.disruptor = disruptor;
+        }
+
+        long getQueueDepth() {
+            RingBuffer<AsyncEvent> ringBuffer = this.ringBuffer;
+            if ( ringBuffer==null ) {
+                return 0;
+            }
+            return ringBuffer.getBufferSize()-ringBuffer.remainingCapacity();
+        }
+    }
+
+    @Autowired(required=false)
+    private StatsCollector statsCollector;
+
+    private Shard[] shards;
+    /**
+     * 交易事件的独立RingBuffer和高优先级处理线程, 成交回报不会排在行情后面.
+     * <BR>没有FILTER_CHAIN_TRADE过滤器时不启动, 交易事件在分片0处理
+     */
+    private Shard tradeShard;
 
     private List<Object[]> registeredFilters = new ArrayList<>();
 
     @Override
     public void init(BeansContainer beansContainer) throws Exception {
-        //启动disruptor
-        disruptor = new Disruptor<AsyncEvent>( new AsyncEventFactory()
-            , ConfigUtil.getInt(ITEM_DISRUPTOR_RINGBUFFER_SIZE, 65536)
-            , executorService
+        int shardCount = Math.max(1, ConfigUtil.getInt(ITEM_DISRUPTOR_SHARDS, 1));
+        //启动disruptor, 每个分片的每个FilterChain一个消费线程
+        String affinity = ConfigUtil.getString(ITEM_DISRUPTOR_AFFINITY);
+        shards = new Shard[shardCount];
+        for(int i=0;i<shardCount;i++) {
+            Disruptor<AsyncEvent> disruptor = new Disruptor<AsyncEvent>( new AsyncEventFactory()
+                , ConfigUtil.getInt(ITEM_DISRUPTOR_RINGBUFFER_SIZE, 65536)
+                , new AffinityThreadFactory("AsyncEvent-shard"+i, AffinityThreadFactory.selectCpuSet(affinity, i))
+                , ProducerType.MULTI
+                , ConcurrentUtil.createDisruptorWaitStrategy(ConfigUtil.getString(ITEM_DISRUPTOR_WAIT_STRATEGY))
+                );
+            shards[i] = new Shard(i, disruptor);
+        }
+        String tradeWaitStrategy = ConfigUtil.getString(ITEM_TRADE_DISRUPTOR_WAIT_STRATEGY);
+        if ( StringUtil.isEmpty(tradeWaitStrategy) ) {
+            tradeWaitStrategy = ConfigUtil.getString(ITEM_DISRUPTOR_WAIT_STRATEGY);
+        }
+        Disruptor<AsyncEvent> tradeDisruptor = new Disruptor<AsyncEvent>( new AsyncEventFactory()
+            , ConfigUtil.getInt(ITEM_TRADE_DISRUPTOR_RINGBUFFER_SIZE, 4096)
+            , new AffinityThreadFactory("AsyncEvent-"+FILTER_CHAIN_TRADE, ConfigUtil.getString(ITEM_TRADE_DISRUPTOR_AFFINITY), Thread.MAX_PRIORITY)
             , ProducerType.MULTI
-            , ConcurrentUtil.createDisruptorWaitStrategy(ConfigUtil.getString(ITEM_DISRUPTOR_WAIT_STRATEGY))
+            , ConcurrentUtil.createDisruptorWaitStrategy(tradeWaitStrategy)
             );
+        tradeShard = new Shard(-1, tradeDisruptor);
+        if ( statsCollector!=null ) {
+            for(Shard shard:shards) {
+                StatsItem queueDepthItem = new StatsItem(AsyncEventService.class.getSimpleName(), "shard"+shard.index, "queueDepth");
+                queueDepthItem.setType(StatsItemType.Instant);
+                statsCollector.registerStatsItem(queueDepthItem, (StatsItem itemInfo) -> {
+                    return shard.getQueueDepth();
+                });
+                statsCollector.registerStatsItem(new StatsItem(AsyncEventService.class.getSimpleName(), "shard"+shard.index, "publishCount"), (StatsItem itemInfo) -> {
+                    return shard.publishCount.get();
+                });
+            }
+            StatsItem tradeQueueDepthItem = new StatsItem(AsyncEventService.class.getSimpleName(), FILTER_CHAIN_TRADE, "queueDepth");
+            tradeQueueDepthItem.setType(StatsItemType.Instant);
+            statsCollector.registerStatsItem(tradeQueueDepthItem, (StatsItem itemInfo) -> {
+                return tradeShard.getQueueDepth();
+            });
+            statsCollector.registerStatsItem(new StatsItem(AsyncEventService.class.getSimpleName(), FILTER_CHAIN_TRADE, "publishCount"), (StatsItem itemInfo) -> {
+                return tradeShard.publishCount.get();
+            });
+        }
     }
 
     @Override
     public void destroy() {
-        if ( ringBuffer!=null ) {
-            disruptor.halt();
-            disruptor.shutdown();
-            ringBuffer = null;
+        if ( shards==null ) {
+            return;
+        }
+        for(Shard shard:shards) {
+            if ( shard.ringBuffer!=null ) {
+                shard.disruptor.halt();
+                shard.disruptor.shutdown();
+                shard.ringBuffer = null;
+            }
+        }
+        if ( tradeShard.ringBuffer!=null ) {
+            tradeShard.disruptor.halt();
+            tradeShard.disruptor.shutdown();
+            tradeShard.ringBuffer = null;
         }
     }
 
+    /**
+     * 每个分片都有全部FilterChain的处理线程, 分片之间并行执行; FILTER_CHAIN_TRADE 在独立的RingBuffer上执行
+     */
     public void start() {
         Map<String, List<Object[]>> filtersByChain = new LinkedHashMap<>();
+        List<Object[]> tradeFilters = new ArrayList<>();
         for(Object[] filter:registeredFilters) {
             String chainName = filter[0].toString();
+            if ( chainName.equals(FILTER_CHAIN_TRADE) ) {
+                tradeFilters.add(filter);
+                continue;
+            }
             List<Object[]> filters = filtersByChain.get(chainName);
             if ( filters==null) {
                 filters = new ArrayList<>();
@@ -97,13 +210,39 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
             filters.add(filter);
         }
         List<List<Object[]>> allFilters = new ArrayList<>(filtersByChain.values());
-        AsyncEventHandler[] handlers = new AsyncEventHandler[filtersByChain.size()];
-        for(int i=0;i<allFilters.size();i++) {
-            handlers[i] = new AsyncEventHandler(allFilters.get(i));
+        for(Shard shard:shards) {
+            AsyncEventHandler[] handlers = new AsyncEventHandler[filtersByChain.size()];
+            for(int i=0;i<allFilters.size();i++) {
+                handlers[i] = new AsyncEventHandler(allFilters.get(i));
+            }
+            shard.disruptor.handleEventsWith(handlers);
+            shard.ringBuffer = shard.disruptor.start();
+        }
+        if ( !tradeFilters.isEmpty() ) {
+            tradeShard.disruptor.handleEventsWith(new AsyncEventHandler(tradeFilters));
+            tradeShard.ringBuffer = tradeShard.disruptor.start();
         }
-        disruptor.handleEventsWith(handlers);
-        ringBuffer= disruptor.start();
-        //为每个FilterChain启动独立的线程
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 分片中已发布未处理的事件数
+     */
+    public long getQueueDepth(int shardIndex) {
+        return shards[shardIndex].getQueueDepth();
+    }
+
+    /**
+     * 行情按合约稳定分片, 同一合约的事件总是在同一分片上顺序处理
+     */
+    public int getShardIndex(Exchangeable e) {
+        if ( shards.length==1 ) {
+            return 0;
+        }
+        return (e.hashCode()&Integer.MAX_VALUE)%shards.length;
     }
 
     @Override
@@ -113,6 +252,9 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
 
     @Override
     public void publishMarketData(MarketData md) {
+        long recvNanos = md.recvNanos;
+        Shard shard = shards[getShardIndex(md.instrumentId)];
+        RingBuffer<AsyncEvent> ringBuffer = shard.ringBuffer;
         long seq = ringBuffer.next();
         try {
             AsyncEvent event = ringBuffer.get(seq);
@@ -120,10 +262,36 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
         }finally {
             ringBuffer.publish(seq);
         }
+        shard.publishCount.incrementAndGet();
+        MarketDataLatency.PUBLISH.recordSince(recvNanos);
+    }
+
+    @Override
+    public <T> void publishMarketData(MarketDataProducer<T> producer, T rawMarketData, LocalDate tradingDay, long recvNanos) {
+        Shard shard = shards[0];
+        if ( shards.length>1 ) {
+            shard = shards[getShardIndex(producer.getExchangeable(rawMarketData))];
+        }
+        RingBuffer<AsyncEvent> ringBuffer = shard.ringBuffer;
+        long seq = ringBuffer.next();
+        try {
+            AsyncEvent event = ringBuffer.get(seq);
+            event.clear();
+            event.tick = producer.updateMarketData(event.tick, rawMarketData, tradingDay);
+            event.tick.recycle();
+            event.tick.recvNanos = recvNanos;
+            event.setData(AsyncEvent.EVENT_TYPE_MARKETDATA, null, event.tick,  null);
+        }finally {
+            ringBuffer.publish(seq);
+        }
+        shard.publishCount.incrementAndGet();
+        MarketDataLatency.PUBLISH.recordSince(recvNanos);
     }
 
     @Override
     public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2) {
+        Shard shard = tradeShard.ringBuffer!=null?tradeShard:shards[0];
+        RingBuffer<AsyncEvent> ringBuffer = shard.ringBuffer;
         long seq = ringBuffer.next();
         try {
             AsyncEvent event = ringBuffer.get(seq);
@@ -131,6 +299,7 @@ public class AsyncEventServiceImpl implements AsyncEventService, Lifecycle {
         }finally {
             ringBuffer.publish(seq);
         }
+        shard.publishCount.incrementAndGet();
     }
 
 }
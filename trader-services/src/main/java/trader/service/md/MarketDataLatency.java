@@ -0,0 +1,67 @@
+package trader.service.md;
+
+import trader.service.stats.LatencyHistogram;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
+import trader.service.stats.StatsItemType;
+
+/**
+ * 行情TICK处理路径上的延迟检查点, 均为从行情接收(MarketData.recvNanos)开始计算的纳秒数
+ */
+public class MarketDataLatency {
+
+    /**
+     * 发布到AsyncEventService的RingBuffer之后
+     */
+    public static final LatencyHistogram PUBLISH = LatencyHistogram.getInstance("tick.publish");
+
+    /**
+     * MarketDataServiceImpl.onEvent 开始派发
+     */
+    public static final LatencyHistogram DISPATCH = LatencyHistogram.getInstance("tick.dispatch");
+
+    /**
+     * TAEntry 更新KBar之后
+     */
+    public static final LatencyHistogram BAR = LatencyHistogram.getInstance("tick.bar");
+
+    /**
+     * 排队到TradletGroupEngine之后
+     */
+    public static final LatencyHistogram TRADLET_QUEUE = LatencyHistogram.getInstance("tick.tradletQueue");
+
+    /**
+     * 交易组中所有Tradlet.onTick完成
+     */
+    public static final LatencyHistogram TRADLET = LatencyHistogram.getInstance("tick.tradlet");
+
+    private static final LatencyHistogram[] ALL = {PUBLISH, DISPATCH, BAR, TRADLET_QUEUE, TRADLET};
+
+    /**
+     * 注册各检查点的百分位统计项
+     */
+    public static void registerStatsItems(StatsCollector statsCollector) {
+        for(LatencyHistogram histogram:ALL) {
+            registerStatsItem(statsCollector, histogram, "p50", 50);
+            registerStatsItem(statsCollector, histogram, "p99", 99);
+            registerStatsItem(statsCollector, histogram, "p999", 99.9);
+            StatsItem maxItem = new StatsItem(MarketDataService.class.getSimpleName(), histogram.getName(), "max");
+            maxItem.setType(StatsItemType.Instant);
+            statsCollector.registerStatsItem(maxItem, (StatsItem itemInfo) -> {
+                return histogram.getMax();
+            });
+            statsCollector.registerStatsItem(new StatsItem(MarketDataService.class.getSimpleName(), histogram.getName(), "count"), (StatsItem itemInfo) -> {
+                return histogram.getCount();
+            });
+        }
+    }
+
+    private static void registerStatsItem(StatsCollector statsCollector, LatencyHistogram histogram, String item, double percentile) {
+        StatsItem statsItem = new StatsItem(MarketDataService.class.getSimpleName(), histogram.getName(), item);
+        statsItem.setType(StatsItemType.Instant);
+        statsCollector.registerStatsItem(statsItem, (StatsItem itemInfo) -> {
+            return histogram.getValueAtPercentile(percentile);
+        });
+    }
+
+}
@@ -3,19 +3,28 @@ package trader.service.md;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.StampedLock;
 
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 
+/**
+ * 一个合约的行情Listener和最新行情.
+ * <BR>Listener数组copy-on-write, 通过volatile发布, 行情线程无锁遍历.
+ * <BR>最新行情由行情线程原地复制到持有的对象中, 其它线程通过乐观读(seqlock)取得副本
+ */
 public class MarketDataListenerHolder {
+    private static final MarketDataListener[] EMPTY_LISTENERS = new MarketDataListener[0];
+
     private Exchangeable e;
     private ExchangeableTradingTimes tradingTimes;
     private long lastVolume;
     private long lastTimestamp;
-    public MarketData lastData;
-    private List<MarketDataListener> listeners = new ArrayList<>();
+    private final StampedLock lastDataLock = new StampedLock();
+    private MarketData lastData;
+    private volatile MarketDataListener[] listeners = EMPTY_LISTENERS;
 
     MarketDataListenerHolder(Exchangeable e, LocalDate tradingDay){
         this.e = e;
@@ -26,15 +35,84 @@ public class MarketDataListenerHolder {
         return tradingTimes;
     }
 
-    public void addListener(MarketDataListener listener) {
-        if ( !listeners.contains(listener) ) {
-            List<MarketDataListener> newListeners = new ArrayList<>(listeners);
-            newListeners.add(listener);
-            listeners = newListeners;
+    public Exchangeable getExchangeable() {
+        return e;
+    }
+
+    public synchronized void addListener(MarketDataListener listener) {
+        MarketDataListener[] listeners = this.listeners;
+        for(MarketDataListener l:listeners) {
+            if ( l==listener ) {
+                return;
+            }
         }
+        MarketDataListener[] newListeners = Arrays.copyOf(listeners, listeners.length+1);
+        newListeners[listeners.length] = listener;
+        this.listeners = newListeners;
     }
 
     public List<MarketDataListener> getListeners(){
+        return Arrays.asList(listeners);
+    }
+
+    /**
+     * 在行情线程中更新最新行情, 只复制数据, 不持有传入的TICK
+     */
+    void setLastData(MarketData tick) {
+        long stamp = lastDataLock.writeLock();
+        try {
+            if ( lastData==null || lastData.getClass()!=tick.getClass() ) {
+                lastData = tick.clone();
+            } else {
+                tick.copyTo(lastData);
+            }
+        }finally {
+            lastDataLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 返回最新行情的副本
+     */
+    public MarketData getLastData() {
+        return getLastData(null);
+    }
+
+    /**
+     * 复制最新行情到reuse中并返回, reuse为null或类型不匹配时返回新的副本
+     */
+    public MarketData getLastData(MarketData reuse) {
+        long stamp = lastDataLock.tryOptimisticRead();
+        if ( stamp!=0 ) {
+            MarketData result = copyLastData(reuse);
+            if ( lastDataLock.validate(stamp) ) {
+                return result;
+            }
+        }
+        stamp = lastDataLock.readLock();
+        try {
+            return copyLastData(reuse);
+        }finally {
+            lastDataLock.unlockRead(stamp);
+        }
+    }
+
+    private MarketData copyLastData(MarketData reuse) {
+        MarketData data = lastData;
+        if ( data==null ) {
+            return null;
+        }
+        if ( reuse==null || reuse.getClass()!=data.getClass() ) {
+            return data.clone();
+        }
+        data.copyTo(reuse);
+        return reuse;
+    }
+
+    /**
+     * 当前Listener数组, 调用者不能修改
+     */
+    MarketDataListener[] getListenerArray(){
         return listeners;
     }
 
@@ -5,6 +5,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -126,13 +127,19 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      */
     private Map<String, AbsMarketDataProducer> producers = new HashMap<>();
 
-    private List<MarketDataListener> genericListeners = new ArrayList<>();
+    private volatile MarketDataListener[] genericListeners = new MarketDataListener[0];
 
     /**
-     * 使用Copy-On-Write维护的行情读写锁
+     * 订阅合约的ListenerHolder, 只在持有listenerHolderLock写锁时修改
      */
     private Map<Exchangeable, MarketDataListenerHolder> listenerHolders = new HashMap<>();
 
+    /**
+     * 按 Exchangeable.uniqueIntId() 索引的ListenerHolder数组, 修改listenerHolders后重新生成并通过volatile发布.
+     * <BR>行情线程和策略线程无锁读取
+     */
+    private volatile MarketDataListenerHolder[] holdersByIntId = new MarketDataListenerHolder[0];
+
     private ReadWriteLock listenerHolderLock = new ReentrantReadWriteLock();
 
     @Override
@@ -147,6 +154,9 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
             reloadSubscriptionsAndSubscribe();
         });
         reloadProducers();
+        if ( statsCollector!=null ) {
+            MarketDataLatency.registerStatsItems(statsCollector);
+        }
         scheduledExecutorService.scheduleAtFixedRate(()->{
             if ( dataSaver!=null ) {
                 dataSaver.flushAllWriters();
@@ -250,9 +260,18 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
 
     @Override
     public MarketData getLastData(Exchangeable e) {
-        MarketDataListenerHolder holder = listenerHolders.get(e);
+        MarketDataListenerHolder holder = getListenerHolder(e);
+        if ( holder!=null ) {
+            return holder.getLastData();
+        }
+        return null;
+    }
+
+    @Override
+    public MarketData getLastData(Exchangeable e, MarketData reuse) {
+        MarketDataListenerHolder holder = getListenerHolder(e);
         if ( holder!=null ) {
-            return holder.lastData;
+            return holder.getLastData(reuse);
         }
         return null;
     }
@@ -269,6 +288,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
                 newSubscriptions.add(e);
                 getOrCreateListenerHolder(e, newSubscriptions);
             }
+            publishListenerHolders();
         }finally {
             listenerHolderLock.writeLock().unlock();
         }
@@ -279,7 +299,12 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
 
     @Override
     public Collection<Exchangeable> getSubscriptions(){
-        return new ArrayList<>(listenerHolders.keySet());
+        listenerHolderLock.readLock().lock();
+        try {
+            return new ArrayList<>(listenerHolders.keySet());
+        }finally {
+            listenerHolderLock.readLock().unlock();
+        }
     }
 
     @Override
@@ -288,12 +313,15 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         try {
             listenerHolderLock.writeLock().lock();
             if ( exchangeables==null || exchangeables.length==0 || (exchangeables.length==1&&exchangeables[0]==null) ){
-                genericListeners.add(listener);
+                MarketDataListener[] newListeners = Arrays.copyOf(genericListeners, genericListeners.length+1);
+                newListeners[newListeners.length-1] = listener;
+                genericListeners = newListeners;
             } else {
                 for(Exchangeable exchangeable:exchangeables) {
                     MarketDataListenerHolder holder = getOrCreateListenerHolder(exchangeable, subscribes);
                     holder.addListener(listener);
                 }
+                publishListenerHolders();
             }
         }finally {
             listenerHolderLock.writeLock().unlock();
@@ -313,25 +341,34 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
     public boolean onEvent(AsyncEvent event)
     {
         MarketData tick = (MarketData)event.data;
-        MarketDataListenerHolder holder= listenerHolders.get(tick.instrumentId);
-        if ( null!=holder && holder.checkTick(tick) ) {
-            holder.lastData = tick;
+        MarketDataLatency.DISPATCH.recordSince(tick.recvNanos);
+        MarketDataListenerHolder holder= getListenerHolder(tick.instrumentId);
+        boolean accepted = null!=holder && holder.checkTick(tick);
+        if ( accepted ) {
             tick.postProcess(holder.getTradingTimes());
+        }
+        //RingBuffer上预分配的对象会被复用, 只有需要持有TICK时才通过retain()复制一次
+        if ( saveData && tick==event.tick ) {
+            dataSaver.asyncSave(tick.retain());
+        }
+        if ( accepted ) {
+            holder.setLastData(tick);
             //通用Listener
-            for(int i=0;i<genericListeners.size();i++) {
+            MarketDataListener[] listeners = genericListeners;
+            for(int i=0;i<listeners.length;i++) {
                 try{
-                    genericListeners.get(i).onMarketData(tick);
+                    listeners[i].onMarketData(tick);
                 }catch(Throwable t) {
-                    logger.error("Marketdata listener "+genericListeners.get(i)+" process failed: "+tick,t);
+                    logger.error("Marketdata listener "+listeners[i]+" process failed: "+tick,t);
                 }
             }
             //特有的listeners
-            List<MarketDataListener> listeners = holder.getListeners();
-            for(int i=0;i<listeners.size();i++) {
+            listeners = holder.getListenerArray();
+            for(int i=0;i<listeners.length;i++) {
                 try {
-                    listeners.get(i).onMarketData(tick);
+                    listeners[i].onMarketData(tick);
                 }catch(Throwable t) {
-                    logger.error("Marketdata listener "+listeners.get(i)+" process failed: "+tick,t);
+                    logger.error("Marketdata listener "+listeners[i]+" process failed: "+tick,t);
                 }
             }
         }
@@ -376,6 +413,14 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         }
     }
 
+    /**
+     * 原始行情数据直接在disruptor的预分配对象上转换, 保存在事件处理线程完成
+     */
+    @Override
+    public <T> void onMarketData(MarketDataProducer<T> producer, T rawMarketData, LocalDate tradingDay, long recvNanos) {
+        asyncEventService.publishMarketData(producer, rawMarketData, tradingDay, recvNanos);
+    }
+
     /**
      * 实时查询主力合约, 失败则加载上一次的值
      */
@@ -526,6 +571,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
                 for(Exchangeable e:newInstruments) {
                     getOrCreateListenerHolder(e, null);
                 }
+                publishListenerHolders();
             }finally {
                 listenerHolderLock.writeLock().unlock();
             }
@@ -540,7 +586,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      */
     private void reloadSubscriptionsAndSubscribe() {
         List<Exchangeable> newInstruments = new ArrayList<>();
-        reloadSubscriptions(listenerHolders.keySet(), newInstruments);
+        reloadSubscriptions(getSubscriptions(), newInstruments);
         if ( !newInstruments.isEmpty() ) {
             producersSubscribe(newInstruments);
         }
@@ -621,6 +667,33 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         return result;
     }
 
+    private MarketDataListenerHolder getListenerHolder(Exchangeable e) {
+        MarketDataListenerHolder[] holders = holdersByIntId;
+        int intId = e.uniqueIntId();
+        if ( intId<holders.length ) {
+            return holders[intId];
+        }
+        return null;
+    }
+
+    /**
+     * 修改listenerHolders后重新生成数组并发布, 需要持有写锁
+     */
+    private void publishListenerHolders() {
+        int length = holdersByIntId.length;
+        for(Exchangeable e:listenerHolders.keySet()) {
+            length = Math.max(length, e.uniqueIntId()+1);
+        }
+        MarketDataListenerHolder[] holders = new MarketDataListenerHolder[length];
+        for(MarketDataListenerHolder holder:listenerHolders.values()) {
+            holders[holder.getExchangeable().uniqueIntId()] = holder;
+        }
+        holdersByIntId = holders;
+    }
+
+    /**
+     * 返回或创建ListenerHolder, 需要持有写锁, 之后调用 publishListenerHolders() 发布
+     */
     private MarketDataListenerHolder getOrCreateListenerHolder(Exchangeable exchangeable, List<Exchangeable> subscribes) {
         MarketDataListenerHolder holder = listenerHolders.get(exchangeable);
         if (null == holder) {
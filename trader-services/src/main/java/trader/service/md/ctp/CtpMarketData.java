@@ -19,7 +19,37 @@ public class CtpMarketData extends MarketData {
 
     CThostFtdcDepthMarketDataField field;
 
+    /**
+     * 缓存的交易日字符串, 避免每个TICK重复格式化
+     */
+    private LocalDate cachedTradingDay;
+    private String cachedTradingDayStr;
+    /**
+     * 缓存的ActionDay和当日零点的时间戳, updateTime/updateTimestamp 直接由整数计算, 不解析字符串
+     */
+    private String cachedActionDayStr;
+    private LocalDate cachedActionDay;
+    private long cachedActionDayMillis;
+    /**
+     * DCE夜市由TradingDay推算ActionDay的缓存: TradingDay, 前一交易日, 前一交易日的下一天
+     */
+    private String cachedDceTradingDayStr;
+    private String[] cachedDceActionDayStrs;
+
+    /**
+     * 创建空对象, 用于RingBuffer上预分配, 之后通过update原地填充
+     */
+    public CtpMarketData() {
+    }
+
     public CtpMarketData(String producerId, Exchangeable exchangeable, CThostFtdcDepthMarketDataField data, LocalDate tradingDay) {
+        update(producerId, exchangeable, data, tradingDay);
+    }
+
+    /**
+     * 从CTP行情数据原地更新, 行情深度数组在长度相同时复用
+     */
+    public void update(String producerId, Exchangeable exchangeable, CThostFtdcDepthMarketDataField data, LocalDate tradingDay) {
         this.producerId = producerId;
         this.field = data;
         this.instrumentId = exchangeable;
@@ -30,28 +60,26 @@ public class CtpMarketData extends MarketData {
         String tradingDayStr = data.TradingDay;
         if ( exchangeable.exchange()==Exchange.DCE ) {
             //DCE的ActionDay, 夜市的值实际上是TradignDay
-            int timeInt = DateUtil.time2int(data.UpdateTime);
+            int timeInt = time2int(data.UpdateTime);
             if (timeInt >= 80000 && timeInt <= 185000) {
                 // 日市tradingDay==actionDay, 不做任何修改
             } else {
-                // 夜市 tradingDay-1 = actionDay
-                LocalDate actionDay = MarketDayUtil.prevMarketDay(exchangeable.exchange(), DateUtil.str2localdate(data.TradingDay));
-                // 夜市的00:0002:30, 夜市后半场
-                if (timeInt < 30000) {
-                    actionDay = actionDay.plusDays(1);
-                }
-                actionDayStr = DateUtil.date2str(actionDay);
+                // 夜市 tradingDay-1 = actionDay, 夜市的00:00-02:30是夜市后半场
+                actionDayStr = dceNightActionDay(exchangeable.exchange(), data.TradingDay, timeInt<30000);
             }
         } else if ( exchangeable.exchange()==Exchange.CZCE ) {
             //CZCE的tradingDay是actionDay, 需要判断后加以识别
-            tradingDayStr = DateUtil.date2str(tradingDay);
+            tradingDayStr = tradingDay2str(tradingDay);
         }
         if ( StringUtil.isEmpty(tradingDayStr)) {
-            tradingDayStr = DateUtil.date2str(tradingDay);
+            tradingDayStr = tradingDay2str(tradingDay);
         }
 
-        this.updateTime = DateUtil.str2localdatetime(actionDayStr, data.UpdateTime, data.UpdateMillisec);
-        this.updateTimestamp = DateUtil.localdatetime2long(CFFEX_ZONE_ID, updateTime);
+        updateActionDay(actionDayStr);
+        int timeInt = time2int(data.UpdateTime);
+        int hour = timeInt/10000, minute = (timeInt/100)%100, second = timeInt%100;
+        this.updateTime = cachedActionDay.atTime(hour, minute, second, data.UpdateMillisec*1000000);
+        this.updateTimestamp = cachedActionDayMillis+(hour*3600+minute*60+second)*1000L+data.UpdateMillisec;
         this.preClosePrice = PriceUtil.price2long(data.PreClosePrice);
         this.openPrice = PriceUtil.price2long(data.OpenPrice);
         this.highestPrice = PriceUtil.price2long(data.HighestPrice);
@@ -68,49 +96,93 @@ public class CtpMarketData extends MarketData {
         this.tradingDay = tradingDayStr;
         this.upperLimitPrice = PriceUtil.price2long(data.UpperLimitPrice);
         this.lowerLimitPrice = PriceUtil.price2long(data.LowerLimitPrice);
+        this.mktStage = null;
+        this.mktTime = 0;
         long bidPrice2 = PriceUtil.price2long(data.BidPrice2);
         if (bidPrice2 == Long.MAX_VALUE || bidPrice2==0) {
             this.depth = 1;
-            bidPrices = new long[] { PriceUtil.price2long(data.BidPrice1) };
-            bidVolumes = new int[] { data.BidVolume1 };
-            askPrices = new long[] { PriceUtil.price2long(data.AskPrice1) };
-            askVolumes = new int[] { data.AskVolume1 };
+            ensureDepthArrays(1);
+            bidPrices[0] = PriceUtil.price2long(data.BidPrice1);
+            bidVolumes[0] = data.BidVolume1;
+            askPrices[0] = PriceUtil.price2long(data.AskPrice1);
+            askVolumes[0] = data.AskVolume1;
         } else {
             this.depth = 5;
-            long[] bidPrices = new long[5];
+            ensureDepthArrays(5);
             bidPrices[0] = PriceUtil.price2long(data.BidPrice1);
             bidPrices[1] = bidPrice2;
             bidPrices[2] = PriceUtil.price2long(data.BidPrice3);
             bidPrices[3] = PriceUtil.price2long(data.BidPrice4);
             bidPrices[4] = PriceUtil.price2long(data.BidPrice5);
-            this.bidPrices = bidPrices;
 
-            int[] bidVolumes = new int[5];
             bidVolumes[0] = data.BidVolume1;
             bidVolumes[1] = data.BidVolume2;
             bidVolumes[2] = data.BidVolume3;
             bidVolumes[3] = data.BidVolume4;
             bidVolumes[4] = data.BidVolume5;
-            this.bidVolumes = bidVolumes;
 
-            long[] askPrices = new long[5];
             askPrices[0] = PriceUtil.price2long(data.AskPrice1);
             askPrices[1] = PriceUtil.price2long(data.AskPrice2);
             askPrices[2] = PriceUtil.price2long(data.AskPrice3);
             askPrices[3] = PriceUtil.price2long(data.AskPrice4);
             askPrices[4] = PriceUtil.price2long(data.AskPrice5);
-            this.askPrices = askPrices;
 
-            int[] askVolumes = new int[5];
             askVolumes[0] = data.AskVolume1;
             askVolumes[1] = data.AskVolume2;
             askVolumes[2] = data.AskVolume3;
             askVolumes[3] = data.AskVolume4;
             askVolumes[4] = data.AskVolume5;
-            this.askVolumes = askVolumes;
         }
     }
 
+    private void ensureDepthArrays(int depth) {
+        if ( bidPrices==null || bidPrices.length!=depth ) {
+            bidPrices = new long[depth];
+            bidVolumes = new int[depth];
+            askPrices = new long[depth];
+            askVolumes = new int[depth];
+        }
+    }
+
+    private void updateActionDay(String actionDayStr) {
+        if ( !actionDayStr.equals(cachedActionDayStr) ) {
+            cachedActionDay = DateUtil.str2localdate(actionDayStr);
+            cachedActionDayMillis = DateUtil.localdatetime2long(CFFEX_ZONE_ID, cachedActionDay.atStartOfDay());
+            cachedActionDayStr = actionDayStr;
+        }
+    }
+
+    private String dceNightActionDay(Exchange exchange, String tradingDayStr, boolean afterMidnight) {
+        if ( !tradingDayStr.equals(cachedDceTradingDayStr) ) {
+            LocalDate actionDay = MarketDayUtil.prevMarketDay(exchange, DateUtil.str2localdate(tradingDayStr));
+            cachedDceActionDayStrs = new String[] {DateUtil.date2str(actionDay), DateUtil.date2str(actionDay.plusDays(1))};
+            cachedDceTradingDayStr = tradingDayStr;
+        }
+        return cachedDceActionDayStrs[afterMidnight?1:0];
+    }
+
+    /**
+     * 转换 09:00:00 或 9:00:00 格式为 90000, 空字符串为0
+     */
+    private static int time2int(String timeHHCMMCSS) {
+        int result = 0;
+        for(int i=0;i<timeHHCMMCSS.length();i++) {
+            char ch = timeHHCMMCSS.charAt(i);
+            if ( ch>='0' && ch<='9' ) {
+                result = result*10+(ch-'0');
+            }
+        }
+        return result;
+    }
+
+    private String tradingDay2str(LocalDate tradingDay) {
+        if ( tradingDay!=cachedTradingDay ) {
+            cachedTradingDayStr = DateUtil.date2str(tradingDay);
+            cachedTradingDay = tradingDay;
+        }
+        return cachedTradingDayStr;
+    }
+
     @Override
     public String getCsvHead() {
         StringBuilder header = new StringBuilder();
@@ -134,10 +206,16 @@ public class CtpMarketData extends MarketData {
         }
     }
 
+    @Override
+    public void copyTo(MarketData target) {
+        ((CtpMarketData)target).field = field;
+        cloneImpl(target);
+    }
+
     @Override
     public MarketData clone() {
-        CtpMarketData obj = new CtpMarketData(producerId, instrumentId, field, DateUtil.str2localdate(tradingDay));
-        cloneImpl(obj);
+        CtpMarketData obj = new CtpMarketData();
+        copyTo(obj);
         return obj;
     }
 
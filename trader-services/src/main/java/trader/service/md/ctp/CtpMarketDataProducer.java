@@ -226,8 +226,7 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
 
     @Override
     public void OnRtnDepthMarketData(CThostFtdcDepthMarketDataField pDepthMarketData) {
-        MarketData md = createMarketData(pDepthMarketData, tradingDay);
-        notifyData(md);
+        notifyData(pDepthMarketData, tradingDay, System.nanoTime());
     }
 
     private Map<String, Exchangeable> exchangeableMap = new HashMap<>();
@@ -244,7 +243,22 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
     @Override
     public MarketData createMarketData(CThostFtdcDepthMarketDataField ctpMarketData, LocalDate tradingDay) {
         Exchangeable exchangeable = findOrCreate(ctpMarketData.ExchangeID, ctpMarketData.InstrumentID);
-        CtpMarketData md = new CtpMarketData(getId(), exchangeable, ctpMarketData, tradingDay);
+        return new CtpMarketData(getId(), exchangeable, ctpMarketData, tradingDay);
+    }
+
+    @Override
+    public Exchangeable getExchangeable(CThostFtdcDepthMarketDataField ctpMarketData) {
+        return findOrCreate(ctpMarketData.ExchangeID, ctpMarketData.InstrumentID);
+    }
+
+    @Override
+    public MarketData updateMarketData(MarketData reuse, CThostFtdcDepthMarketDataField ctpMarketData, LocalDate tradingDay) {
+        if ( !(reuse instanceof CtpMarketData) ) {
+            return createMarketData(ctpMarketData, tradingDay);
+        }
+        Exchangeable exchangeable = findOrCreate(ctpMarketData.ExchangeID, ctpMarketData.InstrumentID);
+        CtpMarketData md = (CtpMarketData)reuse;
+        md.update(getId(), exchangeable, ctpMarketData, tradingDay);
         return md;
     }
 
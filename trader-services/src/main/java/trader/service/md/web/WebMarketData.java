@@ -105,6 +105,12 @@ public class WebMarketData extends MarketData {
         }
     }
 
+    @Override
+    public void copyTo(MarketData target) {
+        ((WebMarketData)target).field = field;
+        cloneImpl(target);
+    }
+
     @Override
     public MarketData clone() {
         return new WebMarketData(producerId, instrumentId, field);
@@ -62,6 +62,11 @@ public class WebMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
         return new WebMarketData(PROVIDER_WEB, exchangeable, rawMarketData);
     }
 
+    @Override
+    public Exchangeable getExchangeable(CThostFtdcDepthMarketDataField rawMarketData) {
+        return str2security(rawMarketData.InstrumentID);
+    }
+
     @Override
     protected void close0() {
         changeStatus(ConnState.Disconnected);
@@ -1,6 +1,5 @@
 package trader.service.ta;
 
-import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -9,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import trader.common.beans.BeansContainer;
+import trader.common.config.ConfigUtil;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableTradingTimes;
@@ -16,8 +16,10 @@ import trader.common.exchangeable.MarketDayUtil;
 import trader.common.tick.PriceLevel;
 import trader.common.util.DateUtil;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataLatency;
 import trader.service.ta.bar.BarBuilder;
 import trader.service.ta.bar.FutureBarBuilder;
+import trader.service.ta.bar.MinuteBarAggregator;
 import trader.service.trade.MarketTimeService;
 
 /**
@@ -34,6 +36,10 @@ public class TAEntry implements TAItem {
 
     private BeansContainer beansContainer;
     private Exchangeable e;
+    /**
+     * 不为null时, 创建KBar序列时加载上一个交易日的历史Bar
+     */
+    private ExchangeableData historyData;
     private List<LeveledBarBuilderInfo> levelBuilders = new ArrayList<>();
 
     public TAEntry(BeansContainer beansContainer, Exchangeable e) {
@@ -41,6 +47,13 @@ public class TAEntry implements TAItem {
         this.e = e;
     }
 
+    /**
+     * 创建KBar序列时从data加载上一个交易日的历史Bar, 分钟Bar使用派生Bar缓存
+     */
+    public void setHistoryData(ExchangeableData data) {
+        this.historyData = data;
+    }
+
     @Override
     public Exchangeable getExchangeable() {
         return e;
@@ -60,45 +73,66 @@ public class TAEntry implements TAItem {
     public void registerListener(List<PriceLevel> levels, TAListener listener)
     {
         for(PriceLevel level:levels) {
-            LeveledBarBuilderInfo builderInfo = null;
-            for(int i=0;i<this.levelBuilders.size();i++) {
-                if ( level.equals(levelBuilders.get(i).level)) {
-                    builderInfo = levelBuilders.get(i);
-                    break;
-                }
+            LeveledBarBuilderInfo builderInfo = getOrCreateBuilderInfo(level);
+            if ( builderInfo!=null && !builderInfo.listeners.contains(listener)) {
+                builderInfo.listeners.add(listener);
             }
-            //需要创建新的LevelBuilderInfo
-            if ( builderInfo==null ) {
-                builderInfo = new LeveledBarBuilderInfo();
-                builderInfo.level = level;
-                builderInfo.barBuilder = createBarBuilder(level);
-                levelBuilders.add(builderInfo);
+        }
+    }
+
+    /**
+     * 找到或创建级别的Bar Builder. MIN3-MIN60由MIN1合并得到, 需要先创建MIN1, 保证更新时MIN1在前
+     */
+    private LeveledBarBuilderInfo getOrCreateBuilderInfo(PriceLevel level) {
+        for(int i=0;i<this.levelBuilders.size();i++) {
+            if ( level.equals(levelBuilders.get(i).level)) {
+                return levelBuilders.get(i);
             }
-            if ( !builderInfo.listeners.contains(listener)) {
-                builderInfo.listeners.add(listener);
+        }
+        BarBuilder barBuilder = null;
+        if ( PriceLevel.LEVEL_MIN.equals(level.prefix()) && level.value()>1 ) {
+            LeveledBarBuilderInfo min1BuilderInfo = getOrCreateBuilderInfo(PriceLevel.MIN1);
+            if ( min1BuilderInfo!=null ) {
+                MinuteBarAggregator aggregator = new MinuteBarAggregator((FutureBarBuilder)min1BuilderInfo.barBuilder, level);
+                aggregator.setMaximumBarCount(getMaximumBarCount(level));
+                TimeSeriesLoader seriesLoader = createHistoryLoader(aggregator.getTradingTimes());
+                if ( seriesLoader!=null ) {
+                    try {
+                        aggregator.loadHistoryData(seriesLoader);
+                    }catch(Throwable t) {
+                        logger.error(e+" "+level+" load history data failed: "+t.toString(), t);
+                    }
+                }
+                barBuilder = aggregator;
             }
+        } else {
+            barBuilder = createBarBuilder(level);
         }
+        if ( barBuilder==null ) {
+            return null;
+        }
+        LeveledBarBuilderInfo result = new LeveledBarBuilderInfo();
+        result.level = level;
+        result.barBuilder = barBuilder;
+        levelBuilders.add(result);
+        return result;
     }
 
     /**
-     * 加载历史数据. 目前只加载昨天的数据.
-     * TODO 加载最近指定KBar数量的数据
+     * 历史数据加载器, 只加载上一个交易日的完整数据, 当前交易日的Bar由实时TICK生成.
+     *
+     * @return null 如果没有设置历史数据
      */
-    private FutureBarBuilder loadHistoryData(BeansContainer beansContainer, MarketTimeService timeService, ExchangeableData data, PriceLevel level) throws IOException
-    {
-        TimeSeriesLoader seriesLoader = new TimeSeriesLoader(beansContainer, data).setExchangeable(e);
-        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, timeService.getTradingDay());
-        if ( tradingTimes==null ) {
+    private TimeSeriesLoader createHistoryLoader(ExchangeableTradingTimes tradingTimes) {
+        if ( historyData==null || tradingTimes==null ) {
             return null;
         }
-        seriesLoader
-            .setEndTradingDay(tradingTimes.getTradingDay())
-            .setStartTradingDay(MarketDayUtil.prevMarketDay(e.exchange(), tradingTimes.getTradingDay()))
-            .setEndTime(timeService.getMarketTime());
-
-        FutureBarBuilder levelBarBuilder = new FutureBarBuilder(tradingTimes, level);
-        levelBarBuilder.loadHistoryData(seriesLoader);
-        return levelBarBuilder;
+        LocalDate prevTradingDay = MarketDayUtil.prevMarketDay(e.exchange(), tradingTimes.getTradingDay());
+        return new TimeSeriesLoader(beansContainer, historyData)
+            .setExchangeable(e)
+            .setStartTradingDay(prevTradingDay)
+            .setEndTradingDay(prevTradingDay)
+            .setBarCache(true);
     }
 
     private BarBuilder createBarBuilder(PriceLevel level) {
@@ -106,11 +140,29 @@ public class TAEntry implements TAItem {
         ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, timeService.getTradingDay());
 
         if ( level.name().toLowerCase().startsWith("min") || level.name().toLowerCase().startsWith("vol")) {
-            return new FutureBarBuilder(tradingTimes, level);
+            FutureBarBuilder result = new FutureBarBuilder(tradingTimes, level);
+            result.setMaximumBarCount(getMaximumBarCount(level));
+            TimeSeriesLoader seriesLoader = createHistoryLoader(tradingTimes);
+            if ( seriesLoader!=null ) {
+                try {
+                    result.loadHistoryData(seriesLoader);
+                }catch(Throwable t) {
+                    logger.error(e+" "+level+" load history data failed: "+t.toString(), t);
+                }
+            }
+            return result;
         }
         return null;
     }
 
+    /**
+     * 级别的最多Bar数量, 没有单独配置时使用缺省值
+     */
+    private static int getMaximumBarCount(PriceLevel level) {
+        int defaultCount = ConfigUtil.getInt(TAServiceImpl.ITEM_MAX_BAR_COUNT+"/default", TAServiceImpl.DEFAULT_MAX_BAR_COUNT);
+        return ConfigUtil.getInt(TAServiceImpl.ITEM_MAX_BAR_COUNT+"/"+level.name(), defaultCount);
+    }
+
     /**
      * 根据TICK数据更新KBar
      */
@@ -129,6 +181,7 @@ public class TAEntry implements TAItem {
                 }
             }
         }
+        MarketDataLatency.BAR.recordSince(tick.recvNanos);
     }
 
 }
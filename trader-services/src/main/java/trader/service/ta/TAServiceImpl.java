@@ -41,6 +41,16 @@ public class TAServiceImpl implements TAService, MarketDataListener {
      * 主动关注的品种
      */
     public static final String ITEM_SUBSCRIPTIONS = "/TAService/subscriptions";
+    /**
+     * 是否在创建KBar序列时加载上一个交易日的历史Bar, 由MIN1/TICK计算得到的分钟Bar缓存后重启时直接加载
+     */
+    public static final String ITEM_BAR_CACHE = "/TAService/barCache";
+    /**
+     * 实时KBar序列最多保留的Bar数量, 按级别配置: /TAService/maxBarCount/vol1k, 缺省值: /TAService/maxBarCount/default
+     */
+    public static final String ITEM_MAX_BAR_COUNT = "/TAService/maxBarCount";
+
+    public static final int DEFAULT_MAX_BAR_COUNT = 10000;
 
     private BeansContainer beansContainer;
 
@@ -48,6 +58,8 @@ public class TAServiceImpl implements TAService, MarketDataListener {
 
     private ExchangeableData data;
 
+    private boolean barCache;
+
     private ServiceState state = ServiceState.Unknown;
 
     private Collection<String> subscriptions = new TreeSet<>();
@@ -68,6 +80,7 @@ public class TAServiceImpl implements TAService, MarketDataListener {
         }
         if ( state!=ServiceState.Stopped ) {
             data = TraderHomeUtil.getExchangeableData();
+            barCache = ConfigUtil.getBoolean(ITEM_BAR_CACHE, false);
             mdService = beansContainer.getBean(MarketDataService.class);
             mdService.addListener(this);
             logger.info("Start TASevice with data dir "+data.getDataDir());
@@ -97,6 +110,9 @@ public class TAServiceImpl implements TAService, MarketDataListener {
             TAEntry entry = entries.get(e);
             if ( entry==null) {
                 entry = new TAEntry(beansContainer, e);
+                if ( barCache ) {
+                    entry.setHistoryData(data);
+                }
                 entries.put(e, entry);
                 mdService.addListener(this, e);
             }
@@ -11,9 +11,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -57,6 +61,8 @@ import trader.service.trade.spi.TxnSessionListener;
  * <BR>每个交易策略实例是运行在独立的线程中, 使用disruptor作为独立的调度
  */
 public class AccountImpl implements Account, TxnSessionListener, TradeConstants, ServiceErrorConstants, MarketDataListener {
+    private static final String KEY_SNAPSHOT = "snapshot";
+    private static final int SNAPSHOT_INTERVAL = 60*1000;
 
     private String id;
     private BeansContainer beansContainer;
@@ -68,7 +74,14 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     private Logger logger;
     private File tradingWorkDir;
     private KVStore kvStore;
-    private long[] money = new long[AccMoney_Count];
+    /**
+     * 资金账本, 修改串行执行, 读取无锁
+     */
+    private AccountLedger ledger = new AccountLedger(new long[AccMoney_Count]);
+    /**
+     * 账户资金是否已经按持仓汇总, 汇总后行情变化只增量更新持仓盈亏和保证金
+     */
+    private volatile boolean positionMoneySummed;
     private AccountState state;
     private MarketTimeService mtService;
     private TradeService tradeService;
@@ -80,13 +93,28 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
      * 配置的期货公司的保证金调整
      */
     private Properties brokerMarginRatio = new Properties();
+    private Properties riskLimits = new Properties();
+    private volatile RiskEngine riskEngine;
     private List<AccountListener> listeners = new ArrayList<>();
     private Map<Exchangeable, PositionImpl> positions = new HashMap<>();
-    private Map<String, OrderImpl> ordersByRef = new ConcurrentHashMap<>();
+    private OrderIndex orderIndex = new OrderIndex();
     private LinkedList<OrderImpl> orders = new LinkedList<>();
     private Map<Exchangeable, AtomicInteger> cancelCounts = new ConcurrentHashMap<>();
     private Lock orderLock = new ReentrantLock();
     private Lock positionLock = new ReentrantLock();
+    /**
+     * 预写日志, 模拟账户不写日志
+     */
+    private AccountJournal journal;
+    /**
+     * 正在从日志回放, 不再写日志和通知
+     */
+    private volatile boolean replaying;
+    /**
+     * 已经写入日志的成交, 重连后期货公司重复推送的成交需要忽略
+     */
+    private Set<String> journaledTxnIds = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> snapshotFuture;
 
     public AccountImpl(TradeService tradeService, BeansContainer beansContainer, Map configElem) {
         this.tradeService = tradeService;
@@ -106,6 +134,13 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         }catch(Throwable t) {
             logger.error("Create datastore failed", t);
         }
+        if ( !simMode ) {
+            try {
+                journal = new AccountJournal(new File(tradingWorkDir, id+".journal"));
+            }catch(Throwable t) {
+                logger.error("Open journal failed", t);
+            }
+        }
         this.orderRefGen = tradeService.getOrderRefGen();
         update(configElem);
         txnSession = createTxnSession(provider);
@@ -123,12 +158,13 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     @Override
     public long getMoney(int moneyIdx) {
-        return this.money[moneyIdx];
+        return ledger.get(moneyIdx);
     }
 
     public long addMoney(int moneyIdx, long toAdd) {
-        money[moneyIdx] += toAdd;
-        return money[moneyIdx];
+        long result = ledger.add(moneyIdx, toAdd);
+        journalMoney();
+        return result;
     }
 
     /**
@@ -136,12 +172,11 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
      * 如果moneyIdx的资金小于amount, 失败.
      */
     boolean transferMoney(int moneyIdx, int moneyIdx2, long amount) {
-        if ( money[moneyIdx]<amount ) {
-            return false;
+        boolean result = ledger.transfer(moneyIdx, moneyIdx2, amount);
+        if ( result ) {
+            journalMoney();
         }
-        money[moneyIdx] -= amount;
-        money[moneyIdx2] += amount;
-        return true;
+        return result;
     }
 
     @Override
@@ -170,7 +205,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     @Override
     public Order getOrder(String orderRef) {
-        return ordersByRef.get(orderRef);
+        return orderIndex.get(orderRef);
     }
 
     @Override
@@ -215,7 +250,12 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         if ( txnSession==null || txnSession.getState()!=ConnState.Connected ) {
             throw new AppException(ERRCODE_TRADE_SESSION_NOT_READY, "Account "+getId()+" txn session is not ready");
         }
-        long[] localOrderMoney = (new OrderValidator(beansContainer, this, builder)).validate();
+        RiskEngine riskEngine = this.riskEngine;
+        if ( riskEngine==null ) {
+            throw new AppException(ERRCODE_TRADE_SESSION_NOT_READY, "Account "+getId()+" is not ready");
+        }
+        long[] localOrderMoney = new long[OdrMoney_Count];
+        riskEngine.check(builder, localOrderMoney);
         //创建Order
         Exchangeable e = builder.getExchangeable();
         String orderRef = orderRefGen.nextRefId(id);
@@ -226,12 +266,13 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         PositionImpl pos = null;
         orderLock.lock();
         try {
-            ordersByRef.put(orderRef, order);
+            orderIndex.put(order);
             orders.add(order);
         }finally {
             orderLock.unlock();
         }
         synchronized(order) {
+            boolean frozen = false;
             try {
                 //关联Position
                 pos = getOrCreatePosition(e, true);
@@ -241,9 +282,18 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                 order.setMoney(OdrMoney_PriceCandidate, localOrderMoney[OdrMoney_PriceCandidate]);
                 positionLock.lock();
                 try {
+                    //先写报单日志, 记录超长时在冻结前失败
+                    if ( journal!=null ) {
+                        journal.writeOrder(order);
+                    }
                     localFreeze(order);
                     //仓位管理
                     pos.localFreeze(order);
+                    frozen = true;
+                    riskEngine.onActiveOrdersChanged(pos);
+                    if ( journal!=null ) {
+                        journal.writeMoney(ledger.snapshot());
+                    }
                 }finally {
                     positionLock.unlock();
                 }
@@ -255,14 +305,22 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                 //回退本地已冻结资金和仓位
                 positionLock.lock();
                 try {
-                    localUnfreeze(order);
-                    pos.localUnfreeze(order);
+                    if ( frozen ) {
+                        localUnfreeze(order);
+                        pos.localUnfreeze(order);
+                        riskEngine.onActiveOrdersChanged(pos);
+                    }
+                    if ( order.getStateTuple()==OrderStateTuple.STATE_UNKNOWN ) {
+                        OrderStateTuple failedState = new OrderStateTuple(OrderState.Failed, OrderSubmitState.Unsubmitted, System.currentTimeMillis(), t.toString());
+                        order.changeState(failedState);
+                        if ( journal!=null ) {
+                            journal.writeOrderState(order, failedState, null);
+                        }
+                    }
+                    journalMoney();
                 }finally {
                     positionLock.unlock();
                 }
-                if ( order.getStateTuple()==OrderStateTuple.STATE_UNKNOWN ) {
-                    order.changeState(new OrderStateTuple(OrderState.Failed, OrderSubmitState.Unsubmitted, System.currentTimeMillis(), t.toString()));
-                }
                 logger.error("报单错误 "+t.toString()+" : "+order, t);
                 throw t;
             }
@@ -273,7 +331,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     public boolean cancelOrder(String orderRef) throws AppException
     {
         //取消订单前检查
-        OrderImpl order = ordersByRef.get(orderRef);
+        OrderImpl order = orderIndex.get(orderRef);
         if ( order==null ) {
             throw new AppException(ERRCODE_TRADE_ORDER_NOT_FOUND, "Account "+getId()+" not found orde ref "+orderRef);
         }
@@ -296,7 +354,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     @Override
     public boolean modifyOrder(String orderRef, OrderBuilder builder) throws AppException {
-        OrderImpl order = ordersByRef.get(orderRef);
+        OrderImpl order = orderIndex.get(orderRef);
         if ( order==null ) {
             throw new AppException(ERRCODE_TRADE_ORDER_NOT_FOUND, "Account "+getId()+" not found orde ref "+orderRef);
         }
@@ -334,17 +392,35 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                 File settlementFile = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), DateUtil.date2str(mtService.getTradingDay())+"-"+id+".txt");
                 FileUtil.save(settlementFile, settlement);
             }
-            //查询账户
-            money = txnSession.syncQryAccounts();
-            //查询持仓
-            positions = loadPositions();
-            //加载品种的交易数据
-            if ( null==feeEvaluator ) {
-                loadFeeEvaluator();
+            boolean recovered = recoverFromJournal();
+            if ( !recovered ) {
+                //查询账户
+                ledger.reset(txnSession.syncQryAccounts());
+                journalMoney();
+                positionMoneySummed = false;
+                //查询持仓
+                positions = loadPositions();
+                //加载品种的交易数据
+                if ( null==feeEvaluator ) {
+                    loadFeeEvaluator();
+                }
+                riskEngine = new RiskEngine(this, mtService, beansContainer.getBean(MarketDataService.class), (FutureFeeEvaluator)feeEvaluator, riskLimits);
             }
             long t1 = System.currentTimeMillis();
             changeState(AccountState.Ready);
-            logger.info("Account "+getId()+" initialize in "+(t1-t0)+" ms");
+            logger.info("Account "+getId()+" initialize in "+(t1-t0)+" ms"+(recovered?" from journal":""));
+            if ( journal!=null ) {
+                saveSnapshot();
+                ScheduledExecutorService scheduledExecutorService = beansContainer.getBean(ScheduledExecutorService.class);
+                if ( scheduledExecutorService!=null && snapshotFuture==null ) {
+                    snapshotFuture = scheduledExecutorService.scheduleAtFixedRate(()->{
+                        saveSnapshot();
+                    }, SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            }
+            if ( recovered ) {
+                asyncReconcile();
+            }
         }catch(Throwable t) {
             logger.error("Account "+getId()+" initialize failed", t);
             changeState(AccountState.NotReady);
@@ -352,6 +428,14 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     public void destroy() {
+        if ( snapshotFuture!=null ) {
+            snapshotFuture.cancel(false);
+            snapshotFuture = null;
+        }
+        if ( journal!=null ) {
+            saveSnapshot();
+            journal.close();
+        }
     }
 
     /**
@@ -376,6 +460,19 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             result = true;
         }
 
+        IniFile.Section riskLimitsSection = configIni.getSection("riskLimits");
+        Properties riskLimits2 = new Properties();
+        if( riskLimitsSection!=null ) {
+            riskLimits2 = riskLimitsSection.getProperties();
+        }
+        if ( !riskLimits.equals(riskLimits2)) {
+            this.riskLimits = riskLimits2;
+            if ( riskEngine!=null ) {
+                riskEngine.setLimits(riskLimits2);
+            }
+            result = true;
+        }
+
         Properties connectionProps2 = configIni.getSection("connectionProps").getProperties();
         if ( !connectionProps2.equals(connectionProps) ) {
             this.connectionProps = connectionProps2;
@@ -398,7 +495,8 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         json.add("txnSession", txnSession.toJson());
         json.add("connectionProps", JsonUtil.object2json(connectionProps));
         json.add("brokerMarginRatio", JsonUtil.object2json(brokerMarginRatio));
-        json.add("money", TradeConstants.accMoney2json(money));
+        json.add("riskLimits", JsonUtil.object2json(riskLimits));
+        json.add("money", TradeConstants.accMoney2json(ledger.snapshot()));
         json.add("cancelCounts", JsonUtil.object2json(cancelCounts));
         return json;
     }
@@ -439,6 +537,10 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             asyncReload();
             return;
         }
+        if ( journaledTxnIds.contains(txnId) ) {
+            logger.info("Account "+getId()+" ignore journaled txn id: "+txnId);
+            return;
+        }
         TransactionImpl txn = new TransactionImpl(
                 txnId,
                 order,
@@ -459,7 +561,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     @Override
     public OrderStateTuple changeOrderState(String orderRef, OrderStateTuple newState, Map<String,String> attrs) {
         OrderStateTuple oldState = null;
-        Order order = ordersByRef.get(orderRef);
+        Order order = orderIndex.get(orderRef);
         if ( order==null ) {
             logger.info("Account "+getId()+" order "+orderRef+" is not found");
         } else {
@@ -496,20 +598,32 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
                     localUnfreeze(order);
                     if ( pos!=null ) {
                         pos.localUnfreeze(order);
+                        if ( riskEngine!=null ) {
+                            riskEngine.onActiveOrdersChanged(pos);
+                        }
                     } else {
                         logger.error("Order "+order.getRef()+" has no related pos");
                     }
                     order.addMoney(OdrMoney_LocalUnfrozenMargin, order.getMoney(OdrMoney_LocalFrozenMargin) - order.getMoney(OdrMoney_LocalUnfrozenMargin)  );
                     order.addMoney(OdrMoney_LocalUnfrozenCommission, order.getMoney(OdrMoney_LocalFrozenCommission) - order.getMoney(OdrMoney_LocalUnfrozenCommission) );
+                    if ( journal!=null && !replaying ) {
+                        journal.writeOrderState(order, newState, attrs);
+                    }
+                    journalMoney();
                 }finally {
                     positionLock.unlock();
                 }
                 break;
             case Complete: //报单成交, 本地回退冻结仓位和资金的行为由成交回报函数处理
             default:
+                if ( journal!=null && !replaying ) {
+                    journal.writeOrderState(order, newState, attrs);
+                }
                 break;
             }
-            publishOrderStateChanged(order, oldState);
+            if ( !replaying ) {
+                publishOrderStateChanged(order, oldState);
+            }
         } else {
             logger.warn("Account "+getId()+" order "+order.getRef()+" is FAILED to change state from "+order.getStateTuple()+" to "+newState);
         }
@@ -518,13 +632,13 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     @Override
     public Order getOrderByRef(String orderRef) {
-        return ordersByRef.get(orderRef);
+        return orderIndex.get(orderRef);
     }
 
     @Override
     public Order createOrderFromResponse(JsonObject orderInfo) {
         String orderRef = orderInfo.get("ref").getAsString();
-        OrderImpl order = ordersByRef.get(orderRef);
+        OrderImpl order = orderIndex.get(orderRef);
         if ( order==null ) {
             OrderBuilder orderBuilder = new OrderBuilder();
             orderBuilder.setExchagneable(Exchangeable.fromString(orderInfo.get("exchangeable").getAsString()))
@@ -549,7 +663,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
             order = new OrderImpl(orderRef, orderBuilder, stateTuple);
             orderLock.lock();
             try {
-                ordersByRef.put(orderRef, order);
+                orderIndex.put(order);
                 orders.add(order);
             }finally {
                 orderLock.unlock();
@@ -568,13 +682,47 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         if ( state!=AccountState.Ready ) {
             return;
         }
-        boolean priceChanged = false;
+        riskEngine.onMarketData(marketData);
         PositionImpl pos = positions.get(marketData.instrumentId);
-        if( pos!=null ) {
-            priceChanged = pos.onMarketData(marketData);
+        if( pos==null ) {
+            return;
         }
-        if ( priceChanged ) {
-            updateAccountMoneyOnMarket();
+        if ( marketData.lastPrice==pos.getLastPrice() ) {
+            return;
+        }
+        if ( !positionMoneySummed ) {
+            //账户资金重置后第一次需要汇总全部持仓, 与报单冻结互斥
+            positionLock.lock();
+            try {
+                ledger.update((money)->{
+                    if ( pos.onMarketData(marketData) ) {
+                        applyPositionMoney(money, sumPositionMoney());
+                        positionMoneySummed = true;
+                    }
+                });
+            }finally {
+                positionLock.unlock();
+            }
+            return;
+        }
+        //持仓盈亏在账本写入中更新, 与成交回报互斥, 不占用持仓锁. 每个TICK都执行, 不使用lambda
+        long stamp = ledger.beginWrite();
+        try {
+            long posProfit0 = pos.getMoney(PosMoney_PositionProfit);
+            long useMargin0 = pos.getMoney(PosMoney_UseMargin);
+            if ( !pos.onMarketData(marketData) ) {
+                return;
+            }
+            //只有这个持仓的盈亏和保证金变化, 增量更新
+            long posProfitDiff = pos.getMoney(PosMoney_PositionProfit)-posProfit0;
+            long useMarginDiff = pos.getMoney(PosMoney_UseMargin)-useMargin0;
+            long[] money = ledger.getWriteMoney();
+            money[AccMoney_PositionProfit] += posProfitDiff;
+            money[AccMoney_CurrMargin] += useMarginDiff;
+            money[AccMoney_Balance] += posProfitDiff;
+            money[AccMoney_Available] += posProfitDiff-useMarginDiff;
+        }finally {
+            ledger.endWrite(stamp);
         }
     }
 
@@ -595,43 +743,58 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         long odrUsedCommission2 = order.getMoney(OdrMoney_LocalUsedCommission)-odrUsedCommission0;
         long odrUnfrozenCommission2 = order.getMoney(OdrMoney_LocalUnfrozenCommission);
 
+        long txnUnfrozenMargin = 0, txnUnfrozenCommission = 0, txnUsedCommission = 0;
+        if ( order.getOffsetFlags()==OrderOffsetFlag.OPEN) {
+            txnUnfrozenMargin = Math.abs( order.getMoney(OdrMoney_LocalUnfrozenMargin) - lastOrderMoney[OdrMoney_LocalUnfrozenMargin] );
+        }
+        if( odrUnfrozenCommission2!=odrUnfrozenCommision0 ) {
+            txnUnfrozenCommission = Math.abs(odrUnfrozenCommission2-odrUnfrozenCommision0);
+        }
+        if( odrUsedCommission2!=odrUsedCommission0) {
+            txnUsedCommission = Math.abs(odrUsedCommission2-odrUsedCommission0);
+        }
         positionLock.lock();
         try {
-            //解冻保证金
-            if ( order.getOffsetFlags()==OrderOffsetFlag.OPEN) {
-                long txnUnfrozenMargin = Math.abs( order.getMoney(OdrMoney_LocalUnfrozenMargin) - lastOrderMoney[OdrMoney_LocalUnfrozenMargin] );
-                if ( txnUnfrozenMargin!=0 ) {
-                    transferMoney(AccMoney_FrozenMargin, AccMoney_Available, txnUnfrozenMargin);
-                }
-            }
-            //解冻手续费
-            if( odrUnfrozenCommission2!=odrUnfrozenCommision0 ) {
-                long txnUnfrozenCommission = Math.abs(odrUnfrozenCommission2-odrUnfrozenCommision0);
-                transferMoney(AccMoney_FrozenCommission, AccMoney_Available, txnUnfrozenCommission );
-            }
-            //更新实际手续费
-            if( odrUsedCommission2!=odrUsedCommission0) {
-                long txnUsedCommission = Math.abs(odrUsedCommission2-odrUsedCommission0);
-                transferMoney(AccMoney_Available, AccMoney_Commission, txnUsedCommission);
-                addMoney(AccMoney_Balance, -1*txnUsedCommission);
-            }
-            //更新账户保证金占用等等
             PositionImpl position = ((PositionImpl)order.getPosition());
-            long closeProfit0 = position.getMoney(PosMoney_CloseProfit);
-            //更新持仓和资金
-            position.onTransaction(order, txn, txnFees, lastOrderMoney);
-            long txnProfit2 = position.getMoney(PosMoney_CloseProfit)-closeProfit0;
-            //更新平仓利润
-            if ( txnProfit2!=0 ) {
-                addMoney(AccMoney_CloseProfit, txnProfit2);
+            //更新持仓和账户资金在一次写入中完成, 与行情线程的持仓盈亏更新互斥
+            final long unfrozenMargin = txnUnfrozenMargin, unfrozenCommission = txnUnfrozenCommission, usedCommission = txnUsedCommission;
+            ledger.update((money)->{
+                long closeProfit0 = position.getMoney(PosMoney_CloseProfit);
+                position.onTransaction(order, txn, txnFees, lastOrderMoney);
+                long txnProfit2 = position.getMoney(PosMoney_CloseProfit)-closeProfit0;
+                //解冻保证金
+                if ( unfrozenMargin!=0 ) {
+                    AccountLedger.transfer(money, AccMoney_FrozenMargin, AccMoney_Available, unfrozenMargin);
+                }
+                //解冻手续费
+                if ( unfrozenCommission!=0 ) {
+                    AccountLedger.transfer(money, AccMoney_FrozenCommission, AccMoney_Available, unfrozenCommission);
+                }
+                //更新实际手续费
+                if ( usedCommission!=0 ) {
+                    AccountLedger.transfer(money, AccMoney_Available, AccMoney_Commission, usedCommission);
+                    money[AccMoney_Balance] -= usedCommission;
+                }
+                //更新平仓利润
+                money[AccMoney_CloseProfit] += txnProfit2;
+                applyPositionMoney(money, sumPositionMoney());
+            });
+            positionMoneySummed = true;
+            riskEngine.onActiveOrdersChanged(position);
+            if ( journal!=null ) {
+                journaledTxnIds.add(txn.getId());
+                if ( !replaying ) {
+                    journal.writeTransaction(txn);
+                    journal.writeMoney(ledger.snapshot());
+                }
             }
-
-            updateAccountMoneyOnMarket();
         }finally {
             positionLock.unlock();
         }
         //更新
-        publishTransaction(txn);
+        if ( !replaying ) {
+            publishTransaction(txn);
+        }
     }
 
     private void loadFeeEvaluator() throws Exception
@@ -664,9 +827,13 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     private Map<Exchangeable, PositionImpl> loadPositions() throws Exception
+    {
+        return parsePositions((JsonObject)(new JsonParser()).parse(new StringReader(txnSession.syncQryPositions())));
+    }
+
+    private Map<Exchangeable, PositionImpl> parsePositions(JsonObject posInfos)
     {
         Map<Exchangeable, PositionImpl> positions = new HashMap<>();
-        JsonObject posInfos = (JsonObject)(new JsonParser()).parse(new StringReader(txnSession.syncQryPositions()));
         for(String posKey:posInfos.keySet()) {
             JsonObject posInfo = (JsonObject)posInfos.get(posKey);
             Exchangeable e = Exchangeable.fromString(posKey);
@@ -810,34 +977,33 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
     /**
-     * 更新账户资金的持仓盈亏
+     * 汇总所有持仓的资金
      */
-    private void updateAccountMoneyOnMarket() {
-        long frozenCommission=0;
-        long commission=0;
-        long frozenMargin=0;
-        long margin=0;
-        long posProfit =0;
+    private long[] sumPositionMoney() {
+        long[] result = new long[PosMoney_Count];
         for(Position pos:positions.values()) {
-            frozenCommission += pos.getMoney(PosMoney_FrozenCommission);
-            commission += pos.getMoney(PosMoney_Commission);
-            frozenMargin += pos.getMoney(PosMoney_FrozenMargin);
-            margin += pos.getMoney(PosMoney_UseMargin);
-            posProfit += pos.getMoney(PosMoney_PositionProfit);
+            result[PosMoney_FrozenCommission] += pos.getMoney(PosMoney_FrozenCommission);
+            result[PosMoney_Commission] += pos.getMoney(PosMoney_Commission);
+            result[PosMoney_FrozenMargin] += pos.getMoney(PosMoney_FrozenMargin);
+            result[PosMoney_UseMargin] += pos.getMoney(PosMoney_UseMargin);
+            result[PosMoney_PositionProfit] += pos.getMoney(PosMoney_PositionProfit);
         }
+        return result;
+    }
+
+    private static void applyPositionMoney(long[] money, long[] posMoney) {
         long balanceBefore = money[AccMoney_BalanceBefore];
-        long balance = balanceBefore+money[AccMoney_CloseProfit]-commission+posProfit;
+        long balance = balanceBefore+money[AccMoney_CloseProfit]-posMoney[PosMoney_Commission]+posMoney[PosMoney_PositionProfit];
         long reserve = money[AccMoney_Reserve];
-        long avail = balance-margin-frozenMargin-frozenCommission-reserve;
+        long avail = balance-posMoney[PosMoney_UseMargin]-posMoney[PosMoney_FrozenMargin]-posMoney[PosMoney_FrozenCommission]-reserve;
 
         money[AccMoney_Balance] = balance;
-        money[AccMoney_PositionProfit] = posProfit;
+        money[AccMoney_PositionProfit] = posMoney[PosMoney_PositionProfit];
         money[AccMoney_Available] = avail;
-        money[AccMoney_FrozenMargin] = frozenMargin;
-        money[AccMoney_CurrMargin] = margin;
-        money[AccMoney_FrozenCommission] = frozenCommission;
-        money[AccMoney_Commission] = commission;
-
+        money[AccMoney_FrozenMargin] = posMoney[PosMoney_FrozenMargin];
+        money[AccMoney_CurrMargin] = posMoney[PosMoney_UseMargin];
+        money[AccMoney_FrozenCommission] = posMoney[PosMoney_FrozenCommission];
+        money[AccMoney_Commission] = posMoney[PosMoney_Commission];
     }
 
     /**
@@ -862,19 +1028,14 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     private void localFreeze0(OrderImpl order, int unit) {
         long orderFrozenMargin = order.getMoney(OdrMoney_LocalFrozenMargin) - order.getMoney(OdrMoney_LocalUnfrozenMargin);
         long orderFrozenCommission = order.getMoney(OdrMoney_LocalFrozenCommission) - order.getMoney(OdrMoney_LocalUnfrozenCommission);
-        long frozenMargin0 = getMoney(AccMoney_FrozenMargin);
-        long frozenCommission0 = getMoney(AccMoney_FrozenCommission);
-        long avail0 = getMoney(AccMoney_Available);
-        addMoney(AccMoney_FrozenMargin, unit*orderFrozenMargin);
-        addMoney(AccMoney_FrozenCommission, unit*orderFrozenCommission);
-        addMoney(AccMoney_Available, -1*unit*(orderFrozenMargin+orderFrozenCommission));
-
-        long frozenMargin2 = getMoney(AccMoney_FrozenMargin);
-        long frozenCommission2 = getMoney(AccMoney_FrozenCommission);
-        long avail2 = getMoney(AccMoney_Available);
-
-        //验证资金冻结前后, (冻结+可用) 总额不变
-        assert(frozenMargin0+frozenCommission0+avail0 == frozenMargin2+frozenCommission2+avail2);
+        ledger.update((money)->{
+            long total0 = money[AccMoney_FrozenMargin]+money[AccMoney_FrozenCommission]+money[AccMoney_Available];
+            money[AccMoney_FrozenMargin] += unit*orderFrozenMargin;
+            money[AccMoney_FrozenCommission] += unit*orderFrozenCommission;
+            money[AccMoney_Available] -= unit*(orderFrozenMargin+orderFrozenCommission);
+            //验证资金冻结前后, (冻结+可用) 总额不变
+            assert(total0 == money[AccMoney_FrozenMargin]+money[AccMoney_FrozenCommission]+money[AccMoney_Available]);
+        });
     }
 
     /**
@@ -885,9 +1046,12 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         executorService.execute(()->{
             try{
                 //查询账户
-                money = txnSession.syncQryAccounts();
+                ledger.reset(txnSession.syncQryAccounts());
+                journalMoney();
+                positionMoneySummed = false;
                 //查询持仓
                 positions = loadPositions();
+                saveSnapshot();
             }catch(Throwable t) {
                 logger.error("Reload asset info failed", t);
             }
@@ -895,6 +1059,232 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     }
 
 
+    /**
+     * 与期货公司异步核对: 资金以查询结果为准.
+     * <BR>手续费和平仓盈亏与日志恢复的一致时, 说明日志之后没有遗漏的成交, 不再查询持仓;
+     * 否则查询持仓, 数量一致时保留本地持仓和在途报单, 不一致则重新加载持仓
+     */
+    private void asyncReconcile() {
+        ExecutorService executorService = beansContainer.getBean(ExecutorService.class);
+        executorService.execute(()->{
+            try{
+                long[] brokerMoney = txnSession.syncQryAccounts();
+                long[] localMoney = ledger.snapshot();
+                boolean txnMissed = brokerMoney[AccMoney_Commission]!=localMoney[AccMoney_Commission]
+                        || brokerMoney[AccMoney_CloseProfit]!=localMoney[AccMoney_CloseProfit];
+                Map<Exchangeable, PositionImpl> brokerPositions = null;
+                if ( txnMissed ) {
+                    logger.info("Account "+getId()+" commission/close profit is different from broker, reconcile positions");
+                    brokerPositions = loadPositions();
+                }
+                positionLock.lock();
+                try {
+                    ledger.reset(brokerMoney);
+                    journalMoney();
+                    positionMoneySummed = false;
+                    if ( brokerPositions!=null ) {
+                        Set<Exchangeable> exchangeables = new TreeSet<>(positions.keySet());
+                        exchangeables.addAll(brokerPositions.keySet());
+                        for(Exchangeable e:exchangeables) {
+                            PositionImpl pos = positions.get(e), brokerPos = brokerPositions.get(e);
+                            int volume = pos!=null?pos.getVolume(PosVolume_Position):0;
+                            int brokerVolume = brokerPos!=null?brokerPos.getVolume(PosVolume_Position):0;
+                            if ( volume!=brokerVolume ) {
+                                logger.error("Account "+getId()+" position "+e+" volume "+volume+" is different from broker: "+brokerVolume+", reload positions");
+                                positions = brokerPositions;
+                                break;
+                            }
+                        }
+                    }
+                }finally {
+                    positionLock.unlock();
+                }
+                saveSnapshot();
+            }catch(Throwable t) {
+                logger.error("Reconcile asset info failed", t);
+            }
+        });
+    }
+
+    private void journalMoney() {
+        if ( journal!=null && !replaying ) {
+            journal.writeMoney(ledger.snapshot());
+        }
+    }
+
+    /**
+     * 保存持仓, 资金和对应的日志位置到KVStore, 恢复时只需要回放之后的日志
+     */
+    private void saveSnapshot() {
+        if ( journal==null || kvStore==null || state!=AccountState.Ready ) {
+            return;
+        }
+        JsonObject json = new JsonObject();
+        positionLock.lock();
+        try {
+            json.addProperty("tradingDay", DateUtil.date2str(mtService.getTradingDay()));
+            json.addProperty("journalOffset", journal.getPosition());
+            JsonArray moneyArray = new JsonArray();
+            for(long money:ledger.snapshot()) {
+                moneyArray.add(money);
+            }
+            json.add("money", moneyArray);
+            JsonObject posInfos = new JsonObject();
+            for(PositionImpl pos:positions.values()) {
+                posInfos.add(pos.getExchangeable().toString(), pos.toSnapshotJson());
+            }
+            json.add("positions", posInfos);
+        }finally {
+            positionLock.unlock();
+        }
+        try {
+            kvStore.put(KEY_SNAPSHOT, json.toString());
+        }catch(Throwable t) {
+            logger.error("Save snapshot failed", t);
+        }
+    }
+
+    /**
+     * 从当日快照和预写日志恢复资金, 持仓和报单.
+     * <BR>需要本地已有当日的手续费数据, 否则加载手续费之前必须先查询持仓.
+     *
+     * @return true 恢复成功
+     */
+    private boolean recoverFromJournal() throws Exception {
+        if ( journal==null || kvStore==null || !(new File(tradingWorkDir, id+".commissions.json")).exists() ) {
+            return false;
+        }
+        String snapshotStr = kvStore.getAsString(KEY_SNAPSHOT);
+        if ( StringUtil.isEmpty(snapshotStr) ) {
+            return false;
+        }
+        JsonObject snapshot = (JsonObject)(new JsonParser()).parse(snapshotStr);
+        if ( !StringUtil.equals(DateUtil.date2str(mtService.getTradingDay()), snapshot.get("tradingDay").getAsString()) ) {
+            return false;
+        }
+        if ( null==feeEvaluator ) {
+            loadFeeEvaluator();
+        }
+        JsonArray moneyArray = snapshot.getAsJsonArray("money");
+        long[] money = new long[AccMoney_Count];
+        for(int i=0;i<money.length && i<moneyArray.size();i++) {
+            money[i] = moneyArray.get(i).getAsLong();
+        }
+        ledger.reset(money);
+        positions = parsePositions(snapshot.getAsJsonObject("positions"));
+        riskEngine = new RiskEngine(this, mtService, beansContainer.getBean(MarketDataService.class), (FutureFeeEvaluator)feeEvaluator, riskLimits);
+        JournalReplayer replayer = new JournalReplayer(snapshot.get("journalOffset").getAsLong());
+        replaying = true;
+        try {
+            journal.replay(replayer);
+        }finally {
+            replaying = false;
+        }
+        //最后写入的资金记录包含了所有本地资金变化
+        if ( replayer.lastMoney!=null ) {
+            ledger.reset(replayer.lastMoney);
+        }
+        positionMoneySummed = false;
+        logger.info("Account "+getId()+" recovered "+orders.size()+" orders, "+journaledTxnIds.size()+" txns from journal "+journal.getFile());
+        return true;
+    }
+
+    /**
+     * 日志回放: 快照之前的记录只重建报单, 快照之后的记录重新计算持仓和资金
+     */
+    private class JournalReplayer implements AccountJournal.JournalVisitor {
+        private long snapshotOffset;
+        private long[] lastMoney;
+
+        JournalReplayer(long snapshotOffset){
+            this.snapshotOffset = snapshotOffset;
+        }
+
+        @Override
+        public void onOrder(long offset, String orderRef, OrderBuilder builder, long[] orderMoney) {
+            OrderImpl order = new OrderImpl(orderRef, builder, null);
+            order.setMoney(OdrMoney_PriceCandidate, orderMoney[OdrMoney_PriceCandidate]);
+            order.setMoney(OdrMoney_LocalFrozenMargin, orderMoney[OdrMoney_LocalFrozenMargin]);
+            order.setMoney(OdrMoney_LocalFrozenCommission, orderMoney[OdrMoney_LocalFrozenCommission]);
+            orderIndex.put(order);
+            orders.add(order);
+            PositionImpl pos = getOrCreatePosition(order.getExchangeable(), true);
+            if ( offset>=snapshotOffset ) {
+                localFreeze0(order, 1);
+                pos.localFreeze(order);
+            } else {
+                pos.attachActiveOrder(order);
+            }
+            order.attachPosition(pos);
+            riskEngine.onActiveOrdersChanged(pos);
+        }
+
+        @Override
+        public void onOrderState(long offset, String orderRef, OrderStateTuple stateTuple, Map<String, String> attrs) {
+            OrderImpl order = orderIndex.get(orderRef);
+            if ( order==null ) {
+                return;
+            }
+            if ( offset>=snapshotOffset ) {
+                changeOrderState(order, stateTuple, attrs);
+                return;
+            }
+            if ( attrs!=null ) {
+                for(Map.Entry<String, String> attrEntry:attrs.entrySet()) {
+                    order.setAttr(attrEntry.getKey(), attrEntry.getValue());
+                }
+            }
+            if ( order.changeState(stateTuple)!=null ) {
+                if ( stateTuple.getState()==OrderState.Canceled ) {
+                    incrementCancelCount(order.getExchangeable());
+                }
+                switch(stateTuple.getState()) {
+                case Canceled:
+                case Failed:
+                case PartiallyDeleted:
+                    order.addMoney(OdrMoney_LocalUnfrozenMargin, order.getMoney(OdrMoney_LocalFrozenMargin) - order.getMoney(OdrMoney_LocalUnfrozenMargin)  );
+                    order.addMoney(OdrMoney_LocalUnfrozenCommission, order.getMoney(OdrMoney_LocalFrozenCommission) - order.getMoney(OdrMoney_LocalUnfrozenCommission) );
+                    detachActiveOrder(order);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void onTransaction(long offset, String txnId, String orderRef, OrderDirection direction, OrderOffsetFlag offsetFlag, long price, int volume, long time) {
+            OrderImpl order = orderIndex.get(orderRef);
+            if ( order==null ) {
+                return;
+            }
+            TransactionImpl txn = new TransactionImpl(txnId, order, direction, offsetFlag, price, volume, time);
+            journaledTxnIds.add(txnId);
+            if ( offset>=snapshotOffset ) {
+                AccountImpl.this.onTransaction(order, txn, time);
+                return;
+            }
+            if ( order.attachTransaction(txn, feeEvaluator.compute(txn), time) && order.getStateTuple().getState()==OrderState.Complete ) {
+                detachActiveOrder(order);
+            }
+        }
+
+        @Override
+        public void onMoney(long offset, long[] money) {
+            if ( offset>=snapshotOffset ) {
+                lastMoney = money;
+            }
+        }
+
+        private void detachActiveOrder(OrderImpl order) {
+            PositionImpl pos = (PositionImpl)order.getPosition();
+            if ( pos!=null ) {
+                pos.detachActiveOrder(order);
+                riskEngine.onActiveOrdersChanged(pos);
+            }
+        }
+    }
+
     private void incrementCancelCount(Exchangeable e) {
         AtomicInteger value = cancelCounts.get(e);
         if ( value==null ) {
@@ -0,0 +1,316 @@
+package trader.service.trade;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.service.ServiceErrorConstants;
+
+/**
+ * 账户的预写日志(WAL).
+ * <BR>报单创建, 报单状态变化, 成交和资金变化以二进制记录追加写入内存映射文件, 进程崩溃后由操作系统写回磁盘.
+ * <BR>文件按SEGMENT_SIZE分段映射, 记录不跨段. 记录格式: 长度(int) 类型(byte) 数据; 长度0表示日志结束, -1表示跳到下一段.
+ * <BR>记录先在recordBuf中拼装, 超过MAX_RECORD_SIZE或字符串超过Short.MAX_VALUE字节时抛异常, 不写入文件.
+ */
+public class AccountJournal implements TradeConstants, ServiceErrorConstants {
+
+    public static final byte REC_ORDER = 1;
+    public static final byte REC_ORDER_STATE = 2;
+    public static final byte REC_TXN = 3;
+    public static final byte REC_MONEY = 4;
+
+    static final int SEGMENT_SIZE = 8*1024*1024;
+    private static final int MAX_RECORD_SIZE = 64*1024;
+
+    /**
+     * 日志回放
+     */
+    public static interface JournalVisitor {
+
+        public void onOrder(long offset, String orderRef, OrderBuilder builder, long[] orderMoney);
+
+        public void onOrderState(long offset, String orderRef, OrderStateTuple stateTuple, Map<String, String> attrs);
+
+        public void onTransaction(long offset, String txnId, String orderRef, OrderDirection direction, OrderOffsetFlag offsetFlag, long price, int volume, long time);
+
+        public void onMoney(long offset, long[] money);
+    }
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private ByteBuffer recordBuf = ByteBuffer.allocate(MAX_RECORD_SIZE);
+
+    /**
+     * 打开日志文件, 定位到日志结束位置继续写入
+     */
+    public AccountJournal(File file) throws IOException {
+        this.file = file;
+        file.getParentFile().mkdirs();
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        long end = scan(null);
+        segmentStart = (end/SEGMENT_SIZE)*SEGMENT_SIZE;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, SEGMENT_SIZE);
+        segment.position((int)(end-segmentStart));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 下一条记录的写入位置
+     */
+    public synchronized long getPosition() {
+        return segmentStart+segment.position();
+    }
+
+    public synchronized void close() {
+        try {
+            segment.force();
+            channel.close();
+            raf.close();
+        }catch(IOException ioe) {}
+    }
+
+    /**
+     * 写入报单记录, 记录超长时抛出AppException, 日志文件不变
+     */
+    public synchronized void writeOrder(Order order) throws AppException {
+        ByteBuffer buf = begin(REC_ORDER);
+        try {
+            putString(buf, order.getRef());
+            putString(buf, order.getExchangeable().toString());
+            buf.put((byte)order.getDirection().ordinal());
+            buf.put((byte)order.getOffsetFlags().ordinal());
+            buf.put((byte)order.getPriceType().ordinal());
+            buf.put((byte)order.getVolumeCondition().ordinal());
+            buf.putLong(order.getLimitPrice());
+            buf.putInt(order.getVolume(OdrVolume_ReqVolume));
+            buf.putLong(order.getMoney(OdrMoney_PriceCandidate));
+            buf.putLong(order.getMoney(OdrMoney_LocalFrozenMargin));
+            buf.putLong(order.getMoney(OdrMoney_LocalFrozenCommission));
+            putAttrs(buf, ((OrderImpl)order).getAttrs());
+        }catch(BufferOverflowException | IllegalArgumentException e) {
+            throw new AppException(e, ERRCODE_TRADE_JOURNAL_WRITE_FAILED, "Order "+order.getRef()+" journal record is too large");
+        }
+        end(buf);
+    }
+
+    public synchronized void writeOrderState(Order order, OrderStateTuple stateTuple, Map<String, String> attrs) {
+        ByteBuffer buf = begin(REC_ORDER_STATE);
+        putString(buf, order.getRef());
+        buf.put((byte)stateTuple.getState().ordinal());
+        buf.put((byte)stateTuple.getSubmitState().ordinal());
+        buf.putLong(stateTuple.getTimestamp());
+        putString(buf, stateTuple.getStateMessage());
+        putAttrs(buf, attrs);
+        end(buf);
+    }
+
+    public synchronized void writeTransaction(Transaction txn) {
+        ByteBuffer buf = begin(REC_TXN);
+        putString(buf, txn.getId());
+        putString(buf, txn.getOrder().getRef());
+        buf.put((byte)txn.getDirection().ordinal());
+        buf.put((byte)txn.getOffsetFlags().ordinal());
+        buf.putLong(txn.getPrice());
+        buf.putInt(txn.getVolume());
+        buf.putLong(txn.getTime());
+        end(buf);
+    }
+
+    public synchronized void writeMoney(long[] money) {
+        ByteBuffer buf = begin(REC_MONEY);
+        buf.putShort((short)money.length);
+        for(int i=0;i<money.length;i++) {
+            buf.putLong(money[i]);
+        }
+        end(buf);
+    }
+
+    /**
+     * 从头回放日志
+     */
+    public synchronized void replay(JournalVisitor visitor) throws IOException {
+        scan(visitor);
+    }
+
+    private ByteBuffer begin(byte type) {
+        recordBuf.clear();
+        recordBuf.putInt(0);
+        recordBuf.put(type);
+        return recordBuf;
+    }
+
+    /**
+     * 写入记录, 当前段剩余空间不够时映射下一段
+     */
+    private void end(ByteBuffer buf) {
+        int len = buf.position();
+        buf.flip();
+        //保留4字节写日志结束标记
+        if ( segment.remaining()<len+4 ) {
+            segment.putInt(-1);
+            try {
+                segmentStart += SEGMENT_SIZE;
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, SEGMENT_SIZE);
+            }catch(IOException ioe) {
+                throw new RuntimeException("Map journal "+file+" at "+segmentStart+" failed", ioe);
+            }
+        }
+        int pos = segment.position();
+        segment.put(buf);
+        //先写结束标记, 再写长度, 保证崩溃时不会读到不完整的记录
+        segment.putInt(segment.position(), 0);
+        segment.putInt(pos, len);
+    }
+
+    /**
+     * 顺序读取日志, 返回日志结束位置
+     */
+    private long scan(JournalVisitor visitor) throws IOException {
+        long size = channel.size();
+        long start = 0;
+        while( start<size ) {
+            MappedByteBuffer seg = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size-start));
+            while(true) {
+                if ( seg.remaining()<4 ) {
+                    return start+seg.position();
+                }
+                int pos = seg.position();
+                int len = seg.getInt();
+                if ( len==0 ) {
+                    return start+pos;
+                }
+                if ( len<0 ) {
+                    break;
+                }
+                ByteBuffer rec = seg.duplicate();
+                rec.position(pos+5);
+                rec.limit(pos+len);
+                if ( visitor!=null ) {
+                    try {
+                        visit(visitor, start+pos, seg.get(pos+4), rec);
+                    }catch(BufferUnderflowException | IllegalArgumentException e) {
+                        throw new IOException("Journal "+file+" is corrupted at "+(start+pos), e);
+                    }
+                }
+                seg.position(pos+len);
+            }
+            start += SEGMENT_SIZE;
+        }
+        return start;
+    }
+
+    private static void visit(JournalVisitor visitor, long offset, byte type, ByteBuffer buf) {
+        switch(type) {
+        case REC_ORDER:{
+            String orderRef = getString(buf);
+            OrderBuilder builder = new OrderBuilder();
+            builder.setExchagneable(Exchangeable.fromString(getString(buf)))
+                .setDirection(OrderDirection.values()[buf.get()])
+                .setOffsetFlag(OrderOffsetFlag.values()[buf.get()])
+                .setPriceType(OrderPriceType.values()[buf.get()])
+                .setVolumeCondition(OrderVolumeCondition.values()[buf.get()])
+                .setLimitPrice(buf.getLong())
+                .setVolume(buf.getInt());
+            long[] orderMoney = new long[OdrMoney_Count];
+            orderMoney[OdrMoney_PriceCandidate] = buf.getLong();
+            orderMoney[OdrMoney_LocalFrozenMargin] = buf.getLong();
+            orderMoney[OdrMoney_LocalFrozenCommission] = buf.getLong();
+            int attrCount = buf.getShort();
+            for(int i=0;i<attrCount;i++) {
+                builder.setAttr(getString(buf), getString(buf));
+            }
+            visitor.onOrder(offset, orderRef, builder, orderMoney);
+            break;
+        }
+        case REC_ORDER_STATE:{
+            String orderRef = getString(buf);
+            OrderState state = OrderState.values()[buf.get()];
+            OrderSubmitState submitState = OrderSubmitState.values()[buf.get()];
+            long timestamp = buf.getLong();
+            String message = getString(buf);
+            Map<String, String> attrs = null;
+            int attrCount = buf.getShort();
+            if ( attrCount>0 ) {
+                attrs = new HashMap<>();
+                for(int i=0;i<attrCount;i++) {
+                    attrs.put(getString(buf), getString(buf));
+                }
+            }
+            visitor.onOrderState(offset, orderRef, new OrderStateTuple(state, submitState, timestamp, message), attrs);
+            break;
+        }
+        case REC_TXN:{
+            String txnId = getString(buf);
+            String orderRef = getString(buf);
+            OrderDirection direction = OrderDirection.values()[buf.get()];
+            OrderOffsetFlag offsetFlag = OrderOffsetFlag.values()[buf.get()];
+            long price = buf.getLong();
+            int volume = buf.getInt();
+            long time = buf.getLong();
+            visitor.onTransaction(offset, txnId, orderRef, direction, offsetFlag, price, volume, time);
+            break;
+        }
+        case REC_MONEY:{
+            long[] money = new long[buf.getShort()];
+            for(int i=0;i<money.length;i++) {
+                money[i] = buf.getLong();
+            }
+            visitor.onMoney(offset, money);
+            break;
+        }
+        }
+    }
+
+    private static void putString(ByteBuffer buf, String str) {
+        if ( str==null ) {
+            buf.putShort((short)-1);
+            return;
+        }
+        byte[] data = str.getBytes(StandardCharsets.UTF_8);
+        if ( data.length>Short.MAX_VALUE ) {
+            throw new IllegalArgumentException("String length "+data.length+" exceeds "+Short.MAX_VALUE);
+        }
+        buf.putShort((short)data.length);
+        buf.put(data);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getShort();
+        if ( len<0 ) {
+            return null;
+        }
+        byte[] data = new byte[len];
+        buf.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private static void putAttrs(ByteBuffer buf, Map<?, ?> attrs) {
+        if ( attrs==null ) {
+            buf.putShort((short)0);
+            return;
+        }
+        buf.putShort((short)attrs.size());
+        for(Map.Entry<?, ?> entry:attrs.entrySet()) {
+            putString(buf, entry.getKey().toString());
+            putString(buf, entry.getValue().toString());
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package trader.service.trade;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * 账户资金账本.
+ * <BR>所有修改串行执行, 一组相关的修改在一次写入中完成; 读取不加锁, 使用StampedLock乐观读(seqlock),
+ * 读取期间有写入则重试, 保证读到的是某次写入完成后的一致数据.
+ */
+class AccountLedger implements TradeConstants {
+    /**
+     * 乐观读失败后的重试次数, 超过后使用读锁
+     */
+    private static final int OPTIMISTIC_RETRIES = 3;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] money;
+
+    AccountLedger(long[] money) {
+        this.money = money;
+    }
+
+    /**
+     * 无锁读取
+     */
+    public long get(int moneyIdx) {
+        for(int i=0;i<OPTIMISTIC_RETRIES;i++) {
+            long stamp = lock.tryOptimisticRead();
+            if ( stamp!=0 ) {
+                long result = money[moneyIdx];
+                if ( lock.validate(stamp) ) {
+                    return result;
+                }
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return money[moneyIdx];
+        }finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 返回一致的资金快照
+     */
+    public long[] snapshot() {
+        long[] result = new long[AccMoney_Count];
+        for(int i=0;i<OPTIMISTIC_RETRIES;i++) {
+            long stamp = lock.tryOptimisticRead();
+            if ( stamp!=0 ) {
+                System.arraycopy(money, 0, result, 0, result.length);
+                if ( lock.validate(stamp) ) {
+                    return result;
+                }
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            System.arraycopy(money, 0, result, 0, result.length);
+            return result;
+        }finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 用查询结果整体替换
+     */
+    public void reset(long[] money) {
+        long stamp = lock.writeLock();
+        try {
+            this.money = money;
+        }finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long add(int moneyIdx, long toAdd) {
+        long stamp = lock.writeLock();
+        try {
+            money[moneyIdx] += toAdd;
+            return money[moneyIdx];
+        }finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 将资金从moneyIdx转移到moneyIdx2下, 如果moneyIdx的资金小于amount, 失败.
+     */
+    public boolean transfer(int moneyIdx, int moneyIdx2, long amount) {
+        long stamp = lock.writeLock();
+        try {
+            return transfer(money, moneyIdx, moneyIdx2, amount);
+        }finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 在一次写入中完成一组修改, 读者要么看到全部修改, 要么都看不到
+     */
+    public void update(Consumer<long[]> updater) {
+        long stamp = lock.writeLock();
+        try {
+            updater.accept(money);
+        }finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 开始一次写入, 返回写锁stamp, 必须在finally中调用endWrite.
+     * <BR>用于每个TICK都会执行的热路径, 避免update()的lambda分配
+     */
+    public long beginWrite() {
+        return lock.writeLock();
+    }
+
+    /**
+     * 写入期间可直接修改的资金数组, 只能在beginWrite/endWrite之间使用
+     */
+    public long[] getWriteMoney() {
+        assert(lock.isWriteLocked());
+        return money;
+    }
+
+    public void endWrite(long stamp) {
+        lock.unlockWrite(stamp);
+    }
+
+    static boolean transfer(long[] money, int moneyIdx, int moneyIdx2, long amount) {
+        if ( money[moneyIdx]<amount ) {
+            return false;
+        }
+        money[moneyIdx] -= amount;
+        money[moneyIdx2] += amount;
+        return true;
+    }
+
+}
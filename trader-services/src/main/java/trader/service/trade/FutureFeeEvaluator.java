@@ -144,6 +144,10 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
         return feeInfos.keySet();
     }
 
+    public FutureFeeInfo getFeeInfo(Exchangeable e) {
+        return feeInfos.get(e);
+    }
+
     public Properties getBrokerMarginRatio() {
         return this.brokerMarginRatio;
     }
@@ -16,6 +16,7 @@ public class OrderImpl implements Order, JsonEnabled {
 
     protected Exchangeable exchangeable;
     protected String ref;
+    protected long refId;
     protected OrderDirection direction;
     protected long limitPrice;
     protected OrderPriceType priceType;
@@ -33,6 +34,7 @@ public class OrderImpl implements Order, JsonEnabled {
     public OrderImpl(String ref, OrderBuilder builder, OrderStateTuple stateTuple)
     {
         this.ref = ref;
+        this.refId = OrderRefGen.ref2long(ref);
         exchangeable = builder.getExchangeable();
         this.listener = builder.getListener();
 
@@ -67,6 +69,11 @@ public class OrderImpl implements Order, JsonEnabled {
         return ref;
     }
 
+    @Override
+    public long getRefId() {
+        return refId;
+    }
+
     @Override
     public OrderDirection getDirection() {
         return direction;
@@ -136,6 +143,10 @@ public class OrderImpl implements Order, JsonEnabled {
         return result;
     }
 
+    Properties getAttrs() {
+        return attrs;
+    }
+
     @Override
     public String getAttr(String attr) {
         return attrs.getProperty(attr);
@@ -0,0 +1,37 @@
+package trader.service.trade;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * 按OrderRef索引报单.
+ * <BR>long2ref格式的OrderRef按long索引, 其它格式(例如其它客户端的报单)按字符串索引
+ */
+class OrderIndex {
+    private Long2ObjectOpenHashMap<OrderImpl> ordersById = new Long2ObjectOpenHashMap<>();
+    private Map<String, OrderImpl> ordersByRef = new HashMap<>();
+
+    public synchronized OrderImpl get(String orderRef) {
+        long refId = OrderRefGen.ref2long(orderRef);
+        if ( refId>=0 ) {
+            return ordersById.get(refId);
+        }
+        return ordersByRef.get(orderRef);
+    }
+
+    public synchronized void put(OrderImpl order) {
+        long refId = order.getRefId();
+        if ( refId>=0 ) {
+            ordersById.put(refId, order);
+        } else {
+            ordersByRef.put(order.getRef(), order);
+        }
+    }
+
+    public synchronized int size() {
+        return ordersById.size()+ordersByRef.size();
+    }
+
+}
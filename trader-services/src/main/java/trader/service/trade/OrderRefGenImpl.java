@@ -43,29 +43,12 @@ public class OrderRefGenImpl implements OrderRefGen {
 
     @Override
     public String nextRefId(String accountId) {
-        int ref0 = refId.incrementAndGet();
-        //多线程方式设置 000xxx 格式的OrderRef
-        StringBuilder builder = new StringBuilder();
-        String ref0Str = Integer.toString(ref0);
-        int prefix0 = 6-ref0Str.length();
-        switch(prefix0) {
-        case 5:
-            builder.append("00000");
-            break;
-        case 4:
-            builder.append("0000");
-            break;
-        case 3:
-            builder.append("000");
-            break;
-        case 2:
-            builder.append("00");
-            break;
-        case 1:
-            builder.append("0");
-            break;
-        }
-        return builder.append(ref0Str).toString();
+        return OrderRefGen.long2ref(nextRef(accountId));
+    }
+
+    @Override
+    public long nextRef(String accountId) {
+        return refId.incrementAndGet();
     }
 
     private void loadRefId() {
@@ -12,12 +12,14 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.DateUtil;
 import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
 import trader.service.md.MarketData;
 
 /**
@@ -39,6 +41,13 @@ public class PositionImpl implements Position, TradeConstants {
 
     private long lastPrice;
 
+    /**
+     * 按方向汇总的持仓明细数量和开仓合约价值, 持仓明细变化后重新汇总, 行情变化时O(1)计算持仓盈亏
+     */
+    private int longDetailVolume, shortDetailVolume;
+    private long longOpenValue, shortOpenValue;
+    private boolean detailsChanged = true;
+
     public PositionImpl(AccountImpl account, Exchangeable e, PosDirection direction, long[] money, int[] volumes, List<PositionDetailImpl> details) {
         this(account, e);
         this.direction = direction;
@@ -148,6 +157,42 @@ public class PositionImpl implements Position, TradeConstants {
         localFreeze0(order, 1);
     }
 
+    /**
+     * 日志回放时关联快照之前已冻结的在途报单, 仓位已经包含在快照中
+     */
+    void attachActiveOrder(OrderImpl order) {
+        activeOrders.put(order.getRef(), order);
+    }
+
+    /**
+     * 日志回放时报单结束, 冻结的仓位已经在快照中回退
+     */
+    void detachActiveOrder(OrderImpl order) {
+        activeOrders.remove(order.getRef());
+    }
+
+    /**
+     * 保存为与 TxnSession.syncQryPositions() 相同的格式, 用于账户快照
+     */
+    JsonObject toSnapshotJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("direction", direction.name());
+        json.add("volumes", TradeConstants.posVolume2json(volumes));
+        json.add("money", TradeConstants.posMoney2json(money));
+        JsonArray detailArray = new JsonArray();
+        for(PositionDetailImpl detail:details) {
+            JsonObject detailJson = new JsonObject();
+            detailJson.addProperty("direction", detail.getDirection().name());
+            detailJson.addProperty("volume", detail.getVolume());
+            detailJson.addProperty("price", PriceUtil.long2str(detail.getPrice()));
+            detailJson.addProperty("openDate", DateUtil.date2str(detail.getOpenTime().toLocalDate()));
+            detailJson.addProperty("today", detail.isToday());
+            detailArray.add(detailJson);
+        }
+        json.add("details", detailArray);
+        return json;
+    }
+
     /**
      * 报单取消时, 本地计算和解冻仓位, 非线程安全
      */
@@ -181,12 +226,19 @@ public class PositionImpl implements Position, TradeConstants {
         addMoney(PosMoney_FrozenCommission, unit*orderFrozenCommission);
     }
 
+    long getLastPrice() {
+        return lastPrice;
+    }
+
+    /**
+     * 更新最新价和持仓盈亏, 在账户资金账本的写入中调用
+     */
     boolean onMarketData(MarketData marketData) {
         boolean result = false;
         if ( marketData.lastPrice!=lastPrice ) {
             lastPrice = marketData.lastPrice;
             if ( details.size()>0 ) {
-                computePositionProfit(false);
+                computePositionProfit();
                 result = true;
             }
         }
@@ -243,8 +295,10 @@ public class PositionImpl implements Position, TradeConstants {
         addMoney(PosMoney_Commission, txnCommission);
         addMoney(PosMoney_FrozenCommission, -1*Math.abs(txnUnfrozenCommission) );
 
-        //计算持仓利润
-        computePositionProfit(true);
+        //计算持仓数量和利润
+        detailsChanged = true;
+        computePositionVolumes();
+        computePositionProfit();
         //计算持仓方向
         computeDirection();
     }
@@ -332,74 +386,99 @@ public class PositionImpl implements Position, TradeConstants {
     }
 
     /**
-     * 计算持仓盈亏
+     * 计算持仓盈亏和保证金占用, 使用按方向汇总的数量和开仓价值, 不遍历持仓明细
      */
-    private void computePositionProfit(boolean updateVolumes) {
+    private void computePositionProfit() {
         TxnFeeEvaluator feeEval = account.getFeeEvaluator();
-        int longPos = 0, shortPos = 0;
-        int longTodayPos = 0, shortTodayPos=0;
-        int longYdPos = 0, shortYdPos = 0;
+        if ( detailsChanged ) {
+            sumDetails(feeEval);
+        }
         long posProfit = 0;
-        long openCost= 0;
         long longUseMargin=0;
         long shortUseMargin=0;
-        for(int i=0;i<details.size();i++) {
-            PositionDetail detail = details.get(i);
+        if ( longDetailVolume>0 ) {
+            long[] lastMarginValue = feeEval.compute(exchangeable, longDetailVolume, lastPrice, PosDirection.Long);
+            longUseMargin = lastMarginValue[0];
+            posProfit += lastMarginValue[1]-longOpenValue;
+        }
+        if ( shortDetailVolume>0 ) {
+            long[] lastMarginValue = feeEval.compute(exchangeable, shortDetailVolume, lastPrice, PosDirection.Short);
+            shortUseMargin = lastMarginValue[0];
+            posProfit += shortOpenValue-lastMarginValue[1];
+        }
+        setMoney(PosMoney_PositionProfit, posProfit);
+        setMoney(PosMoney_LongUseMargin, longUseMargin);
+        setMoney(PosMoney_ShortUseMargin, shortUseMargin);
+        setMoney(PosMoney_UseMargin, Math.max(longUseMargin, shortUseMargin));
+    }
+
+    /**
+     * 按方向汇总持仓明细的数量和开仓合约价值, 只在持仓明细变化后调用
+     */
+    private void sumDetails(TxnFeeEvaluator feeEval) {
+        int longVolume = 0, shortVolume = 0;
+        long longValue = 0, shortValue = 0;
+        for(PositionDetailImpl detail:details) {
             PosDirection detailDirection = detail.getDirection();
             int detailVolume = detail.getVolume();
-            long[] lastMarginValue = feeEval.compute(exchangeable, detailVolume, lastPrice, detailDirection);
             long posValue = feeEval.compute(exchangeable, detailVolume, detail.getPrice(), detailDirection)[1];
-
-            long valueDiff = lastMarginValue[1]-posValue;
-            long valueDiffUnit = 1;
             if ( detailDirection==PosDirection.Short ) {
-                valueDiffUnit = -1;
-                shortUseMargin += lastMarginValue[0];;
-            }else{
-                longUseMargin += lastMarginValue[0];
+                shortVolume += detailVolume;
+                shortValue += posValue;
+            } else {
+                longVolume += detailVolume;
+                longValue += posValue;
             }
-            posProfit += valueDiff*valueDiffUnit;
-            if ( updateVolumes ) {
-                openCost += detail.getPrice()*detail.getVolume();;
-                if ( detail.getDirection()==PosDirection.Long ) {
-                    //多仓
-                    longPos += detailVolume;
-                    if ( detail.isToday() ) {
-                        longTodayPos += detailVolume;
-                    }else {
-                        longYdPos += detailVolume;
-                    }
+        }
+        longDetailVolume = longVolume;
+        shortDetailVolume = shortVolume;
+        longOpenValue = longValue;
+        shortOpenValue = shortValue;
+        detailsChanged = false;
+    }
+
+    /**
+     * 根据持仓明细计算持仓数量和开仓成本
+     */
+    private void computePositionVolumes() {
+        int longPos = 0, shortPos = 0;
+        int longTodayPos = 0, shortTodayPos=0;
+        int longYdPos = 0, shortYdPos = 0;
+        long openCost= 0;
+        for(PositionDetailImpl detail:details) {
+            int detailVolume = detail.getVolume();
+            openCost += detail.getPrice()*detailVolume;
+            if ( detail.getDirection()==PosDirection.Long ) {
+                //多仓
+                longPos += detailVolume;
+                if ( detail.isToday() ) {
+                    longTodayPos += detailVolume;
                 }else {
-                    shortPos += detail.getVolume();
-                    if ( detail.isToday() ) {
-                        shortTodayPos += detailVolume;
-                    }else {
-                        shortYdPos += detailVolume;
-                    }
+                    longYdPos += detailVolume;
+                }
+            }else {
+                shortPos += detailVolume;
+                if ( detail.isToday() ) {
+                    shortTodayPos += detailVolume;
+                }else {
+                    shortYdPos += detailVolume;
                 }
             }
         }
-
-        setMoney(PosMoney_PositionProfit, posProfit);
-        setMoney(PosMoney_LongUseMargin, longUseMargin);
-        setMoney(PosMoney_ShortUseMargin, shortUseMargin);
-        setMoney(PosMoney_UseMargin, Math.max(longUseMargin, shortUseMargin));
-        if( updateVolumes ) {
-            if ( (longPos+shortPos)!=0) {
-                openCost /= (longPos+shortPos);
-            }
-            setMoney(PosMoney_OpenCost, openCost);
-
-            setVolume(PosVolume_LongPosition, longPos);
-            setVolume(PosVolume_LongTodayPosition, longTodayPos);
-            setVolume(PosVolume_LongYdPosition, longYdPos);
-            setVolume(PosVolume_ShortPosition, shortPos);
-            setVolume(PosVolume_ShortTodayPosition, shortTodayPos);
-            setVolume(PosVolume_ShortYdPosition, shortYdPos);
-            setVolume(PosVolume_TodayPosition, Math.max(longTodayPos, shortTodayPos));
-            setVolume(PosVolume_YdPosition, Math.max(longYdPos, shortYdPos));
-            setVolume(PosVolume_Position, Math.max(longPos, shortPos));
+        if ( (longPos+shortPos)!=0) {
+            openCost /= (longPos+shortPos);
         }
+        setMoney(PosMoney_OpenCost, openCost);
+
+        setVolume(PosVolume_LongPosition, longPos);
+        setVolume(PosVolume_LongTodayPosition, longTodayPos);
+        setVolume(PosVolume_LongYdPosition, longYdPos);
+        setVolume(PosVolume_ShortPosition, shortPos);
+        setVolume(PosVolume_ShortTodayPosition, shortTodayPos);
+        setVolume(PosVolume_ShortYdPosition, shortYdPos);
+        setVolume(PosVolume_TodayPosition, Math.max(longTodayPos, shortTodayPos));
+        setVolume(PosVolume_YdPosition, Math.max(longYdPos, shortYdPos));
+        setVolume(PosVolume_Position, Math.max(longPos, shortPos));
     }
 
     /**
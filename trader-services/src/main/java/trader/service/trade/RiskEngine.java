@@ -0,0 +1,335 @@
+package trader.service.trade;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.ConversionUtil;
+import trader.common.util.PriceUtil;
+import trader.service.ServiceErrorConstants;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.trade.FutureFeeEvaluator.FutureFeeInfo;
+
+/**
+ * 报单前风控.
+ * <BR>合约的价格步长, 合约乘数, 保证金/手续费率以及最新行情的涨跌停价格, 按合约序号预先保存在基本类型数组中, 报单检查过程不创建对象.
+ * <BR>风控限制从账户配置的 [riskLimits] 段加载, 0 表示不限制:
+ * <LI>maxOrderRate: 每秒最大报单数
+ * <LI>maxPosition: 每个合约单方向最大持仓(含未成交开仓)手数
+ * <LI>maxCancelCount: 每个合约最大撤单次数
+ * <LI>maxCancelRatio: 每个合约撤单次数/报单次数的最大比例
+ * <LI>selfTradeCheck: 是否拒绝价格与自己的反方向挂单交叉的报单, 缺省false
+ * <BR>行情和挂单数据由单个线程写入, 报单线程无锁读取, 读到稍旧的数据不影响正确性.
+ */
+public class RiskEngine implements TradeConstants, ServiceErrorConstants {
+    public static final String ITEM_MAX_ORDER_RATE = "maxOrderRate";
+    public static final String ITEM_MAX_POSITION = "maxPosition";
+    public static final String ITEM_MAX_CANCEL_COUNT = "maxCancelCount";
+    public static final String ITEM_MAX_CANCEL_RATIO = "maxCancelRatio";
+    public static final String ITEM_SELF_TRADE_CHECK = "selfTradeCheck";
+
+    /**
+     * 撤单比例检查的最小报单数
+     */
+    private static final int CANCEL_RATIO_MIN_ORDERS = 10;
+
+    private Account account;
+    private MarketTimeService mtService;
+    private MarketDataService mdService;
+    /**
+     * 按 Exchangeable.uniqueIntId() 索引的合约序号+1, 0表示没有该合约
+     */
+    private int[] ordinals;
+
+    private long[] priceTicks;
+    private int[] volumeMultiples;
+    private double[] marginRatios;
+    private double[] commissionRatios;
+
+    private long[] upperLimitPrices;
+    private long[] lowerLimitPrices;
+    private long[] lastPrices;
+    private long[] highestPrices;
+    private long[] lowestPrices;
+
+    /**
+     * 多个报单线程并发累加
+     */
+    private AtomicIntegerArray orderCounts;
+    private long[] maxActiveBuyPrices;
+    private long[] minActiveSellPrices;
+    private int[] activeLongOpens;
+    private int[] activeShortOpens;
+
+    private int maxOrderRate;
+    private int maxPosition;
+    private int maxCancelCount;
+    private double maxCancelRatio;
+    private boolean selfTradeCheck;
+    /**
+     * 最近 maxOrderRate 个报单的时间, 循环使用
+     */
+    private long[] orderTimes = new long[0];
+    private int orderTimeIdx;
+    /**
+     * 多个报单线程并发调用, 每个线程复用一个行情对象读取最新行情
+     */
+    private final ThreadLocal<MarketData> lastDataBuffer = new ThreadLocal<>();
+
+    public RiskEngine(Account account, MarketTimeService mtService, MarketDataService mdService, FutureFeeEvaluator feeEvaluator, Properties limits) {
+        this.account = account;
+        this.mtService = mtService;
+        this.mdService = mdService;
+        int count = feeEvaluator.getExchangeables().size();
+        priceTicks = new long[count];
+        volumeMultiples = new int[count];
+        marginRatios = new double[count*MarginRatio_Count];
+        commissionRatios = new double[count*CommissionRatio_Count];
+        upperLimitPrices = new long[count];
+        lowerLimitPrices = new long[count];
+        lastPrices = new long[count];
+        highestPrices = new long[count];
+        lowestPrices = new long[count];
+        orderCounts = new AtomicIntegerArray(count);
+        maxActiveBuyPrices = new long[count];
+        minActiveSellPrices = new long[count];
+        activeLongOpens = new int[count];
+        activeShortOpens = new int[count];
+        int maxIntId = -1;
+        for(Exchangeable e:feeEvaluator.getExchangeables()) {
+            maxIntId = Math.max(maxIntId, e.uniqueIntId());
+        }
+        ordinals = new int[maxIntId+1];
+        int idx = 0;
+        for(Exchangeable e:feeEvaluator.getExchangeables()) {
+            FutureFeeInfo feeInfo = feeEvaluator.getFeeInfo(e);
+            ordinals[e.uniqueIntId()] = idx+1;
+            priceTicks[idx] = feeInfo.getPriceTick();
+            volumeMultiples[idx] = feeInfo.getVolumeMultiple();
+            for(int i=0;i<MarginRatio_Count;i++) {
+                marginRatios[idx*MarginRatio_Count+i] = feeInfo.getMarginRatio(i);
+            }
+            for(int i=0;i<CommissionRatio_Count;i++) {
+                commissionRatios[idx*CommissionRatio_Count+i] = feeInfo.getCommissionRatio(i);
+            }
+            minActiveSellPrices[idx] = Long.MAX_VALUE;
+            idx++;
+        }
+        setLimits(limits);
+    }
+
+    public void setLimits(Properties limits) {
+        maxPosition = ConversionUtil.toInt(limits.getProperty(ITEM_MAX_POSITION));
+        maxCancelCount = ConversionUtil.toInt(limits.getProperty(ITEM_MAX_CANCEL_COUNT));
+        maxCancelRatio = ConversionUtil.toDouble(limits.getProperty(ITEM_MAX_CANCEL_RATIO));
+        selfTradeCheck = ConversionUtil.toBoolean(limits.getProperty(ITEM_SELF_TRADE_CHECK), false);
+        synchronized(this) {
+            maxOrderRate = ConversionUtil.toInt(limits.getProperty(ITEM_MAX_ORDER_RATE));
+            orderTimes = new long[maxOrderRate];
+            orderTimeIdx = 0;
+        }
+    }
+
+    /**
+     * 检查报单, 计算需要冻结的保证金和手续费, 写入orderMoney
+     *
+     * @throws AppException 超出风控限制
+     */
+    public void check(OrderBuilder builder, long[] orderMoney) throws AppException
+    {
+        Exchangeable e = builder.getExchangeable();
+        int idx = getOrdinal(e);
+        if ( idx<0 ) {
+            throw new AppException(ERRCODE_TRADE_EXCHANGEABLE_INVALID, "Account "+account.getId()+" has no fee info for "+e);
+        }
+        OrderDirection direction = builder.getDirection();
+        OrderOffsetFlag offsetFlag = builder.getOffsetFlag();
+        int volume = builder.getVolume();
+        Position pos = account.getPosition(e);
+        //仓位
+        if ( offsetFlag!=OrderOffsetFlag.OPEN ) {
+            int currVolume = 0;
+            if ( pos!=null ) {
+                currVolume = pos.getVolume(direction==OrderDirection.Buy?PosVolume_ShortPosition:PosVolume_LongPosition);
+            }
+            if ( currVolume<volume ) {
+                throw new AppException(ERRCODE_TRADE_VOL_EXCEEDS_LIMIT, "Account "+account.getId()+" close order volumes exceeds curr position : "+currVolume+" : "+builder);
+            }
+        } else if ( maxPosition>0 ) {
+            int currVolume = 0;
+            if ( direction==OrderDirection.Buy ) {
+                currVolume = activeLongOpens[idx] + (pos!=null?pos.getVolume(PosVolume_LongPosition):0);
+            } else {
+                currVolume = activeShortOpens[idx] + (pos!=null?pos.getVolume(PosVolume_ShortPosition):0);
+            }
+            if ( currVolume+volume>maxPosition ) {
+                throw new AppException(ERRCODE_TRADE_VOL_EXCEEDS_LIMIT, "Account "+account.getId()+" "+e+" position "+currVolume+" + "+volume+" exceeds max position "+maxPosition);
+            }
+        }
+        //价格
+        long price = getOrderPriceCandidate(idx, builder);
+        if ( builder.getPriceType()==OrderPriceType.LimitPrice ) {
+            long upper = upperLimitPrices[idx], lower = lowerLimitPrices[idx];
+            if ( (upper>0 && price>upper) || (lower>0 && price<lower) ) {
+                throw new AppException(ERRCODE_TRADE_PRICE_EXCEEDS_LIMIT, "Account "+account.getId()+" "+e+" price "+PriceUtil.long2str(price)+" is out of range ["+PriceUtil.long2str(lower)+", "+PriceUtil.long2str(upper)+"]");
+            }
+            if ( priceTicks[idx]>0 && price%priceTicks[idx]!=0 ) {
+                throw new AppException(ERRCODE_TRADE_PRICE_EXCEEDS_LIMIT, "Account "+account.getId()+" "+e+" price "+PriceUtil.long2str(price)+" is not multiple of price tick "+PriceUtil.long2str(priceTicks[idx]));
+            }
+        }
+        //自成交
+        if ( selfTradeCheck ) {
+            if ( (direction==OrderDirection.Buy && price>=minActiveSellPrices[idx])
+                    || (direction==OrderDirection.Sell && price<=maxActiveBuyPrices[idx]) )
+            {
+                throw new AppException(ERRCODE_TRADE_SELF_TRADE, "Account "+account.getId()+" "+e+" "+direction+" price "+PriceUtil.long2str(price)+" crosses own active orders");
+            }
+        }
+        //撤单
+        if ( maxCancelCount>0 || maxCancelRatio>0 ) {
+            int cancelCount = account.getCancelCount(e);
+            if ( maxCancelCount>0 && cancelCount>=maxCancelCount ) {
+                throw new AppException(ERRCODE_TRADE_CANCEL_EXCEEDS_LIMIT, "Account "+account.getId()+" "+e+" cancel count "+cancelCount+" reaches limit "+maxCancelCount);
+            }
+            int orderCount = orderCounts.get(idx);
+            if ( maxCancelRatio>0 && orderCount>=CANCEL_RATIO_MIN_ORDERS && cancelCount>maxCancelRatio*orderCount ) {
+                throw new AppException(ERRCODE_TRADE_CANCEL_EXCEEDS_LIMIT, "Account "+account.getId()+" "+e+" cancel count "+cancelCount+" / order count "+orderCount+" exceeds ratio "+maxCancelRatio);
+            }
+        }
+        //保证金和手续费, 与FutureFeeEvaluator计算方式相同
+        long turnover = volume*price*volumeMultiples[idx];
+        long margin = (long)(marginRatios[idx*MarginRatio_Count+(direction==OrderDirection.Buy?MarginRatio_LongByMoney:MarginRatio_ShortByMoney)]*turnover);
+        int commissionIdx = idx*CommissionRatio_Count;
+        switch(offsetFlag) {
+        case OPEN:
+            commissionIdx += CommissionRatio_OpenByMoney;
+            break;
+        case CLOSE_TODAY:
+            commissionIdx += CommissionRatio_CloseTodayByMoney;
+            break;
+        default:
+            commissionIdx += CommissionRatio_CloseByMoney;
+            break;
+        }
+        long commission = (long)(turnover*commissionRatios[commissionIdx]) + PriceUtil.price2long(volume*commissionRatios[commissionIdx+1]);
+        margin = PriceUtil.round(margin);
+        commission = PriceUtil.round(commission);
+        if ( offsetFlag==OrderOffsetFlag.OPEN ) {
+            //这里出于保守起见, 不采用单边保证金机制(shfe)
+            long avail = account.getMoney(AccMoney_Available);
+            if( avail <= margin+commission ) {
+                throw new AppException(ERRCODE_TRADE_MARGIN_NOT_ENOUGH, "Account "+account.getId()+" avail "+PriceUtil.long2price(avail)+" is NOT enough: "+margin);
+            }
+            orderMoney[OdrMoney_LocalFrozenMargin] = margin;
+        }
+        orderMoney[OdrMoney_LocalFrozenCommission] = commission;
+        orderMoney[OdrMoney_PriceCandidate] = price;
+        //报单频率, 放在最后, 只有通过检查的报单才占用名额
+        checkOrderRate(e);
+        orderCounts.incrementAndGet(idx);
+    }
+
+    /**
+     * 更新最新价格和涨跌停价格
+     */
+    public void onMarketData(MarketData md) {
+        int idx = getOrdinal(md.instrumentId);
+        if ( idx<0 ) {
+            return;
+        }
+        lastPrices[idx] = md.lastPrice;
+        highestPrices[idx] = md.highestPrice;
+        lowestPrices[idx] = md.lowestPrice;
+        upperLimitPrices[idx] = md.upperLimitPrice;
+        lowerLimitPrices[idx] = md.lowerLimitPrice;
+    }
+
+    /**
+     * 持仓的挂单变化后, 重新计算挂单的最高买价/最低卖价和未成交开仓手数
+     */
+    public void onActiveOrdersChanged(Position pos) {
+        int idx = getOrdinal(pos.getExchangeable());
+        if ( idx<0 ) {
+            return;
+        }
+        long maxBuyPrice = 0, minSellPrice = Long.MAX_VALUE;
+        int longOpens = 0, shortOpens = 0;
+        for(Order order:pos.getActiveOrders()) {
+            long price = order.getMoney(OdrMoney_PriceCandidate);
+            int volume = order.getVolume(OdrVolume_ReqVolume)-order.getVolume(OdrVolume_TradeVolume);
+            if ( order.getDirection()==OrderDirection.Buy ) {
+                maxBuyPrice = Math.max(maxBuyPrice, price);
+                if ( order.getOffsetFlags()==OrderOffsetFlag.OPEN ) {
+                    longOpens += volume;
+                }
+            } else {
+                minSellPrice = Math.min(minSellPrice, price);
+                if ( order.getOffsetFlags()==OrderOffsetFlag.OPEN ) {
+                    shortOpens += volume;
+                }
+            }
+        }
+        maxActiveBuyPrices[idx] = maxBuyPrice;
+        minActiveSellPrices[idx] = minSellPrice;
+        activeLongOpens[idx] = longOpens;
+        activeShortOpens[idx] = shortOpens;
+    }
+
+    /**
+     * 合约序号, 没有该合约返回-1
+     */
+    private int getOrdinal(Exchangeable e) {
+        int intId = e.uniqueIntId();
+        if ( intId>=ordinals.length ) {
+            return -1;
+        }
+        return ordinals[intId]-1;
+    }
+
+    private synchronized void checkOrderRate(Exchangeable e) throws AppException {
+        if ( maxOrderRate<=0 ) {
+            return;
+        }
+        long now = mtService.currentTimeMillis();
+        long oldest = orderTimes[orderTimeIdx];
+        if ( oldest!=0 && now-oldest<1000 ) {
+            throw new AppException(ERRCODE_TRADE_ORDER_RATE_EXCEEDS_LIMIT, "Account "+account.getId()+" "+e+" order rate exceeds "+maxOrderRate+"/s");
+        }
+        orderTimes[orderTimeIdx] = now;
+        orderTimeIdx = (orderTimeIdx+1)%maxOrderRate;
+    }
+
+    /**
+     * 返回订单的保证金冻结用的价格, 市价使用最高/最低价格
+     */
+    private long getOrderPriceCandidate(int idx, OrderBuilder builder) {
+        OrderPriceType priceType = builder.getPriceType();
+        if ( priceType==OrderPriceType.LimitPrice ) {
+            return builder.getLimitPrice();
+        }
+        long last = lastPrices[idx], highest = highestPrices[idx], lowest = lowestPrices[idx];
+        if ( last==0 && mdService!=null ) {
+            //还没有收到行情推送
+            MarketData reuse = lastDataBuffer.get();
+            MarketData md = mdService.getLastData(builder.getExchangeable(), reuse);
+            if ( md!=reuse ) {
+                lastDataBuffer.set(md);
+            }
+            if ( md!=null ) {
+                last = md.lastPrice;
+                highest = md.highestPrice;
+                lowest = md.lowestPrice;
+            }
+        }
+        switch(priceType) {
+        case Unknown:
+        case AnyPrice:
+            return builder.getDirection()==OrderDirection.Buy?highest:lowest;
+        default:
+            return last;
+        }
+    }
+
+}
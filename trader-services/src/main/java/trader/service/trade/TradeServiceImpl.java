@@ -78,8 +78,8 @@ public class TradeServiceImpl implements TradeService, AsyncEventFilter {
         mdService.addListener((MarketData md)->{
             accountOnMarketData(md);
         });
-        //接收交易事件, 在单一线程中处理
-        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MAIN, this, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
+        //接收交易事件, 在独立的交易事件线程中处理, 不与行情排队
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_TRADE, this, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
 
         //自动发现交易接口API
         txnSessionFactories = discoverTxnSessionProviders(beansContainer);
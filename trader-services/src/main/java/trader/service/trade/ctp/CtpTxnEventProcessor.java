@@ -29,7 +29,7 @@ import trader.service.trade.TradeConstants;
 import trader.service.trade.spi.TxnSessionListener;
 
 /**
- * Ctp回调事件处理代码, 会在AsyncEvent的 Main Event Chain 线程中执行
+ * Ctp回调事件处理代码, 会在AsyncEvent的 Trade Event Chain 线程中执行
  */
 public class CtpTxnEventProcessor implements AsyncEventProcessor, JctpConstants, TradeConstants{
 
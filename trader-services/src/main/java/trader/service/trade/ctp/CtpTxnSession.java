@@ -35,6 +35,7 @@ import trader.service.trade.OrderBuilder;
 import trader.service.trade.OrderStateTuple;
 import trader.service.trade.TradeConstants;
 import trader.service.trade.spi.AbsTxnSession;
+import trader.service.trade.spi.OrderGateway;
 import trader.service.trade.spi.TxnSessionListener;
 
 /**
@@ -70,10 +71,28 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
 
     private CtpTxnEventProcessor processor;
 
+    private OrderGateway gateway;
+
     public CtpTxnSession(BeansContainer beansContainer, Account account, TxnSessionListener listener) {
         super(beansContainer, account, listener);
         asyncEventService = beansContainer.getBean(AsyncEventService.class);
         processor= new CtpTxnEventProcessor(account, this, listener);
+        gateway = new OrderGateway("CtpOrderGateway-"+account.getId(), new OrderGateway.OrderSender() {
+            @Override
+            public void sendOrder(Order order) throws AppException {
+                sendOrder0(order);
+            }
+
+            @Override
+            public void cancelOrder(Order order) throws AppException {
+                cancelOrder0(order);
+            }
+
+            @Override
+            public void modifyOrder(Order order, OrderBuilder builder) throws AppException {
+                modifyOrder0(order, builder);
+            }
+        }, listener);
     }
 
     @Override
@@ -89,6 +108,8 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
         password = connProps.getProperty("password");
         appId = decrypt(connProps.getProperty("appId"));
         userProductInfo = connProps.getProperty("userProductInfo");
+        //期货公司报单流控: 每秒请求数和突发请求数
+        gateway.setRate(ConversionUtil.toDouble(connProps.getProperty("orderRate")), ConversionUtil.toDouble(connProps.getProperty("orderBurst")));
         try {
             changeState(ConnState.Connecting);
             closeImpl();
@@ -843,6 +864,7 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
 
     @Override
     protected void closeImpl() {
+        gateway.close();
         if ( traderApi!=null ) {
             try{
                 traderApi.Close();
@@ -1172,6 +1194,23 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
 
     @Override
     public void asyncSendOrder(Order order) throws AppException {
+        gateway.sendOrder(order);
+    }
+
+    /**
+     * 取消报单动作
+     */
+    @Override
+    public void asyncCancelOrder(Order order) throws AppException {
+        gateway.cancelOrder(order);
+    }
+
+    @Override
+    public void asyncModifyOrder(Order order, OrderBuilder builder) throws AppException {
+        gateway.modifyOrder(order, builder);
+    }
+
+    private void sendOrder0(Order order) throws AppException {
         order.setAttr(Order.ATTR_FRONT_ID, ""+frontId);
         order.setAttr(Order.ATTR_SESSION_ID, ""+sessionId);
 
@@ -1207,11 +1246,7 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
         }
     }
 
-    /**
-     * 取消报单动作
-     */
-    @Override
-    public void asyncCancelOrder(Order order) throws AppException
+    private void cancelOrder0(Order order) throws AppException
     {
         CThostFtdcInputOrderActionField action = fillOrderAction(order);
         action.ActionFlag = JctpConstants.THOST_FTDC_AF_Delete;
@@ -1227,8 +1262,7 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
         }
     }
 
-    @Override
-    public void asyncModifyOrder(Order order, OrderBuilder builder) throws AppException
+    private void modifyOrder0(Order order, OrderBuilder builder) throws AppException
     {
         CThostFtdcInputOrderActionField action = fillOrderAction(order);
         action.ActionFlag = JctpConstants.THOST_FTDC_AF_Modify;
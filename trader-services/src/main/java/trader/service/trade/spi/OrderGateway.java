@@ -0,0 +1,289 @@
+package trader.service.trade.spi;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.exception.AppException;
+import trader.service.stats.LatencyHistogram;
+import trader.service.trade.Order;
+import trader.service.trade.OrderBuilder;
+import trader.service.trade.OrderStateTuple;
+import trader.service.trade.TradeConstants.OrderState;
+import trader.service.trade.TradeConstants.OrderSubmitState;
+
+/**
+ * 交易通道的报单出口, 按期货公司的流控限制发送报单/撤单/改单请求.
+ * <BR>令牌桶控制每秒请求数; 撤单优先于改单, 改单优先于报单; 同一报单排队中的重复撤单/改单合并为一个.
+ * <BR>有令牌并且没有排队请求时, 在调用线程直接发送, 出错直接抛出异常; 否则排队由发送线程发送, 排队时间记录在 order.queueWait.
+ * <BR>流控速率为0时不做限制.
+ */
+public class OrderGateway {
+    private final static Logger logger = LoggerFactory.getLogger(OrderGateway.class);
+
+    /**
+     * 实际发送请求
+     */
+    public static interface OrderSender {
+        public void sendOrder(Order order) throws AppException;
+
+        public void cancelOrder(Order order) throws AppException;
+
+        public void modifyOrder(Order order, OrderBuilder builder) throws AppException;
+    }
+
+    public static final LatencyHistogram QUEUE_WAIT = LatencyHistogram.getInstance("order.queueWait");
+
+    private static final int ACTION_INSERT = 0;
+    private static final int ACTION_CANCEL = 1;
+    private static final int ACTION_MODIFY = 2;
+
+    private static class Request {
+        final int action;
+        final Order order;
+        OrderBuilder builder;
+        final long enqueueNanos = System.nanoTime();
+        boolean dequeued;
+
+        Request(int action, Order order, OrderBuilder builder){
+            this.action = action;
+            this.order = order;
+            this.builder = builder;
+        }
+    }
+
+    private String name;
+    private OrderSender sender;
+    private TxnSessionListener listener;
+
+    private double rate;
+    private double burst;
+    private double tokens;
+    private long refillNanos;
+
+    private ArrayDeque<Request> cancelLane = new ArrayDeque<>();
+    private ArrayDeque<Request> modifyLane = new ArrayDeque<>();
+    private ArrayDeque<Request> insertLane = new ArrayDeque<>();
+    private Map<String, Request> pendingInserts = new HashMap<>();
+    private Map<String, Request> pendingActions = new HashMap<>();
+    private Thread senderThread;
+
+    public OrderGateway(String name, OrderSender sender, TxnSessionListener listener) {
+        this.name = name;
+        this.sender = sender;
+        this.listener = listener;
+    }
+
+    /**
+     * 设置流控
+     *
+     * @param rate 每秒请求数, 0 不限制
+     * @param burst 最多可以连续发送的请求数, 0 与rate相同
+     */
+    public synchronized void setRate(double rate, double burst) {
+        this.rate = rate;
+        this.burst = burst>0?burst:Math.max(1, rate);
+        this.tokens = this.burst;
+        this.refillNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    public synchronized int getQueueSize() {
+        return cancelLane.size()+modifyLane.size()+insertLane.size();
+    }
+
+    public void sendOrder(Order order) throws AppException {
+        synchronized(this) {
+            if ( !canSendDirectly() ) {
+                Request req = new Request(ACTION_INSERT, order, null);
+                pendingInserts.put(order.getRef(), req);
+                insertLane.add(req);
+                //排队中的报单可以撤单
+                listener.changeOrderState(order, new OrderStateTuple(OrderState.Submitting, OrderSubmitState.Unsubmitted, System.currentTimeMillis()), null);
+                startOrNotify();
+                return;
+            }
+        }
+        sender.sendOrder(order);
+    }
+
+    public void cancelOrder(Order order) throws AppException {
+        String orderRef = order.getRef();
+        synchronized(this) {
+            Request insertReq = pendingInserts.get(orderRef);
+            if ( insertReq!=null && !insertReq.dequeued ) {
+                //报单还没有发出, 直接本地取消
+                insertLane.remove(insertReq);
+                pendingInserts.remove(orderRef);
+                removePendingAction(orderRef);
+                listener.changeOrderState(order, new OrderStateTuple(OrderState.Canceled, OrderSubmitState.Unsubmitted, System.currentTimeMillis()), null);
+                return;
+            }
+            Request actionReq = pendingActions.get(orderRef);
+            if ( actionReq!=null ) {
+                if ( actionReq.action==ACTION_CANCEL ) {
+                    return;
+                }
+                //撤单取代排队中的改单
+                removePendingAction(orderRef);
+            }
+            //报单正在发送时, 撤单必须排在后面
+            if ( insertReq!=null || !canSendDirectly() ) {
+                Request req = new Request(ACTION_CANCEL, order, null);
+                pendingActions.put(orderRef, req);
+                cancelLane.add(req);
+                startOrNotify();
+                return;
+            }
+        }
+        sender.cancelOrder(order);
+    }
+
+    public void modifyOrder(Order order, OrderBuilder builder) throws AppException {
+        String orderRef = order.getRef();
+        synchronized(this) {
+            Request insertReq = pendingInserts.get(orderRef);
+            if ( insertReq!=null && !insertReq.dequeued ) {
+                //报单还没有发出, 发送时使用修改后的价格
+                return;
+            }
+            Request actionReq = pendingActions.get(orderRef);
+            if ( actionReq!=null ) {
+                if ( actionReq.action==ACTION_MODIFY ) {
+                    actionReq.builder = builder;
+                }
+                return;
+            }
+            if ( insertReq!=null || !canSendDirectly() ) {
+                Request req = new Request(ACTION_MODIFY, order, builder);
+                pendingActions.put(orderRef, req);
+                modifyLane.add(req);
+                startOrNotify();
+                return;
+            }
+        }
+        sender.modifyOrder(order, builder);
+    }
+
+    /**
+     * 停止发送线程, 排队中的报单失败
+     */
+    public void close() {
+        Thread thread = null;
+        synchronized(this) {
+            thread = senderThread;
+            senderThread = null;
+            for(Request req:insertLane) {
+                listener.changeOrderState(req.order, new OrderStateTuple(OrderState.Failed, OrderSubmitState.InsertRejected, System.currentTimeMillis(), "Txn session closed"), null);
+            }
+            cancelLane.clear();
+            modifyLane.clear();
+            insertLane.clear();
+            pendingInserts.clear();
+            pendingActions.clear();
+            notifyAll();
+        }
+        if ( thread!=null ) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 没有排队请求并且拿到令牌
+     */
+    private boolean canSendDirectly() {
+        if ( rate<=0 ) {
+            return true;
+        }
+        return cancelLane.isEmpty() && modifyLane.isEmpty() && insertLane.isEmpty() && tryAcquire(System.nanoTime());
+    }
+
+    private boolean tryAcquire(long now) {
+        refill(now);
+        if ( tokens>=1 ) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now-refillNanos)*rate/1000000000.0d);
+        refillNanos = now;
+    }
+
+    private void removePendingAction(String orderRef) {
+        Request req = pendingActions.remove(orderRef);
+        if ( req!=null ) {
+            cancelLane.remove(req);
+            modifyLane.remove(req);
+        }
+    }
+
+    private void startOrNotify() {
+        if ( senderThread==null ) {
+            senderThread = new Thread(()->{
+                senderLoop(Thread.currentThread());
+            }, name);
+            senderThread.setDaemon(true);
+            senderThread.start();
+        } else {
+            notifyAll();
+        }
+    }
+
+    private void senderLoop(Thread thread) {
+        while(true) {
+            Request req = null;
+            synchronized(this) {
+                if ( senderThread!=thread ) {
+                    return;
+                }
+                ArrayDeque<Request> lane = !cancelLane.isEmpty()?cancelLane:(!modifyLane.isEmpty()?modifyLane:insertLane);
+                try {
+                    if ( lane.isEmpty() ) {
+                        wait();
+                        continue;
+                    }
+                    if ( rate>0 && !tryAcquire(System.nanoTime()) ) {
+                        long waitNanos = (long)((1-tokens)*1000000000.0d/rate);
+                        wait(Math.max(1, waitNanos/1000000));
+                        continue;
+                    }
+                }catch(InterruptedException ie) {
+                    continue;
+                }
+                req = lane.poll();
+                req.dequeued = true;
+                if ( req.action!=ACTION_INSERT ) {
+                    pendingActions.remove(req.order.getRef());
+                }
+            }
+            QUEUE_WAIT.recordSince(req.enqueueNanos);
+            try {
+                switch(req.action) {
+                case ACTION_INSERT:
+                    sender.sendOrder(req.order);
+                    break;
+                case ACTION_CANCEL:
+                    sender.cancelOrder(req.order);
+                    break;
+                case ACTION_MODIFY:
+                    sender.modifyOrder(req.order, req.builder);
+                    break;
+                }
+            }catch(Throwable t) {
+                logger.error(name+" send queued request of order "+req.order.getRef()+" failed", t);
+            }
+            if ( req.action==ACTION_INSERT ) {
+                synchronized(this) {
+                    pendingInserts.remove(req.order.getRef());
+                }
+            }
+        }
+    }
+
+}
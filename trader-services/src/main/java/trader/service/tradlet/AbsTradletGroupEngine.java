@@ -10,6 +10,7 @@ import trader.common.beans.Lifecycle;
 import trader.common.exchangeable.Exchangeable;
 import trader.service.ServiceConstants.AccountState;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataLatency;
 import trader.service.ta.LeveledTimeSeries;
 import trader.service.ta.TAListener;
 import trader.service.ta.TAService;
@@ -137,6 +138,7 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
                 }
             }
         }
+        MarketDataLatency.TRADLET.recordSince(md.recvNanos);
     }
 
     protected void processBar(LeveledTimeSeries series) {
@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
 import trader.common.exception.AppException;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.util.DateUtil;
@@ -38,7 +40,10 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
     private MarketDataService mdService;
     private MarketTimeService mtService;
     private List<Order> allOrders = new ArrayList<>();
-    private LinkedList<Order> pendingOrders = new LinkedList<>();
+    /**
+     * 未完成报单, 按OrderRef索引, 保持报单顺序, O(1)删除
+     */
+    private Long2ObjectLinkedOpenHashMap<Order> pendingOrders = new Long2ObjectLinkedOpenHashMap<>();
     private LinkedHashMap<String, PlaybookImpl> allPlaybooks = new LinkedHashMap<>();
     private LinkedList<PlaybookImpl> activePlaybooks = new LinkedList<>();
 
@@ -53,9 +58,12 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
         return allOrders;
     }
 
+    /**
+     * 返回未完成报单的副本
+     */
     @Override
     public List<Order> getPendingOrders() {
-        return pendingOrders;
+        return new ArrayList<>(pendingOrders.values());
     }
 
     @Override
@@ -71,12 +79,12 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
         if ( pendingOrders.isEmpty() ) {
             return null;
         }
-        return pendingOrders.getLast();
+        return pendingOrders.get(pendingOrders.lastLongKey());
     }
 
     @Override
     public void cancelAllPendingOrders() {
-        for(Order order:pendingOrders) {
+        for(Order order:getPendingOrders()) {
             if ( order.getStateTuple().getState().isRevocable() ) {
                 try {
                     group.getAccount().cancelOrder(order.getRef());
@@ -216,7 +224,7 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
             return;
         }
         if ( order.getStateTuple().getState().isDone() ) {
-            pendingOrders.remove(order);
+            pendingOrders.remove(order.getRefId());
         }
         PlaybookStateTuple newStateTuple = playbook.updateStateOnOrder(order);
         if ( newStateTuple!=null ) {
@@ -266,7 +274,7 @@ public class PlaybookKeeperImpl implements PlaybookKeeper, TradeConstants, Tradl
 
     private void addOrder(Order order) {
         allOrders.add(order);
-        pendingOrders.add(order);
+        pendingOrders.put(order.getRefId(), order);
     }
 
 }
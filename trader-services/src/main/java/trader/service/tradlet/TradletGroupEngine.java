@@ -1,7 +1,5 @@
 package trader.service.tradlet;
 
-import java.util.concurrent.ExecutorService;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +13,9 @@ import trader.common.beans.Lifecycle;
 import trader.common.config.ConfigUtil;
 import trader.common.util.ConversionUtil;
 import trader.common.util.StringUtil;
+import trader.common.util.concurrent.AffinityThreadFactory;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataLatency;
 import trader.service.trade.AccountListener;
 import trader.service.util.ConcurrentUtil;
 
@@ -24,14 +25,20 @@ import trader.service.util.ConcurrentUtil;
 public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecycle, EventHandler<TradletEvent>, AccountListener {
     private static final Logger logger = LoggerFactory.getLogger(TradletGroupEngine.class);
 
+    /**
+     * 分组在配置中的位置, 用于从全局CPU集合列表中选择
+     */
+    private int position;
     private Thread engineThread;
+    private AffinityThreadFactory threadFactory;
 
     private Disruptor<TradletEvent> disruptor;
     private RingBuffer<TradletEvent> ringBuffer;
     private volatile long lastEventTime;
 
-    public TradletGroupEngine(TradletGroupImpl group) {
+    public TradletGroupEngine(TradletGroupImpl group, int position) {
         this.group = group;
+        this.position = position;
     }
 
     public Thread getEngineThread() {
@@ -42,8 +49,6 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
     public void init(BeansContainer beansContainer) {
         super.init(beansContainer);
 
-        ExecutorService executorService = beansContainer.getBean(ExecutorService.class);
-
         //读取Group特有配置, 如果不存在, 读取通用配置
         String ringBufferSizeStr = ConfigUtil.getString(TradletServiceImpl.ITEM_TRADLETGROUP+"#"+group.getId()+TradletServiceImpl.ITEM_SUFFIX_DISRUPTOR_RINGBUFFER_SIZE);
         if ( StringUtil.isEmpty(ringBufferSizeStr)) {
@@ -53,13 +58,19 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
         if ( StringUtil.isEmpty(disruptorWaitStrategy)) {
             disruptorWaitStrategy = ConfigUtil.getString(TradletServiceImpl.ITEM_GLOBAL_DISRUPTOR_WAIT_STRATEGY);
         }
+        //多个分组使用全局配置时, 按分组在配置中的位置从分号分隔的CPU集合列表中选择, 重新加载不会改变已有分组的CPU
+        String affinity = ConfigUtil.getString(TradletServiceImpl.ITEM_TRADLETGROUP+"#"+group.getId()+TradletServiceImpl.ITEM_SUFFIX_DISRUPTOR_AFFINITY);
+        if ( StringUtil.isEmpty(affinity)) {
+            affinity = AffinityThreadFactory.selectCpuSet(ConfigUtil.getString(TradletServiceImpl.ITEM_GLOBAL_DISRUPTOR_AFFINITY), position);
+        }
         int ringBufferSize = 4096;
         if ( !StringUtil.isEmpty(ringBufferSizeStr)) {
             ringBufferSize = ConversionUtil.toInt(ringBufferSizeStr);
         }
+        threadFactory = new AffinityThreadFactory("TradletGroup-"+group.getId(), affinity);
         disruptor = new Disruptor<TradletEvent>( new TradletEventFactory()
             , ringBufferSize
-            , executorService
+            , threadFactory
             , ProducerType.MULTI
             , ConcurrentUtil.createDisruptorWaitStrategy(disruptorWaitStrategy)
             );
@@ -76,6 +87,9 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
             disruptor.shutdown();
             ringBuffer = null;
         }
+        if ( threadFactory!=null ) {
+            threadFactory.release();
+        }
     }
 
     @Override
@@ -87,6 +101,9 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
         }finally {
             ringBuffer.publish(seq);
         }
+        if ( eventType==TradletEvent.EVENT_TYPE_MD_TICK ) {
+            MarketDataLatency.TRADLET_QUEUE.recordSince(((MarketData)data).recvNanos);
+        }
     }
 
     @Override
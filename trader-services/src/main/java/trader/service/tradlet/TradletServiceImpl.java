@@ -49,9 +49,11 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
 
     static final String ITEM_SUFFIX_DISRUPTOR_WAIT_STRATEGY = "/disruptor/waitStrategy";
     static final String ITEM_SUFFIX_DISRUPTOR_RINGBUFFER_SIZE = "/disruptor/ringBufferSize";
+    static final String ITEM_SUFFIX_DISRUPTOR_AFFINITY = "/disruptor/affinity";
 
     static final String ITEM_GLOBAL_DISRUPTOR_WAIT_STRATEGY = "/TradletService"+ITEM_SUFFIX_DISRUPTOR_WAIT_STRATEGY;
     static final String ITEM_GLOBAL_DISRUPTOR_RINGBUFFER_SIZE = "/TradletService"+ITEM_SUFFIX_DISRUPTOR_RINGBUFFER_SIZE;
+    static final String ITEM_GLOBAL_DISRUPTOR_AFFINITY = "/TradletService"+ITEM_SUFFIX_DISRUPTOR_AFFINITY;
 
     public static final String ITEM_SCRIPT_FUNCTIONS = "/TradletService/scriptFunctions";
 
@@ -258,7 +260,9 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
         }
         Map<String, TradletGroupEngine> allGroupEngines = new HashMap<>();
         int failedGroups=0;
+        int groupPosition=0;
         for(Map groupElem:(List<Map>)ConfigUtil.getObject(ITEM_TRADLETGROUPS)) {
+            int position = groupPosition++;
             String groupId = ConversionUtil.toString(groupElem.get("id"));
             String groupConfig = ConversionUtil.toString( groupElem.get("text") );
             TradletGroupEngine groupEngine = currGroupEngines.remove(groupId);
@@ -268,7 +272,7 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
                 try {
                     if (groupEngine == null) { // 新增Group
                         TradletGroupImpl group = createGroup(groupElem);
-                        groupEngine = new TradletGroupEngine(group);
+                        groupEngine = new TradletGroupEngine(group, position);
                         newGroupEngines.put(groupId, groupEngine);
                         newGroupIds.add(groupId);
                     } else { //更新Group
@@ -353,7 +357,8 @@ public class TradletServiceImpl implements TradletConstants, TradletService, Plu
         for(int i=0;i<groupEngines.size();i++) {
             TradletGroupEngine groupEngine = groupEngines.get(i);
             if ( groupEngine.getGroup().interestOn(md.instrumentId, null) ) {
-                groupEngine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md);
+                //交易组在自己的线程中处理, 需要持有TICK
+                groupEngine.queueEvent(TradletEvent.EVENT_TYPE_MD_TICK, md.retain());
             }
         }
     }
@@ -9,6 +9,7 @@ import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.runtime.InvokerInvocationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.ta4j.core.BaseTimeSeries;
 import org.ta4j.core.TimeSeries;
 
 import groovy.lang.GroovyClassLoader;
@@ -21,9 +22,9 @@ import trader.service.beans.DiscoverableRegistry;
 import trader.service.md.MarketData;
 import trader.service.plugin.Plugin;
 import trader.service.plugin.PluginService;
-import trader.service.ta.Bar2;
 import trader.service.ta.LeveledTimeSeries;
-import trader.service.ta.indicators.SimpleIndicator;
+import trader.service.ta.column.BarColumns;
+import trader.service.ta.column.ColumnIndicatorAdapter;
 import trader.service.tradlet.Playbook;
 import trader.service.tradlet.PlaybookStateTuple;
 import trader.service.tradlet.Tradlet;
@@ -47,6 +48,50 @@ import trader.service.tradlet.script.func.SMAFunc;
 public class GroovyTradletImpl implements Tradlet, ScriptContext {
     private static final Logger logger = LoggerFactory.getLogger(GroovyTradletImpl.class);
 
+    /**
+     * 一个LeveledTimeSeries已完成的Bar, 以及基于列数据的OHLC变量
+     */
+    private static class BarVars {
+        private final LeveledTimeSeries series;
+        private final TimeSeries completedSeries;
+        private final BarColumns columns;
+        private final Map<String, GroovyIndicatorValue> variables = new HashMap<>();
+        /**
+         * 下一个需要追加到completedSeries的series下标
+         */
+        private int nextIndex;
+
+        BarVars(LeveledTimeSeries series){
+            this.series = series;
+            columns = new BarColumns(Math.max(BarColumns.DEFAULT_CAPACITY, series.getBarCount()*2));
+            completedSeries = new BaseTimeSeries(series.getName(), series.function());
+            completedSeries.setMaximumBarCount(columns.getCapacity());
+            nextIndex = series.getBeginIndex();
+            put("OPEN", BarColumns.COL_OPEN);
+            put("CLOSE", BarColumns.COL_CLOSE);
+            put("HIGH", BarColumns.COL_HIGH);
+            put("LOW", BarColumns.COL_LOW);
+            put("VOLUME", BarColumns.COL_VOLUME);
+            put("AMOUNT", BarColumns.COL_AMOUNT);
+            put("AVERAGE", BarColumns.COL_AVG_PRICE);
+        }
+
+        private void put(String varName, int column) {
+            variables.put(varName, new GroovyIndicatorValue(new ColumnIndicatorAdapter(completedSeries, columns, columns.getColumn(column))));
+        }
+
+        /**
+         * 追加最后一个Bar之前的新完成的Bar
+         */
+        void update() {
+            nextIndex = Math.max(nextIndex, series.getBeginIndex());
+            int endIndex = series.getEndIndex();
+            for(; nextIndex<endIndex; nextIndex++) {
+                completedSeries.addBar(series.getBar(nextIndex));
+            }
+        }
+    }
+
     private TradletGroup group;
     private BeansContainer beansContainer;
     private Map<String, Class<TradletScriptFunction>> functionClasses = new HashMap<>();
@@ -61,6 +106,10 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
     private GroovyScriptMethodInfo methodOnTick;
     private GroovyScriptMethodInfo methodOnNewBar;
     private GroovyScriptMethodInfo methodOnNoopSecond;
+    /**
+     * 每个品种/级别的OHLC变量, 跨Bar保持, 指标只增量计算
+     */
+    private Map<LeveledTimeSeries, BarVars> barVars = new HashMap<>();
 
     @Override
     public void init(TradletContext context) throws Exception {
@@ -181,7 +230,8 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
     }
 
     /**
-     * 准备OHLC标准变量. 这个方法忽略新创建的Bar, 只返回已完成的KBAR
+     * 准备OHLC标准变量. 这个方法忽略新创建的Bar, 只返回已完成的KBAR.
+     * <BR>已完成的Bar追加到持久的序列中, 不再每次复制子序列和重建变量
      */
     private boolean prepareBarVars(LeveledTimeSeries series) {
         if ( series.getBarCount()<=1 ) {
@@ -194,28 +244,13 @@ public class GroovyTradletImpl implements Tradlet, ScriptContext {
             variables.remove("AVERAGE");
             return false;
         }
-        TimeSeries subSeries = series.getSubSeries(series.getBeginIndex(), series.getEndIndex());
-        variables.put("OPEN", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getOpenPrice();
-        })));
-        variables.put("CLOSE", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getClosePrice();
-        })));
-        variables.put("HIGH", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getMaxPrice();
-        })));
-        variables.put("LOW", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getMinPrice();
-        })));
-        variables.put("VOLUME", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getVolume();
-        })));
-        variables.put("AMOUNT", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getAmount();
-        })));
-        variables.put("AVERAGE", new GroovyIndicatorValue(SimpleIndicator.createFromSeries(subSeries, (Bar2 bar)->{
-            return bar.getAvgPrice();
-        })));
+        BarVars vars = barVars.get(series);
+        if ( vars==null ) {
+            vars = new BarVars(series);
+            barVars.put(series, vars);
+        }
+        vars.update();
+        variables.putAll(vars.variables);
         return true;
     }
 
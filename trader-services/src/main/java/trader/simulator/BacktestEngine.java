@@ -0,0 +1,150 @@
+package trader.simulator;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+import trader.simulator.BacktestResult.AccountTxn;
+import trader.simulator.trade.SimTxn;
+
+/**
+ * 并行回测引擎.
+ * <BR>按 合约 * 交易日 * 参数组 拆分为相互独立的BacktestJob, 在ForkJoinPool中并行执行, 再按参数组汇总为权益曲线和成交报告.
+ */
+public class BacktestEngine {
+    private final static Logger logger = LoggerFactory.getLogger(BacktestEngine.class);
+
+    public static final String DEFAULT_PARAMS_ID = "default";
+
+    private int parallelism;
+
+    public BacktestEngine(int parallelism) {
+        if ( parallelism<=0 ) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 创建 合约 * 交易日 * 参数组 的全部任务
+     *
+     * @param paramSets 参数组ID -> 参数, 为空时使用配置中的原始参数
+     */
+    public static List<BacktestJob> createJobs(Collection<Exchangeable> instruments, Collection<LocalDate> tradingDays, Map<String, Properties> paramSets) {
+        if ( paramSets==null || paramSets.isEmpty() ) {
+            paramSets = new LinkedHashMap<>();
+            paramSets.put(DEFAULT_PARAMS_ID, new Properties());
+        }
+        List<BacktestJob> result = new ArrayList<>();
+        for(Map.Entry<String, Properties> paramSet:paramSets.entrySet()) {
+            for(Exchangeable e:instruments) {
+                for(LocalDate tradingDay:tradingDays) {
+                    result.add(new BacktestJob(e, tradingDay, paramSet.getKey(), paramSet.getValue()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 并行执行全部任务, 结果按任务顺序返回. 单个任务失败不影响其它任务, 错误记录在结果中.
+     */
+    public List<BacktestResult> run(List<BacktestJob> jobs) throws Exception
+    {
+        long t0 = System.currentTimeMillis();
+        List<BacktestResult> result = new ArrayList<>(jobs.size());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for(Future<BacktestResult> future:pool.invokeAll(jobs)) {
+                result.add(future.get());
+            }
+        }finally {
+            pool.shutdown();
+        }
+        logger.info("Backtest "+jobs.size()+" jobs finished in "+(System.currentTimeMillis()-t0)+" ms, parallelism "+parallelism);
+        return result;
+    }
+
+    /**
+     * 按参数组汇总的累计权益曲线: 交易日 -> 截止该交易日所有合约的累计盈亏
+     */
+    public static Map<String, SortedMap<LocalDate, Long>> getEquityCurves(List<BacktestResult> results){
+        Map<String, SortedMap<LocalDate, Long>> result = new LinkedHashMap<>();
+        for(BacktestResult r:results) {
+            if ( r.getError()!=null ) {
+                continue;
+            }
+            SortedMap<LocalDate, Long> dailyProfits = result.get(r.getParamsId());
+            if ( dailyProfits==null ) {
+                dailyProfits = new TreeMap<>();
+                result.put(r.getParamsId(), dailyProfits);
+            }
+            Long profit = dailyProfits.get(r.getTradingDay());
+            dailyProfits.put(r.getTradingDay(), (profit==null?0:profit)+r.getProfit());
+        }
+        for(SortedMap<LocalDate, Long> curve:result.values()) {
+            long equity = 0;
+            for(Map.Entry<LocalDate, Long> entry:curve.entrySet()) {
+                equity += entry.getValue();
+                entry.setValue(equity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 权益曲线CSV
+     */
+    public static String toEquityCSV(List<BacktestResult> results) {
+        CSVWriter csvWriter = new CSVWriter("ParamsId", "TradingDay", "Equity");
+        for(Map.Entry<String, SortedMap<LocalDate, Long>> curve:getEquityCurves(results).entrySet()) {
+            for(Map.Entry<LocalDate, Long> entry:curve.getValue().entrySet()) {
+                csvWriter.append(curve.getKey(), DateUtil.date2str(entry.getKey()), PriceUtil.long2str(entry.getValue()));
+            }
+        }
+        return csvWriter.toString();
+    }
+
+    /**
+     * 成交报告CSV, 按参数组和成交时间排序
+     */
+    public static String toTradeCSV(List<BacktestResult> results) {
+        List<Object[]> rows = new ArrayList<>();
+        for(BacktestResult r:results) {
+            for(AccountTxn accountTxn:r.getTransactions()) {
+                rows.add(new Object[] {r.getParamsId(), accountTxn});
+            }
+        }
+        rows.sort(Comparator.comparing((Object[] row)->(String)row[0]).thenComparing((Object[] row)->((AccountTxn)row[1]).getTxn().getTime()));
+        CSVWriter csvWriter = new CSVWriter("ParamsId", "Account", "TxnId", "Time", "Instrument", "Direction", "Offset", "Volume", "Price");
+        for(Object[] row:rows) {
+            AccountTxn accountTxn = (AccountTxn)row[1];
+            SimTxn txn = accountTxn.getTxn();
+            csvWriter.append(row[0], accountTxn.getAccountId(), txn.getId(), txn.getTime()
+                    , txn.getOrder().getExchangeable(), txn.getDirection(), txn.getOrder().getOffsetFlag()
+                    , txn.getVolume(), PriceUtil.long2str(txn.getPrice()));
+        }
+        return csvWriter.toString();
+    }
+
+}
@@ -0,0 +1,128 @@
+package trader.simulator;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.service.data.KVStoreService;
+import trader.service.md.MarketDataService;
+import trader.service.ta.TAServiceImpl;
+import trader.service.trade.Account;
+import trader.service.trade.MarketTimeService;
+import trader.service.trade.TradeConstants;
+import trader.service.trade.TradeService;
+import trader.service.tradlet.TradletService;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.trade.SimTradeService;
+import trader.simulator.trade.SimTxnSession;
+
+/**
+ * 回测任务: 一个合约 * 一个交易日 * 一组参数.
+ * <BR>每个任务使用独立的BeansContainer, 任务之间不共享可变状态, 可以并行执行.
+ */
+public class BacktestJob implements Callable<BacktestResult>, TradeConstants {
+    private final static Logger logger = LoggerFactory.getLogger(BacktestJob.class);
+
+    private Exchangeable exchangeable;
+    private LocalDate tradingDay;
+    private String paramsId;
+    private Properties params;
+
+    public BacktestJob(Exchangeable exchangeable, LocalDate tradingDay, String paramsId, Properties params) {
+        this.exchangeable = exchangeable;
+        this.tradingDay = tradingDay;
+        this.paramsId = paramsId;
+        this.params = params;
+    }
+
+    public String getId() {
+        return exchangeable+"-"+tradingDay+"-"+paramsId;
+    }
+
+    public Exchangeable getExchangeable() {
+        return exchangeable;
+    }
+
+    public LocalDate getTradingDay() {
+        return tradingDay;
+    }
+
+    public String getParamsId() {
+        return paramsId;
+    }
+
+    public Properties getParams() {
+        return params;
+    }
+
+    @Override
+    public BacktestResult call() {
+        BacktestResult result = new BacktestResult(this);
+        long t0 = System.currentTimeMillis();
+        try {
+            BeansContainer beansContainer = initBeans(exchangeable, tradingDay, params);
+            SimMarketTimeService mtService = beansContainer.getBean(SimMarketTimeService.class);
+            while(mtService.nextTimePiece());
+            TradeService tradeService = beansContainer.getBean(TradeService.class);
+            for(Account account:tradeService.getAccounts()) {
+                result.addAccount(account.getId(), account.getMoney(AccMoney_BalanceBefore), account.getMoney(AccMoney_Balance));
+                if ( account.getSession() instanceof SimTxnSession ) {
+                    result.addTransactions(account.getId(), ((SimTxnSession)account.getSession()).getTransactions());
+                }
+            }
+        }catch(Throwable t) {
+            logger.error("Backtest job "+getId()+" failed: "+t, t);
+            result.setError(t);
+        }
+        result.setTime(System.currentTimeMillis()-t0);
+        return result;
+    }
+
+    /**
+     * 为某个交易日创建运行环境
+     */
+    public static BeansContainer initBeans(Exchangeable e, LocalDate tradingDay, Properties params) throws Exception
+    {
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
+        SimMarketDataService mdService = new SimMarketDataService();
+        SimKVStoreService kvStoreService = new SimKVStoreService();
+        SimTradeService tradeService = new SimTradeService();
+        TAServiceImpl taService = new TAServiceImpl();
+        SimTradletService tradletService = new SimTradletService();
+        if ( params!=null ) {
+            tradletService.setParams(params);
+        }
+        tradletService.setInstruments(Arrays.asList(e));
+
+        beansContainer.addBean(MarketTimeService.class, mtService);
+        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        beansContainer.addBean(KVStoreService.class, kvStoreService);
+        beansContainer.addBean(TradeService.class, tradeService);
+        beansContainer.addBean(TAServiceImpl.class, taService);
+        beansContainer.addBean(TradletService.class, tradletService);
+
+        scheduledExecutorService.init(beansContainer);
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        mtService.setTimeRanges(tradingDay, tradingTimes.getMarketTimes() );
+        //逐个TICK按时间顺序回放, 跳过空闲时间
+        mtService.setEventDriven(true);
+        mdService.addSubscriptions(Arrays.asList(e));
+        mdService.init(beansContainer);
+        taService.init(beansContainer);
+        tradeService.init(beansContainer);
+        tradletService.init(beansContainer);
+        return beansContainer;
+    }
+
+}
@@ -0,0 +1,343 @@
+package trader.simulator;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.CSVWriter;
+import trader.common.util.IniFile;
+import trader.common.util.PriceUtil;
+import trader.common.util.StringUtil;
+import trader.simulator.BacktestResult.AccountTxn;
+
+/**
+ * 交易组参数寻优: 网格/随机/逐次减半搜索.
+ * <BR>所有候选参数并行回测, 共享SimTickCache中只读的TICK数据, 按盈亏, 最大回撤, 成交量排序.
+ */
+public class BacktestOptimizer {
+    private final static Logger logger = LoggerFactory.getLogger(BacktestOptimizer.class);
+
+    public static enum Mode{
+        /**
+         * 全部参数组合
+         */
+        Grid,
+        /**
+         * 随机抽取samples个参数组合
+         */
+        Random,
+        /**
+         * 逐次减半: 先用少量交易日评估全部组合, 每轮保留一半, 交易日加倍
+         */
+        Halving
+    }
+
+    public static enum RankBy{
+        PnL,
+        Drawdown,
+        Turnover
+    }
+
+    /**
+     * 一组参数的回测评分
+     */
+    public static class Score {
+        private String paramsId;
+        private Properties params;
+        private int tradingDays;
+        private long pnl;
+        private long maxDrawdown;
+        private long turnover;
+        private int failedJobs;
+
+        Score(String paramsId, Properties params){
+            this.paramsId = paramsId;
+            this.params = params;
+        }
+
+        public String getParamsId() {
+            return paramsId;
+        }
+
+        public Properties getParams() {
+            return params;
+        }
+
+        /**
+         * 参与评分的交易日数
+         */
+        public int getTradingDays() {
+            return tradingDays;
+        }
+
+        public long getPnL() {
+            return pnl;
+        }
+
+        /**
+         * 累计权益曲线的最大回撤, 非负
+         */
+        public long getMaxDrawdown() {
+            return maxDrawdown;
+        }
+
+        /**
+         * 成交手数
+         */
+        public long getTurnover() {
+            return turnover;
+        }
+
+        public int getFailedJobs() {
+            return failedJobs;
+        }
+    }
+
+    private BacktestEngine engine;
+    private Mode mode = Mode.Grid;
+    private RankBy rankBy = RankBy.PnL;
+    private int samples = 100;
+    private long seed = 1;
+
+    public BacktestOptimizer(BacktestEngine engine) {
+        this.engine = engine;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public void setRankBy(RankBy rankBy) {
+        this.rankBy = rankBy;
+    }
+
+    /**
+     * 随机搜索的采样个数
+     */
+    public void setSamples(int samples) {
+        this.samples = samples;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * 从INI文件解析参数范围, 段名为Tradlet配置段, 值格式为 min:max:step 或者 v1,v2,v3
+     *
+     * @return SECTION.key -> 取值列表
+     */
+    public static Map<String, List<String>> parseRanges(IniFile rangesIni){
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for(IniFile.Section section:rangesIni.getAllSections()) {
+            Properties props = section.getProperties();
+            for(String key:props.stringPropertyNames()) {
+                result.put(section.getName()+"."+key, parseRange(props.getProperty(key)));
+            }
+        }
+        return result;
+    }
+
+    public static List<String> parseRange(String text) {
+        List<String> result = new ArrayList<>();
+        String[] parts = StringUtil.split(text, ":");
+        if ( parts.length==3 && isNumber(parts[0]) && isNumber(parts[1]) && isNumber(parts[2]) && new BigDecimal(parts[2]).signum()>0 ) {
+            BigDecimal min = new BigDecimal(parts[0]), max = new BigDecimal(parts[1]), step = new BigDecimal(parts[2]);
+            for(BigDecimal v=min; v.compareTo(max)<=0; v=v.add(step)) {
+                result.add(v.toPlainString());
+            }
+        } else {
+            //非数字范围, 例如 14:55:00 这样的时间, 按列表处理
+            for(String v:StringUtil.split(text, ",|;")) {
+                result.add(v);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isNumber(String str) {
+        try {
+            new BigDecimal(str);
+            return true;
+        }catch(NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * 按搜索模式生成候选参数组
+     */
+    public Map<String, Properties> createCandidates(Map<String, List<String>> ranges){
+        List<String> names = new ArrayList<>(ranges.keySet());
+        long gridSize = 1;
+        for(List<String> values:ranges.values()) {
+            gridSize *= Math.max(1, values.size());
+        }
+        List<int[]> combos = new ArrayList<>();
+        if ( mode==Mode.Random && samples<gridSize ) {
+            Random random = new Random(seed);
+            Set<String> picked = new HashSet<>();
+            while(combos.size()<samples) {
+                int[] combo = new int[names.size()];
+                for(int i=0;i<combo.length;i++) {
+                    combo[i] = random.nextInt(Math.max(1, ranges.get(names.get(i)).size()));
+                }
+                if ( picked.add(Arrays.toString(combo)) ) {
+                    combos.add(combo);
+                }
+            }
+        } else {
+            int[] combo = new int[names.size()];
+            for(long n=0;n<gridSize;n++) {
+                combos.add(combo.clone());
+                for(int i=combo.length-1;i>=0;i--) {
+                    if ( ++combo[i]<ranges.get(names.get(i)).size() ) {
+                        break;
+                    }
+                    combo[i] = 0;
+                }
+            }
+        }
+        Map<String, Properties> result = new LinkedHashMap<>();
+        for(int[] combo:combos) {
+            Properties params = new Properties();
+            for(int i=0;i<combo.length;i++) {
+                List<String> values = ranges.get(names.get(i));
+                if ( !values.isEmpty() ) {
+                    params.setProperty(names.get(i), values.get(combo[i]));
+                }
+            }
+            result.put(String.format("p%05d", result.size()+1), params);
+        }
+        return result;
+    }
+
+    /**
+     * 运行寻优, 返回排序后的评分, 最优在前
+     */
+    public List<Score> optimize(Collection<Exchangeable> instruments, List<LocalDate> tradingDays, Map<String, List<String>> ranges) throws Exception
+    {
+        Map<String, Properties> candidates = createCandidates(ranges);
+        logger.info("Optimize "+candidates.size()+" candidates in "+mode+" mode over "+tradingDays.size()+" trading days");
+        if ( mode!=Mode.Halving ) {
+            return evaluate(instruments, tradingDays, candidates);
+        }
+        //逐次减半, 从最早的交易日开始, 每轮交易日加倍
+        int rounds = 0;
+        while( (1<<rounds)<candidates.size() ) {
+            rounds++;
+        }
+        List<Score> eliminated = new ArrayList<>();
+        for(int round=0;;round++) {
+            int days = (int)Math.max(1, Math.min(tradingDays.size(), (long)Math.ceil(tradingDays.size()/(double)(1L<<(rounds-round)))));
+            List<Score> scores = evaluate(instruments, tradingDays.subList(0, days), candidates);
+            if ( candidates.size()<=1 || days>=tradingDays.size() ) {
+                scores.addAll(eliminated);
+                return scores;
+            }
+            int keep = (candidates.size()+1)/2;
+            Map<String, Properties> survivors = new LinkedHashMap<>();
+            for(int i=0;i<scores.size();i++) {
+                Score score = scores.get(i);
+                if ( i<keep ) {
+                    survivors.put(score.getParamsId(), score.getParams());
+                } else {
+                    eliminated.add(i-keep, score);
+                }
+            }
+            candidates = survivors;
+        }
+    }
+
+    private List<Score> evaluate(Collection<Exchangeable> instruments, List<LocalDate> tradingDays, Map<String, Properties> candidates) throws Exception
+    {
+        List<BacktestResult> results = engine.run(BacktestEngine.createJobs(instruments, tradingDays, candidates));
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for(Map.Entry<String, Properties> candidate:candidates.entrySet()) {
+            Score score = new Score(candidate.getKey(), candidate.getValue());
+            score.tradingDays = tradingDays.size();
+            scores.put(candidate.getKey(), score);
+        }
+        for(BacktestResult r:results) {
+            Score score = scores.get(r.getParamsId());
+            if ( r.getError()!=null ) {
+                score.failedJobs++;
+                continue;
+            }
+            for(AccountTxn txn:r.getTransactions()) {
+                score.turnover += txn.getTxn().getVolume();
+            }
+        }
+        for(Map.Entry<String, SortedMap<LocalDate, Long>> curve:BacktestEngine.getEquityCurves(results).entrySet()) {
+            Score score = scores.get(curve.getKey());
+            long peak = 0, maxDrawdown = 0, equity = 0;
+            for(long v:curve.getValue().values()) {
+                equity = v;
+                peak = Math.max(peak, equity);
+                maxDrawdown = Math.max(maxDrawdown, peak-equity);
+            }
+            score.pnl = equity;
+            score.maxDrawdown = maxDrawdown;
+        }
+        List<Score> result = new ArrayList<>(scores.values());
+        Collections.sort(result, createComparator(rankBy));
+        return result;
+    }
+
+    /**
+     * 失败任务多的排后面, 然后按rankBy排序, 其余指标依次作为次序
+     */
+    static Comparator<Score> createComparator(RankBy rankBy){
+        Comparator<Score> byPnL = Comparator.comparingLong((Score s)->s.pnl).reversed();
+        Comparator<Score> byDrawdown = Comparator.comparingLong((Score s)->s.maxDrawdown);
+        Comparator<Score> byTurnover = Comparator.comparingLong((Score s)->s.turnover);
+        Comparator<Score> result = Comparator.comparingInt((Score s)->s.failedJobs);
+        switch(rankBy) {
+        case Drawdown:
+            return result.thenComparing(byDrawdown).thenComparing(byPnL).thenComparing(byTurnover);
+        case Turnover:
+            return result.thenComparing(byTurnover).thenComparing(byPnL).thenComparing(byDrawdown);
+        case PnL:
+        default:
+            return result.thenComparing(byPnL).thenComparing(byDrawdown).thenComparing(byTurnover);
+        }
+    }
+
+    /**
+     * 评分排名CSV
+     */
+    public static String toScoreCSV(List<Score> scores) {
+        CSVWriter csvWriter = new CSVWriter("Rank", "ParamsId", "TradingDays", "PnL", "MaxDrawdown", "Turnover", "Failed", "Params");
+        int rank = 0;
+        for(Score score:scores) {
+            StringBuilder params = new StringBuilder();
+            for(String key:new TreeSet<>(score.getParams().stringPropertyNames())) {
+                if ( params.length()>0 ) {
+                    params.append(" ");
+                }
+                params.append(key).append("=").append(score.getParams().getProperty(key));
+            }
+            csvWriter.append(++rank, score.getParamsId(), score.getTradingDays(), PriceUtil.long2str(score.getPnL())
+                    , PriceUtil.long2str(score.getMaxDrawdown()), score.getTurnover(), score.getFailedJobs(), params);
+        }
+        return csvWriter.toString();
+    }
+
+}
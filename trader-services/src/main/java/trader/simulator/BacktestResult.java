@@ -0,0 +1,116 @@
+package trader.simulator;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.simulator.trade.SimTxn;
+
+/**
+ * 单个回测任务的结果: 各账户的期初/期末权益和全部成交
+ */
+public class BacktestResult {
+
+    /**
+     * 账户成交
+     */
+    public static class AccountTxn {
+        private String accountId;
+        private SimTxn txn;
+
+        AccountTxn(String accountId, SimTxn txn){
+            this.accountId = accountId;
+            this.txn = txn;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public SimTxn getTxn() {
+            return txn;
+        }
+    }
+
+    private BacktestJob job;
+    private Map<String, long[]> accountBalances = new LinkedHashMap<>();
+    private List<AccountTxn> txns = new ArrayList<>();
+    private Throwable error;
+    private long time;
+
+    BacktestResult(BacktestJob job){
+        this.job = job;
+    }
+
+    public BacktestJob getJob() {
+        return job;
+    }
+
+    public Exchangeable getExchangeable() {
+        return job.getExchangeable();
+    }
+
+    public LocalDate getTradingDay() {
+        return job.getTradingDay();
+    }
+
+    public String getParamsId() {
+        return job.getParamsId();
+    }
+
+    /**
+     * 账户ID -> [期初权益, 期末权益]
+     */
+    public Map<String, long[]> getAccountBalances(){
+        return Collections.unmodifiableMap(accountBalances);
+    }
+
+    /**
+     * 所有账户的当日盈亏(扣除手续费)
+     */
+    public long getProfit() {
+        long result = 0;
+        for(long[] balances:accountBalances.values()) {
+            result += balances[1]-balances[0];
+        }
+        return result;
+    }
+
+    public List<AccountTxn> getTransactions(){
+        return Collections.unmodifiableList(txns);
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * 任务耗时, 毫秒
+     */
+    public long getTime() {
+        return time;
+    }
+
+    void addAccount(String accountId, long balanceBefore, long balance) {
+        accountBalances.put(accountId, new long[] {balanceBefore, balance});
+    }
+
+    void addTransactions(String accountId, List<SimTxn> accountTxns) {
+        for(SimTxn txn:accountTxns) {
+            txns.add(new AccountTxn(accountId, txn));
+        }
+    }
+
+    void setError(Throwable error) {
+        this.error = error;
+    }
+
+    void setTime(long time) {
+        this.time = time;
+    }
+
+}
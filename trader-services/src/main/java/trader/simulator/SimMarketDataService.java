@@ -10,12 +10,15 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,15 +47,17 @@ import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
 import trader.service.md.MarketDataServiceImpl;
+import trader.service.md.TickColumns;
 import trader.service.util.SimpleBeansContainer;
 
 /**
  * 模拟市场行情驱动服务
  */
-public class SimMarketDataService implements MarketDataService, SimMarketTimeAware {
+public class SimMarketDataService implements MarketDataService, SimMarketTimeAware, SimTimeEventSource {
     private final static Logger logger = LoggerFactory.getLogger(SimMarketDataService.class);
 
     private static class SimMDInfo {
+        Exchangeable exchangeable;
         ExchangeableTradingTimes tradingTimes;
         List<MarketData> ticks = new ArrayList<>();
         int nextDataIndex = 0;
@@ -93,8 +98,34 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
             return result;
         }
 
+        /**
+         * 事件驱动回放开始时, 定位到最后一个不晚于actionTime的行情, 与轮询模式一致
+         */
+        public void seekFirst(LocalDateTime actionTime) {
+            nextDataIndex = 0;
+            for(int i=0;i<ticks.size();i++) {
+                if ( actionTime.compareTo(ticks.get(i).updateTime)>=0 ) {
+                    nextDataIndex = i;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        public MarketData nextTick() {
+            return ticks.get(nextDataIndex);
+        }
+
     }
 
+    private static final Comparator<SimMDInfo> REPLAY_COMPARATOR = (SimMDInfo o1, SimMDInfo o2)->{
+        int result = Long.compare(o1.nextTick().updateTimestamp, o2.nextTick().updateTimestamp);
+        if ( result==0 ) {
+            result = o1.exchangeable.compareTo(o2.exchangeable);
+        }
+        return result;
+    };
+
     private BeansContainer beansContainer;
     private SimMarketTimeService mtService;
     private Map<String, MarketDataProducerFactory> producerFactories;
@@ -105,6 +136,11 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
 
     protected LocalDateTime lastTime;
 
+    /**
+     * 事件驱动回放时, 按下一个行情时间多路归并的合约队列
+     */
+    protected PriorityQueue<SimMDInfo> replayQueue;
+
     @Override
     public ServiceState getState() {
         return ServiceState.Ready;
@@ -200,54 +236,119 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
             //第一次调用, 需要加载数据
             loadMarketData(tradingDay);
         }
-        for(Exchangeable e:subscriptions) {
-            SimMDInfo mdInfo = mdInfos.get(e);
-            if ( mdInfo==null ) {
-                continue;
+        if ( mtService!=null && mtService.isEventDriven() ) {
+            replay(actionTime);
+        } else {
+            for(Exchangeable e:subscriptions) {
+                SimMDInfo mdInfo = mdInfos.get(e);
+                if ( mdInfo==null ) {
+                    continue;
+                }
+                MarketData md = mdInfo.seek(lastTime, actionTime);
+                if ( md==null ) {
+                    continue;
+                }
+                notifyListeners(e, md);
             }
-            MarketData md = mdInfo.seek(lastTime, actionTime);
-            if ( md==null ) {
-                continue;
+        }
+        lastTime = actionTime;
+    }
+
+    /**
+     * 下一个待回放行情的时间
+     */
+    @Override
+    public LocalDateTime nextEventTime() {
+        if ( replayQueue==null || replayQueue.isEmpty() ) {
+            return null;
+        }
+        return replayQueue.peek().nextTick().updateTime;
+    }
+
+    /**
+     * 事件驱动回放: 按时间顺序派发所有不晚于actionTime的行情, 每个TICK O(log n)
+     */
+    private void replay(LocalDateTime actionTime) {
+        if ( replayQueue==null ) {
+            replayQueue = new PriorityQueue<>(Math.max(1, mdInfos.size()), REPLAY_COMPARATOR);
+            for(Exchangeable e:subscriptions) {
+                SimMDInfo mdInfo = mdInfos.get(e);
+                if ( mdInfo==null ) {
+                    continue;
+                }
+                mdInfo.seekFirst(actionTime);
+                if ( mdInfo.nextDataIndex<mdInfo.ticks.size() ) {
+                    replayQueue.add(mdInfo);
+                }
             }
-            md.postProcess(mdInfo.tradingTimes);
-            for(MarketDataListener listener:genericListeners) {
-                listener.onMarketData(md);
+        }
+        while(!replayQueue.isEmpty()) {
+            SimMDInfo mdInfo = replayQueue.peek();
+            MarketData md = mdInfo.nextTick();
+            if ( md.updateTime.compareTo(actionTime)>0 ) {
+                break;
             }
-            List<MarketDataListener> eListeners = listeners.get(e);
-            if ( eListeners!=null ) {
-                for(MarketDataListener listener:eListeners) {
-                    listener.onMarketData(md);
-                }
+            replayQueue.poll();
+            mdInfo.nextDataIndex++;
+            if ( mdInfo.nextDataIndex<mdInfo.ticks.size() ) {
+                replayQueue.add(mdInfo);
+            }
+            notifyListeners(mdInfo.exchangeable, md);
+        }
+    }
+
+    private void notifyListeners(Exchangeable e, MarketData md) {
+        for(MarketDataListener listener:genericListeners) {
+            listener.onMarketData(md);
+        }
+        List<MarketDataListener> eListeners = listeners.get(e);
+        if ( eListeners!=null ) {
+            for(MarketDataListener listener:eListeners) {
+                listener.onMarketData(md);
             }
         }
-        lastTime = actionTime;
     }
 
     private void loadMarketData(LocalDate tradingDay) {
-        ExchangeableData data = TraderHomeUtil.getExchangeableData();
         for(Exchangeable e:subscriptions) {
             SimMDInfo mdInfo  =new SimMDInfo();
+            mdInfo.exchangeable = e;
             mdInfo.tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
-            DataInfo tickInfo = ExchangeableData.TICK_CTP;
-            String tickCsv = null;
             try{
-                tickCsv = data.load(e, tickInfo, tradingDay);
+                //已解码的TICK在所有回测实例之间只读共享
+                mdInfo.ticks = SimTickCache.getTicks(e, tradingDay, mdInfo.tradingTimes, ()->{
+                    return loadTicks(e, tradingDay);
+                });
             }catch(Throwable t) {
                 logger.error("加载 "+e+" 交易日 "+tradingDay+" TICK行情数据失败", t);
                 throw new RuntimeException(t);
             }
+            mdInfos.put(e, mdInfo);
+        }
+    }
 
+    private List<MarketData> loadTicks(Exchangeable e, LocalDate tradingDay) throws Exception
+    {
+        ExchangeableData data = TraderHomeUtil.getExchangeableData();
+        List<MarketData> result = new ArrayList<>();
+        if ( data.exists(e, ExchangeableData.TICK_CTP_BIN, tradingDay) ) {
+            //二进制列存储格式, 直接内存映射加载
+            DataInfo tickInfo = ExchangeableData.TICK_CTP_BIN;
+            TickColumns columns = TickColumns.wrap(data.loadBinary(e, tickInfo, tradingDay));
+            result = columns.toMarketDatas(e, tickInfo.provider());
+        } else {
+            DataInfo tickInfo = ExchangeableData.TICK_CTP;
+            String tickCsv = data.load(e, tickInfo, tradingDay);
             CSVMarshallHelper csvMarshallHelper = createCSVMarshallHelper(tickInfo);
             MarketDataProducer mdProducer = createMarketDataProducer(tickInfo);
 
             CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
             while(csvDataSet.next()) {
                 MarketData marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
-                mdInfo.ticks.add(marketData);
+                result.add(marketData);
             }
-            postprocessTicks(mdInfo.ticks);
-            mdInfos.put(e, mdInfo);
         }
+        return result;
     }
 
     private CSVMarshallHelper createCSVMarshallHelper(DataInfo tickInfo) {
@@ -295,7 +396,7 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
         return null;
     }
 
-    protected static final Map<String, String> cachedDayStats = new HashMap<>();
+    protected static final Map<String, String> cachedDayStats = new ConcurrentHashMap<>();
 
     public static Exchangeable getPrimaryInstrument(Exchange exchange, String commodity, LocalDate tradingDay) {
         int occurence=0;
@@ -19,6 +19,7 @@ public class SimMarketTimeService implements MarketTimeService {
     private ZoneId timeZone = DateUtil.getDefaultZoneId();
     private LocalDateTime time = LocalDateTime.now();
     private List<SimMarketTimeAware> timeListeners = new ArrayList<>();
+    private List<SimTimeEventSource> eventSources = new ArrayList<>();
 
     private LocalDate tradingDay;
     private LocalDateTime[][] timeRanges;
@@ -29,6 +30,11 @@ public class SimMarketTimeService implements MarketTimeService {
      */
     private int minTimeInterval = 100;
 
+    /**
+     * 事件驱动: 直接推进到下一个事件的时间, 跳过空闲时间段
+     */
+    private boolean eventDriven;
+
     @Override
     public long currentTimeMillis() {
         Instant instant = time.atZone(timeZone).toInstant();
@@ -47,6 +53,20 @@ public class SimMarketTimeService implements MarketTimeService {
 
     public void addListener(SimMarketTimeAware timeAware) {
         timeListeners.add(timeAware);
+        if ( timeAware instanceof SimTimeEventSource ) {
+            eventSources.add((SimTimeEventSource)timeAware);
+        }
+    }
+
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    /**
+     * 设置事件驱动模式, 需要在开始推进时间前设置
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
     }
 
     public void setTimeRanges(LocalDate tradingDay, LocalDateTime[] timeRanges) {
@@ -72,15 +92,40 @@ public class SimMarketTimeService implements MarketTimeService {
             time = beginTime;
         } else if ( time.compareTo(endTime)>=0 ) {
             timeRangeIndex++;
+            if ( eventDriven && timeRangeIndex<timeRanges.length && time.compareTo(timeRanges[timeRangeIndex][0])<0 ) {
+                time = timeRanges[timeRangeIndex][0];
+            }
             return nextTimePiece();
         }
         LocalDateTime dt = time;
         for(SimMarketTimeAware c:timeListeners)
             c.onTimeChanged(tradingDay, dt);
-        time = time.plus(minTimeInterval, ChronoUnit.MILLIS);
+        if ( eventDriven ) {
+            time = nextEventTime(dt, endTime);
+        } else {
+            time = time.plus(minTimeInterval, ChronoUnit.MILLIS);
+        }
         return true;
     }
 
+    /**
+     * 所有事件源中最早的下一个事件时间, 至少前进1毫秒, 没有事件时到时间段末尾
+     */
+    private LocalDateTime nextEventTime(LocalDateTime curr, LocalDateTime endTime) {
+        LocalDateTime result = endTime;
+        for(int i=0;i<eventSources.size();i++) {
+            LocalDateTime eventTime = eventSources.get(i).nextEventTime();
+            if ( eventTime!=null && eventTime.compareTo(result)<0 ) {
+                result = eventTime;
+            }
+        }
+        LocalDateTime minTime = curr.plus(1, ChronoUnit.MILLIS);
+        if ( result.compareTo(minTime)<0 ) {
+            result = minTime;
+        }
+        return result;
+    }
+
     public String toString() {
         return DateUtil.date2str(time);
     }
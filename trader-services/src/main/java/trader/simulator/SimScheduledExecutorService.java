@@ -1,5 +1,6 @@
 package trader.simulator;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -21,7 +22,7 @@ import org.slf4j.LoggerFactory;
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Lifecycle;
 
-public class SimScheduledExecutorService implements ScheduledExecutorService, Lifecycle, SimMarketTimeAware {
+public class SimScheduledExecutorService implements ScheduledExecutorService, Lifecycle, SimMarketTimeAware, SimTimeEventSource {
     private static final Logger logger = LoggerFactory.getLogger(SimScheduledExecutorService.class);
 
     private static ZoneId zoneId = ZoneId.systemDefault();
@@ -175,4 +176,22 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
         }
     }
 
+    /**
+     * 最早的下一次触发时间
+     */
+    @Override
+    public LocalDateTime nextEventTime() {
+        long nextTriggerMillis = Long.MAX_VALUE;
+        for(int i=0;i<schedulerEntries.size();i++) {
+            long entryMillis = schedulerEntries.get(i).nextTriggerMillis;
+            if ( entryMillis!=0 && entryMillis<nextTriggerMillis ) {
+                nextTriggerMillis = entryMillis;
+            }
+        }
+        if ( nextTriggerMillis==Long.MAX_VALUE ) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(nextTriggerMillis), zoneId);
+    }
+
 }
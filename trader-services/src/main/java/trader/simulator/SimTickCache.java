@@ -0,0 +1,133 @@
+package trader.simulator;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.service.md.MarketData;
+
+/**
+ * 进程内共享的已解码TICK缓存, 每个 合约+交易日 只加载解码一次.
+ * <BR>缓存的TICK已经postProcess, 所有并行回测只读共享, 任何使用者都不能修改.
+ * <BR>按LRU淘汰, 最多保留maxSize个 合约+交易日.
+ */
+public class SimTickCache {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+    private static final Map<String, FutureTask<List<MarketData>>> cache = new LinkedHashMap<String, FutureTask<List<MarketData>>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FutureTask<List<MarketData>>> eldest) {
+            return size()>maxSize;
+        }
+    };
+    private static final AtomicLong loadCount = new AtomicLong();
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static volatile boolean enabled = true;
+
+    /**
+     * 返回缓存的TICK, 不存在则调用loader加载. 同一个key并发请求时只加载一次.
+     */
+    public static List<MarketData> getTicks(Exchangeable e, LocalDate tradingDay, ExchangeableTradingTimes tradingTimes, Callable<List<MarketData>> loader) throws Exception
+    {
+        if ( !enabled ) {
+            return prepare(loader.call(), tradingTimes);
+        }
+        String key = e.uniqueId()+"-"+tradingDay;
+        FutureTask<List<MarketData>> task = null;
+        boolean owner = false;
+        synchronized(cache) {
+            task = cache.get(key);
+            if ( task==null ) {
+                task = new FutureTask<>(()->{
+                    loadCount.incrementAndGet();
+                    return prepare(loader.call(), tradingTimes);
+                });
+                cache.put(key, task);
+                owner = true;
+            }
+        }
+        if ( owner ) {
+            //在锁外加载, 不阻塞其它key
+            task.run();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        try {
+            return task.get();
+        }catch(Exception ex) {
+            //加载失败不缓存
+            synchronized(cache) {
+                cache.remove(key, task);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * 是否启用缓存, 缺省启用. 禁用后每次都重新加载
+     */
+    public static void setEnabled(boolean enabled0) {
+        enabled = enabled0;
+    }
+
+    /**
+     * 最多缓存的 合约+交易日 数量, 超出后淘汰最久未用的
+     */
+    public static void setMaxSize(int maxSize0) {
+        maxSize = Math.max(1, maxSize0);
+        synchronized(cache) {
+            Iterator<String> it = cache.keySet().iterator();
+            while( cache.size()>maxSize && it.hasNext() ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static void clear() {
+        synchronized(cache) {
+            cache.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized(cache) {
+            return cache.size();
+        }
+    }
+
+    public static long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    private static List<MarketData> prepare(List<MarketData> ticks, ExchangeableTradingTimes tradingTimes) {
+        SimMarketDataService.postprocessTicks(ticks);
+        if ( tradingTimes!=null ) {
+            for(int i=0;i<ticks.size();i++) {
+                ticks.get(i).postProcess(tradingTimes);
+            }
+        }
+        return Collections.unmodifiableList(ticks);
+    }
+
+}
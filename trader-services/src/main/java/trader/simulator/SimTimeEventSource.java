@@ -0,0 +1,15 @@
+package trader.simulator;
+
+import java.time.LocalDateTime;
+
+/**
+ * 可以预知下一个事件时间的模拟服务, 用于事件驱动的时间推进
+ */
+public interface SimTimeEventSource {
+
+    /**
+     * 返回下一个待处理事件的时间, 没有时返回null
+     */
+    public LocalDateTime nextEventTime();
+
+}
@@ -10,6 +10,8 @@ import java.util.Properties;
 import java.util.TreeSet;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +47,7 @@ public class SimTradletService implements TradletService, ServiceErrorConstants
     private static final Logger logger = LoggerFactory.getLogger(SimTradletService.class);
 
     static final String ITEM_TRADLETGROUPS = TradletServiceImpl.ITEM_TRADLETGROUPS;
+    private static final Pattern JSON_PARAM_LINE = Pattern.compile("^(\\s*)\"([^\"]+)\"(\\s*:\\s*)(\"?)([^\"{\\[,]*)(\"?)(\\s*,?\\s*)$");
 
     private BeansContainer beansContainer;
     private MarketTimeService mtService;
@@ -56,6 +59,11 @@ public class SimTradletService implements TradletService, ServiceErrorConstants
     private Map<String, TradletInfo> tradletInfos = new HashMap<>();
     private List<SimTradletGroupEngine> groupEngines = new ArrayList<>();
     private Map<String, Properties> playbookTemplates = new HashMap<>();
+    private Properties params = new Properties();
+    /**
+     * 本次回测的合约, 只加载关注这些合约的交易组. 为空时加载全部
+     */
+    private Collection<Exchangeable> instruments = Collections.emptyList();
 
     @Override
     public void init(BeansContainer beansContainer) throws Exception
@@ -117,6 +125,25 @@ public class SimTradletService implements TradletService, ServiceErrorConstants
         return null;
     }
 
+    /**
+     * 设置本次回测的参数, 覆盖交易组配置文本中的同名参数, 需要在init()之前调用.
+     * <BR>参数名为 SECTION.key 时只覆盖该段, 为 key 时覆盖所有段.
+     */
+    public void setParams(Properties params) {
+        this.params = params;
+    }
+
+    public Properties getParams() {
+        return params;
+    }
+
+    /**
+     * 设置本次回测的合约, 不关注这些合约的交易组不会创建, 需要在init()之前调用.
+     */
+    public void setInstruments(Collection<Exchangeable> instruments) {
+        this.instruments = instruments;
+    }
+
     /**
      * 模拟行情不支持重新加载
      */
@@ -170,6 +197,12 @@ public class SimTradletService implements TradletService, ServiceErrorConstants
         List<SimTradletGroupEngine> result = new ArrayList<>();
         for(Map groupElem:(List<Map>)ConfigUtil.getObject(ITEM_TRADLETGROUPS)) {
             TradletGroupImpl group = createGroup(groupElem);
+            if ( !interestOnInstruments(group) ) {
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug("Tradlet group "+group.getId()+" is skipped for instruments "+instruments);
+                }
+                continue;
+            }
             SimTradletGroupEngine engine = new SimTradletGroupEngine(group);
             engine.init(beansContainer);
             result.add(engine);
@@ -177,13 +210,71 @@ public class SimTradletService implements TradletService, ServiceErrorConstants
         return result;
     }
 
+    private boolean interestOnInstruments(TradletGroupImpl group) {
+        if ( instruments.isEmpty() ) {
+            return true;
+        }
+        for(Exchangeable e:instruments) {
+            if ( group.interestOn(e, null) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private TradletGroupImpl createGroup(Map groupElem) throws AppException
     {
         String groupId = ConversionUtil.toString(groupElem.get("id"));
-        String groupConfig = ConversionUtil.toString( groupElem.get("text") );
+        String groupConfig = applyParams(ConversionUtil.toString( groupElem.get("text") ), params);
         TradletGroupImpl group = new TradletGroupImpl(this, beansContainer, groupId);
         group.init(TradletGroupTemplate.parse(beansContainer, group, groupConfig));
         return group;
     }
 
+    /**
+     * 用回测参数替换配置文本中 key=value 行, 或JSON格式的 "key": value 行的值
+     */
+    static String applyParams(String configText, Properties params) {
+        if ( params==null || params.isEmpty() || configText==null ) {
+            return configText;
+        }
+        StringBuilder result = new StringBuilder(configText.length());
+        String section = "";
+        String[] lines = configText.split("\n", -1);
+        for(int i=0;i<lines.length;i++) {
+            String line = lines[i];
+            String trimmed = line.trim();
+            int eqIdx = trimmed.indexOf('=');
+            Matcher jsonMatcher = null;
+            if ( trimmed.startsWith("[") && trimmed.endsWith("]") ) {
+                section = trimmed.substring(1, trimmed.length()-1).trim();
+            } else if ( trimmed.startsWith("\"") && (jsonMatcher=JSON_PARAM_LINE.matcher(line)).matches() ) {
+                String value = getParam(params, section, jsonMatcher.group(2));
+                if ( value!=null ) {
+                    line = jsonMatcher.group(1)+"\""+jsonMatcher.group(2)+"\""+jsonMatcher.group(3)
+                        +jsonMatcher.group(4)+value+jsonMatcher.group(6)+jsonMatcher.group(7);
+                }
+            } else if ( eqIdx>0 && !trimmed.startsWith("#") ) {
+                String key = trimmed.substring(0, eqIdx).trim();
+                String value = getParam(params, section, key);
+                if ( value!=null ) {
+                    line = key+"="+value;
+                }
+            }
+            if ( i>0 ) {
+                result.append("\n");
+            }
+            result.append(line);
+        }
+        return result.toString();
+    }
+
+    private static String getParam(Properties params, String section, String key) {
+        String value = params.getProperty(section+"."+key);
+        if ( value==null ) {
+            value = params.getProperty(key);
+        }
+        return value;
+    }
+
 }
@@ -104,7 +104,9 @@ public class SimTradeService implements TradeService {
         List<Map> accountElems = (List<Map>)ConfigUtil.getObject(ITEM_ACCOUNTS);
         List<AccountImpl> allAccounts = new ArrayList<>();
         if ( accountElems!=null ) {
-            for (Map accountElem:accountElems) {
+            for (Map accountElem0:accountElems) {
+                //配置对象全局共享, 并行回测时不能直接修改
+                Map accountElem = new HashMap<>(accountElem0);
                 accountElem.put("provider", TxnSession.PROVIDER_SIM);
                 String id = ConversionUtil.toString(accountElem.get("id"));
                 AccountImpl currAccount = createAccount(accountElem);
@@ -5,6 +5,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -112,6 +113,13 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         return money;
     }
 
+    /**
+     * 返回全部模拟成交
+     */
+    public List<SimTxn> getTransactions() {
+        return Collections.unmodifiableList(allTxns);
+    }
+
     @Override
     public void connect(Properties connProps) {
         changeState(ConnState.Connecting);
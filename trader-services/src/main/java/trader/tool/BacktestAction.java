@@ -1,31 +1,51 @@
 package trader.tool;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Map;
+import java.util.Properties;
 
 import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
-import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.ConversionUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.common.util.IniFile;
+import trader.common.util.PriceUtil;
+import trader.common.util.StringUtil;
 import trader.common.util.StringUtil.KVPair;
-import trader.service.data.KVStoreService;
-import trader.service.md.MarketDataService;
-import trader.service.ta.TAServiceImpl;
-import trader.service.trade.MarketTimeService;
-import trader.service.trade.TradeService;
-import trader.service.tradlet.TradletService;
 import trader.service.util.CmdAction;
-import trader.service.util.SimpleBeansContainer;
-import trader.simulator.SimKVStoreService;
-import trader.simulator.SimMarketDataService;
-import trader.simulator.SimMarketTimeService;
-import trader.simulator.SimScheduledExecutorService;
-import trader.simulator.SimTradletService;
-import trader.simulator.trade.SimTradeService;
+import trader.simulator.BacktestEngine;
+import trader.simulator.BacktestJob;
+import trader.simulator.BacktestOptimizer;
+import trader.simulator.BacktestResult;
+import trader.simulator.SimTickCache;
 
+/**
+ * 并行回测: 按 合约 * 交易日 * 参数组 拆分任务并行执行, 输出权益曲线和成交报告
+ */
 public class BacktestAction implements CmdAction {
 
+    private List<Exchangeable> instruments = new ArrayList<>();
+    private LocalDate beginDate;
+    private LocalDate endDate;
+    private Map<String, Properties> paramSets = new LinkedHashMap<>();
+    private int parallelism;
+    private File outputDir;
+    private Map<String, List<String>> sweepRanges;
+    private BacktestOptimizer.Mode sweepMode = BacktestOptimizer.Mode.Grid;
+    private BacktestOptimizer.RankBy rankBy = BacktestOptimizer.RankBy.PnL;
+    private int samples = 100;
+    private long seed = 1;
+    private int tickCacheSize;
+
     @Override
     public String getCommand() {
         return "backtest";
@@ -33,48 +53,139 @@ public class BacktestAction implements CmdAction {
 
     @Override
     public void usage(PrintWriter writer) {
-        writer.println("backtest <TRADE_XML> <DATE_RANGE>");
-        writer.println("\t回测");
+        writer.println("backtest --instruments=<ID1,ID2> --beginDate=<BEGIN_DATE> [--endDate=<END_DATE>] [--params=<PARAMS_INI>] [--parallelism=N] [--output=<DIR>]");
+        writer.println("\t并行回测, 参数文件每个段为一组参数, 覆盖交易组配置中同名参数");
+        writer.println("backtest --instruments=<ID1,ID2> --beginDate=<BEGIN_DATE> [--endDate=<END_DATE>] --sweep=<RANGES_INI> [--sweepMode=grid|random|halving] [--samples=N] [--seed=N] [--rankBy=pnl|drawdown|turnover] [--tickCache=N] [--parallelism=N] [--output=<DIR>]");
+        writer.println("\t参数寻优, 范围文件每个段对应Tradlet配置段, 值格式为 min:max:step 或 v1,v2,v3");
     }
 
     @Override
     public int execute(BeansContainer beansContainer, PrintWriter writer, List<KVPair> options) throws Exception
     {
-        // TODO Auto-generated method stub
-        return 0;
+        parseOptions(options);
+        if ( instruments.isEmpty() || beginDate==null ) {
+            usage(writer);
+            return 1;
+        }
+        if ( tickCacheSize>0 ) {
+            SimTickCache.setMaxSize(tickCacheSize);
+        }
+        try {
+            Exchange exchange = instruments.get(0).exchange();
+            List<LocalDate> tradingDays = Arrays.asList(MarketDayUtil.getMarketDays(exchange, beginDate, endDate));
+            BacktestEngine engine = new BacktestEngine(parallelism);
+            if ( sweepRanges!=null ) {
+                return sweep(writer, engine, tradingDays);
+            }
+            List<BacktestJob> jobs = BacktestEngine.createJobs(instruments, tradingDays, paramSets);
+            writer.println("回测任务 "+jobs.size()+" 个, 并行度 "+engine.getParallelism());
+            long t0 = System.currentTimeMillis();
+            List<BacktestResult> results = engine.run(jobs);
+            int failedCount = 0;
+            for(BacktestResult result:results) {
+                if ( result.getError()!=null ) {
+                    failedCount++;
+                    writer.println("任务 "+result.getJob().getId()+" 失败: "+result.getError());
+                } else {
+                    writer.println("任务 "+result.getJob().getId()+" 盈亏 "+PriceUtil.long2str(result.getProfit())+" 成交 "+result.getTransactions().size()+" 耗时 "+result.getTime()+" ms");
+                }
+            }
+            String equityCSV = BacktestEngine.toEquityCSV(results);
+            String tradeCSV = BacktestEngine.toTradeCSV(results);
+            if ( outputDir!=null ) {
+                outputDir.mkdirs();
+                FileUtil.save(new File(outputDir, "equity.csv"), equityCSV);
+                FileUtil.save(new File(outputDir, "trades.csv"), tradeCSV);
+                writer.println("权益曲线和成交报告已保存到: "+outputDir.getAbsolutePath());
+            } else {
+                writer.println(equityCSV);
+                writer.println(tradeCSV);
+            }
+            writer.println("回测完成, 失败 "+failedCount+" 个, 耗时 "+(System.currentTimeMillis()-t0)+" ms");
+            return failedCount==0?0:1;
+        }finally {
+            //TICK缓存只在本次回测/寻优内共享, 结束后释放
+            SimTickCache.clear();
+        }
     }
 
     /**
-     * 为某个交易日创建运行环境
+     * 参数寻优
      */
-    private BeansContainer initBeans(Exchangeable e, LocalDate tradingDay)
-            throws Exception
+    private int sweep(PrintWriter writer, BacktestEngine engine, List<LocalDate> tradingDays) throws Exception
     {
-        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
-        SimMarketTimeService mtService = new SimMarketTimeService();
-        SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
-        SimMarketDataService mdService = new SimMarketDataService();
-        SimKVStoreService kvStoreService = new SimKVStoreService();
-        SimTradeService tradeService = new SimTradeService();
-        TAServiceImpl taService = new TAServiceImpl();
-        SimTradletService tradletService = new SimTradletService();
-
-        beansContainer.addBean(MarketTimeService.class, mtService);
-        beansContainer.addBean(ScheduledExecutorService.class, scheduledExecutorService);
-        beansContainer.addBean(MarketDataService.class, mdService);
-        beansContainer.addBean(KVStoreService.class, kvStoreService);
-        beansContainer.addBean(TradeService.class, tradeService);
-        beansContainer.addBean(TAServiceImpl.class, taService);
-        beansContainer.addBean(TradletService.class, tradletService);
+        BacktestOptimizer optimizer = new BacktestOptimizer(engine);
+        optimizer.setMode(sweepMode);
+        optimizer.setRankBy(rankBy);
+        optimizer.setSamples(samples);
+        optimizer.setSeed(seed);
+        long t0 = System.currentTimeMillis();
+        List<BacktestOptimizer.Score> scores = optimizer.optimize(instruments, tradingDays, sweepRanges);
+        String scoreCSV = BacktestOptimizer.toScoreCSV(scores);
+        if ( outputDir!=null ) {
+            outputDir.mkdirs();
+            FileUtil.save(new File(outputDir, "sweep.csv"), scoreCSV);
+            writer.println("寻优结果已保存到: "+outputDir.getAbsolutePath());
+        } else {
+            writer.println(scoreCSV);
+        }
+        writer.println("寻优完成, 参数组 "+scores.size()+" 个, TICK缓存 "+SimTickCache.size()+" 个, 耗时 "+(System.currentTimeMillis()-t0)+" ms");
+        return 0;
+    }
 
-        scheduledExecutorService.init(beansContainer);
-        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
-        mtService.setTimeRanges(tradingDay, tradingTimes.getMarketTimes() );
-        mdService.init(beansContainer);
-        taService.init(beansContainer);
-        tradeService.init(beansContainer);
-        tradletService.init(beansContainer);
-        return beansContainer;
+    protected void parseOptions(List<KVPair> options) throws Exception
+    {
+        for(KVPair kv:options) {
+            if ( StringUtil.isEmpty(kv.v)) {
+                continue;
+            }
+            switch(kv.k.toLowerCase()) {
+            case "instruments":
+                for(String instrumentId:StringUtil.split(kv.v, ",|;")) {
+                    instruments.add(Exchangeable.fromString(instrumentId));
+                }
+                break;
+            case "begindate":
+                beginDate = DateUtil.str2localdate(kv.v);
+                break;
+            case "enddate":
+                endDate = DateUtil.str2localdate(kv.v);
+                break;
+            case "params":
+                IniFile paramsIni = new IniFile(new File(kv.v));
+                for(IniFile.Section section:paramsIni.getAllSections()) {
+                    paramSets.put(section.getName(), section.getProperties());
+                }
+                break;
+            case "parallelism":
+                parallelism = ConversionUtil.toInt(kv.v);
+                break;
+            case "output":
+                outputDir = new File(kv.v);
+                break;
+            case "sweep":
+                sweepRanges = BacktestOptimizer.parseRanges(new IniFile(new File(kv.v)));
+                break;
+            case "sweepmode":
+                sweepMode = ConversionUtil.toEnum(BacktestOptimizer.Mode.class, kv.v);
+                break;
+            case "rankby":
+                rankBy = ConversionUtil.toEnum(BacktestOptimizer.RankBy.class, kv.v);
+                break;
+            case "samples":
+                samples = ConversionUtil.toInt(kv.v);
+                break;
+            case "seed":
+                seed = ConversionUtil.toLong(kv.v);
+                break;
+            case "tickcache":
+                tickCacheSize = ConversionUtil.toInt(kv.v);
+                break;
+            }
+        }
+        if ( endDate==null ) {
+            endDate = beginDate;
+        }
     }
 
 }
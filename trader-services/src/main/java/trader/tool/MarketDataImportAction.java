@@ -27,6 +27,7 @@ import com.google.gson.JsonParser;
 
 import net.jctp.CThostFtdcDepthMarketDataField;
 import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableData.DataInfo;
@@ -46,6 +47,7 @@ import trader.common.util.csv.CtpCSVMarshallHelper;
 import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
+import trader.service.md.TickColumns;
 import trader.service.md.ctp.CtpMarketData;
 import trader.service.ta.FutureBar;
 import trader.service.ta.TimeSeriesLoader;
@@ -82,6 +84,7 @@ public class MarketDataImportAction implements CmdAction {
     private Map<String, MarketDataProducerFactory> producerFactories;
     private String producer;
     private String dataDir;
+    private String convert;
 
     @Override
     public String getCommand() {
@@ -90,8 +93,8 @@ public class MarketDataImportAction implements CmdAction {
 
     @Override
     public void usage(PrintWriter writer) {
-        writer.println("marketData import [--producer=ctp|jinshuyuan] [--datadir=DATA_DIR]");
-        writer.println("\t导入行情数据");
+        writer.println("marketData import [--producer=ctp|jinshuyuan] [--datadir=DATA_DIR] [--convert=binary]");
+        writer.println("\t导入行情数据, --convert=binary 将已有的CSV TICK数据转换为二进制列存储格式");
     }
 
     @Override
@@ -100,7 +103,9 @@ public class MarketDataImportAction implements CmdAction {
         exchangeableData = new ExchangeableData(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_REPOSITORY), false);
         producerFactories = SimMarketDataService.discoverProducerFactories();
         parseOptions(options);
-        if ( StringUtil.equals(producer, "jinshuyuan")) {
+        if ( StringUtil.equalsIgnoreCase(convert, "binary") ) {
+            convertToBinary(writer);
+        } else if ( StringUtil.equals(producer, "jinshuyuan")) {
             importJinshuyuan(writer);
         } else {
             importFromDataDir(writer);
@@ -199,6 +204,7 @@ public class MarketDataImportAction implements CmdAction {
             }
             Exchangeable ctpFuture = Exchangeable.fromString(ctpInstrument);
             exchangeableData.save(ctpFuture, ExchangeableData.TICK_CTP, ctpTradingDay, ctpCsvWrite.toString());
+            saveTickColumns(ctpTradingDay, ctpFuture, ctpTicks);
             saveDayBars(ctpTradingDay, ctpFuture, ctpTicks);
             writer.println(file.getAbsolutePath()+" : "+ctpFuture+" "+ctpTradingDay);
         }
@@ -290,6 +296,8 @@ public class MarketDataImportAction implements CmdAction {
         }
         if ( mdInfo.savedTicks>0 ) {
             exchangeableData.save(mdInfo.exchangeable, dataInfo, date, csvWriter.toString());
+            //写入二进制列存储格式
+            saveTickColumns(date, mdInfo.exchangeable, ticks);
             //写入MIN1数据
             saveMin1Bars(date, mdInfo.exchangeable, ticks);
             //写入每天日线数据
@@ -298,6 +306,52 @@ public class MarketDataImportAction implements CmdAction {
 
     }
 
+    /**
+     * 将仓库中已有的CSV格式TICK数据转换为二进制列存储格式
+     */
+    private void convertToBinary(PrintWriter writer) throws Exception
+    {
+        DataInfo tickInfo = ExchangeableData.TICK_CTP;
+        CSVMarshallHelper csvMarshallHelper = createCSVMarshallHelper(tickInfo.provider());
+        MarketDataProducer mdProducer = createMarketDataProducer(tickInfo.provider());
+
+        writer.println("转换TICK数据为二进制格式: "+exchangeableData.getDataDir().getAbsolutePath());writer.flush();
+        for(Exchange exchange:exchangeableData.getExchanges()) {
+            File exchangeDir = new File(exchangeableData.getDataDir(), exchange.name());
+            for(File edir:FileUtil.listSubDirs(exchangeDir)) {
+                Exchangeable e = Exchangeable.fromString(exchange.name(), edir.getName());
+                int convertedDays = 0;
+                for(LocalDate tradingDay:exchangeableData.getDataTradingDays(e, tickInfo)) {
+                    if ( exchangeableData.exists(e, ExchangeableData.TICK_CTP_BIN, tradingDay) ) {
+                        continue;
+                    }
+                    List<MarketData> ticks = new ArrayList<>();
+                    CSVDataSet csvDataSet = CSVUtil.parse(exchangeableData.load(e, tickInfo, tradingDay));
+                    while(csvDataSet.next()) {
+                        ticks.add(mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay));
+                    }
+                    saveTickColumns(tradingDay, e, ticks);
+                    convertedDays++;
+                }
+                if ( convertedDays>0 ) {
+                    writer.println(e+" : "+convertedDays);writer.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * 保存TICK数据为二进制列存储格式
+     */
+    private void saveTickColumns(LocalDate tradingDay, Exchangeable e, List<MarketData> ticks) throws IOException
+    {
+        List<MarketData> sortedTicks = new ArrayList<>(ticks);
+        Collections.sort(sortedTicks, (MarketData md1, MarketData md2)->{
+            return Long.compare(md1.updateTimestamp, md2.updateTimestamp);
+        });
+        exchangeableData.saveBinary(e, ExchangeableData.TICK_CTP_BIN, tradingDay, TickColumns.encode(tradingDay, sortedTicks));
+    }
+
     /**
      * 将原始日志保存为按天数据
      */
@@ -475,6 +529,9 @@ public class MarketDataImportAction implements CmdAction {
             case "datadir":
                 this.dataDir = kv.v;
                 break;
+            case "convert":
+                this.convert = kv.v;
+                break;
             }
         }
     }
@@ -0,0 +1,66 @@
+package trader.service.event;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import trader.service.TraderHomeHelper;
+
+public class AsyncEventServiceTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    /**
+     * 交易事件在独立的RingBuffer上按发布顺序处理, 不进入主事件线程
+     */
+    @Test
+    public void testTradeEventOrder() throws Exception {
+        int count = 10000;
+        AsyncEventServiceImpl asyncEventService = new AsyncEventServiceImpl();
+        asyncEventService.init(null);
+        List<Integer> received = new ArrayList<>();
+        List<String> threadNames = new ArrayList<>();
+        AtomicInteger mainCount = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(count);
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_MAIN, (AsyncEvent event)->{
+            mainCount.incrementAndGet();
+            return true;
+        }, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
+        asyncEventService.addFilter(AsyncEventService.FILTER_CHAIN_TRADE, (AsyncEvent event)->{
+            event.processor.process(event.eventType, event.data, event.data2);
+            return true;
+        }, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
+        asyncEventService.start();
+        try {
+            AsyncEventProcessor processor = (int dataType, Object data, Object data2)->{
+                received.add((Integer)data);
+                if ( threadNames.isEmpty() ) {
+                    threadNames.add(Thread.currentThread().getName());
+                }
+                latch.countDown();
+            };
+            //超过RingBuffer大小, 验证循环复用时的顺序
+            for(int i=0;i<count;i++) {
+                asyncEventService.publishProcessorEvent(processor, 1, i, null);
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertTrue(received.size()==count);
+            for(int i=0;i<count;i++) {
+                assertTrue(received.get(i)==i);
+            }
+            assertTrue(threadNames.get(0).startsWith("AsyncEvent-"+AsyncEventService.FILTER_CHAIN_TRADE));
+            assertTrue(mainCount.get()==0);
+        }finally {
+            asyncEventService.destroy();
+        }
+    }
+
+}
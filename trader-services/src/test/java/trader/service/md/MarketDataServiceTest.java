@@ -2,6 +2,7 @@ package trader.service.md;
 
 import static org.junit.Assert.assertTrue;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -14,7 +15,11 @@ import trader.common.exception.AppException;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.Security;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
 import trader.service.ServiceErrorCodes;
+import trader.service.md.ctp.CtpMarketData;
+import trader.service.md.ctp.CtpMarketDataHelper;
 import trader.service.md.web.WebMarketData;
 import trader.service.md.web.WebMarketDataProducer;
 
@@ -34,6 +39,71 @@ public class MarketDataServiceTest implements ServiceErrorCodes {
         System.out.println(primaryInstruments2.size()+" : "+primaryInstruments2);
     }
 
+    @Test
+    public void testCtpMarketDataReuse() {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        LocalDate tradingDay = DateUtil.str2localdate("20181203");
+        CtpMarketData md = new CtpMarketData();
+        md.update("ctp", e, CtpMarketDataHelper.createField(e, tradingDay, "09:00:01", 0, 11000, 100), tradingDay);
+        long[] bidPrices = md.bidPrices;
+        MarketData md0 = md.clone();
+
+        md.update("ctp", e, CtpMarketDataHelper.createField(e, tradingDay, "09:00:02", 500, 11005, 101), tradingDay);
+        assertTrue(md.bidPrices==bidPrices);
+        assertTrue(md.volume==101 && md.lastPrice==PriceUtil.price2long(11005));
+        //复制的对象不受原地更新影响
+        assertTrue(md0.bidPrices!=bidPrices);
+        assertTrue(md0.volume==100 && md0.lastPrice==PriceUtil.price2long(11000));
+        assertTrue(md0.bidPrices[0]==PriceUtil.price2long(11000-5));
+        assertTrue(md0.tradingDay.equals(md.tradingDay));
+        assertTrue(md0.updateTimestamp+1500==md.updateTimestamp);
+        assertTrue(md.updateTime.equals(DateUtil.str2localdatetime("20181203", "09:00:02", 500)));
+        assertTrue(md.updateTimestamp==DateUtil.localdatetime2long(e.exchange().getZoneId(), md.updateTime));
+    }
+
+    @Test
+    public void testRetainAndLastData() {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        LocalDate tradingDay = DateUtil.str2localdate("20181203");
+        CtpMarketData md = new CtpMarketData();
+        md.update("ctp", e, CtpMarketDataHelper.createField(e, tradingDay, "09:00:01", 0, 11000, 100), tradingDay);
+        //非复用对象直接返回自身
+        assertTrue(md.retain()==md);
+        md.recycle();
+        MarketData retained = md.retain();
+        assertTrue(retained!=md && md.retain()==retained);
+
+        MarketDataListenerHolder holder = new MarketDataListenerHolder(e, tradingDay);
+        holder.setLastData(md);
+        MarketData lastData = holder.getLastData();
+        assertTrue(lastData!=md && lastData.volume==100);
+
+        md.update("ctp", e, CtpMarketDataHelper.createField(e, tradingDay, "09:00:02", 0, 11005, 101), tradingDay);
+        md.recycle();
+        assertTrue(md.retain()!=retained);
+        assertTrue(retained.volume==100 && lastData.volume==100);
+        holder.setLastData(md);
+        assertTrue(holder.getLastData().volume==101);
+        //复制到已有对象, 不创建副本
+        assertTrue(holder.getLastData(lastData)==lastData && lastData.volume==101);
+        assertTrue(lastData.lastPrice==PriceUtil.price2long(11005));
+    }
+
+    @Test
+    public void testListenerHolder() {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        MarketDataListenerHolder holder = new MarketDataListenerHolder(e, DateUtil.str2localdate("20181203"));
+        MarketDataListener listener = (MarketData md)->{};
+        MarketDataListener[] listeners0 = holder.getListenerArray();
+        holder.addListener(listener);
+        holder.addListener(listener);
+        //copy-on-write, 正在遍历的数组不受影响
+        assertTrue(listeners0.length==0);
+        assertTrue(holder.getListenerArray().length==1);
+        assertTrue(holder.getListeners().get(0)==listener);
+        assertTrue(holder.getExchangeable()==e);
+    }
+
     @Test
     public void test() {
         AppException ap = new AppException(ERR_MD_PRODUCER_DISCONNECTED, "Producer test is disconnected.");
@@ -0,0 +1,58 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.md.ctp.CtpMarketDataHelper;
+
+public class TickColumnsTest {
+
+    @Test
+    public void testEncodeAndLoad() {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        LocalDate tradingDay = DateUtil.str2localdate("20181203");
+        List<MarketData> ticks = new ArrayList<>();
+        for(int i=0;i<600;i++) {
+            int seconds = 9*3600+i;
+            String time = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+            ticks.add(CtpMarketDataHelper.createTick(e, tradingDay, time, (i%2)*500, 11000+i, 100+i));
+        }
+        TickColumns columns = TickColumns.wrap(ByteBuffer.wrap(TickColumns.encode(tradingDay, ticks)));
+        assertEquals(ticks.size(), columns.size());
+        assertEquals(5, columns.getDepth());
+        assertEquals(tradingDay, columns.getTradingDay());
+
+        for(int i=0;i<ticks.size();i++) {
+            MarketData tick = ticks.get(i);
+            MarketData tick2 = columns.createMarketData(i, e, "ctp");
+            assertEquals(tick.updateTimestamp, tick2.updateTimestamp);
+            assertEquals(tick.updateTime, tick2.updateTime);
+            assertEquals(tick.lastPrice, tick2.lastPrice);
+            assertEquals(tick.volume, tick2.volume);
+            assertEquals(tick.turnover, tick2.turnover);
+            assertEquals(tick.openInterest, tick2.openInterest);
+            assertEquals(tick.averagePrice, tick2.averagePrice);
+            assertEquals(tick.tradingDay, tick2.tradingDay);
+            for(int j=0;j<tick.depth;j++) {
+                assertEquals(tick.bidPrices[j], tick2.bidPrices[j]);
+                assertEquals(tick.askVolumes[j], tick2.askVolumes[j]);
+            }
+        }
+        //按时间定位
+        assertEquals(0, columns.seek(0));
+        assertEquals(120, columns.seek(ticks.get(120).updateTimestamp));
+        assertEquals(121, columns.seek(ticks.get(120).updateTimestamp+1));
+        assertEquals(ticks.size(), columns.seek(ticks.get(ticks.size()-1).updateTimestamp+1));
+        assertTrue(columns.getLastPrice(ticks.size()-1)==ticks.get(ticks.size()-1).lastPrice);
+    }
+
+}
@@ -0,0 +1,50 @@
+package trader.service.md.ctp;
+
+import java.time.LocalDate;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+
+/**
+ * 测试用CTP行情数据构造
+ */
+public class CtpMarketDataHelper {
+
+    /**
+     * 构造五档CTP行情, 其余价格字段围绕price固定生成
+     */
+    public static CThostFtdcDepthMarketDataField createField(Exchangeable e, LocalDate tradingDay, String time, int millisec, double price, int volume) {
+        CThostFtdcDepthMarketDataField field = new CThostFtdcDepthMarketDataField();
+        field.TradingDay = DateUtil.date2str(tradingDay);
+        field.ActionDay = field.TradingDay;
+        field.InstrumentID = e.id();
+        field.ExchangeID = e.exchange().name();
+        field.UpdateTime = time;
+        field.UpdateMillisec = millisec;
+        field.LastPrice = price;
+        field.OpenPrice = 11000;
+        field.HighestPrice = price;
+        field.LowestPrice = 11000;
+        field.PreClosePrice = 11000;
+        field.UpperLimitPrice = 12000;
+        field.LowerLimitPrice = 10000;
+        field.Volume = volume;
+        field.Turnover = volume*price*10;
+        field.OpenInterest = 300000;
+        field.AveragePrice = price*10;
+        field.BidPrice1 = price-5; field.BidPrice2 = price-10; field.BidPrice3 = price-15; field.BidPrice4 = price-20; field.BidPrice5 = price-25;
+        field.AskPrice1 = price+5; field.AskPrice2 = price+10; field.AskPrice3 = price+15; field.AskPrice4 = price+20; field.AskPrice5 = price+25;
+        field.BidVolume1 = 1; field.BidVolume2 = 2; field.BidVolume3 = 3; field.BidVolume4 = 4; field.BidVolume5 = 5;
+        field.AskVolume1 = 6; field.AskVolume2 = 7; field.AskVolume3 = 8; field.AskVolume4 = 9; field.AskVolume5 = 10;
+        return field;
+    }
+
+    /**
+     * 构造CTP行情对象
+     */
+    public static CtpMarketData createTick(Exchangeable e, LocalDate tradingDay, String time, int millisec, double price, int volume) {
+        return new CtpMarketData("ctp", e, createField(e, tradingDay, time, millisec, price, volume), tradingDay);
+    }
+
+}
@@ -0,0 +1,99 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.FileUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.md.TickColumns;
+import trader.service.md.ctp.CtpMarketDataHelper;
+import trader.service.trade.MarketTimeService;
+import trader.service.util.SimpleBeansContainer;
+import trader.simulator.SimMarketTimeService;
+
+public class TAEntryTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    private static List<MarketData> createTicks(Exchangeable e, LocalDate tradingDay, int count) {
+        List<MarketData> result = new ArrayList<>();
+        for(int i=0;i<count;i++) {
+            int seconds = 9*3600+i;
+            String time = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+            result.add(CtpMarketDataHelper.createTick(e, tradingDay, time, 0, 11000+(i%50)*5, 100+i*10));
+        }
+        return result;
+    }
+
+    /**
+     * 创建KBar序列时加载上一个交易日的Bar, 第二次从派生Bar缓存加载, 之后用实时TICK继续生成
+     */
+    @Test
+    public void testHistoryBarCache() throws Exception
+    {
+        Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+        LocalDate prevDay = LocalDate.of(2018, 11, 30);
+        LocalDate tradingDay = LocalDate.of(2018, 12, 3);
+        File dataDir = Files.createTempDirectory("taentry").toFile();
+        ExchangeableData data = new ExchangeableData(dataDir, false);
+        data.saveBinary(ru1901, ExchangeableData.TICK_CTP_BIN, prevDay, TickColumns.encode(prevDay, createTicks(ru1901, prevDay, 3600)));
+
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService marketTime = new SimMarketTimeService();
+        ExchangeableTradingTimes tradingTimes = ru1901.exchange().getTradingTimes(ru1901, tradingDay);
+        marketTime.setTimeRanges(tradingDay, tradingTimes.getMarketTimes());
+        beansContainer.addBean(MarketTimeService.class, marketTime);
+        List<PriceLevel> levels = Arrays.asList(PriceLevel.MIN5, PriceLevel.VOL1K);
+        TAListener listener = (Exchangeable e, LeveledTimeSeries series)->{};
+
+        TAEntry entry = new TAEntry(beansContainer, ru1901);
+        entry.setHistoryData(data);
+        entry.registerListener(levels, listener);
+        LeveledTimeSeries min5Series = entry.getSeries(PriceLevel.MIN5);
+        assertTrue(min5Series.getBarCount()==12);
+        assertTrue(data.exists(ru1901, ExchangeableData.getBarCache(PriceLevel.MIN5), prevDay));
+        assertTrue(!data.exists(ru1901, ExchangeableData.getBarCache(PriceLevel.VOL1K), prevDay));
+        int volHistoryCount = entry.getSeries(PriceLevel.VOL1K).getBarCount();
+        assertTrue(volHistoryCount>0);
+
+        //重启后从缓存加载
+        TAEntry entry2 = new TAEntry(beansContainer, ru1901);
+        entry2.setHistoryData(data);
+        entry2.registerListener(levels, listener);
+        min5Series = entry2.getSeries(PriceLevel.MIN5);
+        assertTrue(min5Series.getBarCount()==12);
+        assertTrue(((FutureBar)min5Series.getBar(0)).getOpenTick()==null);
+
+        //实时TICK追加在历史Bar之后
+        for(MarketData tick:createTicks(ru1901, tradingDay, 600)) {
+            tick.postProcess(tradingTimes);
+            entry2.onMarketData(tick);
+        }
+        min5Series = entry2.getSeries(PriceLevel.MIN5);
+        assertTrue(min5Series.getBarCount()==14);
+        assertTrue(min5Series.getLastBar().getEndTime().toLocalDate().equals(tradingDay));
+        //VOL Bar不延续上一个交易日的最后一个Bar, 成交量从当天开始计算
+        LeveledTimeSeries volSeries = entry2.getSeries(PriceLevel.VOL1K);
+        assertTrue(volSeries.getBarCount()>volHistoryCount);
+        FutureBar firstLiveBar = (FutureBar)volSeries.getBar(volHistoryCount);
+        assertTrue(firstLiveBar.getOpenTick()!=null);
+        assertTrue(firstLiveBar.getVolume().doubleValue()<=1000+10);
+        FileUtil.deleteDirectory(dataDir);
+    }
+
+}
@@ -2,9 +2,14 @@ package trader.service.ta;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Test;
 import org.ta4j.core.TimeSeries;
@@ -12,11 +17,16 @@ import org.ta4j.core.TimeSeries;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.ExchangeableData.DataInfo;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 import trader.common.tick.PriceLevel;
+import trader.common.util.FileUtil;
 import trader.common.util.TraderHomeUtil;
 import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
 import trader.service.md.MarketDataService;
+import trader.service.md.TickColumns;
+import trader.service.md.ctp.CtpMarketDataHelper;
 import trader.service.util.SimpleBeansContainer;
 import trader.simulator.SimMarketDataService;
 
@@ -257,4 +267,101 @@ public class TimeSeriesLoaderTest {
         assertTrue((min1Series.getBarCount())/5==min5Series.getBarCount());
     }
 
+    @Test
+    public void testStreamingFromBinaryTicks() throws Exception
+    {
+        Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+        LocalDate day1 = LocalDate.of(2018, 12, 3), day2 = LocalDate.of(2018, 12, 4);
+        File dataDir = Files.createTempDirectory("timeseries-loader").toFile();
+        ExchangeableData data = new ExchangeableData(dataDir, false);
+        List<MarketData> allTicks = new ArrayList<>();
+        for(LocalDate day:new LocalDate[] {day1, day2}) {
+            List<MarketData> ticks = new ArrayList<>();
+            for(int i=0;i<3600;i++) {
+                int seconds = 9*3600+i;
+                String time = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+                ticks.add(CtpMarketDataHelper.createTick(ru1901, day, time, 0, 11000+(i%50)*5, 100+i*10));
+            }
+            data.saveBinary(ru1901, ExchangeableData.TICK_CTP_BIN, day, TickColumns.encode(day, ticks));
+            allTicks.addAll(ticks);
+        }
+        TimeSeriesLoader loader= new TimeSeriesLoader(new SimpleBeansContainer(), data);
+        loader
+            .setExchangeable(ru1901)
+            .setStartTradingDay(day1)
+            .setEndTradingDay(day2)
+            .setLevel(PriceLevel.MIN1);
+        LeveledTimeSeries min1Series = loader.load();
+        List<FutureBar> min1Bars = TimeSeriesLoader.marketDatas2bars(ru1901, PriceLevel.MIN1, allTicks);
+        assertTrue(min1Series.getBarCount()==min1Bars.size());
+        for(int i=0;i<min1Bars.size();i++) {
+            assertTrue(min1Series.getBar(i).getClosePrice().isEqual(min1Bars.get(i).getClosePrice()));
+            assertTrue(min1Series.getBar(i).getMaxPrice().isEqual(min1Bars.get(i).getMaxPrice()));
+        }
+        //逐日迭代与一次性加载结果一致
+        Iterator<FutureBar> barIterator = loader.barIterator();
+        int barCount = 0;
+        while(barIterator.hasNext()) {
+            FutureBar bar = barIterator.next();
+            assertTrue(bar.getEndTime().equals(min1Series.getBar(barCount++).getEndTime()));
+        }
+        assertTrue(barCount==min1Series.getBarCount());
+        assertTrue(loader.getLoadedDates().size()==2);
+
+        //多个交易日的VOL Bar按时间顺序
+        loader.setLevel(PriceLevel.VOL1K);
+        LeveledTimeSeries volSeries = loader.load();
+        assertTrue(volSeries.getBarCount()>2);
+        assertTrue(volSeries.getBar(0).getEndTime().isBefore(volSeries.getBar(volSeries.getEndIndex()).getEndTime()));
+        FileUtil.deleteDirectory(dataDir);
+    }
+
+
+    @Test
+    public void testBarCache() throws Exception
+    {
+        Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+        LocalDate day = LocalDate.of(2018, 12, 3);
+        File dataDir = Files.createTempDirectory("timeseries-loader").toFile();
+        ExchangeableData data = new ExchangeableData(dataDir, false);
+        List<MarketData> ticks = new ArrayList<>();
+        for(int i=0;i<3600;i++) {
+            int seconds = 9*3600+i;
+            String time = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+            ticks.add(CtpMarketDataHelper.createTick(ru1901, day, time, 0, 11000+(i%50)*5, 100+i*10));
+        }
+        data.saveBinary(ru1901, ExchangeableData.TICK_CTP_BIN, day, TickColumns.encode(day, ticks));
+        DataInfo cacheInfo = ExchangeableData.getBarCache(PriceLevel.MIN5);
+        TimeSeriesLoader loader= new TimeSeriesLoader(new SimpleBeansContainer(), data);
+        loader
+            .setExchangeable(ru1901)
+            .setStartTradingDay(day)
+            .setEndTradingDay(day)
+            .setLevel(PriceLevel.MIN5)
+            .setBarCache(true);
+        LeveledTimeSeries computed = loader.load();
+        assertTrue(data.exists(ru1901, cacheInfo, day));
+        long tickModified = data.getLastModified(ru1901, ExchangeableData.TICK_CTP_BIN, day);
+        assertTrue(data.getLastModified(ru1901, cacheInfo, day)==tickModified);
+
+        //第二次从缓存加载
+        LeveledTimeSeries cached = loader.load();
+        assertTrue(cached.getBarCount()==computed.getBarCount());
+        for(int i=0;i<computed.getBarCount();i++) {
+            assertTrue(cached.getBar(i).getBeginTime().equals(computed.getBar(i).getBeginTime()));
+            assertTrue(cached.getBar(i).getClosePrice().isEqual(computed.getBar(i).getClosePrice()));
+            assertTrue(cached.getBar(i).getVolume().isEqual(computed.getBar(i).getVolume()));
+        }
+        assertTrue(((FutureBar)cached.getBar(0)).getOpenTick()==null);
+
+        //源数据修改后重新计算
+        data.saveBinary(ru1901, ExchangeableData.TICK_CTP_BIN, day, TickColumns.encode(day, ticks.subList(0, 1800)));
+        (new File(dataDir, "shfe/ru1901/20181203.tick-ctp-bin.dat")).setLastModified(tickModified+2000);
+        LeveledTimeSeries recomputed = loader.load();
+        assertTrue(recomputed.getBarCount()<computed.getBarCount());
+        assertTrue(((FutureBar)recomputed.getBar(0)).getOpenTick()!=null);
+        assertTrue(data.getLastModified(ru1901, cacheInfo, day)==tickModified+2000);
+        FileUtil.deleteDirectory(dataDir);
+    }
+
 }
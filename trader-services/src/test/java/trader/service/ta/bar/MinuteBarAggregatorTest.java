@@ -0,0 +1,93 @@
+package trader.service.ta.bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.service.TraderHomeHelper;
+import trader.service.md.MarketData;
+import trader.service.md.ctp.CtpMarketData;
+import trader.service.md.ctp.CtpMarketDataHelper;
+import trader.service.ta.FutureBar;
+import trader.service.ta.LeveledTimeSeries;
+
+public class MinuteBarAggregatorTest {
+
+    static {
+        TraderHomeHelper.init(null);
+    }
+
+    /**
+     * 从09:00:00开始, 每500毫秒一个TICK, 价格随机游走
+     */
+    private static List<MarketData> createTicks(Exchangeable e, LocalDate tradingDay, int count) {
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        List<MarketData> result = new ArrayList<>();
+        double price = 11000, highest = price, lowest = price;
+        int volume = 100;
+        double turnover = volume*price*10;
+        long seed = 1;
+        for(int i=0;i<count;i++) {
+            seed = seed*6364136223846793005L+1442695040888963407L;
+            price += ((seed>>>33)%3-1)*5;
+            int tickVolume = (int)((seed>>>40)%10+1);
+            volume += tickVolume;
+            turnover += tickVolume*price*10;
+            highest = Math.max(highest, price);
+            lowest = Math.min(lowest, price);
+            int seconds = 9*3600+i/2;
+            String time = String.format("%02d:%02d:%02d", seconds/3600, (seconds/60)%60, seconds%60);
+            CThostFtdcDepthMarketDataField field = CtpMarketDataHelper.createField(e, tradingDay, time, (i%2)*500, price, volume);
+            field.HighestPrice = highest;
+            field.LowestPrice = lowest;
+            field.Turnover = turnover;
+            field.AveragePrice = turnover/volume;
+            MarketData tick = new CtpMarketData("ctp", e, field, tradingDay);
+            tick.postProcess(tradingTimes);
+            result.add(tick);
+        }
+        return result;
+    }
+
+    @Test
+    public void testMin5FromMin1() {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        LocalDate tradingDay = DateUtil.str2localdate("20181203");
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        List<MarketData> ticks = createTicks(e, tradingDay, 4000);
+
+        FutureBarBuilder min1Builder = new FutureBarBuilder(tradingTimes, PriceLevel.MIN1);
+        MinuteBarAggregator aggregator = new MinuteBarAggregator(min1Builder, PriceLevel.MIN5);
+        FutureBarBuilder min5Builder = new FutureBarBuilder(tradingTimes, PriceLevel.MIN5);
+        for(MarketData tick:ticks) {
+            min1Builder.update(tick);
+            boolean newBar = aggregator.update(tick);
+            assertEquals(min5Builder.update(tick), newBar);
+        }
+        LeveledTimeSeries expected = min5Builder.getTimeSeries(PriceLevel.MIN5);
+        LeveledTimeSeries series = aggregator.getTimeSeries(PriceLevel.MIN5);
+        assertTrue(series.getBarCount()>=6);
+        assertEquals(expected.getBarCount(), series.getBarCount());
+        for(int i=0;i<series.getBarCount();i++) {
+            FutureBar bar = (FutureBar)series.getBar(i), expectedBar = (FutureBar)expected.getBar(i);
+            assertEquals(expectedBar.getIndex(), bar.getIndex());
+            assertEquals(expectedBar.getBeginTime(), bar.getBeginTime());
+            assertEquals(expectedBar.getOpenPrice().doubleValue(), bar.getOpenPrice().doubleValue(), 0);
+            assertEquals(expectedBar.getClosePrice().doubleValue(), bar.getClosePrice().doubleValue(), 0);
+            assertEquals(expectedBar.getMaxPrice().doubleValue(), bar.getMaxPrice().doubleValue(), 0);
+            assertEquals(expectedBar.getMinPrice().doubleValue(), bar.getMinPrice().doubleValue(), 0);
+            assertEquals(expectedBar.getVolume().doubleValue(), bar.getVolume().doubleValue(), 0);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+
+public class AccountJournalTest implements TradeConstants {
+
+    private static class RecordingVisitor implements AccountJournal.JournalVisitor {
+        List<String> records = new ArrayList<>();
+        OrderBuilder lastBuilder;
+        long[] lastOrderMoney;
+        long[] lastMoney;
+
+        @Override
+        public void onOrder(long offset, String orderRef, OrderBuilder builder, long[] orderMoney) {
+            records.add("order "+orderRef);
+            lastBuilder = builder;
+            lastOrderMoney = orderMoney;
+        }
+
+        @Override
+        public void onOrderState(long offset, String orderRef, OrderStateTuple stateTuple, Map<String, String> attrs) {
+            records.add("state "+orderRef+" "+stateTuple.getState()+" "+attrs);
+        }
+
+        @Override
+        public void onTransaction(long offset, String txnId, String orderRef, OrderDirection direction, OrderOffsetFlag offsetFlag, long price, int volume, long time) {
+            records.add("txn "+txnId+" "+orderRef+" "+PriceUtil.long2price(price)+" "+volume);
+        }
+
+        @Override
+        public void onMoney(long offset, long[] money) {
+            records.add("money");
+            lastMoney = money;
+        }
+    }
+
+    @Test
+    public void testWriteAndReplay() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        File file = new File(dir, "test.journal");
+        OrderBuilder builder = new OrderBuilder()
+                .setExchagneable(Exchangeable.fromString("au1906"))
+                .setDirection(OrderDirection.Buy)
+                .setOffsetFlag(OrderOffsetFlag.OPEN)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setLimitPrice(PriceUtil.price2long(290.35))
+                .setVolume(2)
+                .setAttr("tradlet", "t1");
+        OrderImpl order = new OrderImpl("000001", builder, null);
+        order.setMoney(OdrMoney_LocalFrozenMargin, PriceUtil.price2long(46456));
+
+        AccountJournal journal = new AccountJournal(file);
+        journal.writeOrder(order);
+        Map<String, String> attrs = new HashMap<>();
+        attrs.put("sysId", "123");
+        journal.writeOrderState(order, new OrderStateTuple(OrderState.Submitted, OrderSubmitState.Accepted, System.currentTimeMillis()), attrs);
+        journal.writeTransaction(new TransactionImpl("T1", order, OrderDirection.Buy, OrderOffsetFlag.OPEN, PriceUtil.price2long(290.35), 2, System.currentTimeMillis()));
+        long[] money = new long[AccMoney_Count];
+        money[AccMoney_Available] = PriceUtil.price2long(1000000);
+        journal.writeMoney(money);
+        long position = journal.getPosition();
+        journal.close();
+
+        //重新打开后从结束位置继续写入
+        journal = new AccountJournal(file);
+        assertTrue(journal.getPosition()==position);
+        journal.writeOrderState(order, new OrderStateTuple(OrderState.Complete, OrderSubmitState.Accepted, System.currentTimeMillis()), null);
+        RecordingVisitor visitor = new RecordingVisitor();
+        journal.replay(visitor);
+        journal.close();
+
+        assertTrue(visitor.records.size()==5);
+        assertTrue(visitor.records.get(0).equals("order 000001"));
+        assertTrue(visitor.records.get(1).equals("state 000001 Submitted {sysId=123}"));
+        assertTrue(visitor.records.get(2).equals("txn T1 000001 290.35 2"));
+        assertTrue(visitor.records.get(4).equals("state 000001 Complete null"));
+        assertTrue(visitor.lastBuilder.getVolume()==2);
+        assertTrue(visitor.lastBuilder.getLimitPrice()==PriceUtil.price2long(290.35));
+        assertTrue("t1".equals(visitor.lastBuilder.getAttrs().get("tradlet")));
+        assertTrue(visitor.lastOrderMoney[OdrMoney_LocalFrozenMargin]==PriceUtil.price2long(46456));
+        assertTrue(visitor.lastMoney[AccMoney_Available]==PriceUtil.price2long(1000000));
+
+        file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testOversizedOrder() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        File file = new File(dir, "test.journal");
+        StringBuilder value = new StringBuilder();
+        for(int i=0;i<Short.MAX_VALUE+1;i++) {
+            value.append('x');
+        }
+        OrderBuilder builder = new OrderBuilder()
+                .setExchagneable(Exchangeable.fromString("au1906"))
+                .setDirection(OrderDirection.Buy)
+                .setOffsetFlag(OrderOffsetFlag.OPEN)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setLimitPrice(PriceUtil.price2long(290.35))
+                .setVolume(1)
+                .setAttr("tradlet", value.toString());
+
+        AccountJournal journal = new AccountJournal(file);
+        long position = journal.getPosition();
+        try {
+            journal.writeOrder(new OrderImpl("000001", builder, null));
+            assertTrue(false);
+        }catch(AppException ae) {}
+        //超长记录不写入文件
+        assertTrue(journal.getPosition()==position);
+        journal.writeOrder(new OrderImpl("000002", builder.setAttr("tradlet", "t1"), null));
+        RecordingVisitor visitor = new RecordingVisitor();
+        journal.replay(visitor);
+        journal.close();
+        assertTrue(visitor.records.size()==1);
+        assertTrue(visitor.records.get(0).equals("order 000002"));
+
+        file.delete();
+        dir.delete();
+    }
+
+}
@@ -0,0 +1,69 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AccountLedgerTest implements TradeConstants {
+
+    @Test
+    public void testTransfer() {
+        long[] money = new long[AccMoney_Count];
+        money[AccMoney_Available] = 1000;
+        AccountLedger ledger = new AccountLedger(money);
+        assertTrue(ledger.transfer(AccMoney_Available, AccMoney_FrozenMargin, 400));
+        assertTrue(!ledger.transfer(AccMoney_Available, AccMoney_FrozenMargin, 700));
+        assertTrue(ledger.get(AccMoney_Available)==600);
+        assertTrue(ledger.get(AccMoney_FrozenMargin)==400);
+        assertTrue(ledger.add(AccMoney_CloseProfit, 50)==50);
+    }
+
+    /**
+     * 并发读写时, 读到的 可用+冻结 总额始终不变
+     */
+    @Test
+    public void testConsistentSnapshot() throws Exception {
+        long[] money = new long[AccMoney_Count];
+        money[AccMoney_Available] = 1000000;
+        AccountLedger ledger = new AccountLedger(money);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger inconsistent = new AtomicInteger();
+        Thread reader = new Thread(()->{
+            while(!stop.get()) {
+                long[] snapshot = ledger.snapshot();
+                if ( snapshot[AccMoney_Available]+snapshot[AccMoney_FrozenMargin]+snapshot[AccMoney_FrozenCommission]!=1000000 ) {
+                    inconsistent.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        for(int i=0;i<200000;i++) {
+            if ( i%2==0 ) {
+                ledger.update((m)->{
+                    m[AccMoney_FrozenMargin] += 100;
+                    m[AccMoney_FrozenCommission] += 5;
+                    m[AccMoney_Available] -= 105;
+                });
+            } else {
+                //不使用lambda的写入
+                long stamp = ledger.beginWrite();
+                try {
+                    long[] m = ledger.getWriteMoney();
+                    m[AccMoney_FrozenMargin] -= 100;
+                    m[AccMoney_FrozenCommission] -= 5;
+                    m[AccMoney_Available] += 105;
+                }finally {
+                    ledger.endWrite(stamp);
+                }
+            }
+        }
+        stop.set(true);
+        reader.join();
+        assertTrue(inconsistent.get()==0);
+        assertTrue(ledger.get(AccMoney_Available)==1000000);
+    }
+
+}
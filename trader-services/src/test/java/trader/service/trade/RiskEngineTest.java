@@ -0,0 +1,108 @@
+package trader.service.trade;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.PriceUtil;
+import trader.service.ServiceErrorConstants;
+import trader.service.trade.FutureFeeEvaluator.FutureFeeInfo;
+import trader.simulator.SimMarketTimeService;
+
+public class RiskEngineTest implements TradeConstants, ServiceErrorConstants {
+
+    private static Exchangeable au1906 = Exchangeable.fromString("au1906");
+
+    private static FutureFeeEvaluator createFeeEvaluator() {
+        FutureFeeInfo feeInfo = new FutureFeeInfo();
+        feeInfo.setPriceTick(PriceUtil.price2long(0.05));
+        feeInfo.setVolumeMultiple(1000);
+        feeInfo.setMarginRatio(MarginRatio_LongByMoney, 0.08);
+        feeInfo.setMarginRatio(MarginRatio_ShortByMoney, 0.08);
+        feeInfo.setCommissionRatio(CommissionRatio_OpenByVolume, 10);
+        feeInfo.setCommissionRatio(CommissionRatio_CloseByVolume, 10);
+        Map<Exchangeable, FutureFeeInfo> feeInfos = new HashMap<>();
+        feeInfos.put(au1906, feeInfo);
+        return new FutureFeeEvaluator(new Properties(), feeInfos);
+    }
+
+    /**
+     * 只有资金, 没有持仓和撤单的账户
+     */
+    private static Account createAccount(long available) {
+        return (Account)Proxy.newProxyInstance(RiskEngineTest.class.getClassLoader(), new Class[] {Account.class}, (proxy, method, args)->{
+            switch(method.getName()) {
+            case "getId":
+                return "test";
+            case "getMoney":
+                return available;
+            case "getCancelCount":
+                return 0;
+            default:
+                return null;
+            }
+        });
+    }
+
+    private static OrderBuilder createOpenBuilder(double price) {
+        return new OrderBuilder()
+                .setExchagneable(au1906)
+                .setDirection(OrderDirection.Buy)
+                .setOffsetFlag(OrderOffsetFlag.OPEN)
+                .setPriceType(OrderPriceType.LimitPrice)
+                .setLimitPrice(PriceUtil.price2long(price))
+                .setVolume(1);
+    }
+
+    @Test
+    public void testFeesSameAsEvaluator() throws Exception {
+        FutureFeeEvaluator feeEvaluator = createFeeEvaluator();
+        RiskEngine riskEngine = new RiskEngine(createAccount(PriceUtil.price2long(1000000)), new SimMarketTimeService(), null, feeEvaluator, new Properties());
+        long[] orderMoney = new long[OdrMoney_Count];
+        riskEngine.check(createOpenBuilder(290.35), orderMoney);
+        long[] fees = feeEvaluator.compute(au1906, 1, PriceUtil.price2long(290.35), OrderDirection.Buy, OrderOffsetFlag.OPEN);
+        assertTrue(orderMoney[OdrMoney_LocalFrozenMargin]==fees[0]);
+        assertTrue(orderMoney[OdrMoney_LocalFrozenCommission]==fees[1]);
+        assertTrue(orderMoney[OdrMoney_PriceCandidate]==PriceUtil.price2long(290.35));
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        Properties limits = new Properties();
+        limits.setProperty(RiskEngine.ITEM_MAX_ORDER_RATE, "2");
+        RiskEngine riskEngine = new RiskEngine(createAccount(PriceUtil.price2long(1000000)), new SimMarketTimeService(), null, createFeeEvaluator(), limits);
+        long[] orderMoney = new long[OdrMoney_Count];
+        assertErrorCode(riskEngine, createOpenBuilder(290.33), ERRCODE_TRADE_PRICE_EXCEEDS_LIMIT);
+        riskEngine.check(createOpenBuilder(290.35), orderMoney);
+        riskEngine.check(createOpenBuilder(290.40), orderMoney);
+        //同一时刻第3个报单超出频率限制
+        assertErrorCode(riskEngine, createOpenBuilder(290.45), ERRCODE_TRADE_ORDER_RATE_EXCEEDS_LIMIT);
+
+        limits = new Properties();
+        limits.setProperty(RiskEngine.ITEM_MAX_POSITION, "1");
+        riskEngine.setLimits(limits);
+        assertErrorCode(riskEngine, createOpenBuilder(290.45).setVolume(2), ERRCODE_TRADE_VOL_EXCEEDS_LIMIT);
+
+        RiskEngine poorEngine = new RiskEngine(createAccount(PriceUtil.price2long(1000)), new SimMarketTimeService(), null, createFeeEvaluator(), new Properties());
+        assertErrorCode(poorEngine, createOpenBuilder(290.35), ERRCODE_TRADE_MARGIN_NOT_ENOUGH);
+        assertErrorCode(poorEngine, createOpenBuilder(290.35).setExchagneable(Exchangeable.fromString("ru1901")), ERRCODE_TRADE_EXCHANGEABLE_INVALID);
+    }
+
+    private static void assertErrorCode(RiskEngine riskEngine, OrderBuilder builder, int errCode) {
+        try {
+            riskEngine.check(builder, new long[OdrMoney_Count]);
+            fail("Expect error "+Integer.toHexString(errCode));
+        }catch(AppException ae) {
+            assertTrue(ae.getCode()==errCode);
+        }
+    }
+
+}
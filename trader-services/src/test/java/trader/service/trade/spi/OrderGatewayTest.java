@@ -0,0 +1,89 @@
+package trader.service.trade.spi;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exception.AppException;
+import trader.service.trade.Order;
+import trader.service.trade.OrderBuilder;
+import trader.service.trade.OrderStateTuple;
+import trader.service.trade.TradeConstants.OrderState;
+
+public class OrderGatewayTest {
+
+    private static Order createOrder(String orderRef) {
+        return (Order)Proxy.newProxyInstance(OrderGatewayTest.class.getClassLoader(), new Class[] {Order.class}, (proxy, method, args)->{
+            if ( method.getName().equals("getRef") ) {
+                return orderRef;
+            }
+            return null;
+        });
+    }
+
+    private static class RecordingSender implements OrderGateway.OrderSender {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void sendOrder(Order order) throws AppException {
+            requests.add("insert "+order.getRef());
+        }
+
+        @Override
+        public void cancelOrder(Order order) throws AppException {
+            requests.add("cancel "+order.getRef());
+        }
+
+        @Override
+        public void modifyOrder(Order order, OrderBuilder builder) throws AppException {
+            requests.add("modify "+order.getRef()+" "+builder.getLimitPrice());
+        }
+    }
+
+    private static TxnSessionListener createListener(List<String> states) {
+        return (TxnSessionListener)Proxy.newProxyInstance(OrderGatewayTest.class.getClassLoader(), new Class[] {TxnSessionListener.class}, (proxy, method, args)->{
+            if ( method.getName().equals("changeOrderState") && args[0] instanceof Order ) {
+                OrderStateTuple state = (OrderStateTuple)args[1];
+                states.add(((Order)args[0]).getRef()+" "+state.getState());
+            }
+            return null;
+        });
+    }
+
+    @Test
+    public void testThrottleAndCoalesce() throws Exception {
+        RecordingSender sender = new RecordingSender();
+        List<String> states = Collections.synchronizedList(new ArrayList<>());
+        OrderGateway gateway = new OrderGateway("test", sender, createListener(states));
+        gateway.setRate(20, 1);
+        Order o1 = createOrder("1"), o2 = createOrder("2"), o3 = createOrder("3");
+        //第一个报单直接发送, 之后排队
+        gateway.sendOrder(o1);
+        assertTrue(sender.requests.size()==1);
+        gateway.sendOrder(o2);
+        gateway.sendOrder(o3);
+        assertTrue(states.contains("2 "+OrderState.Submitting));
+        //排队中的报单直接本地取消
+        gateway.cancelOrder(o3);
+        assertTrue(states.contains("3 "+OrderState.Canceled));
+        //重复改单合并, 撤单优先于报单
+        gateway.modifyOrder(o1, new OrderBuilder().setLimitPrice(100));
+        gateway.modifyOrder(o1, new OrderBuilder().setLimitPrice(200));
+        gateway.cancelOrder(o1);
+        gateway.cancelOrder(o1);
+        for(int i=0;i<100 && gateway.getQueueSize()>0;i++) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(20);
+        gateway.close();
+        assertTrue(sender.requests.equals(Arrays.asList("insert 1", "cancel 1", "insert 2")));
+        assertTrue(OrderGateway.QUEUE_WAIT.getCount()>=2);
+    }
+
+}
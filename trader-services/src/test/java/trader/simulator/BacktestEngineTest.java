@@ -0,0 +1,57 @@
+package trader.simulator;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+
+public class BacktestEngineTest {
+
+    @Test
+    public void testApplyParams() {
+        String text = "[common]\ninstruments=ru1901\n[MACD]\nfast=12\nslow=26\n[KDJ]\nslow=9";
+        Properties params = new Properties();
+        params.setProperty("MACD.slow", "30");
+        params.setProperty("fast", "10");
+        String result = SimTradletService.applyParams(text, params);
+        assertTrue(result.equals("[common]\ninstruments=ru1901\n[MACD]\nfast=10\nslow=30\n[KDJ]\nslow=9"));
+        assertTrue(SimTradletService.applyParams(text, new Properties())==text);
+    }
+
+    @Test
+    public void testEquityCurve() {
+        Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+        Exchangeable au1906 = Exchangeable.fromString("au1906");
+        LocalDate day1 = LocalDate.of(2018, 12, 3), day2 = LocalDate.of(2018, 12, 4);
+        Map<String, Properties> paramSets = new LinkedHashMap<>();
+        paramSets.put("p1", new Properties());
+        paramSets.put("p2", new Properties());
+        List<BacktestJob> jobs = BacktestEngine.createJobs(Arrays.asList(ru1901, au1906), Arrays.asList(day1, day2), paramSets);
+        assertTrue(jobs.size()==8);
+
+        List<BacktestResult> results = new ArrayList<>();
+        long profit = 0;
+        for(BacktestJob job:jobs) {
+            BacktestResult result = new BacktestResult(job);
+            result.addAccount("sim-account1", 1000, 1000+(++profit));
+            results.add(result);
+        }
+        Map<String, SortedMap<LocalDate, Long>> curves = BacktestEngine.getEquityCurves(results);
+        assertTrue(curves.size()==2);
+        //p1: ru1901 day1=1 day2=2, au1906 day1=3 day2=4
+        assertTrue(curves.get("p1").get(day1)==1+3);
+        assertTrue(curves.get("p1").get(day2)==1+3+2+4);
+        assertTrue(curves.get("p2").get(day2)==5+6+7+8);
+    }
+
+}
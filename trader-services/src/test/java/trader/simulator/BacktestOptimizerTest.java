@@ -0,0 +1,113 @@
+package trader.simulator;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.md.MarketData;
+
+public class BacktestOptimizerTest {
+
+    @Test
+    public void testParseRange() {
+        assertTrue(BacktestOptimizer.parseRange("1:2:0.5").equals(Arrays.asList("1", "1.5", "2.0")));
+        assertTrue(BacktestOptimizer.parseRange("5,10;20").equals(Arrays.asList("5", "10", "20")));
+        assertTrue(BacktestOptimizer.parseRange("14:55:00").equals(Arrays.asList("14:55:00")));
+    }
+
+    @Test
+    public void testCandidates() {
+        Map<String, List<String>> ranges = new LinkedHashMap<>();
+        ranges.put("MACD135.a", Arrays.asList("1", "2", "3"));
+        ranges.put("Stop.b", Arrays.asList("x", "y"));
+        BacktestOptimizer optimizer = new BacktestOptimizer(new BacktestEngine(1));
+        Map<String, Properties> grid = optimizer.createCandidates(ranges);
+        assertTrue(grid.size()==6);
+        Properties last = new ArrayList<>(grid.values()).get(5);
+        assertTrue(last.getProperty("MACD135.a").equals("3") && last.getProperty("Stop.b").equals("y"));
+
+        optimizer.setMode(BacktestOptimizer.Mode.Random);
+        optimizer.setSamples(4);
+        Map<String, Properties> random = optimizer.createCandidates(ranges);
+        assertTrue(random.size()==4);
+        assertTrue(grid.values().containsAll(random.values()));
+    }
+
+    @Test
+    public void testTickCacheLoadOnce() throws Exception {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        LocalDate tradingDay = LocalDate.of(2018, 12, 3);
+        SimTickCache.clear();
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<MarketData>>> futures = new ArrayList<>();
+        for(int i=0;i<16;i++) {
+            futures.add(executor.submit(()->{
+                return SimTickCache.getTicks(e, tradingDay, null, ()->{
+                    loads.incrementAndGet();
+                    Thread.sleep(50);
+                    return new ArrayList<>();
+                });
+            }));
+        }
+        List<MarketData> first = futures.get(0).get();
+        for(Future<List<MarketData>> future:futures) {
+            assertTrue(future.get()==first);
+        }
+        executor.shutdown();
+        assertTrue(loads.get()==1);
+        SimTickCache.clear();
+    }
+
+    @Test
+    public void testTickCacheEvict() throws Exception {
+        Exchangeable e = Exchangeable.fromString("ru1901");
+        LocalDate day = LocalDate.of(2018, 12, 3);
+        SimTickCache.clear();
+        SimTickCache.setMaxSize(2);
+        try {
+            AtomicInteger loads = new AtomicInteger();
+            for(int i=0;i<3;i++) {
+                SimTickCache.getTicks(e, day.plusDays(i), null, ()->{
+                    loads.incrementAndGet();
+                    return new ArrayList<>();
+                });
+            }
+            assertTrue(SimTickCache.size()==2);
+            //最早的交易日已被淘汰, 需要重新加载
+            SimTickCache.getTicks(e, day, null, ()->{
+                loads.incrementAndGet();
+                return new ArrayList<>();
+            });
+            assertTrue(loads.get()==4);
+            assertTrue(SimTickCache.size()==2);
+        }finally {
+            SimTickCache.setMaxSize(SimTickCache.DEFAULT_MAX_SIZE);
+            SimTickCache.clear();
+        }
+    }
+
+    @Test
+    public void testApplyJsonParams() {
+        String text = "[Stop]\n{\n  \"priceStep\": \"5t\",\n  \"maxLifeTime\": 300,\n  \"endTime\": \"14:55:00\"\n}";
+        Properties params = new Properties();
+        params.setProperty("Stop.maxLifeTime", "600");
+        params.setProperty("Stop.priceStep", "8t");
+        String result = SimTradletService.applyParams(text, params);
+        assertTrue(result.equals("[Stop]\n{\n  \"priceStep\": \"8t\",\n  \"maxLifeTime\": 600,\n  \"endTime\": \"14:55:00\"\n}"));
+    }
+
+}
@@ -0,0 +1,91 @@
+package trader.simulator;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataService;
+import trader.service.md.ctp.CtpMarketDataHelper;
+import trader.service.util.SimpleBeansContainer;
+
+public class SimMarketDataReplayTest {
+
+    private static final LocalDate tradingDay = DateUtil.str2localdate("20181203");
+    private static final Exchangeable ru1901 = Exchangeable.fromString("ru1901");
+    private static final Exchangeable au1906 = Exchangeable.fromString("au1906");
+
+    @After
+    public void clearCache() {
+        SimTickCache.clear();
+    }
+
+    @Test
+    public void testEventDrivenReplay() throws Exception {
+        List<MarketData> ticks = replay(true);
+        //每个合约 09:00:00 - 09:00:59 每秒4个TICK
+        assertTrue(ticks.size()==2*60*4);
+        for(int i=1;i<ticks.size();i++) {
+            assertTrue(ticks.get(i-1).updateTimestamp<=ticks.get(i).updateTimestamp);
+        }
+    }
+
+    @Test
+    public void testPollingReplayDropsTicks() throws Exception {
+        List<MarketData> ticks = replay(false);
+        assertTrue(ticks.size()>0 && ticks.size()<2*60*4);
+    }
+
+    private List<MarketData> replay(boolean eventDriven) throws Exception {
+        for(Exchangeable e:Arrays.asList(ru1901, au1906)) {
+            SimTickCache.getTicks(e, tradingDay, e.exchange().getTradingTimes(e, tradingDay), ()->{
+                return createTicks(e);
+            });
+        }
+        SimpleBeansContainer beansContainer = new SimpleBeansContainer();
+        SimMarketTimeService mtService = new SimMarketTimeService();
+        SimMarketDataService mdService = new SimMarketDataService();
+        beansContainer.addBean(SimMarketTimeService.class, mtService);
+        beansContainer.addBean(MarketDataService.class, mdService);
+        LocalDateTime beginTime = LocalDateTime.of(2018, 12, 3, 9, 0, 0);
+        mtService.setTimeRanges(tradingDay, new LocalDateTime[] {beginTime, beginTime.plusMinutes(1)});
+        mtService.setEventDriven(eventDriven);
+        mdService.addSubscriptions(Arrays.asList(ru1901, au1906));
+        mdService.init(beansContainer);
+        List<MarketData> result = new ArrayList<>();
+        mdService.addListener((MarketData md)->{
+            result.add(md);
+        });
+        int steps = 0;
+        while(mtService.nextTimePiece()) {
+            steps++;
+        }
+        if ( eventDriven ) {
+            assertTrue(steps==result.size());
+        }
+        return result;
+    }
+
+    private static List<MarketData> createTicks(Exchangeable e) {
+        List<MarketData> result = new ArrayList<>();
+        //两个合约错开10毫秒, 同一个100毫秒内有多个TICK
+        int offset = e.equals(ru1901)?0:10;
+        for(int i=0;i<60;i++) {
+            String time = String.format("09:00:%02d", i);
+            for(int millisec:new int[] {0, 30, 500, 530}) {
+                result.add(CtpMarketDataHelper.createTick(e, tradingDay, time, millisec+offset, 11000+i, 100+i));
+            }
+        }
+        return result;
+    }
+
+}